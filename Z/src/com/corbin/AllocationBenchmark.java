@@ -0,0 +1,90 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+// Bytes the Evaluator allocates per loop iteration with values boxed in a Lexeme per operator
+// and assignment, and with INT and FLOAT statements computed unboxed into frame slots.  The
+// programs are a nested INT loop like EngineBenchmark's and a FLOAT accumulation; the count
+// comes from the JVM's per-thread allocation counter, after a warm-up run of each.  Both modes
+// must print the same output.
+// Usage: java com.corbin.AllocationBenchmark [loopSize]
+public class AllocationBenchmark {
+    private static String expected = null;      // the output of the last boxed run
+
+    public static void main(String[] args) {
+        int loopSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long iterations = (long) loopSize * loopSize;
+
+        String ints = "var n = " + loopSize + "\n"
+                + "var total = 0\n"
+                + "var i = 0\n"
+                + "while (i < n) {\n"
+                + "    for (j = 0; j < n; j++) {\n"
+                + "        total = total + i * j % 7 - j\n"
+                + "    }\n"
+                + "    i++\n"
+                + "}\n"
+                + "output total\n";
+        String floats = "var n = " + loopSize + "\n"
+                + "var sum = 0.0\n"
+                + "var i = 0\n"
+                + "while (i < n) {\n"
+                + "    var j = 0\n"
+                + "    while (j < n) {\n"
+                + "        sum = sum + j * 0.5 - i / 4.0\n"
+                + "        j++\n"
+                + "    }\n"
+                + "    i++\n"
+                + "}\n"
+                + "output sum\n";
+
+        System.out.println(loopSize + " x " + loopSize + " iterations");
+        compare("ints", ints, iterations);
+        compare("floats", floats, iterations);
+    }
+
+    private static void compare(String name, String source, long iterations) {
+        run(source, false);
+        run(source, true);
+        long[] boxed = run(source, false);
+        long[] unboxed = run(source, true);
+        System.out.printf("%-6s boxed %8.1f bytes/iteration %7.1f ms   unboxed %8.1f bytes/iteration %7.1f ms%n",
+                name, (double) boxed[0] / iterations, boxed[1] / 1e6, (double) unboxed[0] / iterations, unboxed[1] / 1e6);
+    }
+
+    // Bytes allocated and nanoseconds taken
+    private static long[] run(String source, boolean unboxed) {
+        Lexeme program = new Parser(new Lexer(new StringReader(source))).program();
+        Optimizer.optimize(program, false);
+        if (!Resolver.resolve(program) || !TypeChecker.check(program)) {
+            throw new IllegalStateException("The benchmark program has errors");
+        }
+        LoopOptimizer.optimize(program);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PrintStream console = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long bytes, time;
+        try {
+            System.setOut(new PrintStream(output));
+            Evaluator evaluator = new Evaluator();
+            evaluator.setUnboxed(unboxed);
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            evaluator.eval(program, new Environments(null));
+            time = System.nanoTime() - start;
+            bytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+        } finally {
+            System.setOut(console);
+        }
+
+        if (!unboxed) expected = output.toString();
+        else if (!output.toString().equals(expected)) {
+            throw new IllegalStateException("The modes disagree:\n" + expected + "---\n" + output);
+        }
+        return new long[] {bytes, time};
+    }
+}
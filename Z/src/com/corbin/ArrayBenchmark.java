@@ -0,0 +1,102 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+// Array loops in the Evaluator, unboxed and boxed, and in the ClosureCompiler.  An [int] of n
+// elements is made by repeating a one element array, filled with a[i] = i, then summed with for in,
+// scanned with a[i] compares, and updated in place with a[i] = a[i] + 1.  The unboxed Evaluator
+// reads and writes the elements as ints; the others make a Lexeme for each one.  All three must
+// print the same output.
+// Usage: java com.corbin.ArrayBenchmark [elements] [runs]
+public class ArrayBenchmark {
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        String make = "var zero = [0]\n"
+                + "var a = zero * " + elements + "\n"
+                + "for (i = 0; i < " + elements + "; i++) {\n"
+                + "    a[i] = i\n"
+                + "}\n";
+        String sum = make
+                + "var s = 0\n"
+                + "for x in a {\n"
+                + "    s = s + x\n"
+                + "}\n"
+                + "output s\n";
+        String scan = make
+                + "var found = 0\n"
+                + "var i = 0\n"
+                + "while (i < " + elements + ") {\n"
+                + "    if (a[i] > " + elements / 2 + ") {\n"
+                + "        found = found + 1\n"
+                + "    }\n"
+                + "    i = i + 1\n"
+                + "}\n"
+                + "output found\n";
+        String update = make
+                + "for (i = 0; i < " + elements + "; i++) {\n"
+                + "    a[i] = a[i] + 1\n"
+                + "}\n"
+                + "output a[" + (elements - 1) + "]\n";
+
+        System.out.println("Elements: " + elements);
+        for (int run = 0; run < runs; run++) {
+            compare("sum", sum);
+            compare("scan", scan);
+            compare("update", update);
+            System.out.println();
+        }
+    }
+
+    private static void compare(String name, String source) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream unboxedOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream boxedOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream closureOutput = new ByteArrayOutputStream();
+        long unboxed, boxed, closure;
+        try {
+            Lexeme program = prepare(source);
+            System.setOut(new PrintStream(unboxedOutput));
+            long start = System.nanoTime();
+            new Evaluator().eval(program, new Environments(null));
+            unboxed = System.nanoTime() - start;
+
+            program = prepare(source);
+            System.setOut(new PrintStream(boxedOutput));
+            Evaluator evaluator = new Evaluator();
+            evaluator.setUnboxed(false);
+            start = System.nanoTime();
+            evaluator.eval(program, new Environments(null));
+            boxed = System.nanoTime() - start;
+
+            program = prepare(source);
+            System.setOut(new PrintStream(closureOutput));
+            start = System.nanoTime();
+            new ClosureCompiler().run(program);
+            closure = System.nanoTime() - start;
+        } finally {
+            System.setOut(console);
+        }
+
+        String expected = unboxedOutput.toString();
+        if (!expected.equals(boxedOutput.toString()) || !expected.equals(closureOutput.toString())) {
+            throw new IllegalStateException(name + ": the engines disagree");
+        }
+        System.out.printf("%-6s %12s   Unboxed %8.1f ms   Boxed %8.1f ms   Closures %8.1f ms   (%.1fx)%n",
+                name, expected.trim(), unboxed / 1e6, boxed / 1e6, closure / 1e6, (double) boxed / unboxed);
+    }
+
+    private static Lexeme prepare(String source) {
+        Lexeme program = new Parser(new Lexer(new StringReader(source))).program();
+        Optimizer.optimize(program, false);
+        if (!Resolver.resolve(program) || !TypeChecker.check(program)) {
+            throw new IllegalStateException("The benchmark program has errors");
+        }
+        LoopOptimizer.optimize(program);
+        return program;
+    }
+}
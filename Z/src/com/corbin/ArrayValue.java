@@ -0,0 +1,174 @@
+package com.corbin;
+
+import java.util.Arrays;
+
+import com.corbin.Lexeme.Datatype;
+
+// The elements of an [int], [float] or [String] array, kept in a Java array of their own type:
+// ints, floats or Strings, so reading or writing one makes no Lexeme.  The length is fixed when
+// the array is made, and every variable it is assigned to shares it.  Elements are converted to
+// the element type as a variable's value is on assignment.  Callers check an index with
+// inBounds, which reports one out of range through Z.error.
+final class ArrayValue {
+    private final Datatype elementType;
+    private final int[] ints;           // the elements of an [int], null otherwise
+    private final float[] floats;       // of a [float]
+    private final String[] strings;     // of a [String]
+    private final int length;
+
+    private ArrayValue(Datatype elementType, int length) {
+        this.elementType = elementType;
+        this.length = length;
+        this.ints = elementType == Datatype.INT ? new int[length] : null;
+        this.floats = elementType == Datatype.FLOAT ? new float[length] : null;
+        this.strings = elementType == Datatype.STRING ? new String[length] : null;
+        if (strings != null) Arrays.fill(strings, "");
+    }
+
+    // -------------- Public Methods --------------
+
+    // length elements of the type's zero: 0, 0.0 or ""
+    static ArrayValue of(Datatype elementType, int length) {
+        return new ArrayValue(elementType, length);
+    }
+
+    Datatype elementType() {
+        return elementType;
+    }
+
+    int length() {
+        return length;
+    }
+
+    // The name of the array's type, like [INT], for error messages
+    String typeName() {
+        return "[" + elementType + "]";
+    }
+
+    // Whether index is an element's; if not, the error has been reported
+    boolean inBounds(int index, int lineNumber) {
+        if (index >= 0 && index < length) return true;
+        Z.error(lineNumber, "Array index " + index + " out of bounds for length " + length);
+        return false;
+    }
+
+    // An element as a value, for code that works with Lexemes
+    Lexeme get(int index, int lineNumber) {
+        switch (elementType) {
+            case INT:
+                return Lexeme.integer(ints[index], lineNumber);
+            case FLOAT:
+                return new Lexeme(TokenType.FLOAT, floats[index], lineNumber);
+            default:
+                return new Lexeme(TokenType.STRING, strings[index], lineNumber);
+        }
+    }
+
+    // The element type's zero, which reading outside the array gives once the error is reported
+    Lexeme zero(int lineNumber) {
+        switch (elementType) {
+            case INT:
+                return Lexeme.integer(0, lineNumber);
+            case FLOAT:
+                return new Lexeme(TokenType.FLOAT, 0.0f, lineNumber);
+            default:
+                return new Lexeme(TokenType.STRING, "", lineNumber);
+        }
+    }
+
+    // An element as getIntValue() would give it
+    int getInt(int index, int lineNumber) {
+        switch (elementType) {
+            case INT:
+                return ints[index];
+            case FLOAT:
+                return (int) floats[index];
+            default:
+                Z.error(lineNumber, "Type conversion error. Can't convert STRING to INT");
+                return 0;
+        }
+    }
+
+    // An element as getFloatValue() would give it
+    float getFloat(int index, int lineNumber) {
+        switch (elementType) {
+            case INT:
+                return ints[index];
+            case FLOAT:
+                return floats[index];
+            default:
+                Z.error(lineNumber, "Type conversion error. Can't convert STRING to FLOAT");
+                return 0.0f;
+        }
+    }
+
+    // Stores a value converted to the element type, as assigning it to a variable of that type would
+    void set(int index, Lexeme value, int lineNumber) {
+        if (value.getDatatype() == null) {
+            Z.error(lineNumber, "Type mismatch.  Can't assign " + (value.getArray() != null ? value.getArray().typeName() : "BOOLEAN")
+                    + " value to " + elementType + " element");
+            return;
+        }
+        switch (elementType) {
+            case INT:
+                ints[index] = value.getIntValue(lineNumber);
+                break;
+            case FLOAT:
+                floats[index] = value.getFloatValue(lineNumber);
+                break;
+            default:
+                strings[index] = value.getStringValue();
+        }
+    }
+
+    // For an [int] only
+    void setInt(int index, int value) {
+        ints[index] = value;
+    }
+
+    // For a [float] only
+    void setFloat(int index, float value) {
+        floats[index] = value;
+    }
+
+    // count copies of the elements one after another, or none if count isn't positive
+    ArrayValue repeat(int count) {
+        ArrayValue repeated = new ArrayValue(elementType, Math.multiplyExact(length, Math.max(count, 0)));
+        if (length == 0) return repeated;
+        Object source = ints != null ? ints : floats != null ? floats : strings;
+        Object target = repeated.ints != null ? repeated.ints : repeated.floats != null ? repeated.floats : repeated.strings;
+        System.arraycopy(source, 0, target, 0, Math.min(length, repeated.length));
+        for (int copied = length; copied < repeated.length; copied *= 2) {         // doubling copies
+            System.arraycopy(target, 0, target, copied, Math.min(copied, repeated.length - copied));
+        }
+        return repeated;
+    }
+
+    // Same element type and elements, as a const declared again in a loop must have
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof ArrayValue)) return false;
+        ArrayValue array = (ArrayValue) other;
+        return elementType == array.elementType && Arrays.equals(ints, array.ints)
+                && Arrays.equals(floats, array.floats) && Arrays.equals(strings, array.strings);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ints) ^ Arrays.hashCode(floats) ^ Arrays.hashCode(strings);
+    }
+
+    // The elements as output prints them: [1, 2, 3]
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < length; i++) {
+            if (i > 0) text.append(", ");
+            if (ints != null) text.append(ints[i]);
+            else if (floats != null) text.append(floats[i]);
+            else text.append(strings[i]);
+        }
+        return text.append(']').toString();
+    }
+}
@@ -0,0 +1,244 @@
+package com.corbin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// A syntax tree kept in parallel primitive arrays instead of linked Lexeme objects.  Node i
+// has a kind (a TokenType), the index of its first child and of its next sibling, a line
+// number and one literal int: the value of an INT, the raw bits of a FLOAT, the symbol of an
+// IDENTIFIER, an index into the string pool for a STRING, or flags for a few statement kinds.
+// There are no GLUE nodes and no punctuation; AstConverter lists the children of each kind.
+// Nodes are stored in preorder, so node 0 is the PROGRAM and every child and sibling of a
+// node comes after it.
+public class AstArena {
+    public static final int NONE = -1;
+    private static final TokenType[] KINDS = TokenType.values();
+    private static final int DEFAULT_CAPACITY = 256;
+
+    // Instance Variables
+    private byte[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] lineNumbers;
+    private int[] literals;
+    private String[] strings;
+    private int size = 0;
+    private int stringCount = 0;
+
+    // -------------- Constructors --------------
+
+    public AstArena() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AstArena(int capacity) {
+        capacity = Math.max(capacity, 1);
+        kinds = new byte[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        lineNumbers = new int[capacity];
+        literals = new int[capacity];
+        strings = new String[16];
+    }
+
+    // -------------- Building --------------
+
+    public int add(TokenType kind, int lineNumber, int literal) {
+        if (size == kinds.length) grow();
+        int node = size++;
+        kinds[node] = (byte) kind.ordinal();
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        lineNumbers[node] = lineNumber;
+        literals[node] = literal;
+        return node;
+    }
+
+    public int addString(int lineNumber, String value) {
+        if (stringCount == strings.length) strings = Arrays.copyOf(strings, Math.max(stringCount * 2, 16));
+        strings[stringCount] = value;
+        return add(TokenType.STRING, lineNumber, stringCount++);
+    }
+
+    // Links child after previous, or as the first child of parent if previous is NONE
+    public int addChild(int parent, int previous, int child) {
+        if (previous == NONE) firstChildren[parent] = child;
+        else nextSiblings[previous] = child;
+        return child;
+    }
+
+    // -------------- Accessors --------------
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType getKind(int node) {
+        return KINDS[kinds[node] & 0xFF];
+    }
+
+    public int getLineNumber(int node) {
+        return lineNumbers[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int getLiteral(int node) {
+        return literals[node];
+    }
+
+    public int getIntValue(int node) {
+        return literals[node];
+    }
+
+    public float getFloatValue(int node) {
+        return Float.intBitsToFloat(literals[node]);
+    }
+
+    public int getSymbol(int node) {
+        return literals[node];
+    }
+
+    public String getStringValue(int node) {
+        return strings[literals[node]];
+    }
+
+    public int getChild(int node, int index) {
+        int child = firstChildren[node];
+        for (int i = 0; i < index && child != NONE; i++) child = nextSiblings[child];
+        return child;
+    }
+
+    public int getChildCount(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) count++;
+        return count;
+    }
+
+    // -------------- Serialization --------------
+
+    // Symbol ids are only meaningful inside one run, so identifiers are written as indexes
+    // into a table of the names they use
+    public void write(DataOutputStream out) throws IOException {
+        HashMap<Integer, Integer> nameIndexes = new HashMap<>();
+        int[] written = Arrays.copyOf(literals, size);
+        for (int node = 0; node < size; node++) {
+            if (getKind(node) != TokenType.IDENTIFIER) continue;
+            Integer index = nameIndexes.get(literals[node]);
+            if (index == null) nameIndexes.put(literals[node], index = nameIndexes.size());
+            written[node] = index;
+        }
+        String[] names = new String[nameIndexes.size()];
+        for (HashMap.Entry<Integer, Integer> entry : nameIndexes.entrySet()) names[entry.getValue()] = SymbolTable.name(entry.getKey());
+
+        out.writeInt(size);
+        out.write(kinds, 0, size);
+        for (int[] array : new int[][] {firstChildren, nextSiblings, lineNumbers, written}) writeInts(out, array, size);
+        writeStrings(out, strings, stringCount);
+        writeStrings(out, names, names.length);
+    }
+
+    // Reads an arena written by write, checking that it is a well-formed preorder tree
+    public static AstArena read(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        // Bounded by what's left to read, so a bad count can't ask for a huge allocation
+        if (size < 0 || size > in.available()) throw new IOException("Bad node count " + size);
+        AstArena arena = new AstArena(size);
+        in.readFully(arena.kinds, 0, size);
+        for (int[] array : new int[][] {arena.firstChildren, arena.nextSiblings, arena.lineNumbers, arena.literals}) readInts(in, array, size);
+        arena.size = size;
+        arena.strings = readStrings(in);
+        arena.stringCount = arena.strings.length;
+        String[] names = readStrings(in);
+
+        for (int node = 0; node < size; node++) {
+            if ((arena.kinds[node] & 0xFF) >= KINDS.length) throw new IOException("Bad kind at node " + node);
+            checkLink(arena.firstChildren[node], node, size);
+            checkLink(arena.nextSiblings[node], node, size);
+            TokenType kind = arena.getKind(node);
+            if (kind == TokenType.STRING) checkIndex(arena.literals[node], arena.stringCount, node);
+            if (kind == TokenType.IDENTIFIER) {
+                checkIndex(arena.literals[node], names.length, node);
+                arena.literals[node] = SymbolTable.intern(names[arena.literals[node]]);
+            }
+        }
+        return arena;
+    }
+
+    // Whole arrays go through one buffer; a readInt or writeInt per node is several times slower
+    private static void writeInts(DataOutputStream out, int[] array, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(count * 4);
+        buffer.asIntBuffer().put(array, 0, count);
+        out.write(buffer.array());
+    }
+
+    private static void readInts(DataInputStream in, int[] array, int count) throws IOException {
+        byte[] bytes = new byte[count * 4];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asIntBuffer().get(array, 0, count);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = strings[i].getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available()) throw new IOException("Bad string count " + count);
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) throw new IOException("Bad string length " + length);
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // Children and siblings always come after their node, so links can't form a cycle
+    private static void checkLink(int link, int node, int size) throws IOException {
+        if (link != NONE && (link <= node || link >= size)) throw new IOException("Bad link " + link + " at node " + node);
+    }
+
+    private static void checkIndex(int index, int count, int node) throws IOException {
+        if (index < 0 || index >= count) throw new IOException("Bad literal " + index + " at node " + node);
+    }
+
+    // -------------- Helper Methods --------------
+
+    private void grow() {
+        int capacity = Math.max(kinds.length * 2, DEFAULT_CAPACITY);
+        kinds = Arrays.copyOf(kinds, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+        literals = Arrays.copyOf(literals, capacity);
+    }
+
+    // Drops unused capacity once the tree is complete
+    public void trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        firstChildren = Arrays.copyOf(firstChildren, size);
+        nextSiblings = Arrays.copyOf(nextSiblings, size);
+        lineNumbers = Arrays.copyOf(lineNumbers, size);
+        literals = Arrays.copyOf(literals, size);
+        strings = Arrays.copyOf(strings, stringCount);
+    }
+}
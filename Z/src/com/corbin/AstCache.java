@@ -0,0 +1,170 @@
+package com.corbin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Keeps parsed programs as serialized AstArenas in a cache directory, so an unchanged script
+// skips the Lexer and Parser.  The file name is the SHA-256 of the interpreter version and the
+// source, so editing either one simply misses.  A file that is truncated, has a bad checksum or
+// doesn't decode to a well-formed tree is deleted and treated as a miss.
+//
+// File layout: magic, format version, key, payload length, payload (an AstArena), CRC32 of payload.
+public class AstCache {
+    private static final int MAGIC = 0x5A415354;               // "ZAST"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".zast";
+    // Classes whose changes can change the parsed tree or how it is rebuilt
+    private static final String[] VERSIONED_CLASSES = {
+            "Lexer", "Parser", "TokenType", "Lexeme", "AstArena", "AstConverter", "AstCache"};
+    private static byte[] interpreterVersion;
+
+    private final Path directory;
+
+    public AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // $XDG_CACHE_HOME/z, or ~/.cache/z
+    public static Path defaultDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        if (cacheHome != null && !cacheHome.isEmpty()) return Paths.get(cacheHome, "z");
+        return Paths.get(System.getProperty("user.home"), ".cache", "z");
+    }
+
+    // -------------- Public Methods --------------
+
+    public byte[] key(Path source) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(interpreterVersion());
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    // The cached program for key, or null on a miss
+    public Lexeme load(byte[] key) {
+        Path file = fileFor(key);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException exception) {
+            return null;        // missing or unreadable
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) throw new IOException("Not a cache file");
+            byte[] storedKey = new byte[key.length];
+            in.readFully(storedKey);
+            if (!Arrays.equals(key, storedKey)) throw new IOException("Key mismatch");
+            int length = in.readInt();
+            int payloadStart = 4 + 4 + key.length + 4;
+            if (length < 0 || length > bytes.length - payloadStart - 8) throw new IOException("Bad payload length");
+            CRC32 crc = new CRC32();
+            crc.update(bytes, payloadStart, length);
+            in.skipBytes(length);
+            if (in.readLong() != crc.getValue()) throw new IOException("Checksum mismatch");
+
+            AstArena arena = AstArena.read(new DataInputStream(new ByteArrayInputStream(bytes, payloadStart, length)));
+            return AstConverter.toTree(arena);
+        } catch (IOException | RuntimeException exception) {
+            delete(file);       // corrupt or from a different format; the caller parses and stores it again
+            return null;
+        }
+    }
+
+    // Best effort: a cache that can't be written only costs the next run a parse
+    public void store(byte[] key, Lexeme program) {
+        Path temporary = null;
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(payload)) {
+                AstConverter.toArena(program).write(out);
+            }
+            byte[] payloadBytes = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payloadBytes);
+
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, "store", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(key);
+                out.writeInt(payloadBytes.length);
+                out.write(payloadBytes);
+                out.writeLong(crc.getValue());
+            }
+            // Readers see either the old file or the complete new one, never a partial write
+            try {
+                Files.move(temporary, fileFor(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporary, fileFor(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException exception) {
+            if (temporary != null) delete(temporary);
+        }
+    }
+
+    // -------------- Helper Methods --------------
+
+    private Path fileFor(byte[] key) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : key) name.append(String.format("%02x", b));
+        return directory.resolve(name.append(SUFFIX).toString());
+    }
+
+    // Hash of the cache format and of the class files that produce the tree, so a rebuilt
+    // interpreter never reads trees cached by an older one
+    private static synchronized byte[] interpreterVersion() throws IOException {
+        if (interpreterVersion != null) return interpreterVersion;
+        MessageDigest digest = sha256();
+        digest.update(ByteBuffer.allocate(4).putInt(FORMAT_VERSION).array());
+        for (String name : VERSIONED_CLASSES) {
+            try (InputStream in = AstCache.class.getResourceAsStream(name + ".class")) {
+                if (in == null) continue;
+                byte[] buffer = new byte[8192];
+                for (int read; (read = in.read(buffer)) > 0; ) digest.update(buffer, 0, read);
+            }
+        }
+        interpreterVersion = digest.digest();
+        return interpreterVersion;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException exception) {
+            // leave it; the next load will try again
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.corbin;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Startup cost of getting a program tree: parsing with no cache, a cold cache (hash, parse and
+// store) and a warm cache (hash and load).  Uses a scaled copy of the source in a temporary directory.
+// Usage: java com.corbin.AstCacheBenchmark [testInput/finalTest.z] [lines] [runs]
+public class AstCacheBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "testInput/finalTest.z";
+        int targetLines = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String unit = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+        int linesPerCopy = unit.split("\n", -1).length;
+        StringBuilder scaled = new StringBuilder();
+        int lines = 0;
+        for (; lines < targetLines; lines += linesPerCopy) scaled.append(unit).append('\n');
+
+        Path directory = Files.createTempDirectory("zast");
+        try {
+            Path source = directory.resolve("program.z");
+            Files.write(source, scaled.toString().getBytes(Charset.defaultCharset()));
+            System.out.println("Source: " + path + " scaled to " + lines + " lines (" + Files.size(source) + " bytes)");
+
+            parse(source);
+            if (Z.hadSyntaxError) {
+                System.out.println("The source has syntax errors, so it can't be cached");
+                return;
+            }
+
+            AstCache cache = new AstCache(directory.resolve("cache"));
+            long none = Long.MAX_VALUE, cold = Long.MAX_VALUE, warm = Long.MAX_VALUE;
+            for (int run = 0; run < runs; run++) {
+                long start = System.nanoTime();
+                parse(source);
+                none = Math.min(none, System.nanoTime() - start);
+
+                clear(directory.resolve("cache"));
+                start = System.nanoTime();
+                byte[] key = cache.key(source);
+                if (cache.load(key) == null) cache.store(key, parse(source));
+                cold = Math.min(cold, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                if (cache.load(cache.key(source)) == null) throw new IllegalStateException("Expected a cache hit");
+                warm = Math.min(warm, System.nanoTime() - start);
+            }
+
+            System.out.printf("No cache:   %8.1f ms%n", none / 1e6);
+            System.out.printf("Cold cache: %8.1f ms%n", cold / 1e6);
+            System.out.printf("Warm cache: %8.1f ms (%.1fx faster than parsing)%n", warm / 1e6, (double) none / warm);
+        } finally {
+            clear(directory);
+        }
+    }
+
+    private static Lexeme parse(Path source) throws IOException {
+        try (Reader reader = new MappedSourceReader(source, Charset.defaultCharset())) {
+            return new Parser(new Lexer(reader)).program();
+        }
+    }
+
+    private static void clear(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,726 @@
+package com.corbin;
+
+import java.util.ArrayList;
+
+import static com.corbin.TokenType.*;
+
+// Converts a parse tree into an AstArena and rebuilds the parse tree from one.  The rebuilt
+// tree has exactly the shape the Parser produces, GLUE and punctuation included, so the
+// Evaluator runs it unchanged.  Only syntax-error-free trees can be converted.
+//
+// Children of each arena node kind:
+//   PROGRAM                 STATEMENT_LIST
+//   STATEMENT_LIST          statement*
+//   ASSIGNMENT              target expression                    literal: operator TokenType ordinal
+//   IF_ELSE_STATEMENTS      IF_STATEMENT+ STATEMENT_LIST?       (the else)
+//   IF_STATEMENT            expression STATEMENT_LIST
+//   FUNCTION_DEFINITION     IDENTIFIER FUNCTION_PARAMETER_LIST returnType? STATEMENT_LIST
+//   FUNCTION_PARAMETER_LIST FUNCTION_PARAMETER*
+//   FUNCTION_PARAMETER      IDENTIFIER dataType
+//   INCREMENT_EXPRESSION    IDENTIFIER operator | operator IDENTIFIER
+//   VARIABLE_INITIALIZER    IDENTIFIER dataType? expression?
+//   CONSTANT_INITIALIZER    IDENTIFIER dataType? expression
+//   INPUT_STATEMENT         target
+//   OUTPUT_STATEMENT        expression
+//   RETURN                  expression
+//   FOR_LOOP                ASSIGNMENT expression? loopIncrement? STATEMENT_LIST    literal: HAS_* flags
+//   FOR_IN                  IDENTIFIER (ELLIPSIS | IDENTIFIER) STATEMENT_LIST
+//   ELLIPSIS                expression expression
+//   WHILE_LOOP              expression STATEMENT_LIST
+//   SWITCH_CASE_STATEMENTS  expression CASE_STATEMENT*           literal: PARENTHESIZED flag
+//   CASE_STATEMENT          expression STATEMENT_LIST | STATEMENT_LIST (default)
+//   ARRAY_TYPE              dataType
+//   binary operator         expression expression
+//   prefix operator         expression                           literal: POSTFIX flag for ++ and --
+//   ARRAY_REFERENCE         IDENTIFIER expression
+//   FUNCTION_CALL           IDENTIFIER argument*                 (COLON IDENTIFIER expression if labeled)
+//   ARRAY_INITIALIZER       expression*
+// INITIALIZATION and LOOP wrappers are dropped; their only child takes their place.
+public class AstConverter {
+    public static final int HAS_CONDITION = 1;
+    public static final int HAS_INCREMENT = 2;
+    public static final int PARENTHESIZED = 1;
+    public static final int POSTFIX = 1;
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int NONE = AstArena.NONE;
+
+    private final AstArena arena;
+
+    private AstConverter(AstArena arena) {
+        this.arena = arena;
+    }
+
+    // -------------- Public Methods --------------
+
+    public static AstArena toArena(Lexeme program) {
+        AstArena arena = new AstArena();
+        if (program != null) new AstConverter(arena).convertProgram(program);
+        arena.trim();
+        return arena;
+    }
+
+    public static Lexeme toTree(AstArena arena) {
+        if (arena.size() == 0) return null;
+        return new AstConverter(arena).buildProgram(0);
+    }
+
+    // -------------- Parse Tree to Arena --------------
+
+    private int convertProgram(Lexeme program) {
+        int node = arena.add(PROGRAM, program.getLineNumber(), 0);
+        arena.addChild(node, NONE, convertStatementList(program.getLeft()));
+        return node;
+    }
+
+    private int convertStatementList(Lexeme statementList) {
+        int node = arena.add(STATEMENT_LIST, statementList.getLineNumber(), 0);
+        int previous = NONE;
+        for (Lexeme statement : statementList.getStatements()) {
+            previous = arena.addChild(node, previous, convertStatement(statement));
+        }
+        return node;
+    }
+
+    private int convertStatement(Lexeme statement) {
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                return convertAssignment(statement);
+            case IF_ELSE_STATEMENTS:
+                return convertIfElseStatements(statement);
+            case FUNCTION_CALL:
+                return convertExpression(statement);
+            case FUNCTION_DEFINITION:
+                return convertFunctionDefinition(statement);
+            case INCREMENT_EXPRESSION: {
+                int node = arena.add(INCREMENT_EXPRESSION, statement.getLineNumber(), 0);
+                arena.addChild(node, arena.addChild(node, NONE, convertLeaf(statement.getLeft())), convertLeaf(statement.getRight()));
+                return node;
+            }
+            case INITIALIZATION:
+                return convertInitializer(statement.getLeft());
+            case INPUT_STATEMENT:
+                return convertChildren(statement, statement.getRight().getLeft(), null);
+            case LOOP:
+                return convertLoop(statement.getLeft());
+            case OUTPUT_STATEMENT:
+                return convertChildren(statement, statement.getRight(), null);
+            case RETURN:
+                return convertChildren(statement, statement.getLeft(), null);
+            case SWITCH_CASE_STATEMENTS:
+                return convertSwitchCaseStatements(statement);
+            default:
+                throw new IllegalArgumentException("Can't convert " + statement.getType() + " statement");
+        }
+    }
+
+    private int convertAssignment(Lexeme assignment) {
+        Lexeme operator = assignment.getLeft();
+        int node = arena.add(ASSIGNMENT, assignment.getLineNumber(), operator.getType().ordinal());
+        int target = arena.addChild(node, NONE, convertExpression(operator.getLeft()));
+        arena.addChild(node, target, convertExpression(operator.getRight()));
+        return node;
+    }
+
+    private int convertIfElseStatements(Lexeme ifElseStatements) {
+        int node = arena.add(IF_ELSE_STATEMENTS, ifElseStatements.getLineNumber(), 0);
+        int previous = arena.addChild(node, NONE, convertIfStatement(ifElseStatements.getLeft()));
+        Lexeme chain = ifElseStatements.getRight();
+        while (chain != null && chain.getType() == GLUE) {
+            previous = arena.addChild(node, previous, convertIfStatement(chain.getLeft()));
+            chain = chain.getRight();
+        }
+        if (chain != null) arena.addChild(node, previous, convertStatementList(chain));
+        return node;
+    }
+
+    private int convertIfStatement(Lexeme ifStatement) {
+        int node = arena.add(IF_STATEMENT, ifStatement.getLineNumber(), 0);
+        int expression = arena.addChild(node, NONE, convertExpression(ifStatement.getLeft()));
+        arena.addChild(node, expression, convertStatementList(ifStatement.getRight()));
+        return node;
+    }
+
+    private int convertFunctionDefinition(Lexeme functionDefinition) {
+        int node = arena.add(FUNCTION_DEFINITION, functionDefinition.getLineNumber(), 0);
+        Lexeme functionBody = functionDefinition.getRight();
+        int previous = arena.addChild(node, NONE, convertLeaf(functionDefinition.getLeft()));
+
+        int parameters = arena.add(FUNCTION_PARAMETER_LIST, functionBody.getLineNumber(), 0);
+        int previousParameter = NONE;
+        for (Lexeme list = functionBody.getLeft(); list != null; list = list.getRight() == null ? null : list.getRight().getRight()) {
+            Lexeme parameter = list.getLeft();
+            int parameterNode = arena.add(FUNCTION_PARAMETER, parameter.getLineNumber(), 0);
+            int identifier = arena.addChild(parameterNode, NONE, convertLeaf(parameter.getLeft()));
+            arena.addChild(parameterNode, identifier, convertDataType(parameter.getRight().getRight()));
+            previousParameter = arena.addChild(parameters, previousParameter, parameterNode);
+        }
+        previous = arena.addChild(node, previous, parameters);
+
+        Lexeme glue = functionBody.getRight();
+        if (glue.getRight().getUnparsedBody() != null) glue.setRight(Parser.functionBody(glue.getRight().getUnparsedBody()));
+        if (glue.getLeft() != null) previous = arena.addChild(node, previous, convertDataType(glue.getLeft()));
+        arena.addChild(node, previous, convertStatementList(glue.getRight()));
+        return node;
+    }
+
+    private int convertInitializer(Lexeme initializer) {
+        Lexeme identifier;
+        Lexeme dataType = null;
+        Lexeme expression;
+        if (initializer.getType() == CONSTANT_INITIALIZER) {
+            identifier = initializer.getLeft().getRight();
+            Lexeme glue2 = initializer.getRight();
+            if (glue2.getLeft() != null) dataType = glue2.getLeft().getRight();
+            expression = glue2.getRight().getRight();
+        } else if (initializer.getLeft().getType() == IDENTIFIER) {     // var name : type [= expression]
+            identifier = initializer.getLeft();
+            Lexeme glue1 = initializer.getRight();
+            dataType = glue1.getLeft();
+            expression = glue1.getRight() == null ? null : glue1.getRight().getRight();
+        } else {                                                        // var name = expression
+            identifier = initializer.getLeft().getRight();
+            expression = initializer.getRight().getRight();
+        }
+
+        int node = arena.add(initializer.getType(), initializer.getLineNumber(), 0);
+        int previous = arena.addChild(node, NONE, convertLeaf(identifier));
+        if (dataType != null) previous = arena.addChild(node, previous, convertDataType(dataType));
+        if (expression != null) arena.addChild(node, previous, convertExpression(expression));
+        return node;
+    }
+
+    private int convertLoop(Lexeme loop) {
+        switch (loop.getType()) {
+            case FOR_LOOP:
+                return convertForLoop(loop);
+            case FOR_IN: {
+                Lexeme glue = loop.getRight();
+                Lexeme iterable = glue.getLeft();
+                int node = arena.add(FOR_IN, loop.getLineNumber(), 0);
+                int previous = arena.addChild(node, NONE, convertLeaf(loop.getLeft()));
+                if (iterable.getType() == ELLIPSIS) {
+                    previous = arena.addChild(node, previous, convertChildren(iterable, iterable.getLeft(), iterable.getRight()));
+                } else {
+                    previous = arena.addChild(node, previous, convertLeaf(iterable));
+                }
+                arena.addChild(node, previous, convertStatementList(glue.getRight().getRight().getLeft()));
+                return node;
+            }
+            default: {      // WHILE_LOOP
+                Lexeme expression = loop.getLeft().getRight().getRight().getLeft();
+                Lexeme statementList = loop.getRight().getRight().getLeft();
+                int node = arena.add(WHILE_LOOP, loop.getLineNumber(), 0);
+                arena.addChild(node, arena.addChild(node, NONE, convertExpression(expression)), convertStatementList(statementList));
+                return node;
+            }
+        }
+    }
+
+    // The Parser turns the initial assignment into an INITIALIZATION; it is kept as the ASSIGNMENT
+    private int convertForLoop(Lexeme forLoop) {
+        Lexeme semi1 = forLoop.getRight();
+        Lexeme semi2 = semi1.getRight();
+        Lexeme closeParen = semi2.getRight();
+        Lexeme initializer = semi1.getLeft().getLeft();
+        Lexeme operator = initializer.getRight().getLeft();
+        int flags = (semi2.getLeft() != null ? HAS_CONDITION : 0) | (closeParen.getLeft() != null ? HAS_INCREMENT : 0);
+
+        int node = arena.add(FOR_LOOP, forLoop.getLineNumber(), flags);
+        int assignment = arena.add(ASSIGNMENT, initializer.getLineNumber(), operator.getType().ordinal());
+        int target = arena.addChild(assignment, NONE, convertExpression(initializer.getLeft().getRight()));
+        arena.addChild(assignment, target, convertExpression(initializer.getRight().getRight()));
+        int previous = arena.addChild(node, NONE, assignment);
+        if (semi2.getLeft() != null) previous = arena.addChild(node, previous, convertExpression(semi2.getLeft()));
+        if (closeParen.getLeft() != null) previous = arena.addChild(node, previous, convertStatement(closeParen.getLeft()));
+        arena.addChild(node, previous, convertStatementList(closeParen.getRight().getRight().getLeft()));
+        return node;
+    }
+
+    private int convertSwitchCaseStatements(Lexeme switchCaseStatements) {
+        Lexeme switchGlue = switchCaseStatements.getLeft().getRight();
+        int flags = switchGlue.getLeft() != null ? PARENTHESIZED : 0;
+        int node = arena.add(SWITCH_CASE_STATEMENTS, switchCaseStatements.getLineNumber(), flags);
+        int previous = arena.addChild(node, NONE, convertExpression(switchGlue.getRight().getLeft()));
+        for (Lexeme glue = switchCaseStatements.getRight().getRight(); glue.getType() == GLUE; glue = glue.getRight()) {
+            Lexeme caseStatement = glue.getLeft();
+            Lexeme colon = caseStatement.getLeft().getType() == CASE ? caseStatement.getRight() : caseStatement.getLeft();
+            int caseNode = arena.add(CASE_STATEMENT, caseStatement.getLineNumber(), 0);
+            int casePrevious = NONE;
+            if (caseStatement.getLeft().getType() == CASE) casePrevious = arena.addChild(caseNode, NONE, convertExpression(colon.getLeft()));
+            arena.addChild(caseNode, casePrevious, convertStatementList(colon.getRight()));
+            previous = arena.addChild(node, previous, caseNode);
+        }
+        return node;
+    }
+
+    private int convertDataType(Lexeme dataType) {
+        if (dataType.getType() != ARRAY_TYPE) return convertLeaf(dataType);
+        int node = arena.add(ARRAY_TYPE, dataType.getLineNumber(), 0);
+        arena.addChild(node, NONE, convertDataType(dataType.getRight().getLeft()));
+        return node;
+    }
+
+    // Right-leaning chains of binary operators are converted in a loop, so a long chain does
+    // not recurse once per operator
+    private int convertExpression(Lexeme expression) {
+        int root = NONE;
+        int parent = NONE;
+        int previous = NONE;
+        while (true) {
+            int node;
+            int left = NONE;
+            if (isBinaryOperator(expression)) {
+                node = arena.add(expression.getType(), expression.getLineNumber(), 0);
+                left = arena.addChild(node, NONE, convertExpression(expression.getLeft()));
+            } else {
+                node = convertOperand(expression);
+            }
+            if (root == NONE) root = node;
+            else arena.addChild(parent, previous, node);
+            if (left == NONE) return root;
+            parent = node;
+            previous = left;
+            expression = expression.getRight();
+        }
+    }
+
+    private int convertOperand(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+            case NOT:
+                return convertChildren(expression, expression.getRight(), null);
+            case INCREMENT:
+            case DECREMENT: {
+                boolean postfix = expression.getLeft() != null;
+                int node = arena.add(expression.getType(), expression.getLineNumber(), postfix ? POSTFIX : 0);
+                arena.addChild(node, NONE, convertExpression(postfix ? expression.getLeft() : expression.getRight()));
+                return node;
+            }
+            case ARRAY_REFERENCE:
+                return convertChildren(expression, expression.getLeft(), expression.getRight().getRight().getLeft());
+            case FUNCTION_CALL: {
+                int node = arena.add(FUNCTION_CALL, expression.getLineNumber(), 0);
+                int previous = arena.addChild(node, NONE, convertLeaf(expression.getLeft().getLeft()));
+                for (Lexeme list = expression.getRight().getLeft(); list != null; list = list.getRight().getRight() == null ? null : list.getRight().getRight().getRight()) {
+                    int argument;
+                    if (list.getLeft() != null) {
+                        argument = arena.add(COLON, list.getLineNumber(), 0);
+                        int label = arena.addChild(argument, NONE, convertLeaf(list.getLeft().getLeft()));
+                        arena.addChild(argument, label, convertExpression(list.getRight().getLeft()));
+                    } else {
+                        argument = convertExpression(list.getRight().getLeft());
+                    }
+                    previous = arena.addChild(node, previous, argument);
+                }
+                return node;
+            }
+            case ARRAY_INITIALIZER: {
+                int node = arena.add(ARRAY_INITIALIZER, expression.getLineNumber(), 0);
+                int previous = NONE;
+                for (Lexeme list = expression.getRight().getLeft(); list != null; list = list.getRight() == null ? null : list.getRight().getRight()) {
+                    previous = arena.addChild(node, previous, convertExpression(list.getLeft()));
+                }
+                return node;
+            }
+            default:
+                return convertLeaf(expression);
+        }
+    }
+
+    private int convertLeaf(Lexeme leaf) {
+        switch (leaf.getType()) {
+            case INT:
+                return arena.add(INT, leaf.getLineNumber(), leaf.getIntValue());
+            case FLOAT:
+                return arena.add(FLOAT, leaf.getLineNumber(), Float.floatToRawIntBits(leaf.getFloatValue()));
+            case STRING:
+                return arena.addString(leaf.getLineNumber(), leaf.getStringValue());
+            case IDENTIFIER:
+                return arena.add(IDENTIFIER, leaf.getLineNumber(), leaf.getSymbol());
+            default:
+                return arena.add(leaf.getType(), leaf.getLineNumber(), 0);
+        }
+    }
+
+    // A node of lexeme's kind whose children are the given parse tree expressions or leaves
+    private int convertChildren(Lexeme lexeme, Lexeme first, Lexeme second) {
+        int node = arena.add(lexeme.getType(), lexeme.getLineNumber(), 0);
+        int previous = arena.addChild(node, NONE, convertExpression(first));
+        if (second != null) arena.addChild(node, previous, convertExpression(second));
+        return node;
+    }
+
+    private static boolean isBinaryOperator(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+                return expression.getLeft() != null;
+            case OR:
+            case AND:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // -------------- Arena to Parse Tree --------------
+
+    private Lexeme buildProgram(int node) {
+        Lexeme program = new AstNode(PROGRAM, arena.getLineNumber(node));
+        program.setLeft(buildStatementList(arena.getFirstChild(node)));
+        return program;
+    }
+
+    private Lexeme buildStatementList(int node) {
+        Lexeme statementList = new AstNode(STATEMENT_LIST, arena.getLineNumber(node));
+        ArrayList<Lexeme> statements = new ArrayList<>();
+        for (int child = arena.getFirstChild(node); child != NONE; child = arena.getNextSibling(child)) {
+            statements.add(buildStatement(child));
+        }
+        statementList.setStatements(statements.toArray(new Lexeme[statements.size()]));
+        return statementList;
+    }
+
+    private Lexeme buildStatement(int node) {
+        int line = arena.getLineNumber(node);
+        int first = arena.getFirstChild(node);
+        switch (arena.getKind(node)) {
+            case ASSIGNMENT: {
+                Lexeme assignment = new AstNode(ASSIGNMENT, line);
+                Lexeme operator = new AstNode(TYPES[arena.getLiteral(node)], line);
+                operator.setLeft(buildExpression(first));
+                operator.setRight(buildExpression(arena.getNextSibling(first)));
+                assignment.setLeft(operator);
+                return assignment;
+            }
+            case IF_ELSE_STATEMENTS:
+                return buildIfElseStatements(node);
+            case FUNCTION_CALL:
+                return buildExpression(node);
+            case FUNCTION_DEFINITION:
+                return buildFunctionDefinition(node);
+            case INCREMENT_EXPRESSION:
+                return tree(INCREMENT_EXPRESSION, line, buildLeaf(first), buildLeaf(arena.getNextSibling(first)));
+            case VARIABLE_INITIALIZER:
+            case CONSTANT_INITIALIZER:
+                return tree(INITIALIZATION, line, buildInitializer(node), null);
+            case INPUT_STATEMENT:
+                return tree(INPUT_STATEMENT, line, new AstNode(INPUT, line), tree(VARIABLE, line, buildExpression(first), null));
+            case OUTPUT_STATEMENT:
+                return tree(OUTPUT_STATEMENT, line, new AstNode(OUTPUT, line), buildExpression(first));
+            case RETURN:
+                return tree(RETURN, line, buildExpression(first), null);
+            case FOR_LOOP:
+                return tree(LOOP, line, buildForLoop(node), null);
+            case FOR_IN: {
+                int iterable = arena.getNextSibling(first);
+                Lexeme identifier = withChildren(buildLeaf(first), new AstNode(FOR, line), new AstNode(IN, line));
+                Lexeme iterableTree = arena.getKind(iterable) == ELLIPSIS
+                        ? tree(ELLIPSIS, line, buildExpression(arena.getFirstChild(iterable)), buildExpression(arena.getChild(iterable, 1)))
+                        : buildLeaf(iterable);
+                Lexeme forIn = tree(FOR_IN, line, identifier,
+                        glue(line, iterableTree, buildBlock(line, arena.getNextSibling(iterable))));
+                return tree(LOOP, line, forIn, null);
+            }
+            case WHILE_LOOP: {
+                Lexeme condition = glue(line, new AstNode(WHILE, line),
+                        glue(line, new AstNode(OPENPAREN, line), glue(line, buildExpression(first), new AstNode(CLOSEPAREN, line))));
+                return tree(LOOP, line, tree(WHILE_LOOP, line, condition, buildBlock(line, arena.getNextSibling(first))), null);
+            }
+            case SWITCH_CASE_STATEMENTS:
+                return buildSwitchCaseStatements(node);
+            default:
+                throw new IllegalArgumentException("Can't build " + arena.getKind(node) + " statement");
+        }
+    }
+
+    private Lexeme buildIfElseStatements(int node) {
+        int line = arena.getLineNumber(node);
+        int child = arena.getFirstChild(node);
+        Lexeme ifElseStatements = tree(IF_ELSE_STATEMENTS, line, buildIfStatement(child), null);
+        Lexeme chain = ifElseStatements;
+        for (child = arena.getNextSibling(child); child != NONE; child = arena.getNextSibling(child)) {
+            if (arena.getKind(child) == STATEMENT_LIST) {
+                chain.setRight(buildStatementList(child));
+            } else {
+                Lexeme glue = glue(arena.getLineNumber(child), buildIfStatement(child), null);
+                chain.setRight(glue);
+                chain = glue;
+            }
+        }
+        return ifElseStatements;
+    }
+
+    private Lexeme buildIfStatement(int node) {
+        int expression = arena.getFirstChild(node);
+        return tree(IF_STATEMENT, arena.getLineNumber(node), buildExpression(expression), buildStatementList(arena.getNextSibling(expression)));
+    }
+
+    private Lexeme buildFunctionDefinition(int node) {
+        int line = arena.getLineNumber(node);
+        int name = arena.getFirstChild(node);
+        int parameters = arena.getNextSibling(name);
+        int next = arena.getNextSibling(parameters);
+        Lexeme returnType = null;
+        if (arena.getKind(next) != STATEMENT_LIST) {
+            returnType = buildDataType(next);
+            next = arena.getNextSibling(next);
+        }
+
+        Lexeme parameterList = null;
+        Lexeme last = null;
+        for (int parameter = arena.getFirstChild(parameters); parameter != NONE; parameter = arena.getNextSibling(parameter)) {
+            int parameterLine = arena.getLineNumber(parameter);
+            int identifier = arena.getFirstChild(parameter);
+            Lexeme parameterTree = tree(FUNCTION_PARAMETER, parameterLine, buildLeaf(identifier),
+                    glue(parameterLine, new AstNode(COLON, parameterLine), buildDataType(arena.getNextSibling(identifier))));
+            Lexeme list = tree(FUNCTION_PARAMETER_LIST, parameterLine, parameterTree, null);
+            if (last == null) parameterList = list;
+            else last.setRight(glue(parameterLine, new AstNode(COMMA, parameterLine), list));
+            last = list;
+        }
+
+        Lexeme functionBody = tree(FUNCTION_BODY, arena.getLineNumber(parameters), parameterList,
+                glue(line, returnType, buildStatementList(next)));
+        return tree(FUNCTION_DEFINITION, line, buildLeaf(name), functionBody);
+    }
+
+    private Lexeme buildInitializer(int node) {
+        int line = arena.getLineNumber(node);
+        int identifier = arena.getFirstChild(node);
+        int next = arena.getNextSibling(identifier);
+        Lexeme dataType = null;
+        if (next != NONE && isDataType(arena.getKind(next))) {
+            dataType = buildDataType(next);
+            next = arena.getNextSibling(next);
+        }
+        Lexeme expression = next == NONE ? null : buildExpression(next);
+        Lexeme identifierTree = buildLeaf(identifier);
+
+        if (arena.getKind(node) == CONSTANT_INITIALIZER) {
+            identifierTree.setIsConstant(true);
+            Lexeme typeGlue = dataType == null ? null : glue(line, new AstNode(COLON, line), dataType);
+            return tree(CONSTANT_INITIALIZER, line, glue(line, new AstNode(CONST, line), identifierTree),
+                    glue(line, typeGlue, glue(line, new AstNode(ASSIGN, line), expression)));
+        } else if (dataType != null) {
+            Lexeme value = expression == null ? null : glue(line, new AstNode(ASSIGN, line), expression);
+            return tree(VARIABLE_INITIALIZER, line, withChildren(identifierTree, new AstNode(VAR, line), new AstNode(COLON, line)),
+                    glue(line, dataType, value));
+        } else {
+            Lexeme assign = expression == null ? null : new AstNode(ASSIGN, line);
+            return tree(VARIABLE_INITIALIZER, line, glue(line, new AstNode(VAR, line), identifierTree), glue(line, assign, expression));
+        }
+    }
+
+    private Lexeme buildForLoop(int node) {
+        int line = arena.getLineNumber(node);
+        int flags = arena.getLiteral(node);
+        int assignment = arena.getFirstChild(node);
+        int next = arena.getNextSibling(assignment);
+        Lexeme condition = null;
+        Lexeme increment = null;
+        if ((flags & HAS_CONDITION) != 0) {
+            condition = buildExpression(next);
+            next = arena.getNextSibling(next);
+        }
+        if ((flags & HAS_INCREMENT) != 0) {
+            increment = buildStatement(next);
+            next = arena.getNextSibling(next);
+        }
+
+        // the initial assignment, in the INITIALIZATION shape the Parser gives it
+        int assignmentLine = arena.getLineNumber(assignment);
+        int target = arena.getFirstChild(assignment);
+        Lexeme initializer = tree(VARIABLE_INITIALIZER, assignmentLine, glue(assignmentLine, null, buildExpression(target)),
+                glue(assignmentLine, new AstNode(TYPES[arena.getLiteral(assignment)], assignmentLine), buildExpression(arena.getNextSibling(target))));
+        Lexeme initialization = tree(INITIALIZATION, assignmentLine, initializer, null);
+
+        Lexeme closeParen = tree(CLOSEPAREN, line, increment, buildBlock(line, next));
+        Lexeme semi2 = tree(SEMICOLON, line, condition, closeParen);
+        Lexeme semi1 = tree(SEMICOLON, line, initialization, semi2);
+        return tree(FOR_LOOP, line, glue(line, new AstNode(FOR, line), new AstNode(OPENPAREN, line)), semi1);
+    }
+
+    private Lexeme buildSwitchCaseStatements(int node) {
+        int line = arena.getLineNumber(node);
+        boolean parenthesized = (arena.getLiteral(node) & PARENTHESIZED) != 0;
+        int expression = arena.getFirstChild(node);
+        Lexeme switchStatement = tree(SWITCH_STATEMENT, line, new AstNode(SWITCH, line),
+                glue(line, parenthesized ? new AstNode(OPENPAREN, line) : null,
+                        glue(line, buildExpression(expression), parenthesized ? new AstNode(CLOSEPAREN, line) : null)));
+
+        Lexeme cases = glue(line, new AstNode(OPENBRACE, line), null);
+        Lexeme prior = cases;
+        for (int caseNode = arena.getNextSibling(expression); caseNode != NONE; caseNode = arena.getNextSibling(caseNode)) {
+            int caseLine = arena.getLineNumber(caseNode);
+            int first = arena.getFirstChild(caseNode);
+            Lexeme caseStatement;
+            if (arena.getKind(first) == STATEMENT_LIST) {
+                caseStatement = tree(CASE_STATEMENT, caseLine,
+                        tree(COLON, caseLine, new AstNode(DEFAULT, caseLine), buildStatementList(first)), null);
+            } else {
+                caseStatement = tree(CASE_STATEMENT, caseLine, new AstNode(CASE, caseLine),
+                        tree(COLON, caseLine, buildExpression(first), buildStatementList(arena.getNextSibling(first))));
+            }
+            Lexeme glue = glue(caseLine, caseStatement, null);
+            prior.setRight(glue);
+            prior = glue;
+        }
+        prior.setRight(new AstNode(CLOSEBRACE, line));
+        return tree(SWITCH_CASE_STATEMENTS, line, switchStatement, cases);
+    }
+
+    // { statementList } as the Parser glues it for loops
+    private Lexeme buildBlock(int line, int statementList) {
+        return glue(line, new AstNode(OPENBRACE, line), glue(line, buildStatementList(statementList), new AstNode(CLOSEBRACE, line)));
+    }
+
+    private Lexeme buildDataType(int node) {
+        if (arena.getKind(node) != ARRAY_TYPE) return buildLeaf(node);
+        int line = arena.getLineNumber(node);
+        return tree(ARRAY_TYPE, line, new AstNode(OPENBRACKET, line),
+                glue(line, buildDataType(arena.getFirstChild(node)), new AstNode(CLOSEBRACKET, line)));
+    }
+
+    private Lexeme buildExpression(int node) {
+        Lexeme root = null;
+        Lexeme parent = null;
+        while (true) {
+            Lexeme expression;
+            boolean binary = isBinaryOperator(node);
+            if (binary) {
+                expression = new AstNode(arena.getKind(node), arena.getLineNumber(node));
+                expression.setLeft(buildExpression(arena.getFirstChild(node)));
+            } else {
+                expression = buildOperand(node);
+            }
+            if (root == null) root = expression;
+            else parent.setRight(expression);
+            if (!binary) return root;
+            parent = expression;
+            node = arena.getChild(node, 1);
+        }
+    }
+
+    private Lexeme buildOperand(int node) {
+        int line = arena.getLineNumber(node);
+        int first = arena.getFirstChild(node);
+        switch (arena.getKind(node)) {
+            case PLUS:
+            case MINUS:
+            case NOT:
+                return tree(arena.getKind(node), line, null, buildExpression(first));
+            case INCREMENT:
+            case DECREMENT:
+                if (arena.getLiteral(node) == POSTFIX) return tree(arena.getKind(node), line, buildExpression(first), null);
+                return tree(arena.getKind(node), line, null, buildExpression(first));
+            case ARRAY_REFERENCE:
+                return tree(ARRAY_REFERENCE, line, buildLeaf(first),
+                        glue(line, new AstNode(OPENBRACKET, line), tree(CLOSEBRACKET, line, buildExpression(arena.getNextSibling(first)), null)));
+            case FUNCTION_CALL: {
+                Lexeme arguments = null;
+                Lexeme last = null;
+                for (int argument = arena.getNextSibling(first); argument != NONE; argument = arena.getNextSibling(argument)) {
+                    int argumentLine = arena.getLineNumber(argument);
+                    Lexeme label = null;
+                    int expression = argument;
+                    if (arena.getKind(argument) == COLON) {
+                        label = glue(argumentLine, buildLeaf(arena.getFirstChild(argument)), new AstNode(COLON, argumentLine));
+                        expression = arena.getChild(argument, 1);
+                    }
+                    Lexeme list = tree(ARGUMENT_LIST, argumentLine, label, glue(argumentLine, buildExpression(expression), null));
+                    if (last == null) arguments = list;
+                    else last.getRight().setRight(glue(argumentLine, new AstNode(COMMA, argumentLine), list));
+                    last = list;
+                }
+                return tree(FUNCTION_CALL, line, glue(line, buildLeaf(first), new AstNode(OPENPAREN, line)),
+                        glue(line, arguments, new AstNode(CLOSEPAREN, line)));
+            }
+            case ARRAY_INITIALIZER: {
+                Lexeme expressions = null;
+                Lexeme last = null;
+                for (int child = first; child != NONE; child = arena.getNextSibling(child)) {
+                    Lexeme list = tree(EXPRESSION_LIST, line, buildExpression(child), null);
+                    if (last == null) expressions = list;
+                    else last.setRight(glue(line, new AstNode(COMMA, line), list));
+                    last = list;
+                }
+                return tree(ARRAY_INITIALIZER, line, new AstNode(OPENBRACKET, line), glue(line, expressions, new AstNode(CLOSEBRACKET, line)));
+            }
+            default:
+                return buildLeaf(node);
+        }
+    }
+
+    private Lexeme buildLeaf(int node) {
+        int line = arena.getLineNumber(node);
+        switch (arena.getKind(node)) {
+            case INT:
+                return new AstNode(INT, arena.getIntValue(node), line);
+            case FLOAT:
+                return new AstNode(FLOAT, arena.getFloatValue(node), line);
+            case STRING:
+                return new AstNode(STRING, arena.getStringValue(node), line);
+            case IDENTIFIER:
+                return AstNode.identifier(arena.getSymbol(node), line);
+            default:
+                return new AstNode(arena.getKind(node), line);
+        }
+    }
+
+    private boolean isBinaryOperator(int node) {
+        switch (arena.getKind(node)) {
+            case PLUS:
+            case MINUS:
+                return arena.getChildCount(node) == 2;
+            case OR:
+            case AND:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isDataType(TokenType kind) {
+        return kind == KW_INT || kind == KW_FLOAT || kind == KW_STRING || kind == ARRAY_TYPE;
+    }
+
+    private static Lexeme tree(TokenType type, int line, Lexeme left, Lexeme right) {
+        Lexeme lexeme = new AstNode(type, line);
+        lexeme.setLeft(left);
+        lexeme.setRight(right);
+        return lexeme;
+    }
+
+    // Hangs tokens off a leaf, as the Parser does with the loop variable of a for-in
+    private static Lexeme withChildren(Lexeme leaf, Lexeme left, Lexeme right) {
+        leaf.setLeft(left);
+        leaf.setRight(right);
+        return leaf;
+    }
+
+    private static Lexeme glue(int line, Lexeme left, Lexeme right) {
+        return tree(GLUE, line, left, right);
+    }
+}
@@ -0,0 +1,48 @@
+package com.corbin;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Measures retained heap per source line for a whole program, as the Parser's Lexeme tree
+// versus the AstArena built from it.
+// Usage: java -Xmx4g com.corbin.AstFootprintBenchmark [testInput/finalTest.z] [lines]
+public class AstFootprintBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "testInput/finalTest.z";
+        int targetLines = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        String unit = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+        int linesPerCopy = unit.split("\n", -1).length;
+        StringBuilder scaled = new StringBuilder();
+        int lines = 0;
+        for (; lines < targetLines; lines += linesPerCopy) scaled.append(unit).append('\n');
+        String source = scaled.toString();
+        System.out.println("Source: " + path + " scaled to " + lines + " lines (" + source.length() + " chars)");
+
+        new Parser(new Lexer(unit)).program();      // intern the names up front so neither side pays for them
+        if (Z.hadSyntaxError) {
+            System.out.println("The source has syntax errors, so it can't be converted");
+            return;
+        }
+
+        long baseline = usedHeap();
+        Lexeme program = new Parser(new Lexer(source)).program();
+        long treeBytes = usedHeap() - baseline;
+
+        AstArena arena = AstConverter.toArena(program);
+        program = null;         // the arena keeps its own references to the string literals
+        long arenaBytes = usedHeap() - baseline;
+
+        System.out.println("Arena nodes: " + arena.size());
+        System.out.printf("Lexeme tree: %,d bytes, %.1f bytes/line%n", treeBytes, (double) treeBytes / lines);
+        System.out.printf("AstArena:    %,d bytes, %.1f bytes/line%n", arenaBytes, (double) arenaBytes / lines);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+package com.corbin;
+
+// A node of the syntax tree, with what the Parser, Resolver and TypeChecker record about it.
+// Lexeme is also the class of run-time values, which have none of this, so it is kept here and a
+// value stays as small as a Lexeme with no annotations.  Everything that builds the tree makes
+// AstNodes; the engines only read them, through Lexeme.
+public class AstNode extends Lexeme {
+    private final int symbol;           // SymbolTable id for identifiers, -1 otherwise
+    private Lexeme[] statements;        // the statements of a STATEMENT_LIST, in order
+    private TokenBuffer unparsedBody;   // tokens of a lazily parsed function body until its first call
+    private FrameLayout frameLayout;    // slots of the frame a scope creates, set by Resolver
+    private int depth = 0;              // frames out from a use to its declaration, set by Resolver
+    private int slot = -1;              // slot there, or -1 to search the frames by name
+    private Operation operation;        // set by TypeChecker when an operator's operand types are known
+
+    // Constructor for specials characters, keywords, operators, etc.
+    public AstNode(TokenType type, int lineNumber) {
+        super(type, lineNumber);
+        this.symbol = -1;
+    }
+
+    // Constructor for Identifiers and Strings
+    public AstNode(TokenType type, String stringValue, int lineNumber) {
+        this(type, stringValue, lineNumber, type == TokenType.IDENTIFIER ? SymbolTable.intern(stringValue) : -1);
+    }
+
+    private AstNode(TokenType type, String stringValue, int lineNumber, int symbol) {
+        super(type, symbol >= 0 ? SymbolTable.name(symbol) : stringValue, lineNumber);
+        this.symbol = symbol;
+    }
+
+    // Constructor for Integers
+    public AstNode(TokenType type, Integer intValue, int lineNumber) {
+        super(type, intValue, lineNumber);
+        this.symbol = -1;
+    }
+
+    // Constructor for Floats
+    public AstNode(TokenType type, Float floatValue, int lineNumber) {
+        super(type, floatValue, lineNumber);
+        this.symbol = -1;
+    }
+
+    // An identifier that is already interned
+    public static AstNode identifier(int symbol, int lineNumber) {
+        return new AstNode(TokenType.IDENTIFIER, null, lineNumber, symbol);
+    }
+
+    @Override
+    public int getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public Lexeme[] getStatements() {
+        return statements;
+    }
+
+    @Override
+    public TokenBuffer getUnparsedBody() {
+        return unparsedBody;
+    }
+
+    @Override
+    public FrameLayout getFrameLayout() {
+        return frameLayout;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public Operation getOperation() {
+        return operation;
+    }
+
+    @Override
+    public void setStatements(Lexeme[] statements) {
+        this.statements = statements;
+    }
+
+    @Override
+    public void setUnparsedBody(TokenBuffer unparsedBody) {
+        this.unparsedBody = unparsedBody;
+    }
+
+    @Override
+    public void setFrameLayout(FrameLayout frameLayout) {
+        this.frameLayout = frameLayout;
+    }
+
+    @Override
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    @Override
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    @Override
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+}
@@ -0,0 +1,796 @@
+package com.corbin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import static com.corbin.TokenType.*;
+
+// Compiles the program or a function body, once the Resolver, TypeChecker and LoopOptimizer have
+// run on it, to code for the VirtualMachine.  Each scope's slots become a range of registers in
+// the body's frame, expressions are computed into temporaries, and statements run in order, each
+// leaving its value in the register for the value of its statement list, as evalStatementList
+// returns the value of the last statement it ran.
+//
+// Every instruction does what the Evaluator does for the node it came from, errors included, so
+// the VirtualMachine gives the same output.  An operator TypeChecker specialized becomes a typed
+// instruction, and a name under one is certainly declared, so the instruction reads its register
+// directly, as long as nothing evaluated after it could change it first.  Anything else goes
+// through the instructions that check, or through the Evaluator's own operator code.
+public class BytecodeCompiler {
+    private static final int LITERAL = 1 << 24;    // operands from here up are literal registers, numbered at the end
+
+    private final Lexeme owner;
+    private int[] code = new int[64];
+    private int size = 0;
+    private final ArrayList<Object> pool = new ArrayList<>();
+    private final IdentityHashMap<Lexeme, Integer> poolIndex = new IdentityHashMap<>();
+
+    private final HashMap<Object, Integer> literals = new HashMap<>();
+    private final ArrayList<Object> literalRefs = new ArrayList<>();
+    private int[] literalNums = new int[8];
+    private final ArrayList<Integer> literalUses = new ArrayList<>();    // code positions to number
+
+    private final IdentityHashMap<Lexeme, Integer> scopes = new IdentityHashMap<>();
+    private final ArrayList<FrameLayout> scopeLayouts = new ArrayList<>();
+    private final ArrayList<Integer> scopeBases = new ArrayList<>();
+    private final ArrayList<Integer> scopeParents = new ArrayList<>();
+    private int[] scopeStack = new int[8];     // scopes around the code being compiled, innermost last
+    private int scopeDepth = 0;
+    private int scopeRegisters = 0;
+    private int nextTemporary;
+    private int maxTemporary;
+    private int calls = 0;
+
+    private BytecodeCompiler(Lexeme owner) {
+        this.owner = owner;
+    }
+
+    // -------------- Public Methods --------------
+
+    // A PROGRAM or a FUNCTION_BODY
+    public static BytecodeFunction compile(Lexeme owner) {
+        return new BytecodeCompiler(owner).compile();
+    }
+
+    // False if the program uses anything only the Evaluator runs: arrays, for-in over an array,
+    // function bodies not parsed yet, or statements too malformed to run
+    public static boolean supports(Lexeme program) {
+        if (program == null) return false;
+        ArrayDeque<Lexeme> pending = new ArrayDeque<>();
+        pending.push(program);
+        while (!pending.isEmpty()) {
+            Lexeme node = pending.pop();
+            if (node.getUnparsedBody() != null) return false;
+            switch (node.getType()) {
+                case ARRAY_REFERENCE:
+                case ARRAY_INITIALIZER:
+                case ARRAY_TYPE:
+                    return false;
+                case FOR_IN:
+                    if (node.getRight().getLeft().getType() != ELLIPSIS) return false;
+                    break;
+                case INITIALIZATION:
+                    if (!supportsInitialization(node)) return false;
+                    break;
+                case INCREMENT:
+                case DECREMENT:
+                    Lexeme operand = node.getLeft() != null ? node.getLeft() : node.getRight();
+                    if (operand != null && operand.getType() != IDENTIFIER) return false;
+                    break;
+                default:
+            }
+            if (node.getLeft() != null) pending.push(node.getLeft());
+            if (node.getRight() != null) pending.push(node.getRight());
+            if (node.getStatements() != null) {
+                for (Lexeme statement : node.getStatements()) pending.push(statement);
+            }
+        }
+        return true;
+    }
+
+    private static boolean supportsInitialization(Lexeme initialization) {
+        Lexeme initializer = initialization.getLeft();
+        Lexeme right = initializer.getRight();
+        if (right == null) return false;
+        if (initializer.getType() == CONSTANT_INITIALIZER) return right.getRight() != null && right.getRight().getRight() != null;
+        if (right.getLeft() == null) return false;
+        if (right.getRight() != null) return true;
+        switch (right.getLeft().getType()) {        // var name: dataType starts with the type's zero
+            case KW_INT:
+            case KW_FLOAT:
+            case KW_STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // -------------- Functions --------------
+
+    private BytecodeFunction compile() {
+        boolean function = owner.getType() == FUNCTION_BODY;
+        Lexeme statementList = function ? owner.getRight().getRight() : owner.getLeft();
+        Lexeme returnType = function ? owner.getRight().getLeft() : null;
+        addScope(owner, -1);
+        collectScopes(statementList, 0);
+        nextTemporary = maxTemporary = scopeRegisters;
+        pushScope(0);
+
+        // A function without a return type returns nothing, whatever its statements leave
+        int result = !function || returnType != null && returnType.getType() != VOID ? temporary() : -1;
+        ArrayList<Lexeme> parameters = new ArrayList<>();
+        ArrayList<Lexeme> parameterTypes = new ArrayList<>();
+        for (Lexeme parameterList = function ? owner.getLeft() : null; parameterList != null; ) {
+            parameters.add(parameterList.getLeft().getLeft());
+            parameterTypes.add(parameterList.getLeft().getRight().getRight());
+            parameterList = parameterList.getRight();
+            if (parameterList != null) parameterList = parameterList.getRight();
+        }
+        int[] parameterRegisters = new int[parameters.size()];
+        for (int i = 0; i < parameterRegisters.length; i++) parameterRegisters[i] = registerOf(parameters.get(i));
+
+        statements(statementList, result);
+        emit(Opcode.RETURN);
+        return finish(result, parameters, parameterTypes, parameterRegisters, returnType);
+    }
+
+    private BytecodeFunction finish(int result, ArrayList<Lexeme> parameters, ArrayList<Lexeme> parameterTypes,
+                                    int[] parameterRegisters, Lexeme returnType) {
+        int literalBase = maxTemporary;
+        for (int position : literalUses) code[position] = code[position] - LITERAL + literalBase;
+        Object[] initialRefs = new Object[literalBase + literalRefs.size()];
+        int[] initialNums = new int[initialRefs.length];
+        for (int i = 0; i < literalRefs.size(); i++) {
+            initialRefs[literalBase + i] = literalRefs.get(i);
+            initialNums[literalBase + i] = literalNums[i];
+        }
+
+        int scopeCount = scopeLayouts.size();
+        int[] bases = new int[scopeCount];
+        int[] parents = new int[scopeCount];
+        for (int i = 0; i < scopeCount; i++) {
+            bases[i] = scopeBases.get(i);
+            parents[i] = scopeParents.get(i);
+        }
+        return new BytecodeFunction(owner, Arrays.copyOf(code, size), pool.toArray(), initialRefs, initialNums,
+                scopeLayouts.toArray(new FrameLayout[scopeCount]), bases, parents, result,
+                parameters.toArray(new Lexeme[0]), parameterTypes.toArray(new Lexeme[0]), parameterRegisters,
+                returnType, calls);
+    }
+
+    // -------------- Scopes --------------
+
+    // Numbers the if-else statements and loops of a body in the order they are compiled, so every
+    // scope has its registers before any temporary is handed out
+    private void collectScopes(Lexeme statementList, int parent) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) {
+            if (statement.getType() == IF_ELSE_STATEMENTS) {
+                int scope = addScope(statement, parent);
+                Lexeme node = statement;
+                for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+                    collectScopes(node.getLeft().getRight(), scope);
+                }
+                collectScopes(node, scope);
+            } else if (statement.getType() == LOOP) {
+                collectScopes(loopBody(statement.getLeft()), addScope(statement, parent));
+            }
+        }
+    }
+
+    private int addScope(Lexeme owner, int parent) {
+        FrameLayout layout = owner.getFrameLayout() != null ? owner.getFrameLayout() : new FrameLayout();
+        int scope = scopeLayouts.size();
+        scopes.put(owner, scope);
+        scopeLayouts.add(layout);
+        scopeBases.add(scopeRegisters);
+        scopeParents.add(parent);
+        scopeRegisters += layout.size();
+        return scope;
+    }
+
+    private void pushScope(int scope) {
+        if (scopeDepth == scopeStack.length) scopeStack = Arrays.copyOf(scopeStack, scopeDepth * 2);
+        scopeStack[scopeDepth++] = scope;
+    }
+
+    // Empties the registers of a scope's earlier run, as the Evaluator makes a new frame each time
+    private void enterScope(Lexeme owner) {
+        int scope = scopes.get(owner);
+        pushScope(scope);
+        int registers = scopeLayouts.get(scope).size();
+        if (registers > 0) emit(Opcode.CLEAR, scopeBases.get(scope), registers);
+    }
+
+    private void exitScope() {
+        scopeDepth--;
+    }
+
+    private int currentScope() {
+        return scopeStack[scopeDepth - 1];
+    }
+
+    // The register the Resolver bound an identifier to, or -1 if it is free in the function
+    private int registerOf(Lexeme identifier) {
+        int index = scopeDepth - 1 - identifier.getDepth();
+        if (identifier.getSlot() < 0 || index < 0) return -1;
+        int scope = scopeStack[index];
+        if (identifier.getSlot() >= scopeLayouts.get(scope).size()) return -1;
+        return scopeBases.get(scope) + identifier.getSlot();
+    }
+
+    // The scope to search outward from when that register is empty; 0 searches from the caller
+    private int bindingScope(Lexeme identifier) {
+        int index = scopeDepth - 1 - identifier.getDepth();
+        return registerOf(identifier) < 0 ? 0 : scopeStack[index];
+    }
+
+    private int temporary() {
+        int register = nextTemporary++;
+        if (nextTemporary > maxTemporary) maxTemporary = nextTemporary;
+        return register;
+    }
+
+    // -------------- Statements --------------
+
+    // result is the register for the list's value, or -1 if nothing uses it
+    private void statements(Lexeme statementList, int result) {
+        if (statementList == null || statementList.getStatements() == null || statementList.getStatements().length == 0) {
+            voidResult(result);
+            return;
+        }
+        for (Lexeme statement : statementList.getStatements()) {
+            statement(statement, result);
+            if (statement.getType() == RETURN) break;       // exit the statement list
+        }
+    }
+
+    private void statement(Lexeme statement, int result) {
+        int mark = nextTemporary;
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                assignment(statement, result);
+                break;
+            case IF_ELSE_STATEMENTS:
+                ifElseStatements(statement, result);
+                break;
+            case FUNCTION_CALL:
+                call(statement, result >= 0 ? result : temporary());
+                break;
+            case FUNCTION_DEFINITION:
+                emit(Opcode.DECLARE, registerOf(statement.getLeft()), literal(statement.getRight(), statement.getRight(), 0),
+                        node(statement.getLeft()));
+                voidResult(result);
+                break;
+            case INCREMENT_EXPRESSION: {
+                boolean prefix = statement.getLeft().getType() != IDENTIFIER;
+                increment(prefix ? statement.getRight() : statement.getLeft(), prefix ? statement.getLeft() : statement.getRight(),
+                        prefix, 0, result);
+                break;
+            }
+            case INITIALIZATION:
+                initialization(statement, result);
+                break;
+            case LOOP:
+                loop(statement);
+                voidResult(result);
+                break;
+            case OUTPUT_STATEMENT: {
+                int value = operand(statement.getRight());
+                emit(Opcode.OUTPUT, value);
+                if (result >= 0) emit(Opcode.MOVE, result, value);
+                break;
+            }
+            case RETURN:
+                if (result >= 0) into(statement.getLeft(), result);
+                else operand(statement.getLeft());
+                break;
+            default:            // input and switch statements are not evaluated
+                voidResult(result);
+        }
+        nextTemporary = mark;
+    }
+
+    private void voidResult(int result) {
+        if (result >= 0) emit(Opcode.VOID, result);
+    }
+
+    // The old value decides the new one's type, so it is read first unless nothing the value
+    // computes can report an error or change it
+    private void assignment(Lexeme assignment, int result) {
+        Lexeme identifier = assignment.getLeft().getLeft();
+        Lexeme value = assignment.getLeft().getRight();
+        int register = registerOf(identifier);
+        int scope = bindingScope(identifier);
+        if (quiet(value, false)) {
+            emit(Opcode.ASSIGN, result, register, scope, node(identifier), operand(value), -1);
+        } else {
+            int old = temporary();
+            emit(Opcode.LOAD, old, register, scope, node(identifier));
+            emit(Opcode.ASSIGN, result, register, scope, node(identifier), operand(value), old);
+        }
+    }
+
+    private void increment(Lexeme variable, Lexeme operator, boolean prefix, int mode, int result) {
+        if (operator.getType() == DECREMENT) mode |= Opcode.DECREMENT;
+        if (prefix) mode |= Opcode.PREFIX;
+        emit(Opcode.INC, result, registerOf(variable), bindingScope(variable), node(variable), mode);
+    }
+
+    private void initialization(Lexeme initialization, int result) {
+        Lexeme initializer = initialization.getLeft();
+        Lexeme identifier = Resolver.declaredIdentifier(initialization);
+        Lexeme right = initializer.getRight();
+        int value;
+        if (initializer.getType() == VARIABLE_INITIALIZER) {
+            Lexeme dataType = right.getLeft().getType() != ASSIGN ? right.getLeft() : null;
+            if (right.getRight() == null) {
+                value = zero(dataType);
+            } else {
+                Lexeme expression = right.getRight();
+                if (expression.getType() == GLUE) expression = expression.getRight();
+                value = typed(operand(expression), expression, dataType);
+            }
+        } else {
+            Lexeme typeGlue = right.getLeft();
+            Lexeme expression = right.getRight().getRight();
+            value = typed(operand(expression), expression, typeGlue != null ? typeGlue.getRight() : null);
+        }
+        emit(Opcode.DECLARE, registerOf(identifier), value, node(identifier));
+        if (result >= 0) emit(Opcode.MOVE, result, value);
+    }
+
+    // The value a declaration stores: converted to its type, or checked to have a type to give it
+    private int typed(int value, Lexeme expression, Lexeme dataType) {
+        if (dataType != null) {
+            int converted = temporary();
+            emit(Opcode.CONVERT, converted, value, node(dataType));
+            return converted;
+        }
+        if (mayBeVoid(expression)) emit(Opcode.CHECK, value);
+        return value;
+    }
+
+    private int zero(Lexeme dataType) {
+        switch (dataType.getType()) {
+            case KW_FLOAT:
+                return literal(0.0f, VirtualMachine.FLOAT, Float.floatToRawIntBits(0.0f));
+            case KW_INT:
+                return literal(0, VirtualMachine.INT, 0);
+            default:
+                return literal("", "", 0);
+        }
+    }
+
+    private void ifElseStatements(Lexeme ifElseStatements, int result) {
+        enterScope(ifElseStatements);
+        ArrayList<Integer> exits = new ArrayList<>();
+        Lexeme node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            Lexeme ifStatement = node.getLeft();
+            int next = jumpUnless(ifStatement.getLeft());
+            statements(ifStatement.getRight(), result);        // all done as soon as one is true
+            emit(Opcode.JUMP, 0);
+            exits.add(size - 1);
+            code[next] = size;
+        }
+        statements(node, result);
+        for (int exit : exits) code[exit] = size;
+        exitScope();
+    }
+
+    // -------------- Loops --------------
+
+    private void loop(Lexeme statement) {
+        enterScope(statement);
+        Lexeme loop = statement.getLeft();
+        Lexeme[] invariants = statement.getStatements();
+        if (invariants != null) {
+            for (Lexeme invariant : invariants) {
+                if (invariant.getType() == ASSIGN) into(invariant.getRight(), registerOf(invariant.getLeft()));
+            }
+        }
+        switch (loop.getType()) {
+            case FOR_LOOP:
+                forLoop(loop, invariants);
+                break;
+            case FOR_IN:
+                forIn(loop, invariants);
+                break;
+            case WHILE_LOOP: {
+                int top = size;
+                int exit = jumpUnless(loop.getLeft().getRight().getRight().getLeft());
+                statements(loopBody(loop), -1);
+                emit(Opcode.JUMP, top);
+                code[exit] = size;
+                break;
+            }
+        }
+        exitScope();
+    }
+
+    private void forLoop(Lexeme forLoop, Lexeme[] invariants) {
+        Lexeme semi1 = forLoop.getRight();
+        Lexeme semi2 = semi1.getRight();
+        Lexeme condition = semi2.getLeft();
+        Lexeme increment = semi2.getRight().getLeft();
+        if (semi1.getLeft() != null) initialization(semi1.getLeft(), -1);
+        inductionVariables(invariants, true);
+
+        int top = size;
+        int exit = condition != null ? jumpUnless(condition) : -1;
+        statements(loopBody(forLoop), -1);
+        if (increment != null) {
+            int mark = nextTemporary;
+            if (increment.getType() == ASSIGNMENT) assignment(increment, -1);
+            else if (increment.getLeft().getType() == IDENTIFIER) increment(increment.getLeft(), increment.getRight(), false, 0, -1);
+            else increment(increment.getRight(), increment.getLeft(), true, 0, -1);
+            inductionVariables(invariants, false);
+            nextTemporary = mark;
+        }
+        emit(Opcode.JUMP, top);
+        if (exit >= 0) code[exit] = size;
+    }
+
+    // The range's start and end are computed once; the variable is set from a count of its own,
+    // so the body assigning it doesn't change how many times the loop runs
+    private void forIn(Lexeme forIn, Lexeme[] invariants) {
+        Lexeme identifier = forIn.getLeft();
+        Lexeme range = forIn.getRight().getLeft();
+        int start = temporary();
+        into(range.getLeft(), start);
+        int end = temporary();
+        into(range.getRight(), end);
+        int variable = registerOf(identifier);
+        emit(Opcode.DECLARE, variable, start, node(identifier));
+        int count = temporary();
+        emit(Opcode.MOVE, count, start);
+        inductionVariables(invariants, true);
+
+        int top = size;
+        emit(Opcode.FORIN_TEST, count, end, 0, node(forIn));
+        int exit = size - 2;
+        statements(loopBody(forIn), -1);
+        emit(Opcode.FORIN_NEXT, count, start, variable);
+        inductionVariables(invariants, false);
+        emit(Opcode.JUMP, top);
+        code[exit] = size;
+    }
+
+    // LoopOptimizer's counter * stride registers: set once the counter has its first value, then
+    // moved by stride each time the counter moves
+    private void inductionVariables(Lexeme[] invariants, boolean first) {
+        if (invariants == null) return;
+        for (Lexeme invariant : invariants) {
+            if (invariant.getType() == ASSIGN) continue;
+            int mark = nextTemporary;
+            int register = registerOf(invariant.getLeft());
+            Lexeme step = invariant.getRight();
+            if (first) {
+                int counter = operand(step.getLeft());
+                emit(Opcode.IMUL, register, counter, operand(step.getRight()));
+            } else {
+                emit(invariant.getType() == INCREMENT ? Opcode.IADD : Opcode.ISUB, register, register, operand(step.getRight()));
+            }
+            nextTemporary = mark;
+        }
+    }
+
+    private static Lexeme loopBody(Lexeme loop) {
+        switch (loop.getType()) {
+            case FOR_LOOP:
+                return loop.getRight().getRight().getRight().getRight().getRight().getLeft();
+            case FOR_IN:
+                return loop.getRight().getRight().getRight().getLeft();
+            default:
+                return loop.getRight().getRight().getLeft();
+        }
+    }
+
+    // -------------- Expressions --------------
+
+    // Code that leaves expression's value in register d
+    private void into(Lexeme expression, int d) {
+        switch (expression.getType()) {
+            case INT:
+            case FLOAT:
+            case STRING:
+            case TRUE:
+            case FALSE:
+                emit(Opcode.MOVE, d, literal(expression));
+                return;
+            case IDENTIFIER:
+                emit(Opcode.LOAD, d, registerOf(expression), bindingScope(expression), node(expression));
+                return;
+            case FUNCTION_CALL:
+                call(expression, d);
+                return;
+            case OR:
+            case AND:
+                logical(expression, d);
+                return;
+            case NOT:
+                emit(Opcode.NOT, d, operand(expression.getRight()));
+                return;
+            case INCREMENT:
+            case DECREMENT: {
+                boolean prefix = expression.getLeft() == null;
+                increment(prefix ? expression.getRight() : expression.getLeft(), expression, prefix, Opcode.EXPRESSION, d);
+                return;
+            }
+            case PLUS:
+            case MINUS:
+                if (expression.getLeft() == null) {
+                    unary(expression, d);
+                    return;
+                }
+                binary(expression, d);
+                return;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                binary(expression, d);
+                return;
+            default:
+                emit(Opcode.UNRECOGNIZED, d, node(expression));
+        }
+    }
+
+    // A register holding expression's value: a literal's own, or a temporary
+    private int operand(Lexeme expression) {
+        switch (expression.getType()) {
+            case INT:
+            case FLOAT:
+            case STRING:
+            case TRUE:
+            case FALSE:
+                return literal(expression);
+            default:
+                int register = temporary();
+                into(expression, register);
+                return register;
+        }
+    }
+
+    // An operand of a specialized operator; a name there is certainly declared, so its own
+    // register is read, unless what is evaluated after it, before the operator, could change it
+    private int typedOperand(Lexeme expression, boolean pureAfter) {
+        if (expression.getType() == IDENTIFIER && pureAfter) {
+            int register = registerOf(expression);
+            if (register >= 0) return register;
+        }
+        return operand(expression);
+    }
+
+    // The left operands are evaluated walking down a right-leaning chain and combined walking
+    // back up it, as Evaluator.evalBinaryOperators does
+    private void binary(Lexeme expression, int d) {
+        ArrayList<Lexeme> operators = new ArrayList<>();
+        for (; isBinaryOperator(expression); expression = expression.getRight()) operators.add(expression);
+        int n = operators.size();
+        boolean[] pureAfter = new boolean[n];
+        boolean pure = pure(expression);
+        for (int i = n - 1; i >= 0; i--) {
+            pureAfter[i] = pure;
+            pure = pure && pure(operators.get(i).getLeft());
+        }
+
+        int[] lefts = new int[n];
+        for (int i = 0; i < n; i++) {
+            Lexeme operator = operators.get(i);
+            lefts[i] = operator.getOperation() != null ? typedOperand(operator.getLeft(), pureAfter[i]) : operand(operator.getLeft());
+        }
+        int right = operators.get(n - 1).getOperation() != null ? typedOperand(expression, true) : operand(expression);
+        for (int i = n - 1; i >= 0; i--) {
+            Lexeme operator = operators.get(i);
+            if (operator.getOperation() == null) emit(Opcode.BINOP, d, lefts[i], right, node(operator));
+            else emit(Opcode.IADD + operator.getOperation().ordinal(), d, lefts[i], right);    // Opcode follows Operation's order
+            right = d;
+        }
+    }
+
+    private void unary(Lexeme operator, int d) {
+        if (operator.getType() == PLUS) {
+            into(operator.getRight(), d);
+        } else if (operator.getOperation() == Operation.INT_NEGATE) {
+            emit(Opcode.INEG, d, typedOperand(operator.getRight(), true));
+        } else if (operator.getOperation() == Operation.FLOAT_NEGATE) {
+            emit(Opcode.FNEG, d, typedOperand(operator.getRight(), true));
+        } else {
+            emit(Opcode.NEG, d, operand(operator.getRight()), node(operator));
+        }
+    }
+
+    // || and && leave the deciding operand
+    private void logical(Lexeme expression, int d) {
+        TokenType type = expression.getType();
+        ArrayList<Integer> exits = new ArrayList<>();
+        while (true) {
+            into(expression.getLeft(), d);
+            emit(type == OR ? Opcode.JUMPT : Opcode.JUMPF, d, 0);
+            exits.add(size - 1);
+            expression = expression.getRight();
+            if (expression.getType() != type) {
+                into(expression, d);
+                break;
+            }
+        }
+        for (int exit : exits) code[exit] = size;
+    }
+
+    // Jumps when condition is false; returns where to put the target.  An INT comparison jumps
+    // on its operands without making a TRUE or FALSE first.
+    private int jumpUnless(Lexeme condition) {
+        Operation operation = condition.getOperation();
+        if (operation != null && isBinaryOperator(condition)
+                && operation.ordinal() >= Operation.INT_EQUAL.ordinal() && operation.ordinal() <= Operation.INT_LESSEQUAL.ordinal()) {
+            int left = typedOperand(condition.getLeft(), pure(condition.getRight()));
+            int right = typedOperand(condition.getRight(), true);
+            emit(Opcode.JUMP_UNLESS_IEQ + operation.ordinal() - Operation.INT_EQUAL.ordinal(), left, right, 0);
+        } else {
+            emit(Opcode.JUMPF, operand(condition), 0);
+        }
+        return size - 1;
+    }
+
+    // The callee's frame is made before the arguments are evaluated, in the caller's scope, and
+    // each goes into its parameter as soon as it has been
+    private void call(Lexeme functionCall, int d) {
+        int mark = nextTemporary;
+        int function = operand(functionCall.getLeft().getLeft());
+        int callee = temporary();
+        emit(Opcode.CALLEE, callee, function, currentScope(), calls++);
+        ArrayList<Integer> skips = new ArrayList<>();
+        int count = 0;
+        for (Lexeme arguments = functionCall.getRight().getLeft(); arguments != null; count++) {
+            emit(Opcode.ARGCHECK, callee, count, node(arguments), 0);
+            skips.add(size - 1);
+            int argumentMark = nextTemporary;
+            emit(Opcode.ARG, callee, count, operand(arguments.getRight().getLeft()));
+            nextTemporary = argumentMark;
+            arguments = arguments.getRight().getRight();
+            if (arguments != null) arguments = arguments.getRight();
+        }
+        for (int skip : skips) code[skip] = size;
+        emit(Opcode.CALL, d, callee, node(functionCall), count);
+        nextTemporary = mark;
+    }
+
+    // -------------- Helper Methods --------------
+
+    private static boolean isBinaryOperator(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+                return expression.getLeft() != null;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Nothing in expression can change a variable
+    private static boolean pure(Lexeme expression) {
+        while (expression != null) {
+            switch (expression.getType()) {
+                case FUNCTION_CALL:
+                case INCREMENT:
+                case DECREMENT:
+                    return false;
+                case IDENTIFIER:
+                    return true;
+                default:
+                    if (!pure(expression.getLeft())) return false;
+                    expression = expression.getRight();
+            }
+        }
+        return true;
+    }
+
+    // Nothing in expression can change a variable or report an error: literals, and specialized
+    // operators that can't fail on names they certainly have
+    private static boolean quiet(Lexeme expression, boolean typedOperand) {
+        switch (expression.getType()) {
+            case INT:
+            case FLOAT:
+            case STRING:
+            case TRUE:
+            case FALSE:
+                return true;
+            case IDENTIFIER:
+                return typedOperand;
+            default:
+                if ((expression.getType() == PLUS || expression.getType() == MINUS) && expression.getLeft() == null) {
+                    return expression.getOperation() != null && quiet(expression.getRight(), true);
+                }
+                Operation operation = expression.getOperation();
+                if (operation == null || !isBinaryOperator(expression) || operation == Operation.INT_DIVIDE
+                        || operation == Operation.INT_MOD || operation == Operation.STRING_MINUS) return false;
+                return quiet(expression.getLeft(), true) && quiet(expression.getRight(), true);
+        }
+    }
+
+    // Whether expression can leave the tree walker's null, which a declaration without a type can't take
+    private static boolean mayBeVoid(Lexeme expression) {
+        switch (expression.getType()) {
+            case IDENTIFIER:
+            case FUNCTION_CALL:
+            case INCREMENT:
+            case DECREMENT:
+            case OR:
+            case AND:
+                return true;
+            case PLUS:
+                return expression.getLeft() == null && mayBeVoid(expression.getRight());
+            default:
+                return false;
+        }
+    }
+
+    private int literal(Lexeme literal) {
+        switch (literal.getType()) {
+            case INT:
+                return literal(literal.getIntValue(), VirtualMachine.INT, literal.getIntValue());
+            case FLOAT:
+                return literal(literal.getFloatValue(), VirtualMachine.FLOAT, Float.floatToRawIntBits(literal.getFloatValue()));
+            case STRING:
+                return literal(literal.getStringValue(), literal.getStringValue(), 0);
+            case TRUE:
+                return literal(Boolean.TRUE, VirtualMachine.TRUE, 0);
+            default:
+                return literal(Boolean.FALSE, VirtualMachine.FALSE, 0);
+        }
+    }
+
+    // Equal keys share a register; a function body is its own key
+    private int literal(Object key, Object ref, int num) {
+        Integer index = literals.get(key);
+        if (index == null) {
+            index = literalRefs.size();
+            literals.put(key, index);
+            literalRefs.add(ref);
+            if (index == literalNums.length) literalNums = Arrays.copyOf(literalNums, index * 2);
+            literalNums[index] = num;
+        }
+        return LITERAL + index;
+    }
+
+    private int node(Lexeme node) {
+        Integer index = poolIndex.get(node);
+        if (index == null) {
+            index = pool.size();
+            pool.add(node);
+            poolIndex.put(node, index);
+        }
+        return index;
+    }
+
+    // No operand but a literal register gets near LITERAL, so those are the ones to number
+    private void emit(int... instruction) {
+        if (size + instruction.length > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2, size + instruction.length));
+        for (int i = 0; i < instruction.length; i++) {
+            if (i > 0 && instruction[i] >= LITERAL) literalUses.add(size);
+            code[size++] = instruction[i];
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.corbin;
+
+import java.io.PrintWriter;
+
+// The program or one function body compiled for the VirtualMachine.  A frame has registerCount
+// registers: each scope of the body (the body itself, then every if-else and loop in it) has a
+// range holding its FrameLayout's slots, followed by temporaries and then the literals, which
+// every new frame starts with.  A register is a reference and an int, see VirtualMachine.
+class BytecodeFunction {
+    final Lexeme owner;                 // the PROGRAM or FUNCTION_BODY
+    final int[] code;
+    final Object[] pool;                // nodes for names and error messages
+    final Object[] initialRefs;         // a new frame's registers
+    final int[] initialNums;
+
+    // Scope 0 is the body's own; a scope's parent is the scope around it, and scope 0's is the caller's
+    final FrameLayout[] scopeLayouts;
+    final int[] scopeBases;
+    final int[] scopeParents;
+
+    final int result;                   // register of the value the body ends with, or -1
+    final Lexeme[] parameters;
+    final Lexeme[] parameterTypes;
+    final int[] parameterRegisters;
+    final Lexeme returnType;            // null for the program and functions without one
+    final Object[] callCaches;          // the last function body and its code at each call
+
+    BytecodeFunction(Lexeme owner, int[] code, Object[] pool, Object[] initialRefs, int[] initialNums,
+                     FrameLayout[] scopeLayouts, int[] scopeBases, int[] scopeParents, int result,
+                     Lexeme[] parameters, Lexeme[] parameterTypes, int[] parameterRegisters,
+                     Lexeme returnType, int calls) {
+        this.owner = owner;
+        this.code = code;
+        this.pool = pool;
+        this.initialRefs = initialRefs;
+        this.initialNums = initialNums;
+        this.scopeLayouts = scopeLayouts;
+        this.scopeBases = scopeBases;
+        this.scopeParents = scopeParents;
+        this.result = result;
+        this.parameters = parameters;
+        this.parameterTypes = parameterTypes;
+        this.parameterRegisters = parameterRegisters;
+        this.returnType = returnType;
+        this.callCaches = new Object[calls * 2];
+    }
+
+    int registerCount() {
+        return initialRefs.length;
+    }
+
+    // For --dump-bytecode
+    void print(PrintWriter out) {
+        out.println("-------------- " + owner.getType() + " on line " + owner.getLineNumber() + ": "
+                + registerCount() + " registers, " + scopeLayouts.length + " scopes --------------");
+        for (int pc = 0; pc < code.length; pc += Opcode.OPERANDS[code[pc]] + 1) {
+            StringBuilder line = new StringBuilder(String.format("%5d  %-16s", pc, Opcode.NAMES[code[pc]]));
+            for (int i = 1; i <= Opcode.OPERANDS[code[pc]]; i++) line.append(' ').append(code[pc + i]);
+            out.println(line);
+        }
+        for (int r = 0; r < initialRefs.length; r++) {
+            if (initialRefs[r] != null) out.println("  r" + r + " = " + VirtualMachine.describe(initialRefs[r], initialNums[r]));
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,1479 @@
+package com.corbin;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import com.corbin.Lexeme.Datatype;
+
+import static com.corbin.TokenType.*;
+
+// Turns the program, and each function body on its first call, into a tree of Nodes and runs
+// it.  Every node does what the Evaluator does for the AST node it came from, in the same
+// Environments, errors included, so the output is the same; what differs is that the node's
+// children, frame layouts, parameter lists and loop parts are found once, when it is built.
+// An operator TypeChecker specialized gets a node class of its own, one it couldn't specialize
+// specializes itself on the operand types it sees, and a comparison used as a condition answers
+// test() without making a TRUE or FALSE.  The rest goes through the Evaluator's own code for it.
+public class ClosureCompiler {
+    private static final int MAX_NESTED = 8;        // longer operator chains are combined in a loop
+
+    private final Evaluator evaluator = new Evaluator();
+    private final IdentityHashMap<Lexeme, Function> functions = new IdentityHashMap<>();
+    private final IdentityHashMap<Lexeme, Node> calls = new IdentityHashMap<>();     // for Tiers, by FUNCTION_CALL
+    private final IdentityHashMap<Lexeme, Loop> loops = new IdentityHashMap<>();     // for Tiers, by LOOP
+    private final ArrayList<Specializing> specializing = new ArrayList<>();     // in the order compiled
+    private int specialized = 0;        // operators TypeChecker specialized
+
+    // -------------- Public Methods --------------
+
+    public Lexeme run(Lexeme program) {
+        Environments globalEnvironment = new Environments(null);
+        globalEnvironment.reserve(program.getFrameLayout());
+        return statements(program.getLeft()).execute(globalEnvironment);
+    }
+
+    // -------------- Entry Points For Tiers --------------
+
+    // A call the Evaluator hands over once its function is hot
+    Lexeme call(Lexeme functionCall, Environments parentEnvironment) {
+        Node call = calls.get(functionCall);
+        if (call == null) {
+            call = call(functionCall);
+            calls.put(functionCall, call);
+        }
+        return call.execute(parentEnvironment);
+    }
+
+    // A LOOP statement run from its start, in a frame of its own
+    Lexeme loop(Lexeme statement, Environments environment) {
+        return compiledLoop(statement).execute(environment);
+    }
+
+    // The rest of a loop the Evaluator has started, from the test before its next iteration.
+    // A for-in also needs its range and the value its hidden count has reached, and one over an
+    // array the array and the index of the next element.
+    Lexeme resumeLoop(Lexeme statement, Environments loopEnvironment) {
+        return compiledLoop(statement).resume(loopEnvironment);
+    }
+
+    Lexeme resumeForIn(Lexeme statement, Environments loopEnvironment, Lexeme start, Lexeme value, Lexeme end) {
+        return ((ForIn) compiledLoop(statement)).iterate(loopEnvironment, start, value, end);
+    }
+
+    Lexeme resumeForEach(Lexeme statement, Environments loopEnvironment, ArrayValue array, int next) {
+        return ((ForEach) compiledLoop(statement)).iterate(loopEnvironment, array, next);
+    }
+
+    private Loop compiledLoop(Lexeme statement) {
+        Loop loop = loops.get(statement);
+        if (loop == null) {
+            loop = loop(statement);
+            loops.put(statement, loop);
+        }
+        return loop;
+    }
+
+    // What each operator that specializes itself has settled on so far, and how often it changed
+    public void printSpecializations(PrintWriter out) {
+        int deoptimized = 0;
+        for (Specializing operator : specializing) if (operator.deoptimizations > 0) deoptimized++;
+        out.println("-------------- " + specializing.size() + " self-specializing operators, " + deoptimized
+                + " deoptimized, " + specialized + " specialized by TypeChecker --------------");
+        for (Specializing operator : specializing) {
+            out.println(String.format("line %-5d %-13s %-14s %d specialized, %d deoptimized",
+                    operator.line, operator.type, operator.state, operator.specializations, operator.deoptimizations));
+        }
+        out.flush();
+    }
+
+    // -------------- Functions --------------
+
+    // A function body's statements and what a call needs from its header
+    private static final class Function {
+        final Lexeme[] parameters;
+        final Lexeme[] parameterTypes;
+        final Lexeme returnType;
+        final Node body;
+
+        Function(Lexeme[] parameters, Lexeme[] parameterTypes, Lexeme returnType, Node body) {
+            this.parameters = parameters;
+            this.parameterTypes = parameterTypes;
+            this.returnType = returnType;
+            this.body = body;
+        }
+    }
+
+    // Parsed and prepared the way evalFunctionCall does it, then compiled once
+    private Function function(Lexeme functionBody) {
+        Lexeme statementList = functionBody.getRight().getRight();
+        if (statementList.getUnparsedBody() != null) {        // lazily parsed: parse the body once, on the first call
+            functionBody.getRight().setRight(Parser.functionBody(statementList.getUnparsedBody()));
+        }
+        if (functionBody.getFrameLayout() == null && !Z.hadSyntaxError) {
+            Optimizer.optimizeFunction(functionBody);
+            Resolver.resolveFunction(functionBody);
+            TypeChecker.checkFunction(functionBody);
+            LoopOptimizer.optimizeFunction(functionBody);
+        }
+        Function function = functions.get(functionBody);
+        if (function == null) {
+            ArrayList<Lexeme> parameters = new ArrayList<>();
+            ArrayList<Lexeme> parameterTypes = new ArrayList<>();
+            for (Lexeme parameterList = functionBody.getLeft(); parameterList != null; ) {
+                parameters.add(parameterList.getLeft().getLeft());
+                parameterTypes.add(parameterList.getLeft().getRight().getRight());
+                parameterList = parameterList.getRight();
+                if (parameterList != null) parameterList = parameterList.getRight();
+            }
+            function = new Function(parameters.toArray(new Lexeme[0]), parameterTypes.toArray(new Lexeme[0]),
+                    functionBody.getRight().getLeft(), statements(functionBody.getRight().getRight()));
+            functions.put(functionBody, function);
+        }
+        return function;
+    }
+
+    // -------------- Statements --------------
+
+    private Node statements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements().length == 0) return new Constant(null);
+        ArrayList<Node> nodes = new ArrayList<>();
+        for (Lexeme statement : statementList.getStatements()) {
+            nodes.add(statement(statement));
+            if (statement.getType() == RETURN) break;       // exit the statement list
+        }
+        if (nodes.size() == 1) return nodes.get(0);
+        return new Statements(nodes.toArray(new Node[0]));
+    }
+
+    private Node statement(Lexeme statement) {
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                return assignment(statement);
+            case IF_ELSE_STATEMENTS:
+                return ifElseStatements(statement);
+            case FUNCTION_CALL:
+                return call(statement);
+            case FUNCTION_DEFINITION:
+                return new Define(statement.getLeft(), statement.getRight());
+            case INCREMENT_EXPRESSION:
+                return new IncrementStatement(evaluator, statement);
+            case INITIALIZATION:
+                return initialization(statement);
+            case LOOP:
+                return loop(statement);
+            case OUTPUT_STATEMENT:
+                return new Output(expression(statement.getRight()));
+            case RETURN:
+                return expression(statement.getLeft());
+            default:            // input and switch statements are not evaluated
+                return new Constant(null);
+        }
+    }
+
+    private Node assignment(Lexeme assignment) {
+        Lexeme target = assignment.getLeft().getLeft();
+        Node value = expression(assignment.getLeft().getRight());
+        if (target.getType() == ARRAY_REFERENCE) {
+            return new StoreElement(evaluator, target, expression(Resolver.indexExpression(target)), value);
+        }
+        return new Assign(target, value);
+    }
+
+    // An array initializer takes the declared type, if there is one
+    private Node initialization(Lexeme initialization) {
+        Lexeme expression = Resolver.initializerExpression(initialization);
+        Lexeme dataType = Resolver.declaredDataType(initialization);
+        Node value = expression == null ? null
+                : expression.getType() == ARRAY_INITIALIZER ? new NewArray(evaluator, expression, dataType)
+                : expression(expression);
+        return new Initialize(evaluator, Resolver.declaredIdentifier(initialization), dataType, value, initialization.getLineNumber());
+    }
+
+    private Node ifElseStatements(Lexeme ifElseStatements) {
+        ArrayList<Node> conditions = new ArrayList<>();
+        ArrayList<Node> branches = new ArrayList<>();
+        Lexeme node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            conditions.add(expression(node.getLeft().getLeft()));
+            branches.add(statements(node.getLeft().getRight()));
+        }
+        return new IfElse(ifElseStatements.getFrameLayout(), conditions.toArray(new Node[0]),
+                branches.toArray(new Node[0]), statements(node));
+    }
+
+    // -------------- Loops --------------
+
+    private Loop loop(Lexeme statement) {
+        Lexeme loop = statement.getLeft();
+        Invariants invariants = statement.getStatements() != null ? invariants(statement.getStatements()) : null;
+        switch (loop.getType()) {
+            case FOR_LOOP: {
+                Lexeme semi1 = loop.getRight();
+                Lexeme semi2 = semi1.getRight();
+                Lexeme condition = semi2.getLeft();
+                Lexeme increment = semi2.getRight().getLeft();
+                return new ForLoop(statement.getFrameLayout(), invariants,
+                        semi1.getLeft() != null ? initialization(semi1.getLeft()) : null,
+                        condition != null ? expression(condition) : null,
+                        statements(semi2.getRight().getRight().getRight().getLeft()),
+                        increment == null ? null : increment.getType() == ASSIGNMENT ? assignment(increment)
+                                : new IncrementStatement(evaluator, increment));
+            }
+            case FOR_IN: {
+                Lexeme iterable = loop.getRight().getLeft();
+                if (iterable.getType() != ELLIPSIS) {
+                    return new ForEach(statement.getFrameLayout(), invariants, evaluator, loop.getLeft(), iterable,
+                            statements(loop.getRight().getRight().getRight().getLeft()), loop.getLineNumber());
+                }
+                return new ForIn(statement.getFrameLayout(), invariants, loop.getLeft(),
+                        expression(iterable.getLeft()), expression(iterable.getRight()),
+                        statements(loop.getRight().getRight().getRight().getLeft()), loop.getLineNumber());
+            }
+            case WHILE_LOOP:
+                return new While(statement.getFrameLayout(), invariants,
+                        expression(loop.getLeft().getRight().getRight().getLeft()),
+                        statements(loop.getRight().getRight().getLeft()));
+            default:
+                return new UnknownLoop(statement.getFrameLayout(), invariants, loop);
+        }
+    }
+
+    private Invariants invariants(Lexeme[] statements) {
+        ArrayList<Lexeme> assigned = new ArrayList<>();
+        ArrayList<Node> values = new ArrayList<>();
+        ArrayList<Lexeme> induction = new ArrayList<>();
+        ArrayList<Node> strides = new ArrayList<>();
+        for (Lexeme invariant : statements) {
+            if (invariant.getType() == ASSIGN) {
+                assigned.add(invariant.getLeft());
+                values.add(expression(invariant.getRight()));
+            } else {
+                induction.add(invariant);
+                strides.add(expression(invariant.getRight().getRight()));
+            }
+        }
+        return new Invariants(assigned.toArray(new Lexeme[0]), values.toArray(new Node[0]),
+                induction.toArray(new Lexeme[0]), strides.toArray(new Node[0]));
+    }
+
+    // -------------- Expressions --------------
+
+    private Node expression(Lexeme expression) {
+        switch (expression.getType()) {
+            case INT:
+            case FLOAT:
+            case STRING:
+            case TRUE:
+            case FALSE:
+                return new Constant(expression);
+            case IDENTIFIER:
+                return new LookUp(expression);
+            case ARRAY_REFERENCE:
+                return new Element(evaluator, expression, expression(Resolver.indexExpression(expression)));
+            case ARRAY_INITIALIZER:
+                return new NewArray(evaluator, expression, null);
+            case FUNCTION_CALL:
+                return call(expression);
+            case OR:
+            case AND: {
+                TokenType type = expression.getType();
+                ArrayList<Node> operands = new ArrayList<>();
+                for (; expression.getType() == type; expression = expression.getRight()) operands.add(expression(expression.getLeft()));
+                operands.add(expression(expression));
+                return new Logical(type == OR, operands.toArray(new Node[0]));
+            }
+            case NOT:
+                return new Not(expression(expression.getRight()));
+            case INCREMENT:
+            case DECREMENT:
+                return new Unary(evaluator, expression);
+            case PLUS:
+            case MINUS:
+                if (expression.getLeft() == null) {
+                    if (expression.getType() == PLUS) return expression(expression.getRight());
+                    return new Negate(evaluator, expression, expression(expression.getRight()));
+                }
+                return binary(expression);
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return binary(expression);
+            default:
+                return new Unrecognized(expression);
+        }
+    }
+
+    // A right-leaning chain; its left operands are evaluated walking down it and combined
+    // walking back up, as Evaluator.evalBinaryOperators does
+    private Node binary(Lexeme expression) {
+        ArrayList<Lexeme> operators = new ArrayList<>();
+        for (; isBinaryOperator(expression); expression = expression.getRight()) operators.add(expression);
+        int n = operators.size();
+        Node[] lefts = new Node[n];
+        for (int i = 0; i < n; i++) lefts[i] = expression(operators.get(i).getLeft());
+        Node right = expression(expression);
+        if (n > MAX_NESTED) return new Chain(evaluator, operators.toArray(new Lexeme[0]), lefts, right);
+        for (int i = n - 1; i >= 0; i--) right = operator(operators.get(i), lefts[i], right);
+        return right;
+    }
+
+    private Node operator(Lexeme operator, Node left, Node right) {
+        Operation operation = operator.getOperation();
+        if (operation == null) {
+            Specializing node = new Specializing(evaluator, operator, left, right);
+            specializing.add(node);
+            return node;
+        }
+        specialized++;
+        int line = operator.getLineNumber();
+        switch (operation) {
+            case INT_PLUS:
+                return new IntPlus(left, right, line);
+            case INT_MINUS:
+                return new IntMinus(left, right, line);
+            case INT_TIMES:
+                return new IntTimes(left, right, line);
+            case INT_DIVIDE:
+                return new IntDivide(left, right, line);
+            case INT_MOD:
+                return new IntMod(left, right, line);
+            case FLOAT_PLUS:
+                return new FloatPlus(left, right, line);
+            case FLOAT_MINUS:
+                return new FloatMinus(left, right, line);
+            case FLOAT_TIMES:
+                return new FloatTimes(left, right, line);
+            case FLOAT_DIVIDE:
+                return new FloatDivide(left, right, line);
+            case STRING_PLUS:
+                return new StringPlus(left, right, line);
+            case INT_EQUAL:
+                return new IntEqual(left, right, line);
+            case INT_NOTEQUAL:
+                return new IntNotEqual(left, right, line);
+            case INT_GREATER:
+                return new IntGreater(left, right, line);
+            case INT_GREATEREQUAL:
+                return new IntGreaterEqual(left, right, line);
+            case INT_LESS:
+                return new IntLess(left, right, line);
+            case INT_LESSEQUAL:
+                return new IntLessEqual(left, right, line);
+            default:
+                return new Generic(evaluator, operator, left, right);
+        }
+    }
+
+    private Node call(Lexeme functionCall) {
+        ArrayList<Lexeme> argumentLists = new ArrayList<>();
+        ArrayList<Node> arguments = new ArrayList<>();
+        for (Lexeme argumentList = functionCall.getRight().getLeft(); argumentList != null; ) {
+            argumentLists.add(argumentList);
+            arguments.add(expression(argumentList.getRight().getLeft()));
+            argumentList = argumentList.getRight().getRight();
+            if (argumentList != null) argumentList = argumentList.getRight();
+        }
+        return new Call(functionCall, argumentLists.toArray(new Lexeme[0]), arguments.toArray(new Node[0]));
+    }
+
+    private static boolean isBinaryOperator(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+                return expression.getLeft() != null;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // -------------- Statement Nodes --------------
+
+    private static final class Statements extends Node {
+        private final Node[] statements;
+
+        Statements(Node[] statements) {
+            this.statements = statements;
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme result = null;
+            for (Node statement : statements) result = statement.execute(frame);
+            return result;
+        }
+    }
+
+    private static final class Constant extends Node {
+        private final Lexeme value;
+
+        Constant(Lexeme value) {
+            this.value = value;
+        }
+
+        Lexeme execute(Environments frame) {
+            return value;
+        }
+    }
+
+    private static final class Define extends Node {
+        private final Lexeme name;
+        private final Lexeme functionBody;
+
+        Define(Lexeme name, Lexeme functionBody) {
+            this.name = name;
+            this.functionBody = functionBody;
+        }
+
+        Lexeme execute(Environments frame) {
+            frame.insert(name, functionBody);
+            return null;
+        }
+    }
+
+    // The new value takes the type of the old
+    private static final class Assign extends Node {
+        private final Lexeme identifier;
+        private final Node value;
+
+        Assign(Lexeme identifier, Node value) {
+            this.identifier = identifier;
+            this.value = value;
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme variable = frame.lookUp(identifier);
+            Lexeme value = this.value.execute(frame);
+            if (value == null) return null;     // error message already printed
+            Lexeme result = null;
+            if (variable.getArray() != null || value.getArray() != null) {
+                result = Evaluator.assignedArray(identifier, variable, value);
+                if (result != null) frame.update(identifier, result);
+                return result;
+            }
+            Datatype variableType = variable.getDatatype();
+            if (variableType == Datatype.FLOAT) {
+                result = new Lexeme(FLOAT, value.getFloatValue(identifier.getLineNumber()), identifier.getLineNumber());
+            } else if (variableType == Datatype.INT) {
+                result = Lexeme.integer(value.getIntValue(identifier.getLineNumber()), identifier.getLineNumber());
+            } else if (variableType == Datatype.STRING) {
+                result = Lexeme.string(value, identifier.getLineNumber());
+            }
+            frame.update(identifier, result);
+            return result;
+        }
+    }
+
+    // a[index] = value, as Evaluator.evalElementAssignment does it
+    private static final class StoreElement extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme target;
+        private final Node index;
+        private final Node value;
+        private final int line;
+
+        StoreElement(Evaluator evaluator, Lexeme target, Node index, Node value) {
+            this.evaluator = evaluator;
+            this.target = target;
+            this.index = index;
+            this.value = value;
+            this.line = target.getLineNumber();
+        }
+
+        Lexeme execute(Environments frame) {
+            ArrayValue array = evaluator.evalArray(target.getLeft(), frame);
+            int index = this.index.execute(frame).getIntValue(line);
+            Lexeme value = this.value.execute(frame);
+            if (array == null || value == null || !array.inBounds(index, line)) return null;
+            array.set(index, value, line);
+            return array.get(index, line);
+        }
+    }
+
+    private static final class IncrementStatement extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme statement;
+
+        IncrementStatement(Evaluator evaluator, Lexeme statement) {
+            this.evaluator = evaluator;
+            this.statement = statement;
+        }
+
+        Lexeme execute(Environments frame) {
+            return evaluator.evalIncrementExpression(statement, frame);
+        }
+    }
+
+    // A var or const: dataType is null when it takes its value's type, and value is null when
+    // it starts with its type's zero
+    private static final class Initialize extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme identifier;
+        private final Lexeme dataType;
+        private final Node value;
+        private final int line;
+
+        Initialize(Evaluator evaluator, Lexeme identifier, Lexeme dataType, Node value, int line) {
+            this.evaluator = evaluator;
+            this.identifier = identifier;
+            this.dataType = dataType;
+            this.value = value;
+            this.line = line;
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme result = null;
+            if (value == null) {
+                switch (dataType.getType()) {
+                    case KW_FLOAT:
+                        identifier.setDatatype(Datatype.FLOAT);
+                        result = new Lexeme(FLOAT, (float) 0.0, line);
+                        break;
+                    case KW_INT:
+                        identifier.setDatatype(Datatype.INT);
+                        result = Lexeme.integer(0, line);
+                        break;
+                    case KW_STRING:
+                        identifier.setDatatype(Datatype.STRING);
+                        result = new Lexeme(STRING, "", line);
+                        break;
+                    case ARRAY_TYPE:
+                        identifier.setDatatype(null);
+                        result = Evaluator.emptyArray(dataType, line);
+                        break;
+                    default:
+                }
+            } else {
+                result = value.execute(frame);
+                if (dataType == null) identifier.setDatatype(result.getDatatype());
+                else result = evaluator.convertToDatatype(result, dataType, identifier, line);
+            }
+            frame.insert(identifier, result);
+            return result;
+        }
+    }
+
+    private static final class Output extends Node {
+        private final Node value;
+
+        Output(Node value) {
+            this.value = value;
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme expression = value.execute(frame);
+            if (expression.getArray() != null) {
+                System.out.println(expression.getArray());
+                return expression;
+            }
+            switch (expression.getDatatype()) {
+                case FLOAT:
+                    System.out.println(expression.getFloatValue());
+                    break;
+                case INT:
+                    System.out.println(expression.getIntValue());
+                    break;
+                case STRING:
+                    System.out.println(expression.getStringValue());
+                    break;
+            }
+            return expression;
+        }
+    }
+
+    // Branches share one new frame; the first whose condition holds runs
+    private static final class IfElse extends Node {
+        private final FrameLayout layout;
+        private final Node[] conditions;
+        private final Node[] branches;
+        private final Node otherwise;
+
+        IfElse(FrameLayout layout, Node[] conditions, Node[] branches, Node otherwise) {
+            this.layout = layout;
+            this.conditions = conditions;
+            this.branches = branches;
+            this.otherwise = otherwise;
+        }
+
+        Lexeme execute(Environments frame) {
+            Environments environment = new Environments(frame, layout);
+            for (int i = 0; i < conditions.length; i++) {
+                if (conditions[i].test(environment)) return branches[i].execute(environment);
+            }
+            return otherwise.execute(environment);
+        }
+    }
+
+    // -------------- Loop Nodes --------------
+
+    // LoopOptimizer's values computed once before a loop starts, and its counter * stride
+    // variables, set once the counter has its first value and moved by stride as it moves
+    private static final class Invariants {
+        private final Lexeme[] assigned;
+        private final Node[] values;
+        private final Lexeme[] induction;
+        private final Node[] strides;
+
+        Invariants(Lexeme[] assigned, Node[] values, Lexeme[] induction, Node[] strides) {
+            this.assigned = assigned;
+            this.values = values;
+            this.induction = induction;
+            this.strides = strides;
+        }
+
+        void compute(Environments environment) {
+            for (int i = 0; i < assigned.length; i++) environment.insert(assigned[i], values[i].execute(environment));
+        }
+
+        void start(Environments environment) {
+            for (int i = 0; i < induction.length; i++) {
+                Lexeme invariant = induction[i];
+                int counter = environment.lookUp(invariant.getRight().getLeft()).getIntValue(invariant.getLineNumber());
+                int stride = strides[i].execute(environment).getIntValue(invariant.getLineNumber());
+                environment.insert(invariant.getLeft(), Lexeme.integer(counter * stride, invariant.getLineNumber()));
+            }
+        }
+
+        void step(Environments environment) {
+            for (int i = 0; i < induction.length; i++) {
+                Lexeme invariant = induction[i];
+                int value = environment.lookUp(invariant.getLeft()).getIntValue(invariant.getLineNumber());
+                int stride = strides[i].execute(environment).getIntValue(invariant.getLineNumber());
+                value = invariant.getType() == INCREMENT ? value + stride : value - stride;
+                environment.update(invariant.getLeft(), Lexeme.integer(value, invariant.getLineNumber()));
+            }
+        }
+    }
+
+    // Each run of a loop gets a frame of its own
+    private abstract static class Loop extends Node {
+        final FrameLayout layout;
+        final Invariants invariants;
+
+        Loop(FrameLayout layout, Invariants invariants) {
+            this.layout = layout;
+            this.invariants = invariants;
+        }
+
+        Lexeme execute(Environments frame) {
+            Environments environment = new Environments(frame, layout);
+            if (invariants != null) invariants.compute(environment);
+            return run(environment);
+        }
+
+        abstract Lexeme run(Environments environment);
+
+        // Continues from the test before the next iteration
+        abstract Lexeme resume(Environments environment);
+    }
+
+    private static final class ForLoop extends Loop {
+        private final Node initialization;
+        private final Node condition;
+        private final Node body;
+        private final Node increment;
+
+        ForLoop(FrameLayout layout, Invariants invariants, Node initialization, Node condition, Node body, Node increment) {
+            super(layout, invariants);
+            this.initialization = initialization;
+            this.condition = condition;
+            this.body = body;
+            this.increment = increment;
+        }
+
+        Lexeme run(Environments environment) {
+            if (initialization != null) initialization.execute(environment);
+            if (invariants != null) invariants.start(environment);
+            return resume(environment);
+        }
+
+        Lexeme resume(Environments environment) {
+            while (condition == null || condition.test(environment)) {
+                body.execute(environment);
+                if (increment != null) {
+                    increment.execute(environment);
+                    if (invariants != null) invariants.step(environment);
+                }
+            }
+            return null;
+        }
+    }
+
+    // The range's ends are computed once; the variable is set from a count of its own
+    private static final class ForIn extends Loop {
+        private final Lexeme identifier;
+        private final Node start;
+        private final Node end;
+        private final Node body;
+        private final int line;
+
+        ForIn(FrameLayout layout, Invariants invariants, Lexeme identifier, Node start, Node end, Node body, int line) {
+            super(layout, invariants);
+            this.identifier = identifier;
+            this.start = start;
+            this.end = end;
+            this.body = body;
+            this.line = line;
+        }
+
+        Lexeme run(Environments environment) {
+            Lexeme start = this.start.execute(environment);
+            Lexeme end = this.end.execute(environment);
+            environment.insert(identifier, start);
+            if (invariants != null) invariants.start(environment);
+            return iterate(environment, start, start, end);
+        }
+
+        Lexeme resume(Environments environment) {
+            throw new IllegalStateException("A for-in resumes with its range");
+        }
+
+        Lexeme iterate(Environments environment, Lexeme start, Lexeme value, Lexeme end) {
+            while (value.getFloatValue(line) < end.getFloatValue(line)) {
+                body.execute(environment);
+                if (start.getDatatype() == Datatype.INT) {
+                    value = Lexeme.integer(value.getIntValue(line) + 1, line);
+                } else {
+                    value = new Lexeme(FLOAT, value.getFloatValue(line) + 1, line);
+                }
+                environment.update(identifier, value);
+                if (invariants != null) invariants.step(environment);
+            }
+            return null;
+        }
+    }
+
+    // for x in array: the array is found once, and the variable set from a count of its own
+    private static final class ForEach extends Loop {
+        private final Evaluator evaluator;
+        private final Lexeme identifier;
+        private final Lexeme array;
+        private final Node body;
+        private final int line;
+
+        ForEach(FrameLayout layout, Invariants invariants, Evaluator evaluator, Lexeme identifier, Lexeme array, Node body, int line) {
+            super(layout, invariants);
+            this.evaluator = evaluator;
+            this.identifier = identifier;
+            this.array = array;
+            this.body = body;
+            this.line = line;
+        }
+
+        Lexeme run(Environments environment) {
+            ArrayValue array = evaluator.evalArray(this.array, environment);
+            return array != null ? iterate(environment, array, 0) : null;
+        }
+
+        Lexeme resume(Environments environment) {
+            throw new IllegalStateException("A for-in over an array resumes with its array");
+        }
+
+        Lexeme iterate(Environments environment, ArrayValue array, int next) {
+            for (int i = next; i < array.length(); i++) {
+                if (i == 0) environment.insert(identifier, array.get(i, line));
+                else environment.update(identifier, array.get(i, line));
+                body.execute(environment);
+            }
+            return null;
+        }
+    }
+
+    private static final class While extends Loop {
+        private final Node condition;
+        private final Node body;
+
+        While(FrameLayout layout, Invariants invariants, Node condition, Node body) {
+            super(layout, invariants);
+            this.condition = condition;
+            this.body = body;
+        }
+
+        Lexeme run(Environments environment) {
+            return resume(environment);
+        }
+
+        Lexeme resume(Environments environment) {
+            while (condition.test(environment)) body.execute(environment);
+            return null;
+        }
+    }
+
+    private static final class UnknownLoop extends Loop {
+        private final Lexeme loop;
+
+        UnknownLoop(FrameLayout layout, Invariants invariants, Lexeme loop) {
+            super(layout, invariants);
+            this.loop = loop;
+        }
+
+        Lexeme run(Environments environment) {
+            Z.error(loop, "Unknown loop type");
+            return null;
+        }
+
+        Lexeme resume(Environments environment) {
+            return run(environment);
+        }
+    }
+
+    // -------------- Expression Nodes --------------
+
+    private static final class LookUp extends Node {
+        private final Lexeme identifier;
+
+        LookUp(Lexeme identifier) {
+            this.identifier = identifier;
+        }
+
+        Lexeme execute(Environments frame) {
+            return frame.lookUp(identifier);
+        }
+    }
+
+    // a[index]; outside the array it is the element type's zero, as evalArrayReference gives
+    private static final class Element extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme arrayReference;
+        private final Node index;
+        private final int line;
+
+        Element(Evaluator evaluator, Lexeme arrayReference, Node index) {
+            this.evaluator = evaluator;
+            this.arrayReference = arrayReference;
+            this.index = index;
+            this.line = arrayReference.getLineNumber();
+        }
+
+        Lexeme execute(Environments frame) {
+            ArrayValue array = evaluator.evalArray(arrayReference.getLeft(), frame);
+            int index = this.index.execute(frame).getIntValue(line);
+            if (array == null) return Lexeme.integer(0, line);
+            return array.inBounds(index, line) ? array.get(index, line) : array.zero(line);
+        }
+    }
+
+    // [a, b, c], made by the Evaluator
+    private static final class NewArray extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme initializer;
+        private final Lexeme dataType;
+
+        NewArray(Evaluator evaluator, Lexeme initializer, Lexeme dataType) {
+            this.evaluator = evaluator;
+            this.initializer = initializer;
+            this.dataType = dataType;
+        }
+
+        Lexeme execute(Environments frame) {
+            return evaluator.evalArrayInitializer(initializer, dataType, frame);
+        }
+    }
+
+    private static final class Unrecognized extends Node {
+        private final Lexeme expression;
+
+        Unrecognized(Lexeme expression) {
+            this.expression = expression;
+        }
+
+        Lexeme execute(Environments frame) {
+            Z.error(expression, "Unrecognized value");
+            return Lexeme.integer(0, expression.getLineNumber());
+        }
+    }
+
+    // || and && give the deciding operand, not a boolean
+    private static final class Logical extends Node {
+        private final boolean or;
+        private final Node[] operands;
+
+        Logical(boolean or, Node[] operands) {
+            this.or = or;
+            this.operands = operands;
+        }
+
+        Lexeme execute(Environments frame) {
+            int last = operands.length - 1;
+            for (int i = 0; i < last; i++) {
+                Lexeme operand = operands[i].execute(frame);
+                if (operand.getBooleanValue() == or) return operand;
+            }
+            return operands[last].execute(frame);
+        }
+
+        boolean test(Environments frame) {
+            int last = operands.length - 1;
+            for (int i = 0; i < last; i++) {
+                if (operands[i].test(frame) == or) return or;
+            }
+            return operands[last].test(frame);
+        }
+    }
+
+    private static final class Not extends Node {
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        Lexeme execute(Environments frame) {
+            return Lexeme.truth(!operand.test(frame));
+        }
+
+        boolean test(Environments frame) {
+            return !operand.test(frame);
+        }
+    }
+
+    // ++ and -- in an expression
+    private static final class Unary extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme operator;
+
+        Unary(Evaluator evaluator, Lexeme operator) {
+            this.evaluator = evaluator;
+            this.operator = operator;
+        }
+
+        Lexeme execute(Environments frame) {
+            return evaluator.evalUnaryOperator(operator, frame);
+        }
+    }
+
+    private static final class Negate extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme operator;
+        private final Node operand;
+
+        Negate(Evaluator evaluator, Lexeme operator, Node operand) {
+            this.evaluator = evaluator;
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        Lexeme execute(Environments frame) {
+            return evaluator.evalNegation(operator, operand.execute(frame));
+        }
+    }
+
+    // A call finds its function in the caller's frames each time, as names are scoped dynamically
+    private final class Call extends Node {
+        private final Lexeme functionCall;
+        private final Lexeme[] argumentLists;
+        private final Node[] arguments;
+        private Lexeme lastBody = null;         // the body the last call found, and its nodes
+        private Function lastFunction = null;
+
+        Call(Lexeme functionCall, Lexeme[] argumentLists, Node[] arguments) {
+            this.functionCall = functionCall;
+            this.argumentLists = argumentLists;
+            this.arguments = arguments;
+        }
+
+        Lexeme execute(Environments parentEnvironment) {
+            Lexeme functionBody = parentEnvironment.lookUp(functionCall.getLeft().getLeft());
+            Function function = functionBody == lastBody ? lastFunction : function(functionBody);
+            lastBody = functionBody;
+            lastFunction = function;
+            Environments environment = new Environments(parentEnvironment, functionBody.getFrameLayout());
+
+            // arguments are evaluated in the caller's frame, where Resolver resolved them
+            int count = Math.min(arguments.length, function.parameters.length);
+            int line = functionCall.getLineNumber();
+            for (int i = 0; i < count; i++) {
+                Lexeme arg = arguments[i].execute(parentEnvironment);
+                Lexeme param = function.parameters[i];
+                environment.insert(param, evaluator.convertToDatatype(arg, function.parameterTypes[i], param, line));
+            }
+            if (arguments.length > count) Z.error(argumentLists[count], "Too many arguments");
+            if (function.parameters.length > count) Z.error(functionCall, "Not enough arguments");
+
+            Lexeme result = function.body.execute(environment);
+            Lexeme returnType = function.returnType;
+            if (returnType == null) return null;
+            switch (returnType.getType()) {
+                case KW_STRING:
+                    return Lexeme.string(result, line);
+                case KW_FLOAT:
+                    return new Lexeme(FLOAT, result.getFloatValue(line), line);
+                case KW_INT:
+                    return Lexeme.integer(result.getIntValue(line), line);
+                case ARRAY_TYPE:
+                    return Evaluator.convertToArray(result, returnType);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    // -------------- Operator Nodes --------------
+
+    // An operator TypeChecker couldn't specialize, or one not worth a class of its own
+    private static final class Generic extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme operator;
+        private final Node left;
+        private final Node right;
+
+        Generic(Evaluator evaluator, Lexeme operator, Node left, Node right) {
+            this.evaluator = evaluator;
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            return evaluator.evalBinaryOperator(operator, left, right.execute(frame));
+        }
+    }
+
+    // An operator TypeChecker couldn't specialize.  It starts uninitialized, takes the operand types
+    // of its first run to be the ones it will always see, and checks them each run after; the
+    // first time they differ it falls back to the Evaluator's generic code for good.
+    private static final class Specializing extends Node {
+        private enum State { UNINITIALIZED, INT_INT, FLOAT_NUMBER, STRING_VALUE, GENERIC }
+
+        private final Evaluator evaluator;
+        private final Lexeme operator;
+        private final TokenType type;
+        private final boolean comparison;
+        private final Node left;
+        private final Node right;
+        private final int line;
+        private State state = State.UNINITIALIZED;
+        private int specializations = 0;
+        private int deoptimizations = 0;
+
+        Specializing(Evaluator evaluator, Lexeme operator, Node left, Node right) {
+            this.evaluator = evaluator;
+            this.operator = operator;
+            this.type = operator.getType();
+            this.comparison = type == EQUAL || type == NOTEQUAL || type == GREATER || type == GREATEREQUAL
+                    || type == LESS || type == LESSEQUAL;
+            this.left = left;
+            this.right = right;
+            this.line = operator.getLineNumber();
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            if (comparison) return Lexeme.truth(compare(left, right));
+            switch (state) {
+                case INT_INT:
+                    if (left.getDatatype() == Datatype.INT && right.getDatatype() == Datatype.INT) {
+                        return Lexeme.integer(arithmetic(left.getIntValue(), right.getIntValue()), line);
+                    }
+                    break;
+                case FLOAT_NUMBER:
+                    if (isFloatNumber(left, right)) {
+                        return new Lexeme(FLOAT, arithmetic(left.getFloatValue(), right.getFloatValue()), line);
+                    }
+                    break;
+                case STRING_VALUE:
+                    if (isStringValue(left, right)) {
+                        return Lexeme.concatenation(left, right, line);
+                    }
+                    break;
+                case GENERIC:
+                    return evaluator.evalBinaryOperator(operator, left, right);
+                default:
+                    specialize(left, right);
+                    return evaluator.evalBinaryOperator(operator, left, right);
+            }
+            deoptimize();
+            return evaluator.evalBinaryOperator(operator, left, right);
+        }
+
+        boolean test(Environments frame) {
+            if (!comparison) return execute(frame).getBooleanValue();
+            Lexeme left = this.left.execute(frame);
+            return compare(left, right.execute(frame));
+        }
+
+        // Numbers compare as FLOATs and STRINGs as Lexeme does, as evalEquality and evalRelational do
+        private boolean compare(Lexeme left, Lexeme right) {
+            switch (state) {
+                case INT_INT:
+                    if (left.getDatatype() == Datatype.INT && right.getDatatype() == Datatype.INT) {
+                        return holds(Float.compare((float) left.getIntValue(), (float) right.getIntValue()));
+                    }
+                    break;
+                case FLOAT_NUMBER:
+                    if (isFloatNumber(left, right)) return holds(Float.compare(left.getFloatValue(), right.getFloatValue()));
+                    break;
+                case STRING_VALUE:
+                    if (isStringValue(left, right)) {
+                        if (type == EQUAL || type == NOTEQUAL) return Lexeme.sameString(left, right) == (type == EQUAL);
+                        return holds(Lexeme.compareStrings(left, right));
+                    }
+                    break;
+                case GENERIC:
+                    return evaluator.evalBinaryOperator(operator, left, right).getBooleanValue();
+                default:
+                    specialize(left, right);
+                    return evaluator.evalBinaryOperator(operator, left, right).getBooleanValue();
+            }
+            deoptimize();
+            return evaluator.evalBinaryOperator(operator, left, right).getBooleanValue();
+        }
+
+        private void specialize(Lexeme left, Lexeme right) {
+            Datatype leftType = left.getDatatype();
+            Datatype rightType = right.getDatatype();
+            if (leftType == Datatype.INT && rightType == Datatype.INT) {
+                state = State.INT_INT;
+            } else if (isFloatNumber(left, right)) {
+                state = State.FLOAT_NUMBER;
+            } else if (isStringValue(left, right) && (comparison || type == PLUS)) {
+                state = State.STRING_VALUE;
+            } else {        // booleans, and the STRING operators that aren't concatenation
+                state = State.GENERIC;
+                return;
+            }
+            specializations++;
+        }
+
+        private void deoptimize() {
+            state = State.GENERIC;
+            deoptimizations++;
+        }
+
+        private int arithmetic(int left, int right) {
+            switch (type) {
+                case PLUS:
+                    return left + right;
+                case MINUS:
+                    return left - right;
+                case TIMES:
+                    return left * right;
+                case DIVIDE:
+                    return left / right;
+                case MOD:
+                    return left % right;
+                default:            // EXP, which evalPower does in doubles
+                    return (int) Math.pow((float) left, (float) right);
+            }
+        }
+
+        private float arithmetic(float left, float right) {
+            switch (type) {
+                case PLUS:
+                    return left + right;
+                case MINUS:
+                    return left - right;
+                case TIMES:
+                    return left * right;
+                case DIVIDE:
+                    return left / right;
+                case MOD:
+                    return left % right;
+                default:
+                    return (float) Math.pow(left, right);
+            }
+        }
+
+        private boolean holds(int comparison) {
+            switch (type) {
+                case EQUAL:
+                    return comparison == 0;
+                case NOTEQUAL:
+                    return comparison != 0;
+                case GREATER:
+                    return comparison > 0;
+                case GREATEREQUAL:
+                    return comparison >= 0;
+                case LESS:
+                    return comparison < 0;
+                default:
+                    return comparison <= 0;
+            }
+        }
+
+        // Two numbers, at least one of them a FLOAT
+        private static boolean isFloatNumber(Lexeme left, Lexeme right) {
+            Datatype leftType = left.getDatatype();
+            Datatype rightType = right.getDatatype();
+            return (leftType == Datatype.FLOAT || leftType == Datatype.INT) && (rightType == Datatype.FLOAT || rightType == Datatype.INT)
+                    && (leftType == Datatype.FLOAT || rightType == Datatype.FLOAT);
+        }
+
+        // Two values, at least one of them a STRING
+        private static boolean isStringValue(Lexeme left, Lexeme right) {
+            Datatype leftType = left.getDatatype();
+            Datatype rightType = right.getDatatype();
+            return leftType != null && rightType != null && (leftType == Datatype.STRING || rightType == Datatype.STRING);
+        }
+    }
+
+    // A chain too long to nest without a Java frame per operator
+    private static final class Chain extends Node {
+        private final Evaluator evaluator;
+        private final Lexeme[] operators;
+        private final Node[] lefts;
+        private final Node last;
+
+        Chain(Evaluator evaluator, Lexeme[] operators, Node[] lefts, Node last) {
+            this.evaluator = evaluator;
+            this.operators = operators;
+            this.lefts = lefts;
+            this.last = last;
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme[] leftValues = new Lexeme[lefts.length];
+            for (int i = 0; i < lefts.length; i++) leftValues[i] = lefts[i].execute(frame);
+            Lexeme result = last.execute(frame);
+            for (int i = operators.length - 1; i >= 0; i--) result = evaluator.evalBinaryOperator(operators[i], leftValues[i], result);
+            return result;
+        }
+    }
+
+    private abstract static class Binary extends Node {
+        final Node left;
+        final Node right;
+        final int line;
+
+        Binary(Node left, Node right, int line) {
+            this.left = left;
+            this.right = right;
+            this.line = line;
+        }
+    }
+
+    private static final class IntPlus extends Binary {
+        IntPlus(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return Lexeme.integer(left.getIntValue() + right.getIntValue(), line);
+        }
+    }
+
+    private static final class IntMinus extends Binary {
+        IntMinus(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return Lexeme.integer(left.getIntValue() - right.getIntValue(), line);
+        }
+    }
+
+    private static final class IntTimes extends Binary {
+        IntTimes(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return Lexeme.integer(left.getIntValue() * right.getIntValue(), line);
+        }
+    }
+
+    private static final class IntDivide extends Binary {
+        IntDivide(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return Lexeme.integer(left.getIntValue() / right.getIntValue(), line);
+        }
+    }
+
+    private static final class IntMod extends Binary {
+        IntMod(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return Lexeme.integer(left.getIntValue() % right.getIntValue(), line);
+        }
+    }
+
+    private static final class FloatPlus extends Binary {
+        FloatPlus(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return new Lexeme(FLOAT, left.getFloatValue() + right.getFloatValue(), line);
+        }
+    }
+
+    private static final class FloatMinus extends Binary {
+        FloatMinus(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return new Lexeme(FLOAT, left.getFloatValue() - right.getFloatValue(), line);
+        }
+    }
+
+    private static final class FloatTimes extends Binary {
+        FloatTimes(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return new Lexeme(FLOAT, left.getFloatValue() * right.getFloatValue(), line);
+        }
+    }
+
+    private static final class FloatDivide extends Binary {
+        FloatDivide(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return new Lexeme(FLOAT, left.getFloatValue() / right.getFloatValue(), line);
+        }
+    }
+
+    private static final class StringPlus extends Binary {
+        StringPlus(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return Lexeme.concatenation(left, right, line);
+        }
+    }
+
+    private static final class IntEqual extends Binary {
+        IntEqual(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            return Lexeme.truth(test(frame));
+        }
+
+        boolean test(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return left.getIntValue().intValue() == right.getIntValue().intValue();
+        }
+    }
+
+    private static final class IntNotEqual extends Binary {
+        IntNotEqual(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            return Lexeme.truth(test(frame));
+        }
+
+        boolean test(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return left.getIntValue().intValue() != right.getIntValue().intValue();
+        }
+    }
+
+    private static final class IntGreater extends Binary {
+        IntGreater(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            return Lexeme.truth(test(frame));
+        }
+
+        boolean test(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return left.getIntValue() > right.getIntValue();
+        }
+    }
+
+    private static final class IntGreaterEqual extends Binary {
+        IntGreaterEqual(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            return Lexeme.truth(test(frame));
+        }
+
+        boolean test(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return left.getIntValue() >= right.getIntValue();
+        }
+    }
+
+    private static final class IntLess extends Binary {
+        IntLess(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            return Lexeme.truth(test(frame));
+        }
+
+        boolean test(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return left.getIntValue() < right.getIntValue();
+        }
+    }
+
+    private static final class IntLessEqual extends Binary {
+        IntLessEqual(Node left, Node right, int line) {
+            super(left, right, line);
+        }
+
+        Lexeme execute(Environments frame) {
+            return Lexeme.truth(test(frame));
+        }
+
+        boolean test(Environments frame) {
+            Lexeme left = this.left.execute(frame);
+            Lexeme right = this.right.execute(frame);
+            return left.getIntValue() <= right.getIntValue();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+// The Evaluator against the VirtualMachine and the ClosureCompiler on a loop heavy program
+// (nested counting loops doing INT arithmetic) and a call heavy one (recursive fib).  Each run
+// parses and prepares the program the way Z does, and all three engines must print the same output.
+// Usage: java com.corbin.EngineBenchmark [loopSize] [fib] [runs]
+public class EngineBenchmark {
+
+    public static void main(String[] args) {
+        int loopSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int fib = args.length > 1 ? Integer.parseInt(args[1]) : 22;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        String loops = "var n = " + loopSize + "\n"
+                + "var total = 0\n"
+                + "var i = 0\n"
+                + "while (i < n) {\n"
+                + "    for (j = 0; j < n; j++) {\n"
+                + "        total = total + i * j % 7 - j\n"
+                + "    }\n"
+                + "    i++\n"
+                + "}\n"
+                + "output total\n";
+        String calls = "func fib(n: int) -> int {\n"
+                + "    var r = n\n"
+                + "    if (n >= 2) { r = fib(n - 1) + fib(n - 2) }\n"
+                + "    return r\n"
+                + "}\n"
+                + "output fib(" + fib + ")\n";
+
+        System.out.println("Loops: " + loopSize + " x " + loopSize + " iterations, calls: fib(" + fib + ")");
+        for (int run = 0; run < runs; run++) {
+            compare("loops", loops);
+            compare("calls", calls);
+            System.out.println();
+        }
+    }
+
+    private static void compare(String name, String source) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream treeOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream vmOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream closureOutput = new ByteArrayOutputStream();
+        long tree, vm, closure;
+        try {
+            Lexeme program = prepare(source);
+            System.setOut(new PrintStream(treeOutput));
+            long start = System.nanoTime();
+            new Evaluator().eval(program, new Environments(null));
+            tree = System.nanoTime() - start;
+
+            program = prepare(source);
+            System.setOut(new PrintStream(vmOutput));
+            start = System.nanoTime();
+            new VirtualMachine(null).run(program);
+            vm = System.nanoTime() - start;
+
+            program = prepare(source);
+            System.setOut(new PrintStream(closureOutput));
+            start = System.nanoTime();
+            new ClosureCompiler().run(program);
+            closure = System.nanoTime() - start;
+        } finally {
+            System.setOut(console);
+        }
+
+        if (!treeOutput.toString().equals(vmOutput.toString())
+                || !treeOutput.toString().equals(closureOutput.toString())) {
+            throw new IllegalStateException(name + ": the engines disagree:\n" + treeOutput + "---\n" + vmOutput
+                    + "---\n" + closureOutput);
+        }
+        System.out.printf("%-6s Evaluator %8.1f ms   VirtualMachine %8.1f ms   (%.1fx)   Closures %8.1f ms   (%.1fx)%n",
+                name, tree / 1e6, vm / 1e6, (double) tree / vm, closure / 1e6, (double) tree / closure);
+    }
+
+    private static Lexeme prepare(String source) {
+        Lexeme program = new Parser(new Lexer(new StringReader(source))).program();
+        Optimizer.optimize(program, false);
+        if (!Resolver.resolve(program) || !TypeChecker.check(program)) {
+            throw new IllegalStateException("The benchmark program has errors");
+        }
+        LoopOptimizer.optimize(program);
+        return program;
+    }
+}
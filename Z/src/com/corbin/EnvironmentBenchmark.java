@@ -0,0 +1,69 @@
+package com.corbin;
+
+// Environments operations by name, the path a function's free variables and frames without a
+// Resolver layout take: a wide global frame, a deep chain of recursive call frames, and a name
+// declared over and over in one frame, as a loop body does.
+// Usage: java com.corbin.EnvironmentBenchmark [globals] [depth] [rounds]
+public class EnvironmentBenchmark {
+    private static int checksum = 0;
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Environments global = new Environments(null);
+        Lexeme[] globals = new Lexeme[width];
+        Lexeme[] values = new Lexeme[width];
+        for (int i = 0; i < width; i++) {
+            globals[i] = new AstNode(TokenType.IDENTIFIER, "global" + i, 0);
+            values[i] = new Lexeme(TokenType.INT, i, 0);
+            global.insert(globals[i], values[i]);
+        }
+        Environments local = new Environments(global);
+        local.insert(new AstNode(TokenType.IDENTIFIER, "local", 0), new Lexeme(TokenType.INT, 0, 0));
+
+        // One frame per call, each holding a parameter and a local like a recursive function's
+        Environments innermost = global;
+        for (int i = 0; i < depth; i++) {
+            innermost = new Environments(innermost);
+            innermost.insert(new AstNode(TokenType.IDENTIFIER, "n", 0), new Lexeme(TokenType.INT, i, 0));
+            innermost.insert(new AstNode(TokenType.IDENTIFIER, "result", 0), new Lexeme(TokenType.INT, 0, 0));
+        }
+        Lexeme n = new AstNode(TokenType.IDENTIFIER, "n", 0);
+        Lexeme deepGlobal = globals[width - 1];
+
+        System.out.println(width + " globals, " + depth + " frames deep");
+        for (int round = 0; round < rounds; round++) {
+            final Environments wide = local;
+            final Environments deep = innermost;
+            report("wide lookUp", 1_000_000, () -> {
+                for (int i = 0; i < 1_000_000; i++) checksum += wide.lookUp(globals[i % width]).getIntValue();
+            });
+            report("wide update", 1_000_000, () -> {
+                for (int i = 0; i < 1_000_000; i++) wide.update(globals[i % width], values[i % width]);
+            });
+            report("deep lookUp, innermost", 1_000_000, () -> {
+                for (int i = 0; i < 1_000_000; i++) checksum += deep.lookUp(n).getIntValue();
+            });
+            report("deep lookUp, global", 10_000, () -> {
+                for (int i = 0; i < 10_000; i++) checksum += deep.lookUp(deepGlobal).getIntValue();
+            });
+            report("redeclare in a loop", 20_000, () -> {
+                Environments loop = new Environments(global);
+                for (int i = 0; i < 20_000; i++) {
+                    loop.insert(new AstNode(TokenType.IDENTIFIER, "counter", 0), new Lexeme(TokenType.INT, i, 0));
+                }
+            });
+            System.out.println();
+        }
+        if (checksum == 42) System.out.println();      // keeps the lookups from being optimized away
+    }
+
+    private static void report(String name, int operations, Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        double nanos = (System.nanoTime() - start) / (double) operations;
+        System.out.printf("%-24s %10.1f ns/op%n", name, nanos);
+    }
+}
@@ -8,18 +8,18 @@ public class EnvironmentTest {
         Environments levelTwo = new Environments(levelOne);
         Environments levelThree = new Environments(levelTwo);
 
-        Lexeme gID = new Lexeme(TokenType.IDENTIFIER, "g", 0);
+        Lexeme gID = new AstNode(TokenType.IDENTIFIER, "g", 0);
         Lexeme gValString = new Lexeme(TokenType.STRING, "Top", 0);
 
-        Lexeme aID = new Lexeme(TokenType.IDENTIFIER, "a", 1);
-        Lexeme aIDAlso = new Lexeme(TokenType.IDENTIFIER, "a", 1);
+        Lexeme aID = new AstNode(TokenType.IDENTIFIER, "a", 1);
+        Lexeme aIDAlso = new AstNode(TokenType.IDENTIFIER, "a", 1);
         Lexeme aValSeven = new Lexeme(TokenType.INT, 7, 1);
         Lexeme aValFour = new Lexeme(TokenType.INT, 4, 1);
         Lexeme aValTwo = new Lexeme(TokenType.INT, 2, 1);
         Lexeme aValFloat = new Lexeme(TokenType.FLOAT, 3.0F, 1);
         Lexeme aValString = new Lexeme(TokenType.STRING, "World", 1);
 
-        Lexeme cID = new Lexeme(TokenType.IDENTIFIER, "c", 2);
+        Lexeme cID = new AstNode(TokenType.IDENTIFIER, "c", 2);
         Lexeme cValFloat = new Lexeme(TokenType.FLOAT, 5.0F, 2);
         Lexeme cValString = new Lexeme(TokenType.STRING, "Hello", 2);
 
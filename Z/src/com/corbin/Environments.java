@@ -1,84 +1,272 @@
 package com.corbin;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
+import com.corbin.Lexeme.Datatype;
+
+// A frame of variables kept in slot arrays.  A frame created from a scope's layout starts with
+// an empty slot for each name the Resolver found declared there, and a resolved identifier goes
+// straight to its slot, getDepth() frames out.  A slot stays empty until its declaration runs.
+// Until then, and for identifiers the Resolver left to be found by name, frames are searched by
+// name from the innermost out, each one through its layout's hash index.  A frame holds one
+// slot per name, so declaring a name again, in a loop or not, just sets that slot.
+//
+// The Evaluator can also keep an INT or FLOAT in a slot unboxed: the slot's tag says which, and
+// its bits hold the value alone.  A Lexeme is made for such a slot only when lookUp asks for
+// one, on the line of the identifier looked up, and kept until the slot is set again.
 public class Environments {
+    private static final byte BOXED = 0;        // the slot's value is in values
+    private static final byte INT_BITS = 1;
+    private static final byte FLOAT_BITS = 2;
 
     // -------------- Instance Variables --------------
     private Environments parent;
 
-    ArrayList<Lexeme> identifiers;
-    ArrayList<Lexeme> values;
+    private FrameLayout layout;
+    private boolean sharedLayout;       // the scope's layout, copied before a name is added
+    private Lexeme[] identifiers;       // declaration that filled each slot, null until it runs
+    private Lexeme[] values;            // null for an unboxed slot until it is looked up
+    private byte[] tags;
+    private long[] bits;
 
     // -------------- Constructor --------------
 
     public Environments(Environments parent) {
+        this(parent, null);
+    }
+
+    public Environments(Environments parent, FrameLayout layout) {
         this.parent = parent;
-        this.identifiers = new ArrayList<>();
-        this.values = new ArrayList<>();
+        this.sharedLayout = layout != null;
+        this.layout = layout != null ? layout : new FrameLayout();
+        this.identifiers = new Lexeme[this.layout.size()];
+        this.values = new Lexeme[this.layout.size()];
+        this.tags = new byte[this.layout.size()];
+        this.bits = new long[this.layout.size()];
+    }
+
+    // Takes the layout of the PROGRAM for a global frame that was created before it was resolved
+    public void reserve(FrameLayout programLayout) {
+        if (layout.size() == 0 && programLayout != null) {
+            layout = programLayout;
+            sharedLayout = true;
+            identifiers = new Lexeme[layout.size()];
+            values = new Lexeme[layout.size()];
+            tags = new byte[layout.size()];
+            bits = new long[layout.size()];
+        }
     }
 
     // -------------- Public Environment Methods --------------
 
     public void insert(Lexeme identifier, Lexeme value) {
-	if (identifiers.contains(identifier)) {		// need to handle var inside loop
-	    update(identifier, value);
-	} else {
-	    identifiers.add(identifier);
-	    values.add(value);
-	}
+        int slot = identifier.getSlot();
+        if (!holds(slot, identifier)) slot = layout.slotOf(identifier.getSymbol());
+        if (slot < 0) slot = addSlot(identifier.getSymbol());
+
+        if (identifiers[slot] == null) {
+            identifiers[slot] = identifier;
+            values[slot] = value;
+            tags[slot] = BOXED;
+        } else {
+            update(slot, identifier, value);    // declared again, as in a loop
+        }
     }
 
     public void update(Lexeme target, Lexeme newValue) {
-        for (int i = 0; i < identifiers.size(); i++) {
-            if (identifiers.get(i).equals(target)) {
-                if (identifiers.get(i).isConstant() && !values.get(i).equals(newValue)) {   // allow const inside loop
-                    Z.error(target, "Identifier cannot be modified");
-                    return;
-                }
-                values.set(i, newValue);
+        Environments frame = frameAt(target.getDepth());
+        int slot = target.getSlot();
+        if (frame.holds(slot, target)) {
+            if (frame.identifiers[slot] != null) {
+                frame.update(slot, target, newValue);
                 return;
             }
+            frame = frame.parent;       // declared further down its scope but not run yet
+        } else if (slot >= 0) {
+            frame = this;               // not a frame the Resolver laid out
         }
-        if (parent != null) {
-            parent.update(target, newValue);
-        } else {
-            Z.error(target, "Variable " + target + " is undefined and therefore cannot be updated.");
+
+        for (; frame != null; frame = frame.parent) {
+            slot = frame.declaredSlotOf(target.getSymbol());
+            if (slot >= 0) {
+                frame.update(slot, target, newValue);
+                return;
+            }
         }
+        Z.error(target, "Variable " + target + " is undefined and therefore cannot be updated.");
     }
 
     public Lexeme lookUp(Lexeme target) {
-        Lexeme value = softLookUp(target);
-        if (value != null) {
-            return value;
+        Environments frame = frameAt(target.getDepth());
+        int slot = target.getSlot();
+        if (frame.holds(slot, target)) {
+            if (frame.identifiers[slot] != null) return frame.value(slot, target.getLineNumber());
+            frame = frame.parent;
+        } else if (slot >= 0) {
+            frame = this;
         }
 
+        for (; frame != null; frame = frame.parent) {
+            slot = frame.declaredSlotOf(target.getSymbol());
+            if (slot >= 0) return frame.value(slot, target.getLineNumber());
+        }
         Z.error(target, "Variable " + target + " is undefined.");
         return null;
     }
 
+    // -------------- Unboxed Access --------------
+
+    // The datatype of a variable's value, or null if it is a boolean, a function or undefined
+    public Datatype datatypeOf(Lexeme target) {
+        Environments frame = frameOf(target);
+        if (frame == null) return null;
+        int slot = frame.slotOf(target);
+        switch (frame.tags[slot]) {
+            case INT_BITS:
+                return Datatype.INT;
+            case FLOAT_BITS:
+                return Datatype.FLOAT;
+            default:
+                return frame.values[slot].getDatatype();
+        }
+    }
+
+    // A variable's value as an INT, converted as getIntValue() does
+    public int lookUpInt(Lexeme target) {
+        Environments frame = frameOf(target);
+        if (frame == null) return lookUp(target).getIntValue(target.getLineNumber());     // reports it undefined
+        int slot = frame.slotOf(target);
+        switch (frame.tags[slot]) {
+            case INT_BITS:
+                return (int) frame.bits[slot];
+            case FLOAT_BITS:
+                return (int) Float.intBitsToFloat((int) frame.bits[slot]);
+            default:
+                return frame.values[slot].getIntValue(target.getLineNumber());
+        }
+    }
+
+    public float lookUpFloat(Lexeme target) {
+        Environments frame = frameOf(target);
+        if (frame == null) return lookUp(target).getFloatValue(target.getLineNumber());
+        int slot = frame.slotOf(target);
+        switch (frame.tags[slot]) {
+            case INT_BITS:
+                return (int) frame.bits[slot];
+            case FLOAT_BITS:
+                return Float.intBitsToFloat((int) frame.bits[slot]);
+            default:
+                return frame.values[slot].getFloatValue(target.getLineNumber());
+        }
+    }
+
+    // Sets a declared variable to an INT without making a Lexeme for it
+    public void updateInt(Lexeme target, int value) {
+        updateBits(target, INT_BITS, value);
+    }
+
+    public void updateFloat(Lexeme target, float value) {
+        updateBits(target, FLOAT_BITS, Float.floatToRawIntBits(value));
+    }
+
     // -------------- Helper Methods --------------
 
-    private Lexeme softLookUp(Lexeme target) {
-        for (int i = 0; i < identifiers.size(); i++) {
-            if (identifiers.get(i).equals(target)) {
-                return values.get(i);
-            }
+    private void update(int slot, Lexeme target, Lexeme newValue) {
+        if (identifiers[slot].isConstant() && !value(slot, target.getLineNumber()).equals(newValue)) {   // allow const inside loop
+            Z.error(target, "Identifier cannot be modified");
+            return;
         }
-        if (parent != null) {
-            return parent.softLookUp(target);
-        } else {
-            return null;
+        values[slot] = newValue;
+        tags[slot] = BOXED;
+    }
+
+    private void updateBits(Lexeme target, byte tag, int value) {
+        Environments frame = frameOf(target);
+        if (frame == null || frame.identifiers[frame.slotOf(target)].isConstant()) {
+            Lexeme boxed = tag == INT_BITS ? Lexeme.integer(value, target.getLineNumber())
+                    : new Lexeme(TokenType.FLOAT, Float.intBitsToFloat(value), target.getLineNumber());
+            update(target, boxed);      // reports it undefined, or checks the constant
+            return;
+        }
+        int slot = frame.slotOf(target);
+        frame.values[slot] = null;
+        frame.tags[slot] = tag;
+        frame.bits[slot] = value;
+    }
+
+    // A slot's value, boxed on lineNumber for whoever asks if it was set unboxed
+    private Lexeme value(int slot, int lineNumber) {
+        Lexeme value = values[slot];
+        if (value == null && tags[slot] != BOXED) {
+            value = tags[slot] == INT_BITS ? Lexeme.integer((int) bits[slot], lineNumber)
+                    : new Lexeme(TokenType.FLOAT, Float.intBitsToFloat((int) bits[slot]), lineNumber);
+            values[slot] = value;
+        }
+        return value;
+    }
+
+    // The frame where lookUp and update find a target, or null if it is undefined
+    private Environments frameOf(Lexeme target) {
+        Environments frame = frameAt(target.getDepth());
+        int slot = target.getSlot();
+        if (frame.holds(slot, target)) {
+            if (frame.identifiers[slot] != null) return frame;
+            frame = frame.parent;
+        } else if (slot >= 0) {
+            frame = this;
         }
+
+        for (; frame != null; frame = frame.parent) {
+            if (frame.declaredSlotOf(target.getSymbol()) >= 0) return frame;
+        }
+        return null;
+    }
+
+    // The declared slot of a target in the frame frameOf found
+    private int slotOf(Lexeme target) {
+        int slot = target.getSlot();
+        return holds(slot, target) && identifiers[slot] != null ? slot : declaredSlotOf(target.getSymbol());
+    }
+
+    private Environments frameAt(int depth) {
+        Environments frame = this;
+        for (; depth > 0 && frame.parent != null; depth--) frame = frame.parent;
+        return frame;
+    }
+
+    private boolean holds(int slot, Lexeme target) {
+        return slot >= 0 && slot < layout.size() && layout.symbol(slot) == target.getSymbol();
+    }
+
+    private int declaredSlotOf(int symbol) {
+        int slot = layout.slotOf(symbol);
+        return slot >= 0 && identifiers[slot] != null ? slot : -1;
+    }
+
+    // For names the layout doesn't have
+    private int addSlot(int symbol) {
+        if (sharedLayout) {
+            layout = layout.copy();
+            sharedLayout = false;
+        }
+        int slot = layout.add(symbol);
+        if (slot == identifiers.length) {
+            identifiers = Arrays.copyOf(identifiers, Math.max(slot * 2, 4));
+            values = Arrays.copyOf(values, identifiers.length);
+            tags = Arrays.copyOf(tags, identifiers.length);
+            bits = Arrays.copyOf(bits, identifiers.length);
+        }
+        return slot;
     }
 
     // -------------- toString --------------
 
     public void print() {
         System.out.println("Environment id is " + hashCode() + "\nParent id is " + (parent == null ? " none " : parent.hashCode()));
-        for (int i = 0; i < identifiers.size(); i++) {
-            System.out.print(identifiers.get(i).getStringValue() + "\t");
-            Lexeme val = values.get(i);
+        for (int i = 0; i < layout.size(); i++) {
+            if (identifiers[i] == null) continue;
+            System.out.print(identifiers[i].getStringValue() + "\t");
+            Lexeme val = value(i, identifiers[i].getLineNumber());
             switch (val.getType()) {
                 case INT:
                     System.out.println(val.getIntValue());
@@ -93,4 +281,3 @@ public class Environments {
         }
     }
 }
-
@@ -1,9 +1,31 @@
 package com.corbin;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
 import com.corbin.Lexeme.Datatype;
 
 public class Evaluator {
     private final boolean debug = false;
+    private IdentityHashMap<Lexeme, JvmFunction> compiledFunctions = null;	// null if JvmCompiler isn't used
+    private Tiers tiers = null;		// null unless hot functions and loops are promoted
+    private boolean unboxed = true;		// INT and FLOAT expressions computed in primitives
+
+    // Runs each function body JvmCompiler can compile as JVM bytecode, from its first call
+    public void setCompiling(boolean compiling) {
+	compiledFunctions = compiling ? new IdentityHashMap<>() : null;
+    }
+
+    // Counts calls and loop iterations, and runs what gets hot closure compiled
+    public void setTiers(Tiers tiers) {
+	this.tiers = tiers;
+    }
+
+    // Whether statements and conditions TypeChecker typed INT or FLOAT skip making a Lexeme for
+    // each operator and assignment; on unless turned off to compare
+    public void setUnboxed(boolean unboxed) {
+	this.unboxed = unboxed;
+    }
 
     public Lexeme eval(Lexeme tree, Environments environment) {
 	if (tree == null) {
@@ -12,6 +34,7 @@ public class Evaluator {
 
 	switch (tree.getType()) {
 	case PROGRAM:
+	    environment.reserve(tree.getFrameLayout());
 	    return evalStatementList(tree.getLeft(), environment);
 
 	// Self-Evaluating Types
@@ -71,7 +94,7 @@ public class Evaluator {
 	if (lType == TokenType.INT) {
 	    switch (rType) {
 	    case INT:
-		return new Lexeme(TokenType.INT, left.getIntValue() + right.getIntValue(), left.getLineNumber());
+		return Lexeme.integer(left.getIntValue() + right.getIntValue(), tree.getLineNumber());
 	    case FLOAT:
 	    case STRING:
 	    default:
@@ -85,17 +108,54 @@ public class Evaluator {
     private Lexeme evalStatementList(Lexeme statementList, Environments environment) {
 	if (debug) System.out.println("Evaluating StatementList...");
 	Lexeme result = null;
-	while (statementList != null) {
-	    final Lexeme statement = statementList.getLeft();
-	    if (statement != null) {
-		result = evalStatement(statement, environment);
-		if (statement.getType() == TokenType.RETURN) break;		// exit the statement list
+	if (statementList == null) return result;
+	final Lexeme[] statements = statementList.getStatements();
+	final int last = statements.length - 1;
+	for (int i = 0; i < statements.length; i++) {
+	    final Lexeme statement = statements[i];
+	    if (i < last && statement.getType() != TokenType.RETURN) {	// only the last value is the list's
+		execStatement(statement, environment);
+		continue;
 	    }
-	    statementList = statementList.getRight();
+	    result = evalStatement(statement, environment);
+	    if (statement.getType() == TokenType.RETURN) break;		// exit the statement list
 	}
 	return result;
     }
 
+    // A statement list whose value nobody uses, as a loop body's
+    private void execStatementList(Lexeme statementList, Environments environment) {
+	if (statementList == null) return;
+	for (Lexeme statement : statementList.getStatements()) {
+	    if (statement.getType() == TokenType.RETURN) {
+		evalStatement(statement, environment);
+		return;		// exit the statement list
+	    }
+	    execStatement(statement, environment);
+	}
+    }
+
+    // A statement whose value nobody uses: assignments and ++ and -- of INTs and FLOATs go unboxed
+    private void execStatement(Lexeme statement, Environments environment) {
+	switch (statement.getType()) {
+	case ASSIGNMENT:
+	    if (statement.getLeft().getLeft().getType() == TokenType.ARRAY_REFERENCE) {
+		execElementAssignment(statement.getLeft(), environment);
+	    } else if (!execUnboxedAssignment(statement.getLeft(), environment)) {
+		evalAssignment(statement, environment);
+	    }
+	    return;
+	case INCREMENT_EXPRESSION:
+	    if (!execUnboxedIncrement(statement, environment)) evalIncrementExpression(statement, environment);
+	    return;
+	case IF_ELSE_STATEMENTS:
+	    execIfElseStatements(statement, environment);
+	    return;
+	default:
+	    evalStatement(statement, environment);
+	}
+    }
+
     private Lexeme evalStatement(Lexeme statement, Environments environment) {
 	if (debug) System.out.println("Evaluating Statement..." + statement.getType());
 	switch (statement.getType()) {
@@ -130,32 +190,59 @@ public class Evaluator {
     private Lexeme evalAssignment(Lexeme assignment, Environments environment) {
 	Lexeme assignmentOperator = assignment.getLeft();
 	Lexeme identifier = assignmentOperator.getLeft();
+	if (identifier.getType() == TokenType.ARRAY_REFERENCE) return evalElementAssignment(assignmentOperator, environment);
 	Lexeme variable = environment.lookUp(identifier);
 	Lexeme value = evalExpression(assignmentOperator.getRight(), environment);
 	Lexeme result = null;
 	if (identifier == null || value == null)
 	    return null; // error message already printed
 
+	if (variable.getArray() != null || value.getArray() != null) {
+	    result = assignedArray(identifier, variable, value);
+	    if (result != null) environment.update(identifier, result);
+	    return result;
+	}
 	final Datatype variableType = variable.getDatatype();
-	// type conversion and error messages handled in get...Value() methods
+	// type conversion and error messages handled in get...Value() methods, on the assignment's line
 	if (variableType == Datatype.FLOAT) {
-	    result = new Lexeme(TokenType.FLOAT, value.getFloatValue(), identifier.getLineNumber());
+	    result = new Lexeme(TokenType.FLOAT, value.getFloatValue(identifier.getLineNumber()), identifier.getLineNumber());
 	} else if (variableType == Datatype.INT) {
-	    result = new Lexeme(TokenType.INT, value.getIntValue(), identifier.getLineNumber());
+	    result = Lexeme.integer(value.getIntValue(identifier.getLineNumber()), identifier.getLineNumber());
 	} else if (variableType == Datatype.STRING) {
-	    result = new Lexeme(TokenType.STRING, value.getStringValue(), identifier.getLineNumber());
+	    result = Lexeme.string(value, identifier.getLineNumber());
 	}
 	environment.update(identifier, result);
 	return result;
     }
 
+    // An array variable takes another array of its element type, which both then share; nothing
+    // else takes an array.  The value to store, or null once the mismatch is reported.  Also used
+    // by ClosureCompiler.
+    static Lexeme assignedArray(Lexeme identifier, Lexeme variable, Lexeme value) {
+	ArrayValue array = variable.getArray();
+	if (array != null && value.getArray() != null && value.getArray().elementType() == array.elementType()) return value;
+	Z.error(identifier, "Type mismatch.  Can't assign " + typeName(value) + " value to " + typeName(variable) + " variable");
+	return null;
+    }
+
+    // a[index] = value, whose value is the element stored
+    private Lexeme evalElementAssignment(Lexeme assignmentOperator, Environments environment) {
+	Lexeme target = assignmentOperator.getLeft();
+	ArrayValue array = evalArray(target.getLeft(), environment);
+	int index = evalInt(Resolver.indexExpression(target), environment, 0);
+	Lexeme value = evalExpression(assignmentOperator.getRight(), environment);
+	if (array == null || value == null || !array.inBounds(index, target.getLineNumber())) return null;
+	array.set(index, value, target.getLineNumber());
+	return array.get(index, target.getLineNumber());
+    }
+
     private Lexeme evalIfElseStatements(Lexeme ifElseStatements, Environments parentEnvironment) {
-	Environments environment = new Environments(parentEnvironment);
+	Environments environment = new Environments(parentEnvironment, ifElseStatements.getFrameLayout());
 	Lexeme node = ifElseStatements;
 	while (node != null && node.getType() != TokenType.STATEMENT_LIST) {
 	    Lexeme ifStatement = node.getLeft();
 	    Lexeme expression = ifStatement.getLeft();
-	    if (evalExpression(expression, environment).getBooleanValue()) {
+	    if (evalCondition(expression, environment, 0)) {
 		return evalStatementList(ifStatement.getRight(), environment);  // all done as soon as one is true
 	    }
 	    node = node.getRight();
@@ -163,12 +250,27 @@ public class Evaluator {
 	return evalStatementList(node, environment);
     }
 
+    private void execIfElseStatements(Lexeme ifElseStatements, Environments parentEnvironment) {
+	Environments environment = new Environments(parentEnvironment, ifElseStatements.getFrameLayout());
+	Lexeme node = ifElseStatements;
+	while (node != null && node.getType() != TokenType.STATEMENT_LIST) {
+	    Lexeme ifStatement = node.getLeft();
+	    if (evalCondition(ifStatement.getLeft(), environment, 0)) {
+		execStatementList(ifStatement.getRight(), environment);
+		return;
+	    }
+	    node = node.getRight();
+	}
+	execStatementList(node, environment);
+    }
+
     private Lexeme evalFunctionDefinition(Lexeme functionDefinition, Environments environment) {
 	environment.insert(functionDefinition.getLeft(), functionDefinition.getRight());
 	return null;
     }
 
-    private Lexeme evalIncrementExpression(Lexeme incrementExpression, Environments environment) {
+    // Also used by ClosureCompiler, for ++ and -- statements
+    Lexeme evalIncrementExpression(Lexeme incrementExpression, Environments environment) {
 	Lexeme result = null;
 	if (incrementExpression.getLeft().getType() == TokenType.IDENTIFIER) {  // postincrement
 	    Lexeme variable = incrementExpression.getLeft();
@@ -176,7 +278,7 @@ public class Evaluator {
 	    TokenType operatorType = incrementExpression.getRight().getType();
 	    switch (value.getType()) {
 	    case INT: 
-		result = new Lexeme (TokenType.INT, value.getIntValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), incrementExpression.getLineNumber());
+		result = Lexeme.integer(value.getIntValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), incrementExpression.getLineNumber());
 		break;
 	    case FLOAT: 
 		result = new Lexeme (TokenType.FLOAT, value.getFloatValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), incrementExpression.getLineNumber());
@@ -193,7 +295,7 @@ public class Evaluator {
 	    TokenType operatorType = incrementExpression.getLeft().getType();
 	    switch (value.getType()) {
 	    case INT: 
-		result = new Lexeme (TokenType.INT, value.getIntValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), incrementExpression.getLineNumber());
+		result = Lexeme.integer(value.getIntValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), incrementExpression.getLineNumber());
 		break;
 	    case FLOAT: 
 		result = new Lexeme (TokenType.FLOAT, value.getFloatValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), incrementExpression.getLineNumber());
@@ -217,8 +319,8 @@ public class Evaluator {
 	Lexeme dataType = null;
 	Lexeme result = null;
 	if (initializer.getType() == TokenType.VARIABLE_INITIALIZER) {
-	    if (right.getLeft().getType() == TokenType.DATA_TYPE) {
-		dataType = right.getLeft().getLeft();
+	    if (right.getLeft().getType() != TokenType.ASSIGN) {	// var name: dataType
+		dataType = right.getLeft();
 	    }
 	    if (right.getRight() == null) {	// no initialization
 		switch (dataType.getType()) {
@@ -228,130 +330,310 @@ public class Evaluator {
 		    break;
 		case KW_INT:
 		    identifier.setDatatype(Datatype.INT);
-		    result = new Lexeme(TokenType.INT, 0, initialization.getLineNumber());
+		    result = Lexeme.integer(0, initialization.getLineNumber());
 		    break;
 		case KW_STRING:
 		    identifier.setDatatype(Datatype.STRING);
 		    result = new Lexeme(TokenType.STRING, "", initialization.getLineNumber());
 		    break;
-		//TODO: arrayType
+		case ARRAY_TYPE:
+		    identifier.setDatatype(null);
+		    result = emptyArray(dataType, initialization.getLineNumber());
+		    break;
 		}
 	    } else {
 		Lexeme initializerExpression = right.getRight();
 		if (initializerExpression.getType() == TokenType.GLUE) {
 		    initializerExpression = initializerExpression.getRight();
 		}
-		result = evalInitializerExpression(initializerExpression, environment);
+		result = evalInitializerExpression(initializerExpression, dataType, environment);
 		if (dataType == null) {		// if no explicit datatype, use type of expression
 		    identifier.setDatatype(result.getDatatype());
 		} else {
-		    switch (dataType.getType()) {
-		    case KW_FLOAT:
-			identifier.setDatatype(Datatype.FLOAT);
-			if (result.getDatatype() == Datatype.STRING) {
-			    Z.error(dataType, "Type mismatch.  Can't initialize FLOAT to STRING value");
-			} else {
-			    result = new Lexeme(TokenType.FLOAT, result.getFloatValue(), initialization.getLineNumber());
-			}
-			break;
-		    case KW_INT:
-			identifier.setDatatype(Datatype.INT);
-			if (result.getDatatype() == Datatype.STRING) {
-			    Z.error(dataType, "Type mismatch.  Can't initialize INT to STRING value");
-			} else {
-			    result = new Lexeme(TokenType.INT, result.getIntValue(), initialization.getLineNumber());
-			}
-			break;
-		    case KW_STRING:
-			identifier.setDatatype(Datatype.STRING);
-			result = new Lexeme(TokenType.STRING, result.getStringValue(), initialization.getLineNumber());
-			break;
-		    //TODO: arrayType
-		    }
-
+		    result = convertToDatatype(result, dataType, identifier, initialization.getLineNumber());
 		}
 	    }
+	} else {	// const name: dataType = initializerExpression
+	    Lexeme typeGlue = right.getLeft();
+	    result = evalInitializerExpression(right.getRight().getRight(), typeGlue != null ? typeGlue.getRight() : null, environment);
+	    if (typeGlue == null) {
+		identifier.setDatatype(result.getDatatype());
+	    } else {
+		result = convertToDatatype(result, typeGlue.getRight(), identifier, initialization.getLineNumber());
+	    }
 	}
 	environment.insert(identifier, result);
 	return result;
     }
 
-    private Lexeme evalInitializerExpression(Lexeme initializerExpression, Environments environment) {
+    // Initial values and arguments take the declared type of their variable or parameter.
+    // Also used by ClosureCompiler.
+    Lexeme convertToDatatype(Lexeme value, Lexeme dataType, Lexeme identifier, int lineNumber) {
+	if (value.getArray() != null && dataType.getType() != TokenType.ARRAY_TYPE) {
+	    Z.error(dataType, "Type mismatch.  Can't initialize " + elementType(dataType) + " to " + typeName(value) + " value");
+	    return value;
+	}
+	switch (dataType.getType()) {
+	case KW_FLOAT:
+	    identifier.setDatatype(Datatype.FLOAT);
+	    if (value.getDatatype() == Datatype.STRING) {
+		Z.error(dataType, "Type mismatch.  Can't initialize FLOAT to STRING value");
+		return value;
+	    }
+	    return new Lexeme(TokenType.FLOAT, value.getFloatValue(), lineNumber);
+	case KW_INT:
+	    identifier.setDatatype(Datatype.INT);
+	    if (value.getDatatype() == Datatype.STRING) {
+		Z.error(dataType, "Type mismatch.  Can't initialize INT to STRING value");
+		return value;
+	    }
+	    return Lexeme.integer(value.getIntValue(), lineNumber);
+	case KW_STRING:
+	    identifier.setDatatype(Datatype.STRING);
+	    return Lexeme.string(value, lineNumber);
+	case ARRAY_TYPE:
+	    identifier.setDatatype(null);
+	    return convertToArray(value, dataType);
+	default:
+	    return value;
+	}
+    }
+
+    // An array isn't copied, so it has to have the declared element type already.  Also used by
+    // ClosureCompiler.
+    static Lexeme convertToArray(Lexeme value, Lexeme dataType) {
+	Datatype elementType = elementType(dataType);
+	if (elementType == null) {
+	    Z.error(dataType, "Arrays of arrays are not supported");
+	} else if (value.getArray() == null || value.getArray().elementType() != elementType) {
+	    Z.error(dataType, "Type mismatch.  Can't initialize [" + elementType + "] to " + typeName(value) + " value");
+	}
+	return value;
+    }
+
+    // var name: [type] with no value starts as an empty array.  Also used by ClosureCompiler.
+    static Lexeme emptyArray(Lexeme dataType, int lineNumber) {
+	Datatype elementType = elementType(dataType);
+	return convertToArray(new Lexeme(ArrayValue.of(elementType != null ? elementType : Datatype.INT, 0), lineNumber), dataType);
+    }
+
+    // The element type of an array type, or the type a type keyword names; null for an array of arrays
+    static Datatype elementType(Lexeme dataType) {
+	switch (dataType.getType()) {
+	case ARRAY_TYPE:
+	    Lexeme element = dataType.getRight().getLeft();
+	    return element.getType() == TokenType.ARRAY_TYPE ? null : elementType(element);
+	case KW_INT:
+	    return Datatype.INT;
+	case KW_FLOAT:
+	    return Datatype.FLOAT;
+	default:
+	    return Datatype.STRING;
+	}
+    }
+
+    // A value's type for error messages: INT, [INT] and so on
+    private static String typeName(Lexeme value) {
+	return value.getArray() != null ? value.getArray().typeName() : String.valueOf(value.getDatatype());
+    }
+
+    // An array initializer takes the declared type, if there is one
+    private Lexeme evalInitializerExpression(Lexeme initializerExpression, Lexeme dataType, Environments environment) {
+	if (initializerExpression.getType() == TokenType.ARRAY_INITIALIZER) {
+	    return evalArrayInitializer(initializerExpression, dataType, environment);
+	}
 	return evalExpression(initializerExpression, environment);
     }
 
+    // [a, b, c]: an array of the declared element type, or else of the type TypeChecker infers from
+    // the elements: STRING if any is one, FLOAT if any is, and INT otherwise.  Each element is
+    // converted as assigning it would convert it.  Also used by ClosureCompiler.
+    Lexeme evalArrayInitializer(Lexeme initializer, Lexeme dataType, Environments environment) {
+	ArrayList<Lexeme> values = new ArrayList<>();
+	for (Lexeme elements = Resolver.arrayElements(initializer); elements != null; elements = Resolver.nextElements(elements)) {
+	    values.add(evalExpression(elements.getLeft(), environment));
+	}
+	Datatype elementType = dataType != null && dataType.getType() == TokenType.ARRAY_TYPE ? elementType(dataType) : null;
+	if (elementType == null) {
+	    for (Lexeme value : values) {
+		Datatype type = value.getDatatype();
+		if (type == null) continue;		// reported when it is stored
+		if (elementType == null || type == Datatype.STRING || type == Datatype.FLOAT && elementType == Datatype.INT) {
+		    elementType = type;
+		}
+	    }
+	    if (values.isEmpty()) Z.error(initializer, "Empty array needs a declared type");
+	    if (elementType == null) elementType = Datatype.INT;
+	}
+	ArrayValue array = ArrayValue.of(elementType, values.size());
+	for (int i = 0; i < values.size(); i++) array.set(i, values.get(i), initializer.getLineNumber());
+	return new Lexeme(array, initializer.getLineNumber());
+    }
+
     private Lexeme evalInputStatement(Lexeme statement, Environments environment) {
 	// TODO Auto-generated method stub
 	return null;
     }
 
     private Lexeme evalLoop(Lexeme statement, Environments environment) {
-	Environments loopEnvironment = new Environments(environment);
+	if (tiers != null && tiers.hot(statement)) return tiers.loop(statement, environment);
+	Environments loopEnvironment = new Environments(environment, statement.getFrameLayout());
 	final Lexeme loop = statement.getLeft();
+	final Lexeme[] invariants = statement.getStatements();
+	if (invariants != null) evalLoopInvariants(invariants, loopEnvironment);
 	switch (loop.getType()) {
 	case FOR_LOOP:
-	    return evalForLoop(loop, loopEnvironment);
+	    return evalForLoop(statement, invariants, loopEnvironment);
 	case FOR_IN:
-	    return evalForIn(loop, loopEnvironment);
+	    if (loop.getRight().getLeft().getType() != TokenType.ELLIPSIS) return evalForEach(statement, loopEnvironment);
+	    return evalForIn(statement, invariants, loopEnvironment);
 	case WHILE_LOOP:
-	    return evalWhile(loop, loopEnvironment);
+	    return evalWhile(statement, loopEnvironment);
 	}
 	Z.error(loop, "Unknown loop type");
 	return null;
     }
 
-    private Lexeme evalForLoop(Lexeme forLoop, Environments environment) {
+    // Values LoopOptimizer moved out of the loop, computed once in its frame before it starts
+    private void evalLoopInvariants(Lexeme[] invariants, Environments environment) {
+	for (Lexeme invariant : invariants) {
+	    if (invariant.getType() == TokenType.ASSIGN) {
+		environment.insert(invariant.getLeft(), evalExpression(invariant.getRight(), environment));
+	    }
+	}
+    }
+
+    // counter * stride for the loop's counter, once the counter has its first value
+    private void evalInductionVariables(Lexeme[] invariants, Environments environment) {
+	for (Lexeme invariant : invariants) {
+	    if (invariant.getType() == TokenType.ASSIGN) continue;
+	    Lexeme step = invariant.getRight();
+	    int counter = environment.lookUp(step.getLeft()).getIntValue(invariant.getLineNumber());
+	    int stride = evalExpression(step.getRight(), environment).getIntValue(invariant.getLineNumber());
+	    environment.insert(invariant.getLeft(), Lexeme.integer(counter * stride, invariant.getLineNumber()));
+	}
+    }
+
+    // Moves each counter * stride by stride, each time the counter is incremented or decremented
+    private void stepInductionVariables(Lexeme[] invariants, Environments environment) {
+	for (Lexeme invariant : invariants) {
+	    if (invariant.getType() == TokenType.ASSIGN) continue;
+	    Lexeme variable = invariant.getLeft();
+	    int value = environment.lookUpInt(variable);
+	    int stride = evalInt(invariant.getRight().getRight(), environment, 0);
+	    value = invariant.getType() == TokenType.INCREMENT ? value + stride : value - stride;
+	    if (unboxed) environment.updateInt(variable, value);
+	    else environment.update(variable, Lexeme.integer(value, invariant.getLineNumber()));
+	}
+    }
+
+    // Each takes the LOOP statement, whose iterations Tiers counts; a loop that gets hot finishes
+    // compiled, from the test before its next iteration
+    private Lexeme evalForLoop(Lexeme statement, Lexeme[] invariants, Environments environment) {
+	Lexeme forLoop = statement.getLeft();
 	if (debug) System.out.println("Evaluating For Loop..." + forLoop.getType());
 	Lexeme semi1 = forLoop.getRight();
 	if (semi1.getLeft() != null) evalInitialization(semi1.getLeft(), environment);
+	if (invariants != null) evalInductionVariables(invariants, environment);
 	Lexeme semi2 = semi1.getRight();
 	Lexeme expression = semi2.getLeft();
 	Lexeme loopIncrement = semi2.getRight().getLeft();
 	Lexeme statementList = semi2.getRight().getRight().getRight().getLeft();
-	while (expression == null || evalExpression(expression, environment).getBooleanValue()) {
-	    evalStatementList(statementList, environment);
-	    if (loopIncrement != null) evalLoopIncrement(loopIncrement, environment);
+	int[] iterations = tiers != null ? tiers.counter(statement) : null;
+	while (expression == null || evalCondition(expression, environment, 0)) {
+	    execStatementList(statementList, environment);
+	    if (loopIncrement != null) {
+		evalLoopIncrement(loopIncrement, environment);
+		if (invariants != null) stepInductionVariables(invariants, environment);
+	    }
+	    if (iterations != null && tiers.backEdge(iterations, statement)) return tiers.resumeLoop(statement, environment);
 	}
 	return null;
     }
 
     private void evalLoopIncrement(Lexeme loopIncrement, Environments environment) {
-	if (loopIncrement.getType() == TokenType.ASSIGNMENT) evalAssignment(loopIncrement, environment);
-	else evalIncrementExpression(loopIncrement, environment);
+	execStatement(loopIncrement, environment);
     }
 
-    private Lexeme evalForIn(Lexeme forInLoop, Environments environment) {
+    private Lexeme evalForIn(Lexeme statement, Lexeme[] invariants, Environments environment) {
+	Lexeme forInLoop = statement.getLeft();
 	Lexeme identifier = forInLoop.getLeft();
-	Lexeme iterable = forInLoop.getRight().getLeft();	// TODO: arrays
+	Lexeme iterable = forInLoop.getRight().getLeft();
 	Lexeme statementList = forInLoop.getRight().getRight().getRight().getLeft();
 	Lexeme start = evalExpression(iterable.getLeft(), environment);	
 	Lexeme end = evalExpression(iterable.getRight(), environment);
 	
 	environment.insert(identifier, start);
+	if (invariants != null) evalInductionVariables(invariants, environment);
 	Lexeme value = start;
-	while (value.getFloatValue() < end.getFloatValue()) {
-	    evalStatementList(statementList, environment);
+	int[] iterations = tiers != null ? tiers.counter(statement) : null;
+	final int line = forInLoop.getLineNumber();
+	while (value.getFloatValue(line) < end.getFloatValue(line)) {
+	    execStatementList(statementList, environment);
 	    if (start.getDatatype() == Datatype.INT) {
-		value = new Lexeme(TokenType.INT, value.getIntValue() + 1, forInLoop.getLineNumber());
+		value = Lexeme.integer(value.getIntValue(line) + 1, line);
 	    } else {
-		value = new Lexeme(TokenType.FLOAT, value.getFloatValue() + 1, forInLoop.getLineNumber());
+		value = new Lexeme(TokenType.FLOAT, value.getFloatValue(line) + 1, line);
 	    }
 	    environment.update(identifier, value);
+	    if (invariants != null) stepInductionVariables(invariants, environment);
+	    if (iterations != null && tiers.backEdge(iterations, statement)) {
+		return tiers.resumeForIn(statement, environment, start, value, end);
+	    }
+	}
+	return null;
+    }
+
+    // for x in array: x takes each element in turn, set unboxed from an [int] or [float] so the
+    // loop makes no Lexemes.  The length is fixed, and stores to elements not reached yet are seen.
+    private Lexeme evalForEach(Lexeme statement, Environments environment) {
+	Lexeme forInLoop = statement.getLeft();
+	Lexeme identifier = forInLoop.getLeft();
+	Lexeme statementList = forInLoop.getRight().getRight().getRight().getLeft();
+	ArrayValue array = evalArray(forInLoop.getRight().getLeft(), environment);
+	if (array == null) return null;
+	int[] iterations = tiers != null ? tiers.counter(statement) : null;
+	for (int i = 0; i < array.length(); i++) {
+	    setElementVariable(identifier, array, i, environment);
+	    execStatementList(statementList, environment);
+	    if (iterations != null && tiers.backEdge(iterations, statement)) {
+		return tiers.resumeForEach(statement, environment, array, i + 1);
+	    }
 	}
 	return null;
     }
 
-    private Lexeme evalWhile(Lexeme whileLoop, Environments environment) {
+    private void setElementVariable(Lexeme identifier, ArrayValue array, int index, Environments environment) {
+	final int line = identifier.getLineNumber();
+	if (index == 0) {
+	    environment.insert(identifier, array.get(index, line));
+	} else if (unboxed && array.elementType() == Datatype.INT) {
+	    environment.updateInt(identifier, array.getInt(index, line));
+	} else if (unboxed && array.elementType() == Datatype.FLOAT) {
+	    environment.updateFloat(identifier, array.getFloat(index, line));
+	} else {
+	    environment.update(identifier, array.get(index, line));
+	}
+    }
+
+    private Lexeme evalWhile(Lexeme statement, Environments environment) {
+	Lexeme whileLoop = statement.getLeft();
 	if (debug) System.out.println("Evaluating While..." + whileLoop.getType());
 	Lexeme expression = whileLoop.getLeft().getRight().getRight().getLeft();
-	while (evalExpression(expression, environment).getBooleanValue()) {
-	    evalStatementList(whileLoop.getRight().getRight().getLeft(), environment);
+	int[] iterations = tiers != null ? tiers.counter(statement) : null;
+	while (evalCondition(expression, environment, 0)) {
+	    execStatementList(whileLoop.getRight().getRight().getLeft(), environment);
+	    if (iterations != null && tiers.backEdge(iterations, statement)) return tiers.resumeLoop(statement, environment);
 	}
 	return null;
     }
 
     private Lexeme evalOutputStatement(Lexeme statement, Environments environment) {
 	Lexeme expression = evalExpression(statement.getRight(), environment);
+	if (expression.getArray() != null) {
+	    System.out.println(expression.getArray());
+	    return expression;
+	}
 	switch (expression.getDatatype()) {
 	case FLOAT:
 	    System.out.println(expression.getFloatValue());
@@ -366,270 +648,685 @@ public class Evaluator {
 	return expression;
     }
 
-    private Lexeme evalExpression(Lexeme expression, Environments environment) {
-	Lexeme orTerm = evalOrTerm(expression.getLeft(), environment);
-	if (expression.getRight() == null || orTerm.getBooleanValue()) {
-	    return orTerm;
+    // Unboxed statements and expressions.  A value TypeChecker typed INT or FLOAT is computed as
+    // an int or float, operands and all, and stored in its variable's slot unboxed, so a numeric
+    // loop makes no Lexemes.  Each gives what the boxed code gives, converting as getIntValue()
+    // and getFloatValue() do; anything else is handed to the boxed code.  Recursion is cut off at
+    // MAX_UNBOXED_DEPTH, where evalBinaryOperators takes over a long chain without a Java frame per operator.
+    private static final int MAX_UNBOXED_DEPTH = 64;
+
+    // False if the assignment isn't of an INT or FLOAT to an INT or FLOAT variable
+    private boolean execUnboxedAssignment(Lexeme assignmentOperator, Environments environment) {
+	if (!unboxed) return false;
+	Lexeme expression = assignmentOperator.getRight();
+	Datatype valueType = unboxedType(expression);
+	if (valueType == null) return false;
+	Lexeme identifier = assignmentOperator.getLeft();
+	Datatype variableType = environment.datatypeOf(identifier);
+	if (variableType == Datatype.INT) {
+	    int value = valueType == Datatype.INT ? evalInt(expression, environment, 0) : (int) evalFloat(expression, environment, 0);
+	    environment.updateInt(identifier, value);
+	} else if (variableType == Datatype.FLOAT) {
+	    environment.updateFloat(identifier, evalFloat(expression, environment, 0));
 	} else {
-	    return evalExpression(expression.getRight().getRight(), environment);
+	    return false;
 	}
+	return true;
     }
 
-    private Lexeme evalOrTerm(Lexeme orTerm, Environments environment) {
-	Lexeme equalityTerm = evalEqualityTerm(orTerm.getLeft(), environment);
-	if (orTerm.getRight() == null || !equalityTerm.getBooleanValue()) {
-	    return equalityTerm;
+    // a[index] = value.  Storing an INT or FLOAT in an [int] or [float] makes no Lexeme; anything
+    // else is converted by ArrayValue.set.  The index and value are computed before the bounds check.
+    private void execElementAssignment(Lexeme assignmentOperator, Environments environment) {
+	Lexeme target = assignmentOperator.getLeft();
+	Lexeme expression = assignmentOperator.getRight();
+	final int line = target.getLineNumber();
+	ArrayValue array = evalArray(target.getLeft(), environment);
+	int index = evalInt(Resolver.indexExpression(target), environment, 0);
+	Datatype valueType = unboxed ? unboxedType(expression) : null;
+	if (array == null) {
+	    evalExpression(expression, environment);
+	} else if (valueType != null && array.elementType() == Datatype.INT) {
+	    int value = valueType == Datatype.INT ? evalInt(expression, environment, 0) : (int) evalFloat(expression, environment, 0);
+	    if (array.inBounds(index, line)) array.setInt(index, value);
+	} else if (valueType != null && array.elementType() == Datatype.FLOAT) {
+	    float value = evalFloat(expression, environment, 0);
+	    if (array.inBounds(index, line)) array.setFloat(index, value);
 	} else {
-	    return evalOrTerm(orTerm.getRight().getRight(), environment);
+	    Lexeme value = evalExpression(expression, environment);
+	    if (array.inBounds(index, line)) array.set(index, value, line);
 	}
     }
 
-    private Lexeme evalEqualityTerm(Lexeme equalityTerm, Environments environment) {
-	Lexeme relationalTerm = evalRelationalTerm(equalityTerm.getLeft(), environment);
-	if (equalityTerm.getRight() == null) return relationalTerm;	// no operator
-	
-	Lexeme otherTerm = evalEqualityTerm(equalityTerm.getRight().getRight(), environment);
-	TokenType operatorType = equalityTerm.getRight().getLeft().getType();
-	if (relationalTerm.getDatatype() == Datatype.STRING || otherTerm.getDatatype() == Datatype.STRING) {
-	    if (operatorType == TokenType.EQUAL    &&  relationalTerm.getStringValue().equals(otherTerm.getStringValue()) 
-             || operatorType == TokenType.NOTEQUAL && !relationalTerm.getStringValue().equals(otherTerm.getStringValue())) {
-		return new Lexeme(TokenType.TRUE, relationalTerm.getLineNumber());
+    // False if the variable doesn't hold an INT or FLOAT
+    private boolean execUnboxedIncrement(Lexeme incrementExpression, Environments environment) {
+	if (!unboxed) return false;
+	boolean postfix = incrementExpression.getLeft().getType() == TokenType.IDENTIFIER;
+	Lexeme variable = postfix ? incrementExpression.getLeft() : incrementExpression.getRight();
+	TokenType operatorType = (postfix ? incrementExpression.getRight() : incrementExpression.getLeft()).getType();
+	int step = operatorType == TokenType.INCREMENT ? 1 : -1;
+	Datatype variableType = environment.datatypeOf(variable);
+	if (variableType == Datatype.INT) {
+	    environment.updateInt(variable, environment.lookUpInt(variable) + step);
+	} else if (variableType == Datatype.FLOAT) {
+	    environment.updateFloat(variable, environment.lookUpFloat(variable) + step);
+	} else {
+	    return false;
+	}
+	return true;
+    }
+
+    // INT or FLOAT for a literal, operator or array element TypeChecker says gives one, otherwise null
+    private static Datatype unboxedType(Lexeme expression) {
+	Operation operation = expression.getOperation();
+	if (operation != null) {
+	    if (isIntArithmetic(operation) || operation == Operation.INT_NEGATE) return Datatype.INT;
+	    if (isFloatArithmetic(operation) || operation == Operation.FLOAT_NEGATE) return Datatype.FLOAT;
+	    return null;
+	}
+	if (expression.getType() == TokenType.INT) return Datatype.INT;
+	if (expression.getType() == TokenType.FLOAT) return Datatype.FLOAT;
+	if (expression.getType() == TokenType.ARRAY_REFERENCE && expression.getDatatype() != Datatype.STRING) return expression.getDatatype();
+	return null;
+    }
+
+    private static boolean isIntArithmetic(Operation operation) {
+	return operation.compareTo(Operation.INT_PLUS) >= 0 && operation.compareTo(Operation.INT_EXP) <= 0;
+    }
+
+    private static boolean isFloatArithmetic(Operation operation) {
+	return operation.compareTo(Operation.FLOAT_PLUS) >= 0 && operation.compareTo(Operation.FLOAT_EXP) <= 0;
+    }
+
+    // The value of a condition, as getBooleanValue() would give it
+    private boolean evalCondition(Lexeme expression, Environments environment, int depth) {
+	if (!unboxed || depth > MAX_UNBOXED_DEPTH) return evalExpression(expression, environment).getBooleanValue();
+	Operation operation = expression.getOperation();
+	if (operation != null) {
+	    switch (operation) {
+	    case INT_EQUAL:
+		return evalInt(expression.getLeft(), environment, depth + 1) == evalInt(expression.getRight(), environment, depth + 1);
+	    case INT_NOTEQUAL:
+		return evalInt(expression.getLeft(), environment, depth + 1) != evalInt(expression.getRight(), environment, depth + 1);
+	    case INT_GREATER:
+		return evalInt(expression.getLeft(), environment, depth + 1) > evalInt(expression.getRight(), environment, depth + 1);
+	    case INT_GREATEREQUAL:
+		return evalInt(expression.getLeft(), environment, depth + 1) >= evalInt(expression.getRight(), environment, depth + 1);
+	    case INT_LESS:
+		return evalInt(expression.getLeft(), environment, depth + 1) < evalInt(expression.getRight(), environment, depth + 1);
+	    case INT_LESSEQUAL:
+		return evalInt(expression.getLeft(), environment, depth + 1) <= evalInt(expression.getRight(), environment, depth + 1);
+	    case FLOAT_EQUAL:
+	    case FLOAT_NOTEQUAL:
+	    case FLOAT_GREATER:
+	    case FLOAT_GREATEREQUAL:
+	    case FLOAT_LESS:
+	    case FLOAT_LESSEQUAL: {
+		float left = evalFloat(expression.getLeft(), environment, depth + 1);
+		int comparison = Float.compare(left, evalFloat(expression.getRight(), environment, depth + 1));
+		switch (operation) {
+		case FLOAT_EQUAL:
+		    return comparison == 0;
+		case FLOAT_NOTEQUAL:
+		    return comparison != 0;
+		case FLOAT_GREATER:
+		    return comparison > 0;
+		case FLOAT_GREATEREQUAL:
+		    return comparison >= 0;
+		case FLOAT_LESS:
+		    return comparison < 0;
+		default:
+		    return comparison <= 0;
+		}
 	    }
-	} else {	// INTs can be compared as FLOATs
-	    if (operatorType == TokenType.EQUAL    &&  relationalTerm.getFloatValue().equals(otherTerm.getFloatValue())
-	     || operatorType == TokenType.NOTEQUAL && !relationalTerm.getFloatValue().equals(otherTerm.getFloatValue())) {
-		return new Lexeme(TokenType.TRUE, relationalTerm.getLineNumber());
+	    default:
+		return evalExpression(expression, environment).getBooleanValue();
 	    }
 	}
-	return new Lexeme(TokenType.FALSE, relationalTerm.getLineNumber());
+	switch (expression.getType()) {
+	case OR:
+	case AND: {		// the deciding operand's value
+	    final TokenType type = expression.getType();
+	    for (; expression.getType() == type; expression = expression.getRight()) {
+		if (evalCondition(expression.getLeft(), environment, depth + 1) == (type == TokenType.OR)) return type == TokenType.OR;
+	    }
+	    return evalCondition(expression, environment, depth + 1);
+	}
+	case NOT:
+	    return !evalCondition(expression.getRight(), environment, depth + 1);
+	default:
+	    return evalExpression(expression, environment).getBooleanValue();
+	}
     }
 
-    private Lexeme evalRelationalTerm(Lexeme relationalTerm, Environments environment) {
-	Lexeme term = evalTerm(relationalTerm.getLeft(), environment);
-	if (relationalTerm.getRight() == null) return term;	// no operator
-	
-	Lexeme otherTerm = evalRelationalTerm(relationalTerm.getRight().getRight(), environment);
-	TokenType operatorType = relationalTerm.getRight().getLeft().getType();
-	if (term.getDatatype() == Datatype.STRING || otherTerm.getDatatype() == Datatype.STRING) {
-	    if (       operatorType == TokenType.GREATER      && term.getStringValue().compareTo(otherTerm.getStringValue()) >  0
-		    || operatorType == TokenType.GREATEREQUAL && term.getStringValue().compareTo(otherTerm.getStringValue()) >= 0
-		    || operatorType == TokenType.LESS         && term.getStringValue().compareTo(otherTerm.getStringValue()) <  0
-		    || operatorType == TokenType.LESSEQUAL    && term.getStringValue().compareTo(otherTerm.getStringValue()) <= 0) {
-		return new Lexeme(TokenType.TRUE, relationalTerm.getLineNumber());
+    // The value of an expression as getIntValue() would give it
+    private int evalInt(Lexeme expression, Environments environment, int depth) {
+	if (!unboxed || depth > MAX_UNBOXED_DEPTH) return evalExpression(expression, environment).getIntValue(expression.getLineNumber());
+	Operation operation = expression.getOperation();
+	if (operation == null) {
+	    if (expression.getType() == TokenType.INT) return expression.getIntValue();
+	    if (expression.getType() == TokenType.IDENTIFIER) return environment.lookUpInt(expression);
+	    if (expression.getType() == TokenType.ARRAY_REFERENCE) {
+		ArrayValue array = evalArray(expression.getLeft(), environment);
+		int index = evalInt(Resolver.indexExpression(expression), environment, depth + 1);
+		return array != null && array.inBounds(index, expression.getLineNumber()) ? array.getInt(index, expression.getLineNumber()) : 0;
 	    }
-	} else {	// INTs can be compared as FLOATs
-	    if (       operatorType == TokenType.GREATER      && term.getFloatValue().compareTo(otherTerm.getFloatValue()) >  0
-		    || operatorType == TokenType.GREATEREQUAL && term.getFloatValue().compareTo(otherTerm.getFloatValue()) >= 0
-		    || operatorType == TokenType.LESS         && term.getFloatValue().compareTo(otherTerm.getFloatValue()) <  0
-		    || operatorType == TokenType.LESSEQUAL    && term.getFloatValue().compareTo(otherTerm.getFloatValue()) <= 0) {
-		return new Lexeme(TokenType.TRUE, relationalTerm.getLineNumber());
+	    return evalExpression(expression, environment).getIntValue(expression.getLineNumber());
+	}
+	if (operation == Operation.INT_NEGATE) return - evalInt(expression.getRight(), environment, depth + 1);
+	if (!isIntArithmetic(operation)) return evalExpression(expression, environment).getIntValue(expression.getLineNumber());
+	int left = evalInt(expression.getLeft(), environment, depth + 1);
+	int right = evalInt(expression.getRight(), environment, depth + 1);
+	switch (operation) {
+	case INT_PLUS:
+	    return left + right;
+	case INT_MINUS:
+	    return left - right;
+	case INT_TIMES:
+	    return left * right;
+	case INT_DIVIDE:
+	    return left / right;
+	case INT_MOD:
+	    return left % right;
+	default:		// INT_EXP
+	    return (int) Math.pow(left, right);
+	}
+    }
+
+    // The value of an expression as getFloatValue() would give it
+    private float evalFloat(Lexeme expression, Environments environment, int depth) {
+	if (!unboxed || depth > MAX_UNBOXED_DEPTH) return evalExpression(expression, environment).getFloatValue(expression.getLineNumber());
+	Operation operation = expression.getOperation();
+	if (operation == null) {
+	    if (expression.getType() == TokenType.FLOAT || expression.getType() == TokenType.INT) return expression.getFloatValue();
+	    if (expression.getType() == TokenType.IDENTIFIER) return environment.lookUpFloat(expression);
+	    if (expression.getType() == TokenType.ARRAY_REFERENCE) {
+		ArrayValue array = evalArray(expression.getLeft(), environment);
+		int index = evalInt(Resolver.indexExpression(expression), environment, depth + 1);
+		return array != null && array.inBounds(index, expression.getLineNumber()) ? array.getFloat(index, expression.getLineNumber()) : 0.0f;
 	    }
+	    return evalExpression(expression, environment).getFloatValue(expression.getLineNumber());
+	}
+	if (operation == Operation.FLOAT_NEGATE) return - evalFloat(expression.getRight(), environment, depth + 1);
+	if (operation == Operation.INT_NEGATE || isIntArithmetic(operation)) return evalInt(expression, environment, depth);
+	if (!isFloatArithmetic(operation)) return evalExpression(expression, environment).getFloatValue(expression.getLineNumber());
+	float left = evalFloat(expression.getLeft(), environment, depth + 1);
+	float right = evalFloat(expression.getRight(), environment, depth + 1);
+	switch (operation) {
+	case FLOAT_PLUS:
+	    return left + right;
+	case FLOAT_MINUS:
+	    return left - right;
+	case FLOAT_TIMES:
+	    return left * right;
+	case FLOAT_DIVIDE:
+	    return left / right;
+	case FLOAT_MOD:
+	    return left % right;
+	default:		// FLOAT_EXP
+	    return (float) Math.pow(left, right);
 	}
-	return new Lexeme(TokenType.FALSE, relationalTerm.getLineNumber());
     }
 
-    private Lexeme evalTerm(Lexeme term, Environments environment) {
-	Lexeme factor = evalFactor(term.getLeft(), environment);
-	if (term.getRight() == null) return factor;	// no operator
-	
-	Lexeme otherTerm = evalTerm(term.getRight().getRight(), environment);
-	TokenType operatorType = term.getRight().getLeft().getType();
-	final Datatype factorType = factor.getDatatype();
-	final Datatype otherTermType = otherTerm.getDatatype();
-	if (factorType == null || otherTermType == null) {
-	   Z.error(term, "Incompatible datatypes"); 
-	   return new Lexeme(TokenType.INT, 0, term.getLineNumber());
+    // Expression trees have one node per operator.  Literals evaluate to themselves and
+    // identifiers and array elements are looked up.  A unary PLUS or MINUS has no left child.
+    private Lexeme evalExpression(Lexeme expression, Environments environment) {
+	switch (expression.getType()) {
+	case INT:
+	case FLOAT:
+	case STRING:
+	case TRUE:
+	case FALSE:
+	    return expression;
+	case IDENTIFIER:
+	    return environment.lookUp(expression);
+	case ARRAY_REFERENCE:
+	    return evalArrayReference(expression, environment);
+	case ARRAY_INITIALIZER:
+	    return evalArrayInitializer(expression, null, environment);
+	case FUNCTION_CALL:
+	    return evalFunctionCall(expression, environment);
+	case OR:
+	    return evalOr(expression, environment);
+	case AND:
+	    return evalAnd(expression, environment);
+	case NOT:
+	case INCREMENT:
+	case DECREMENT:
+	    return evalUnaryOperator(expression, environment);
+	case PLUS:
+	case MINUS:
+	    if (expression.getLeft() == null) return evalUnaryOperator(expression, environment);
+	    return evalBinaryOperators(expression, environment);
+	case TIMES:
+	case DIVIDE:
+	case MOD:
+	case EXP:
+	case EQUAL:
+	case NOTEQUAL:
+	case GREATER:
+	case GREATEREQUAL:
+	case LESS:
+	case LESSEQUAL:
+	    return evalBinaryOperators(expression, environment);
+	default:
+	    Z.error(expression, "Unrecognized value");
+	    return Lexeme.integer(0, expression.getLineNumber());
+	}
+    }
+
+    // The array a variable holds, or null once it is reported not to hold one.  Also used by
+    // ClosureCompiler.
+    ArrayValue evalArray(Lexeme identifier, Environments environment) {
+	Lexeme value = environment.lookUp(identifier);
+	if (value == null) return null;		// reported undefined
+	if (value.getArray() == null) Z.error(identifier, "Variable " + identifier.getStringValue() + " is not an array");
+	return value.getArray();
+    }
+
+    // a[index] as a value; outside the array it is the element type's zero, once that is reported
+    private Lexeme evalArrayReference(Lexeme arrayReference, Environments environment) {
+	final int line = arrayReference.getLineNumber();
+	ArrayValue array = evalArray(arrayReference.getLeft(), environment);
+	int index = evalInt(Resolver.indexExpression(arrayReference), environment, 0);
+	if (array == null) return Lexeme.integer(0, line);
+	return array.inBounds(index, line) ? array.get(index, line) : array.zero(line);
+    }
+
+    // || and && return the deciding operand, not a boolean
+    private Lexeme evalOr(Lexeme expression, Environments environment) {
+	while (true) {
+	    Lexeme left = evalExpression(expression.getLeft(), environment);
+	    if (left.getBooleanValue()) return left;
+	    expression = expression.getRight();
+	    if (expression.getType() != TokenType.OR) return evalExpression(expression, environment);
+	}
+    }
+
+    private Lexeme evalAnd(Lexeme expression, Environments environment) {
+	while (true) {
+	    Lexeme left = evalExpression(expression.getLeft(), environment);
+	    if (!left.getBooleanValue()) return left;
+	    expression = expression.getRight();
+	    if (expression.getType() != TokenType.AND) return evalExpression(expression, environment);
+	}
+    }
+
+    // Binary operators are right associative, so a chain like a - b - c leans right.  The left
+    // operands are evaluated walking down the chain and combined walking back up it, the same
+    // order as recursing on the right operand but without a Java frame per operator.
+    private Lexeme evalBinaryOperators(Lexeme expression, Environments environment) {
+	if (!isBinaryOperator(expression.getRight())) {
+	    Lexeme left = evalExpression(expression.getLeft(), environment);
+	    return evalBinaryOperator(expression, left, evalExpression(expression.getRight(), environment));
+	}
+	ArrayList<Lexeme> operators = new ArrayList<>();
+	ArrayList<Lexeme> leftValues = new ArrayList<>();
+	while (isBinaryOperator(expression)) {
+	    operators.add(expression);
+	    leftValues.add(evalExpression(expression.getLeft(), environment));
+	    expression = expression.getRight();
+	}
+	Lexeme result = evalExpression(expression, environment);
+	for (int i = operators.size() - 1; i >= 0; i--) {
+	    result = evalBinaryOperator(operators.get(i), leftValues.get(i), result);
+	}
+	return result;
+    }
+
+    private boolean isBinaryOperator(Lexeme expression) {
+	switch (expression.getType()) {
+	case PLUS:
+	case MINUS:
+	    return expression.getLeft() != null;
+	case TIMES:
+	case DIVIDE:
+	case MOD:
+	case EXP:
+	case EQUAL:
+	case NOTEQUAL:
+	case GREATER:
+	case GREATEREQUAL:
+	case LESS:
+	case LESSEQUAL:
+	    return true;
+	default:
+	    return false;
+	}
+    }
+
+    // Also used by Optimizer to fold operators on literals
+    Lexeme evalBinaryOperator(Lexeme operator, Lexeme left, Lexeme right) {
+	if (operator.getOperation() != null) return evalOperation(operator, left, right);
+	if (left.getArray() != null || right.getArray() != null) return evalArrayOperator(operator, left, right);
+	switch (operator.getType()) {
+	case EQUAL:
+	case NOTEQUAL:
+	    return evalEquality(operator, left, right);
+	case GREATER:
+	case GREATEREQUAL:
+	case LESS:
+	case LESSEQUAL:
+	    return evalRelational(operator, left, right);
+	case PLUS:
+	case MINUS:
+	    return evalAdditive(operator, left, right);
+	case EXP:
+	    return evalPower(operator, left, right);
+	default:
+	    return evalMultiplicative(operator, left, right);
+	}
+    }
+
+    // Operators TypeChecker specialized: the operand types are known, so there is nothing to check
+    private Lexeme evalOperation(Lexeme operator, Lexeme left, Lexeme right) {
+	final int line = operator.getLineNumber();
+	switch (operator.getOperation()) {
+	case INT_PLUS:
+	    return Lexeme.integer(left.getIntValue() + right.getIntValue(), line);
+	case INT_MINUS:
+	    return Lexeme.integer(left.getIntValue() - right.getIntValue(), line);
+	case INT_TIMES:
+	    return Lexeme.integer(left.getIntValue() * right.getIntValue(), line);
+	case INT_DIVIDE:
+	    return Lexeme.integer(left.getIntValue() / right.getIntValue(), line);
+	case INT_MOD:
+	    return Lexeme.integer(left.getIntValue() % right.getIntValue(), line);
+	case INT_EXP:
+	    return Lexeme.integer((int) Math.pow(left.getIntValue(), right.getIntValue()), line);
+	case FLOAT_PLUS:
+	    return new Lexeme(TokenType.FLOAT, left.getFloatValue() + right.getFloatValue(), line);
+	case FLOAT_MINUS:
+	    return new Lexeme(TokenType.FLOAT, left.getFloatValue() - right.getFloatValue(), line);
+	case FLOAT_TIMES:
+	    return new Lexeme(TokenType.FLOAT, left.getFloatValue() * right.getFloatValue(), line);
+	case FLOAT_DIVIDE:
+	    return new Lexeme(TokenType.FLOAT, left.getFloatValue() / right.getFloatValue(), line);
+	case FLOAT_MOD:
+	    return new Lexeme(TokenType.FLOAT, left.getFloatValue() % right.getFloatValue(), line);
+	case FLOAT_EXP:
+	    return new Lexeme(TokenType.FLOAT, (float) Math.pow(left.getFloatValue(), right.getFloatValue()), line);
+	case STRING_PLUS:
+	    return Lexeme.concatenation(left, right, line);
+	case STRING_MINUS:
+	    return Lexeme.withoutSuffix(left, right, line);
+
+	case INT_EQUAL:
+	    return Lexeme.truth(left.getIntValue().intValue() == right.getIntValue().intValue());
+	case INT_NOTEQUAL:
+	    return Lexeme.truth(left.getIntValue().intValue() != right.getIntValue().intValue());
+	case INT_GREATER:
+	    return Lexeme.truth(left.getIntValue() > right.getIntValue());
+	case INT_GREATEREQUAL:
+	    return Lexeme.truth(left.getIntValue() >= right.getIntValue());
+	case INT_LESS:
+	    return Lexeme.truth(left.getIntValue() < right.getIntValue());
+	case INT_LESSEQUAL:
+	    return Lexeme.truth(left.getIntValue() <= right.getIntValue());
+	// Float.compare orders floats the way evalEquality and evalRelational do
+	case FLOAT_EQUAL:
+	    return Lexeme.truth(Float.compare(left.getFloatValue(), right.getFloatValue()) == 0);
+	case FLOAT_NOTEQUAL:
+	    return Lexeme.truth(Float.compare(left.getFloatValue(), right.getFloatValue()) != 0);
+	case FLOAT_GREATER:
+	    return Lexeme.truth(Float.compare(left.getFloatValue(), right.getFloatValue()) > 0);
+	case FLOAT_GREATEREQUAL:
+	    return Lexeme.truth(Float.compare(left.getFloatValue(), right.getFloatValue()) >= 0);
+	case FLOAT_LESS:
+	    return Lexeme.truth(Float.compare(left.getFloatValue(), right.getFloatValue()) < 0);
+	case FLOAT_LESSEQUAL:
+	    return Lexeme.truth(Float.compare(left.getFloatValue(), right.getFloatValue()) <= 0);
+	case STRING_EQUAL:
+	    return Lexeme.truth(Lexeme.sameString(left, right));
+	case STRING_NOTEQUAL:
+	    return Lexeme.truth(!Lexeme.sameString(left, right));
+	case STRING_GREATER:
+	    return Lexeme.truth(Lexeme.compareStrings(left, right) > 0);
+	case STRING_GREATEREQUAL:
+	    return Lexeme.truth(Lexeme.compareStrings(left, right) >= 0);
+	case STRING_LESS:
+	    return Lexeme.truth(Lexeme.compareStrings(left, right) < 0);
+	case STRING_LESSEQUAL:
+	    return Lexeme.truth(Lexeme.compareStrings(left, right) <= 0);
+	default:
+	    Z.error(operator, "Unrecognized operation " + operator.getOperation());
+	    return Lexeme.integer(0, line);
+	}
+    }
+
+    // An array times an INT, either way round, repeats its elements; nothing else takes an array
+    private Lexeme evalArrayOperator(Lexeme operator, Lexeme left, Lexeme right) {
+	if (operator.getType() == TokenType.TIMES) {
+	    if (left.getArray() != null && right.getDatatype() == Datatype.INT) {
+		return new Lexeme(left.getArray().repeat(right.getIntValue()), operator.getLineNumber());
+	    } else if (right.getArray() != null && left.getDatatype() == Datatype.INT) {
+		return new Lexeme(right.getArray().repeat(left.getIntValue()), operator.getLineNumber());
+	    }
+	}
+	Z.error(operator, "Incompatible Types. Can't perform " + operator.getType() + " operation on operands of type "
+		+ typeName(left) + " and " + typeName(right));
+	return Lexeme.integer(0, operator.getLineNumber());
+    }
+
+    private Lexeme evalEquality(Lexeme operator, Lexeme left, Lexeme right) {
+	TokenType operatorType = operator.getType();
+	boolean same;
+	if (left.getDatatype() == Datatype.STRING || right.getDatatype() == Datatype.STRING) {
+	    same = Lexeme.sameString(left, right);
+	} else {	// INTs can be compared as FLOATs
+	    same = left.getFloatValue().equals(right.getFloatValue());
+	}
+	return Lexeme.truth(operatorType == TokenType.EQUAL ? same : operatorType == TokenType.NOTEQUAL && !same);
+    }
+
+    private Lexeme evalRelational(Lexeme operator, Lexeme left, Lexeme right) {
+	TokenType operatorType = operator.getType();
+	int order;
+	if (left.getDatatype() == Datatype.STRING || right.getDatatype() == Datatype.STRING) {
+	    order = Lexeme.compareStrings(left, right);
+	} else {	// INTs can be compared as FLOATs
+	    order = left.getFloatValue().compareTo(right.getFloatValue());
+	}
+	return Lexeme.truth(   operatorType == TokenType.GREATER      && order >  0
+			    || operatorType == TokenType.GREATEREQUAL && order >= 0
+			    || operatorType == TokenType.LESS         && order <  0
+			    || operatorType == TokenType.LESSEQUAL    && order <= 0);
+    }
+
+    private Lexeme evalAdditive(Lexeme operator, Lexeme left, Lexeme right) {
+	TokenType operatorType = operator.getType();
+	final Datatype leftType = left.getDatatype();
+	final Datatype rightType = right.getDatatype();
+	if (leftType == null || rightType == null) {
+	   Z.error(operator, "Incompatible datatypes"); 
+	   return Lexeme.integer(0, operator.getLineNumber());
 	}
 
-	if (factorType == Datatype.STRING || otherTermType == Datatype.STRING) {
+	if (leftType == Datatype.STRING || rightType == Datatype.STRING) {
 	    if (operatorType == TokenType.PLUS) {
-		return new Lexeme(TokenType.STRING, factor.getStringValue() + otherTerm.getStringValue(), term.getLineNumber());
+		return Lexeme.concatenation(left, right, operator.getLineNumber());
 	    } else {		// MINUS
-		return new Lexeme(TokenType.STRING, factor.getStringValue().replaceFirst(otherTerm.getStringValue() + "$", ""), term.getLineNumber());
+		return Lexeme.withoutSuffix(left, right, operator.getLineNumber());
 	    }
-	} else if (factorType == Datatype.FLOAT || otherTermType == Datatype.FLOAT) {
+	} else if (leftType == Datatype.FLOAT || rightType == Datatype.FLOAT) {
 	    if (operatorType == TokenType.PLUS) {
-		return new Lexeme(TokenType.FLOAT, factor.getFloatValue() + otherTerm.getFloatValue(), term.getLineNumber());
+		return new Lexeme(TokenType.FLOAT, left.getFloatValue() + right.getFloatValue(), operator.getLineNumber());
 	    } else {		// MINUS
-		return new Lexeme(TokenType.FLOAT, factor.getFloatValue() - otherTerm.getFloatValue(), term.getLineNumber());
+		return new Lexeme(TokenType.FLOAT, left.getFloatValue() - right.getFloatValue(), operator.getLineNumber());
 	    }
-	} else if (factorType == Datatype.INT && otherTermType == Datatype.INT) {
+	} else if (leftType == Datatype.INT && rightType == Datatype.INT) {
 	    if (operatorType == TokenType.PLUS) {
-		return new Lexeme(TokenType.INT, factor.getIntValue() + otherTerm.getIntValue(), term.getLineNumber());
+		return Lexeme.integer(left.getIntValue() + right.getIntValue(), operator.getLineNumber());
 	    } else {		// MINUS
-		return new Lexeme(TokenType.INT, factor.getIntValue() - otherTerm.getIntValue(), term.getLineNumber());
+		return Lexeme.integer(left.getIntValue() - right.getIntValue(), operator.getLineNumber());
 	    }
 	}
-	Z.error(term.getLeft(), "Incompatible Types. Can't perform " + operatorType + " operation on operands of type " 
-		+ factorType + " and " + otherTermType);
-	return new Lexeme(TokenType.INT, 0, term.getLineNumber());
+	Z.error(operator, "Incompatible Types. Can't perform " + operatorType + " operation on operands of type " 
+		+ leftType + " and " + rightType);
+	return Lexeme.integer(0, operator.getLineNumber());
     }
 
-    private Lexeme evalFactor(Lexeme factor, Environments environment) {
-	Lexeme powerTerm = evalPowerTerm(factor.getLeft(), environment);
-	if (factor.getRight() == null) return powerTerm;	// no operator
-	
-	Lexeme otherTerm = evalFactor(factor.getRight().getRight(), environment);
-	TokenType operatorType = factor.getRight().getLeft().getType();
-	final Datatype powerTermType = powerTerm.getDatatype();
-	final Datatype otherTermType = otherTerm.getDatatype();
-	if (powerTermType == null || otherTermType == null) {
-	   Z.error(factor, "Incompatible datatypes"); 
-	   return new Lexeme(TokenType.INT, 0, factor.getLineNumber());
-	}
-
-	if (powerTermType == Datatype.STRING && otherTermType == Datatype.INT && operatorType == TokenType.TIMES) {
-	    String result = "";
-	    for (int i = 0; i < otherTerm.getIntValue(); i++) {
-		result += powerTerm.getStringValue();
-	    }
-	    return new Lexeme(TokenType.STRING, result, factor.getLineNumber());
-	} else if (powerTermType == Datatype.INT && otherTermType == Datatype.STRING && operatorType == TokenType.TIMES) {
-	    String result = "";
-	    for (int i = 0; i < powerTerm.getIntValue(); i++) {
-		result += otherTerm.getStringValue();
-	    }
-	    return new Lexeme(TokenType.STRING, result, factor.getLineNumber());
-	} else if (powerTermType == Datatype.FLOAT || otherTermType == Datatype.FLOAT) {
+    private Lexeme evalMultiplicative(Lexeme operator, Lexeme left, Lexeme right) {
+	TokenType operatorType = operator.getType();
+	final Datatype leftType = left.getDatatype();
+	final Datatype rightType = right.getDatatype();
+	if (leftType == null || rightType == null) {
+	   Z.error(operator, "Incompatible datatypes"); 
+	   return Lexeme.integer(0, operator.getLineNumber());
+	}
+
+	if (leftType == Datatype.STRING && rightType == Datatype.INT && operatorType == TokenType.TIMES) {
+	    return Lexeme.repetition(left, right.getIntValue(), operator.getLineNumber());
+	} else if (leftType == Datatype.INT && rightType == Datatype.STRING && operatorType == TokenType.TIMES) {
+	    return Lexeme.repetition(right, left.getIntValue(), operator.getLineNumber());
+	} else if (leftType == Datatype.FLOAT || rightType == Datatype.FLOAT) {
 	    if (operatorType == TokenType.TIMES) {
-		return new Lexeme(TokenType.FLOAT, powerTerm.getFloatValue() * otherTerm.getFloatValue(), factor.getLineNumber());
+		return new Lexeme(TokenType.FLOAT, left.getFloatValue() * right.getFloatValue(), operator.getLineNumber());
 	    } else if (operatorType == TokenType.DIVIDE) {
-		return new Lexeme(TokenType.FLOAT, powerTerm.getFloatValue() / otherTerm.getFloatValue(), factor.getLineNumber());
+		return new Lexeme(TokenType.FLOAT, left.getFloatValue() / right.getFloatValue(), operator.getLineNumber());
 	    } else {		// MOD
-		return new Lexeme(TokenType.FLOAT, powerTerm.getFloatValue() % otherTerm.getFloatValue(), factor.getLineNumber());
+		return new Lexeme(TokenType.FLOAT, left.getFloatValue() % right.getFloatValue(), operator.getLineNumber());
 	    }
-	} else if (powerTermType == Datatype.INT && otherTermType == Datatype.INT) {
+	} else if (leftType == Datatype.INT && rightType == Datatype.INT) {
 	    if (operatorType == TokenType.TIMES) {
-		return new Lexeme(TokenType.INT, powerTerm.getIntValue() * otherTerm.getIntValue(), factor.getLineNumber());
+		return Lexeme.integer(left.getIntValue() * right.getIntValue(), operator.getLineNumber());
 	    } else if (operatorType == TokenType.DIVIDE) {
-		return new Lexeme(TokenType.INT, powerTerm.getIntValue() / otherTerm.getIntValue(), factor.getLineNumber());
+		return Lexeme.integer(left.getIntValue() / right.getIntValue(), operator.getLineNumber());
 	    } else {		// MOD
-		return new Lexeme(TokenType.INT, powerTerm.getIntValue() % otherTerm.getIntValue(), factor.getLineNumber());
+		return Lexeme.integer(left.getIntValue() % right.getIntValue(), operator.getLineNumber());
 	    }
 	}
-	Z.error(factor, "Incompatible Types. Can't perform " + operatorType + " operation on operands of type " 
-		+ powerTermType + " and " + otherTermType);
-	return new Lexeme(TokenType.INT, 0, factor.getLineNumber());
+	Z.error(operator, "Incompatible Types. Can't perform " + operatorType + " operation on operands of type " 
+		+ leftType + " and " + rightType);
+	return Lexeme.integer(0, operator.getLineNumber());
     }
 
-    private Lexeme evalPowerTerm(Lexeme powerTerm, Environments environment) {
-	Lexeme unaryTerm = evalUnaryTerm(powerTerm.getLeft(), environment);
-	if (powerTerm.getRight() == null) return unaryTerm;	// no operator
-	
-	Lexeme otherTerm = evalPowerTerm(powerTerm.getRight().getRight(), environment);
-	TokenType operatorType = powerTerm.getRight().getLeft().getType();
-	final Datatype unaryTermType = unaryTerm.getDatatype();
-	final Datatype otherTermType = otherTerm.getDatatype();
-	if (unaryTermType == null || otherTermType == null
-		|| unaryTermType == Datatype.STRING || otherTermType == Datatype.STRING) {
-	   Z.error(powerTerm, "Incompatible datatypes"); 
-	   return new Lexeme(TokenType.INT, 0, powerTerm.getLineNumber());
-	}
-	double result = Math.pow(unaryTerm.getFloatValue(), otherTerm.getFloatValue());
-	if (unaryTermType == Datatype.INT && otherTermType == Datatype.INT) {
-	    return new Lexeme(TokenType.INT, (int) result, powerTerm.getLineNumber());
+    private Lexeme evalPower(Lexeme operator, Lexeme left, Lexeme right) {
+	final Datatype leftType = left.getDatatype();
+	final Datatype rightType = right.getDatatype();
+	if (leftType == null || rightType == null
+		|| leftType == Datatype.STRING || rightType == Datatype.STRING) {
+	   Z.error(operator, "Incompatible datatypes"); 
+	   return Lexeme.integer(0, operator.getLineNumber());
+	}
+	double result = Math.pow(left.getFloatValue(), right.getFloatValue());
+	if (leftType == Datatype.INT && rightType == Datatype.INT) {
+	    return Lexeme.integer((int) result, operator.getLineNumber());
 	} else { 	// at least one is a FLOAT
-	    return new Lexeme(TokenType.FLOAT, (float) result, powerTerm.getLineNumber());
+	    return new Lexeme(TokenType.FLOAT, (float) result, operator.getLineNumber());
 	}
     }
 
-    private Lexeme evalUnaryTerm(Lexeme unaryTerm, Environments environment) {
-	final Lexeme left = unaryTerm.getLeft();
-	final Lexeme right = unaryTerm.getRight();
-	final TokenType leftType = left.getType();
-	if (leftType == TokenType.PLUS) {
-	    return evalSimpleTerm(right, environment);
+    // Prefix operators keep their operand on the right, postfix ++ and -- on the left
+    Lexeme evalUnaryOperator(Lexeme operator, Environments environment) {
+	final TokenType operatorType = operator.getType();
+	if (operatorType == TokenType.PLUS) {
+	    return evalExpression(operator.getRight(), environment);
+	} else if (operatorType == TokenType.MINUS) {
+	    return evalNegation(operator, evalExpression(operator.getRight(), environment));
+	} else if (operatorType == TokenType.NOT) {
+	    Lexeme operand = evalExpression(operator.getRight(), environment);
+	    return Lexeme.truth(!operand.getBooleanValue());
+	}
+
+	// INCREMENT or DECREMENT
+	final boolean prefix = operator.getLeft() == null;
+	Lexeme variable = prefix ? operator.getRight() : operator.getLeft();
+	if (variable.getType() != TokenType.IDENTIFIER && variable.getType() != TokenType.ARRAY_REFERENCE) {
+	    Z.error(variable, "Can't INCREMENT or DECREMENT non-variable");
+	    return Lexeme.integer(0, operator.getLineNumber());
 	}
+	if (variable.getType() == TokenType.ARRAY_REFERENCE) return evalElementIncrement(operator, variable, environment);
+	Lexeme value = environment.lookUp(variable);
 	Lexeme result = null;
-	if (leftType == TokenType.MINUS) {
-	    Lexeme simpleTerm = evalSimpleTerm(right, environment);
-	    switch (simpleTerm.getType()) {
-	    case INT: 
-		return new Lexeme (TokenType.INT, - simpleTerm.getIntValue(), unaryTerm.getLineNumber());
-	    case FLOAT: 
-		return new Lexeme (TokenType.FLOAT, - simpleTerm.getFloatValue(), unaryTerm.getLineNumber());
-	    case STRING:
-		Z.error(simpleTerm, "Invalid type.  Can't negate STRING");
-		return new Lexeme (TokenType.INT, 0, unaryTerm.getLineNumber());
-	    }
-	} else if (leftType == TokenType.NOT) {
-	    Lexeme simpleTerm = evalSimpleTerm(right, environment);
-	    return new Lexeme (simpleTerm.getBooleanValue() ? TokenType.FALSE : TokenType.TRUE, unaryTerm.getLineNumber());
-	} else if (leftType == TokenType.INCREMENT || leftType == TokenType.DECREMENT) {
-	    Lexeme variable = evalVariable(right, environment);
-	    Lexeme value = environment.lookUp(variable);
-	    switch (value.getType()) {
-	    case INT: 
-		result = new Lexeme (TokenType.INT, value.getIntValue() + (leftType == TokenType.INCREMENT ? 1 : -1), unaryTerm.getLineNumber());
-		break;
-	    case FLOAT: 
-		result = new Lexeme (TokenType.FLOAT, value.getFloatValue() + (leftType == TokenType.INCREMENT ? 1 : -1), unaryTerm.getLineNumber());
-		break;
-	    case STRING:
-		Z.error(variable, "Invalid type.  Can't increment or decrement STRING");
-		result = new Lexeme (TokenType.INT, 0, unaryTerm.getLineNumber());
-	    }
-	    environment.update(variable, result);
-	    return result;	
-	}
-	Lexeme simpleTerm = evalSimpleTerm(left, environment);
-	if (right == null) {
-	    return simpleTerm;		// no operator
-	} else if (right.getType() == TokenType.INCREMENT || right.getType() == TokenType.DECREMENT) {
-	    if (simpleTerm.getType() == TokenType.VARIABLE) {
-		Lexeme value = environment.lookUp(simpleTerm);
-		switch (value.getType()) {
-		case INT:
-		    result = new Lexeme(TokenType.INT, value.getIntValue() + (right.getType() == TokenType.INCREMENT ? 1 : -1), unaryTerm.getLineNumber());
-		    break;
-		case FLOAT:
-		    result = new Lexeme(TokenType.FLOAT, value.getFloatValue() + (right.getType() == TokenType.INCREMENT ? 1 : -1), unaryTerm.getLineNumber());
-		    break;
-		case STRING:
-		    Z.error(simpleTerm, "Invalid type.  Can't increment or decrement STRING");
-		    result = new Lexeme(TokenType.INT, 0, unaryTerm.getLineNumber());
-		}
-		environment.update(simpleTerm, result);
-		return value;				// value before increment or decrement
-	    } else {
-		Z.error(simpleTerm, "Can't INCREMENT or DECREMENT non-variable");
-	    }
+	switch (value.getType()) {
+	case INT: 
+	    result = Lexeme.integer(value.getIntValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), operator.getLineNumber());
+	    break;
+	case FLOAT: 
+	    result = new Lexeme (TokenType.FLOAT, value.getFloatValue() + (operatorType == TokenType.INCREMENT ? 1 : -1), operator.getLineNumber());
+	    break;
+	case STRING:
+	    Z.error(variable, "Invalid type.  Can't increment or decrement STRING");
+	    result = Lexeme.integer(0, operator.getLineNumber());
 	}
-	Z.error(unaryTerm, "Invalid syntax");
-	return new Lexeme(TokenType.INT, 0, simpleTerm.getLineNumber());
+	environment.update(variable, result);
+	return prefix ? result : value;		// postfix yields the value before increment or decrement
     }
 
-    private Lexeme evalSimpleTerm(Lexeme simpleTerm, Environments environment) {
-	final Lexeme left = simpleTerm.getLeft();
-	switch (left.getType()) {
-	case FUNCTION_CALL:
-	    return evalFunctionCall(left, environment);
-	case GROUPING:
-	    return evalGrouping(left, environment);
-	case LITERAL:
-	    return evalLiteral(left, environment);
-	case VARIABLE:
-	    return environment.lookUp(evalVariable(left, environment));
+    // ++a[index] and a[index]-- change the element in place
+    private Lexeme evalElementIncrement(Lexeme operator, Lexeme arrayReference, Environments environment) {
+	final int line = operator.getLineNumber();
+	final int step = operator.getType() == TokenType.INCREMENT ? 1 : -1;
+	ArrayValue array = evalArray(arrayReference.getLeft(), environment);
+	int index = evalInt(Resolver.indexExpression(arrayReference), environment, 0);
+	if (array == null || !array.inBounds(index, arrayReference.getLineNumber())) return Lexeme.integer(0, line);
+	Lexeme value = array.get(index, line);
+	switch (array.elementType()) {
+	case INT:
+	    array.setInt(index, array.getInt(index, line) + step);
+	    break;
+	case FLOAT:
+	    array.setFloat(index, array.getFloat(index, line) + step);
+	    break;
+	case STRING:
+	    Z.error(arrayReference, "Invalid type.  Can't increment or decrement STRING");
+	    return Lexeme.integer(0, line);
+	}
+	return operator.getLeft() == null ? array.get(index, line) : value;	// postfix yields the element before
+    }
+
+    // Also used by VirtualMachine for a minus TypeChecker couldn't specialize
+    Lexeme evalNegation(Lexeme operator, Lexeme operand) {
+	if (operator.getOperation() == Operation.INT_NEGATE) {
+	    return Lexeme.integer(- operand.getIntValue(), operator.getLineNumber());
+	} else if (operator.getOperation() == Operation.FLOAT_NEGATE) {
+	    return new Lexeme(TokenType.FLOAT, - operand.getFloatValue(), operator.getLineNumber());
+	}
+	switch (operand.getType()) {
+	case INT: 
+	    return Lexeme.integer(- operand.getIntValue(), operator.getLineNumber());
+	case FLOAT: 
+	    return new Lexeme (TokenType.FLOAT, - operand.getFloatValue(), operator.getLineNumber());
+	case STRING:
+	    Z.error(operator, "Invalid type.  Can't negate STRING");
+	    return Lexeme.integer(0, operator.getLineNumber());
 	default:
-	    Z.error(simpleTerm, "Unrecognized value");
-	    return new Lexeme(TokenType.INT, 0, simpleTerm.getLineNumber());
+	    Z.error(operator, "Invalid syntax");
+	    return Lexeme.integer(0, operator.getLineNumber());
 	}
     }
 
     private Lexeme evalFunctionCall(Lexeme functionCall, Environments parentEnvironment) {
-	Environments environment = new Environments(parentEnvironment);
-	Lexeme functionBody = environment.lookUp(functionCall.getLeft().getLeft());
+	Lexeme functionBody = parentEnvironment.lookUp(functionCall.getLeft().getLeft());
 	
 	Lexeme argumentList = functionCall.getRight().getLeft();
 	Lexeme parameterList = functionBody.getLeft();
 	
 	Lexeme returnType = functionBody.getRight().getLeft();
+	Lexeme statementList = functionBody.getRight().getRight();
+	if (statementList.getUnparsedBody() != null) {		// lazily parsed: parse the body once, on the first call
+	    functionBody.getRight().setRight(Parser.functionBody(statementList.getUnparsedBody()));
+	}
+	if (functionBody.getFrameLayout() == null && !Z.hadSyntaxError) {
+	    Optimizer.optimizeFunction(functionBody);
+	    Resolver.resolveFunction(functionBody);
+	    TypeChecker.checkFunction(functionBody);
+	    LoopOptimizer.optimizeFunction(functionBody);
+	}
+	if (tiers != null && tiers.hot(functionBody, functionCall)) return tiers.call(functionCall, parentEnvironment);
+	Environments environment = new Environments(parentEnvironment, functionBody.getFrameLayout());
+	JvmFunction compiled = compiled(functionBody, functionCall.getLeft().getLeft());
+	Object[] arguments = compiled != null ? new Object[compiled.parameterCount()] : null;
+	int count = 0;
 	
-	// really should evaluate all arguments before adding parameters to the environment
+	// arguments are evaluated in the caller's frame, where Resolver resolved them
 	while (argumentList != null && parameterList != null) {
-	    Lexeme arg = evalExpression(argumentList.getRight().getLeft(), environment);
+	    Lexeme arg = evalExpression(argumentList.getRight().getLeft(), parentEnvironment);
 	    Lexeme param = parameterList.getLeft().getLeft();
-	    environment.insert(param, arg);
+	    Lexeme paramType = parameterList.getLeft().getRight().getRight();
+	    Lexeme value = convertToDatatype(arg, paramType, param, functionCall.getLineNumber());
+	    environment.insert(param, value);
+	    if (arguments != null && !compiled.argument(arguments, count++, value)) arguments = null;
 	    argumentList = argumentList.getRight().getRight();
 	    if (argumentList != null) argumentList = argumentList.getRight();
 	    parameterList = parameterList.getRight();
@@ -637,6 +1334,9 @@ public class Evaluator {
 	}
 	if (argumentList != null) Z.error(argumentList, "Too many arguments");
 	if (parameterList != null) Z.error(functionCall, "Not enough arguments");
+	if (arguments != null && count == arguments.length && argumentList == null && parameterList == null) {
+	    return compiled.invoke(arguments, functionCall.getLineNumber());
+	}
 
 	Lexeme result = evalStatementList(functionBody.getRight().getRight(), environment);
 	if (returnType == null || returnType.getType() == TokenType.VOID) {
@@ -644,36 +1344,27 @@ public class Evaluator {
 	} else {
 	    switch (returnType.getType()) {
 	    case KW_STRING:
-		return new Lexeme(TokenType.STRING, result.getStringValue(), functionCall.getLineNumber());
+		return Lexeme.string(result, functionCall.getLineNumber());
 	    case KW_FLOAT:
-		return new Lexeme(TokenType.FLOAT, result.getFloatValue(), functionCall.getLineNumber());
+		return new Lexeme(TokenType.FLOAT, result.getFloatValue(functionCall.getLineNumber()), functionCall.getLineNumber());
 	    case KW_INT:
-		return new Lexeme(TokenType.INT, result.getIntValue(), functionCall.getLineNumber());
+		return Lexeme.integer(result.getIntValue(functionCall.getLineNumber()), functionCall.getLineNumber());
+	    case ARRAY_TYPE:
+		return convertToArray(result, returnType);
 	    }
 	}
 	return null;
     }
 
-    private Lexeme evalGrouping(Lexeme grouping, Environments environment) {
-	return evalExpression(grouping.getRight().getLeft(), environment);
-    }
-
-    private Lexeme evalLiteral(Lexeme literal, Environments environment) {
-	Lexeme left = literal.getLeft();
-	if (left.getType() == TokenType.BOOLEAN_LITERAL) {
-	    return evalBooleanLiteral(left, environment);
-	} else {
-	    return left;	// NUMBER or STRING
+    // The body compiled on its first call, or null if JvmCompiler can't run it as called by name
+    private JvmFunction compiled(Lexeme functionBody, Lexeme name) {
+	if (compiledFunctions == null || Z.hadSyntaxError || functionBody.getFrameLayout() == null) return null;
+	JvmFunction compiled = compiledFunctions.get(functionBody);
+	if (compiled == null && !compiledFunctions.containsKey(functionBody)) {
+	    compiled = JvmCompiler.compile(functionBody, name.getSymbol());
+	    compiledFunctions.put(functionBody, compiled);
 	}
-    }
-
-    private Lexeme evalBooleanLiteral(Lexeme booleanLiteral, Environments environment) {
-	return booleanLiteral.getLeft();
-    }
-
-    private Lexeme evalVariable(Lexeme variable, Environments environment) {
-	return variable.getLeft();
-	//TODO: arraryReference
+	return compiled != null && compiled.answersTo(name.getSymbol()) ? compiled : null;
     }
     
 }
@@ -0,0 +1,85 @@
+package com.corbin;
+
+import java.util.Arrays;
+
+// The names of a frame's slots, with an open-addressing index from symbol id to slot so a
+// name is found in O(1) however wide the frame is.  The Resolver builds one layout per scope and
+// every frame created for that scope shares it; a frame copies it before adding a name the
+// Resolver didn't see.
+public class FrameLayout {
+    private static final int MIN_TABLE = 8;     // must be a power of two
+
+    // Instance Variables
+    private int[] symbols;
+    private int[] table;        // slot + 1 for a symbol, or 0 if empty; never more than half full
+    private int size = 0;
+
+    // -------------- Constructors --------------
+
+    public FrameLayout() {
+        symbols = new int[4];
+        table = new int[MIN_TABLE];
+    }
+
+    private FrameLayout(FrameLayout other) {
+        symbols = Arrays.copyOf(other.symbols, Math.max(other.size * 2, 4));
+        table = other.table.clone();
+        size = other.size;
+    }
+
+    public FrameLayout copy() {
+        return new FrameLayout(this);
+    }
+
+    // -------------- Public Methods --------------
+
+    public int size() {
+        return size;
+    }
+
+    public int symbol(int slot) {
+        return symbols[slot];
+    }
+
+    // Slot of symbol, or -1
+    public int slotOf(int symbol) {
+        int mask = table.length - 1;
+        for (int i = hash(symbol) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i] - 1;
+            if (slot < 0) return -1;
+            if (symbols[slot] == symbol) return slot;
+        }
+    }
+
+    // Slot of symbol, adding one if it has none
+    public int add(int symbol) {
+        int slot = slotOf(symbol);
+        if (slot >= 0) return slot;
+        if (size == symbols.length) symbols = Arrays.copyOf(symbols, size * 2);
+        slot = size++;
+        symbols[slot] = symbol;
+        if (size * 2 > table.length) rehash(table.length * 2);
+        else place(slot);
+        return slot;
+    }
+
+    // -------------- Helper Methods --------------
+
+    private void place(int slot) {
+        int mask = table.length - 1;
+        int i = hash(symbols[slot]) & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = slot + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int slot = 0; slot < size; slot++) place(slot);
+    }
+
+    // Symbol ids are dense, so spread them over the table
+    private static int hash(int symbol) {
+        int h = symbol * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,483 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Writes a class file holding one static method, as much of the format as JvmCompiler needs: a
+// constant pool, code with forward and backward jumps, and the StackMapTable the verifier wants
+// at every jump target.  Locals are typed I, F or L (a String) and are all set before the code
+// that uses them, and nothing is left on the operand stack across a jump, so every target but
+// the one the method starts by jumping to has the same frame: all the locals, empty stack.
+// Code after a goto, return or athrow that no label starts can't run and is dropped.
+final class JvmAssembler {
+    static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, FCONST_0 = 0x0b, FCONST_1 = 0x0c;
+    static final int BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13;
+    static final int ILOAD = 0x15, FLOAD = 0x17, ALOAD = 0x19, ISTORE = 0x36, FSTORE = 0x38, ASTORE = 0x3a;
+    static final int POP = 0x57, DUP = 0x59, SWAP = 0x5f;
+    static final int IADD = 0x60, FADD = 0x62, ISUB = 0x64, FSUB = 0x66, IMUL = 0x68, FMUL = 0x6a;
+    static final int IDIV = 0x6c, FDIV = 0x6e, IREM = 0x70, FREM = 0x72, INEG = 0x74, FNEG = 0x76;
+    static final int IINC = 0x84, I2F = 0x86, I2D = 0x87, F2I = 0x8b, F2D = 0x8d, D2I = 0x8e, D2F = 0x90;
+    static final int FCMPL = 0x95, FCMPG = 0x96;
+    static final int IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e;
+    static final int IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPLT = 0xa1, IF_ICMPGE = 0xa2, IF_ICMPGT = 0xa3, IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac, FRETURN = 0xae, ARETURN = 0xb0, RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2, INVOKEVIRTUAL = 0xb6, INVOKESTATIC = 0xb8, ATHROW = 0xbf, WIDE = 0xc4;
+
+    private static final int MAX_CODE = 65535;
+    private static final String STRING = "java/lang/String";
+
+    static final class Label {
+        private int position = -1;
+        private boolean listed = false;
+        private final ArrayList<Integer> jumps = new ArrayList<>();    // where each jump to it starts
+    }
+
+    // Constant pool
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> constants = new HashMap<>();
+    private int poolSize = 1;
+
+    // Code
+    private byte[] code = new byte[256];
+    private int size = 0;
+    private int stack = 0;
+    private int maxStack = 0;
+    private boolean reachable = true;
+    private final ArrayList<Label> labels = new ArrayList<>();
+    private final StringBuilder locals = new StringBuilder();
+    private int parameters = -1;
+    private final ArrayList<Integer> framePositions = new ArrayList<>();
+    private final ArrayList<Boolean> frameEntry = new ArrayList<>();    // the parameters only
+
+    // -------------- Locals --------------
+
+    // Parameters come first; the first local that isn't one ends them
+    int parameter(char type) {
+        if (parameters >= 0) throw new IllegalStateException("Parameters follow locals");
+        locals.append(type);
+        return locals.length() - 1;
+    }
+
+    int local(char type) {
+        if (parameters < 0) parameters = locals.length();
+        locals.append(type);
+        if (locals.length() > 65535) throw new JvmCompiler.Unsupported("too many locals");
+        return locals.length() - 1;
+    }
+
+    int parameterCount() {
+        return parameters >= 0 ? parameters : locals.length();
+    }
+
+    int localCount() {
+        return locals.length();
+    }
+
+    char localType(int local) {
+        return locals.charAt(local);
+    }
+
+    // -------------- Instructions --------------
+
+    boolean reachable() {
+        return reachable;
+    }
+
+    void op(int opcode) {
+        if (!reachable) return;
+        byte1(opcode);
+        adjust(delta(opcode));
+        if (opcode == ATHROW || opcode >= IRETURN && opcode <= RETURN) end();
+    }
+
+    void push(int value) {
+        if (!reachable) return;
+        if (value >= -1 && value <= 5) {
+            byte1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            byte1(BIPUSH);
+            byte1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            byte1(SIPUSH);
+            byte2(value);
+        } else {
+            ldc(constant("I" + value, 3, value));
+        }
+        adjust(1);
+    }
+
+    void push(float value) {
+        if (!reachable) return;
+        if (Float.floatToRawIntBits(value) == 0) byte1(FCONST_0);
+        else if (value == 1.0f) byte1(FCONST_1);
+        else ldc(constant("F" + Float.floatToRawIntBits(value), 4, Float.floatToRawIntBits(value)));
+        adjust(1);
+    }
+
+    void push(String value) {
+        if (!reachable) return;
+        ldc(stringConstant(value));
+        adjust(1);
+    }
+
+    void load(int local) {
+        variable(localType(local) == 'I' ? ILOAD : localType(local) == 'F' ? FLOAD : ALOAD, local);
+        if (reachable) adjust(1);
+    }
+
+    void store(int local) {
+        variable(localType(local) == 'I' ? ISTORE : localType(local) == 'F' ? FSTORE : ASTORE, local);
+        if (reachable) adjust(-1);
+    }
+
+    void iinc(int local, int delta) {
+        if (!reachable) return;
+        if (local <= 255 && delta >= Byte.MIN_VALUE && delta <= Byte.MAX_VALUE) {
+            byte1(IINC);
+            byte1(local);
+            byte1(delta);
+        } else {
+            byte1(WIDE);
+            byte1(IINC);
+            byte2(local);
+            byte2(delta);
+        }
+    }
+
+    void jump(int opcode, Label target) {
+        if (!reachable) return;
+        target.jumps.add(size);
+        list(target);
+        byte1(opcode);
+        byte2(0);
+        adjust(opcode == GOTO ? 0 : opcode >= IF_ICMPEQ ? -2 : -1);
+        if (opcode == GOTO) end();
+    }
+
+    // Every jump target gets a frame; entry marks the one reached before the locals are set
+    void bind(Label label) {
+        bind(label, false);
+    }
+
+    void bindEntry(Label label) {
+        bind(label, true);
+    }
+
+    private void bind(Label label, boolean entry) {
+        if (label.position >= 0) throw new IllegalStateException("Label bound twice");
+        if (reachable && stack != 0) throw new IllegalStateException("Jump target with operands on the stack");
+        if (size == 0) byte1(0x00);     // nop: the method's first instruction can't take a frame of its own
+        label.position = size;
+        list(label);
+        int last = framePositions.size() - 1;
+        if (last >= 0 && framePositions.get(last) == size) {
+            if (frameEntry.get(last) != entry) throw new IllegalStateException("Two frames at " + size);
+        } else {
+            framePositions.add(size);
+            frameEntry.add(entry);
+        }
+        reachable = true;
+        stack = 0;
+    }
+
+    void getStatic(String owner, String name, String descriptor) {
+        if (!reachable) return;
+        byte1(GETSTATIC);
+        byte2(member(9, owner, name, descriptor));
+        adjust(1);
+    }
+
+    void invokeStatic(String owner, String name, String descriptor) {
+        invoke(INVOKESTATIC, owner, name, descriptor, 0);
+    }
+
+    void invokeVirtual(String owner, String name, String descriptor) {
+        invoke(INVOKEVIRTUAL, owner, name, descriptor, 1);
+    }
+
+    private void invoke(int opcode, String owner, String name, String descriptor, int receiver) {
+        if (!reachable) return;
+        byte1(opcode);
+        byte2(member(10, owner, name, descriptor));
+        int close = descriptor.indexOf(')');
+        adjust(-receiver - slots(descriptor.substring(1, close)) + slots(descriptor.substring(close + 1)));
+    }
+
+    // -------------- Class File --------------
+
+    // The class file for a class name holding the code as a static method
+    byte[] toClassFile(String className, String methodName, String descriptor) {
+        for (Label label : labels) {
+            if (label.position < 0) throw new IllegalStateException("Label never bound");
+            for (int jump : label.jumps) {
+                int offset = label.position - jump;
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) throw new JvmCompiler.Unsupported("method too large");
+                code[jump + 1] = (byte) (offset >> 8);
+                code[jump + 2] = (byte) offset;
+            }
+        }
+        if (size > MAX_CODE) throw new JvmCompiler.Unsupported("method too large");
+
+        int thisClass = classConstant(className);
+        int superClass = classConstant("java/lang/Object");
+        int methodNameIndex = utf8(methodName);
+        int descriptorIndex = utf8(descriptor);
+        int codeName = utf8("Code");
+        byte[] frames = stackMapTable();
+        int framesName = frames != null ? utf8("StackMapTable") : 0;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(size + poolBytes.size() + 256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);                 // Java 8 class files, which need stack map frames
+            out.writeShort(poolSize);
+            poolBytes.writeTo(out);
+            out.writeShort(0x0030);             // ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);                  // interfaces
+            out.writeShort(0);                  // fields
+            out.writeShort(1);                  // methods
+            out.writeShort(0x0008);             // ACC_STATIC
+            out.writeShort(methodNameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);                  // attributes: Code
+            out.writeShort(codeName);
+            out.writeInt(12 + size + (frames != null ? 6 + frames.length : 0));
+            out.writeShort(maxStack);
+            out.writeShort(localCount());
+            out.writeInt(size);
+            out.write(code, 0, size);
+            out.writeShort(0);                  // exception table
+            out.writeShort(frames != null ? 1 : 0);
+            if (frames != null) {
+                out.writeShort(framesName);
+                out.writeInt(frames.length);
+                out.write(frames);
+            }
+            out.writeShort(0);                  // class attributes
+            return bytes.toByteArray();
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    // One full_frame per target
+    private byte[] stackMapTable() {
+        if (framePositions.isEmpty()) return null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(framePositions.size());
+            int previous = -1;
+            for (int i = 0; i < framePositions.size(); i++) {
+                int position = framePositions.get(i);
+                int count = frameEntry.get(i) ? parameterCount() : localCount();
+                out.writeByte(255);
+                out.writeShort(position - previous - 1);
+                out.writeShort(count);
+                for (int local = 0; local < count; local++) {
+                    char type = localType(local);
+                    if (type == 'I') {
+                        out.writeByte(1);
+                    } else if (type == 'F') {
+                        out.writeByte(2);
+                    } else {
+                        out.writeByte(7);
+                        out.writeShort(classConstant(STRING));
+                    }
+                }
+                out.writeShort(0);              // empty stack
+                previous = position;
+            }
+            return bytes.toByteArray();
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    // -------------- Constant Pool --------------
+
+    private int utf8(String value) {
+        Integer index = constants.get("U" + value);
+        if (index != null) return index;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new DataOutputStream(bytes).writeUTF(value);
+            pool.writeByte(1);
+            bytes.writeTo(pool);
+        } catch (IOException exception) {           // longer than 65535 bytes
+            throw new JvmCompiler.Unsupported("string constant too long");
+        }
+        return add("U" + value, 1);
+    }
+
+    private int classConstant(String internalName) {
+        Integer index = constants.get("C" + internalName);
+        if (index != null) return index;
+        int name = utf8(internalName);
+        writeEntry(7, name, -1);
+        return add("C" + internalName, 1);
+    }
+
+    private int stringConstant(String value) {
+        Integer index = constants.get("S" + value);
+        if (index != null) return index;
+        int utf8 = utf8(value);
+        writeEntry(8, utf8, -1);
+        return add("S" + value, 1);
+    }
+
+    // An Integer (tag 3) or Float (tag 4) constant
+    private int constant(String key, int tag, int bits) {
+        Integer index = constants.get(key);
+        if (index != null) return index;
+        try {
+            pool.writeByte(tag);
+            pool.writeInt(bits);
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return add(key, 1);
+    }
+
+    // A Fieldref (tag 9) or Methodref (tag 10)
+    private int member(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = constants.get(key);
+        if (index != null) return index;
+        int ownerIndex = classConstant(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        Integer nameAndType = constants.get("N" + name + descriptor);
+        if (nameAndType == null) {
+            writeEntry(12, nameIndex, descriptorIndex);
+            nameAndType = add("N" + name + descriptor, 1);
+        }
+        writeEntry(tag, ownerIndex, nameAndType);
+        return add(key, 1);
+    }
+
+    private void writeEntry(int tag, int first, int second) {
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(first);
+            if (second >= 0) pool.writeShort(second);
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private int add(String key, int entries) {
+        int index = poolSize;
+        poolSize += entries;
+        if (poolSize > 65535) throw new JvmCompiler.Unsupported("constant pool too large");
+        constants.put(key, index);
+        return index;
+    }
+
+    // -------------- Helper Methods --------------
+
+    private void ldc(int index) {
+        if (index <= 255) {
+            byte1(LDC);
+            byte1(index);
+        } else {
+            byte1(LDC_W);
+            byte2(index);
+        }
+    }
+
+    private void list(Label label) {
+        if (!label.listed) labels.add(label);
+        label.listed = true;
+    }
+
+    private void variable(int opcode, int local) {
+        if (!reachable) return;
+        if (local <= 255) {
+            byte1(opcode);
+            byte1(local);
+        } else {
+            byte1(WIDE);
+            byte1(opcode);
+            byte2(local);
+        }
+    }
+
+    // After a goto, return or athrow nothing runs until a label
+    private void end() {
+        reachable = false;
+        stack = 0;
+    }
+
+    private void adjust(int delta) {
+        stack += delta;
+        if (stack > maxStack) maxStack = stack;
+    }
+
+    private static int delta(int opcode) {
+        switch (opcode) {
+            case ACONST_NULL:
+            case FCONST_0:
+            case FCONST_1:
+            case DUP:
+            case I2D:           // a double is two stack slots
+            case F2D:
+                return 1;
+            case POP:
+            case IADD:
+            case FADD:
+            case ISUB:
+            case FSUB:
+            case IMUL:
+            case FMUL:
+            case IDIV:
+            case FDIV:
+            case IREM:
+            case FREM:
+            case FCMPL:
+            case FCMPG:
+            case IRETURN:
+            case FRETURN:
+            case ARETURN:
+            case ATHROW:
+            case D2I:
+            case D2F:
+                return -1;
+            default:            // SWAP, INEG, FNEG, I2F, F2I, RETURN
+                return 0;
+        }
+    }
+
+    // Stack slots the types in a descriptor take
+    private static int slots(String types) {
+        int slots = 0;
+        for (int i = 0; i < types.length(); i++) {
+            char type = types.charAt(i);
+            if (type == 'V') continue;
+            slots += type == 'D' || type == 'J' ? 2 : 1;
+            if (type == 'L') i = types.indexOf(';', i);
+            else if (type == '[') throw new IllegalArgumentException("No array types");
+        }
+        return slots;
+    }
+
+    private void byte1(int value) {
+        if (size == code.length) code = Arrays.copyOf(code, code.length * 2);
+        code[size++] = (byte) value;
+    }
+
+    private void byte2(int value) {
+        byte1(value >> 8);
+        byte1(value);
+    }
+}
@@ -0,0 +1,107 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+// The Evaluator walking a function body against the same body compiled by JvmCompiler, on the
+// kind of loops finalTest.z has: a for-in, a while counting with ++j, if / else if with and and
+// or, and INT and FLOAT arithmetic mixed.  The program calls the function once per round, so
+// each run times rounds calls, and later runs show the steady state once HotSpot has compiled
+// both.  Both engines must print the same output.
+// Usage: java com.corbin.JvmBenchmark [size] [rounds] [runs]
+public class JvmBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        String source = "func work(n: int) -> float {\n"
+                + "    var total = 0\n"
+                + "    var mixed = 0.0\n"
+                + "    for i in 0...n {\n"
+                + "        var j = 0\n"
+                + "        while (++j <= 20) {\n"
+                + "            if i < j or i % 7 == 3 {\n"
+                + "                total = total + i * j % 11\n"
+                + "            } else if i % 5 == 2 and j > 10 {\n"
+                + "                mixed = mixed + j / 4.0\n"
+                + "            } else {\n"
+                + "                total = total - j\n"
+                + "            }\n"
+                + "        }\n"
+                + "        mixed = mixed + i * 0.5\n"
+                + "    }\n"
+                + "    return mixed + total\n"
+                + "}\n"
+                + "var sum = 0.0\n"
+                + "for (r = 0; r < " + rounds + "; r++) {\n"
+                + "    sum = sum + work(" + size + ")\n"
+                + "}\n"
+                + "output sum\n";
+
+        System.out.println("work(" + size + ") x " + rounds + " rounds, compiled: " + (compiles(source) ? "yes" : "no"));
+        for (int run = 1; run <= runs; run++) {
+            compare(run, source);
+        }
+    }
+
+    private static void compare(int run, String source) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream treeOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream jvmOutput = new ByteArrayOutputStream();
+        long tree, jvm;
+        try {
+            Lexeme program = prepare(source);
+            System.setOut(new PrintStream(treeOutput));
+            long start = System.nanoTime();
+            new Evaluator().eval(program, new Environments(null));
+            tree = System.nanoTime() - start;
+
+            program = prepare(source);
+            System.setOut(new PrintStream(jvmOutput));
+            start = System.nanoTime();
+            Evaluator evaluator = new Evaluator();
+            evaluator.setCompiling(true);
+            evaluator.eval(program, new Environments(null));
+            jvm = System.nanoTime() - start;
+        } finally {
+            System.setOut(console);
+        }
+
+        if (!treeOutput.toString().equals(jvmOutput.toString())) {
+            throw new IllegalStateException("The engines disagree:\n" + treeOutput + "---\n" + jvmOutput);
+        }
+        System.out.printf("run %-3d Evaluator %8.1f ms   JVM %8.1f ms   (%.1fx)%n",
+                run, tree / 1e6, jvm / 1e6, (double) tree / jvm);
+    }
+
+    // Whether JvmCompiler takes the function, once a call has prepared its body
+    private static boolean compiles(String source) {
+        Lexeme program = prepare(source);
+        PrintStream console = System.out;
+        try {
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            new Evaluator().eval(program, new Environments(null));
+        } finally {
+            System.setOut(console);
+        }
+        for (Lexeme statement : program.getLeft().getStatements()) {
+            if (statement.getType() == TokenType.FUNCTION_DEFINITION) {
+                return JvmCompiler.compile(statement.getRight(), statement.getLeft().getSymbol()) != null;
+            }
+        }
+        return false;
+    }
+
+    private static Lexeme prepare(String source) {
+        Lexeme program = new Parser(new Lexer(new StringReader(source))).program();
+        Optimizer.optimize(program, false);
+        if (!Resolver.resolve(program) || !TypeChecker.check(program)) {
+            throw new IllegalStateException("The benchmark program has errors");
+        }
+        LoopOptimizer.optimize(program);
+        return program;
+    }
+}
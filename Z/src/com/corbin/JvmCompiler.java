@@ -0,0 +1,873 @@
+package com.corbin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.corbin.JvmAssembler.Label;
+import com.corbin.Lexeme.Datatype;
+
+import static com.corbin.JvmAssembler.*;
+import static com.corbin.TokenType.*;
+
+// Compiles a function body, or the program, once the Resolver, TypeChecker and LoopOptimizer
+// have run on it, to one static method of a class of its own that JvmFunction loads.  Each
+// variable becomes a JVM local of the type it is declared with, int, float or String, so the
+// arithmetic runs on primitives, and a call the function makes to itself is an invokestatic.
+//
+// Z scopes dynamically, so a name the Resolver left free, or one read before its declaration
+// has run, could be any caller's variable, and a call to another function could read or change
+// this one's.  A body with any of those is left to the Evaluator, as is one using what the
+// locals can't hold (booleans, nothing, arrays, constants) or anything the Evaluator would
+// report an error for.  What is compiled does what the Evaluator does, statement by statement:
+// a return ends only the statement list it is in, and the body's value is the value of the
+// last statement it ran, converted to the return type.
+public class JvmCompiler {
+    static final String CLASS_NAME = "com/corbin/JvmCode";
+    static final String METHOD_NAME = "run";
+    private static final String FUNCTION = "com/corbin/JvmFunction";
+    private static final String LEXEME = "Lcom/corbin/Lexeme;";
+    private static final String STRING = "java/lang/String";
+
+    // Thrown for anything compile leaves to the Evaluator
+    static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    // What an expression leaves on the operand stack; only comparisons, literals and the logical
+    // operators give BOOLEAN, and only conditions take it
+    private enum Type {
+        INT("I", Datatype.INT), FLOAT("F", Datatype.FLOAT), STRING("Ljava/lang/String;", Datatype.STRING),
+        BOOLEAN(null, null), VOID("V", null);
+
+        final String descriptor;
+        final Datatype datatype;
+
+        Type(String descriptor, Datatype datatype) {
+            this.descriptor = descriptor;
+            this.datatype = datatype;
+        }
+
+        char local() {
+            return this == STRING ? 'L' : descriptor.charAt(0);
+        }
+    }
+
+    // The slots of a frame the Evaluator would make, and the locals holding them
+    private static final class Scope {
+        final FrameLayout layout;
+        final int[] locals;
+        final Type[] types;
+        final boolean[] declared;       // its declaration has run, on every path to here
+
+        Scope(FrameLayout layout) {
+            this.layout = layout;
+            int size = layout != null ? layout.size() : 0;
+            locals = new int[size];
+            Arrays.fill(locals, -1);
+            types = new Type[size];
+            declared = new boolean[size];
+        }
+    }
+
+    private final Lexeme owner;
+    private final boolean program;
+    private final int selfSymbol;
+    private final JvmAssembler code = new JvmAssembler();
+    private final ArrayList<Scope> scopes = new ArrayList<>();
+    private Type[] parameterTypes = new Type[0];
+    private Type returnType = Type.VOID;
+    private String descriptor;
+    private boolean callsItself = false;
+
+    private JvmCompiler(Lexeme owner, int selfSymbol) {
+        this.owner = owner;
+        this.program = owner.getType() == PROGRAM;
+        this.selfSymbol = selfSymbol;
+    }
+
+    // -------------- Public Methods --------------
+
+    // A PROGRAM, or a FUNCTION_BODY called by the name selfSymbol, or null if the Evaluator
+    // must run it
+    public static JvmFunction compile(Lexeme owner, int selfSymbol) {
+        if (owner == null || owner.getFrameLayout() == null) return null;
+        try {
+            return new JvmCompiler(owner, selfSymbol).compile();
+        } catch (Unsupported unsupported) {
+            return null;
+        }
+    }
+
+    // -------------- Functions --------------
+
+    private JvmFunction compile() {
+        Lexeme statementList = program ? owner.getLeft() : owner.getRight().getRight();
+        if (statementList != null && statementList.getUnparsedBody() != null) throw new Unsupported("body not parsed");
+        Scope scope = enter(owner);
+        if (!program) {
+            returnType = returnType(owner.getRight().getLeft());
+            ArrayList<Type> parameters = new ArrayList<>();
+            for (Lexeme parameterList = owner.getLeft(); parameterList != null; ) {
+                Lexeme parameter = parameterList.getLeft().getLeft();
+                Type type = dataType(parameterList.getLeft().getRight().getRight());
+                if (holds(scope, parameter) && scope.locals[parameter.getSlot()] >= 0) throw new Unsupported("parameter named twice");
+                declare(parameter, type, true);
+                parameters.add(type);
+                parameterList = parameterList.getRight();
+                if (parameterList != null) parameterList = parameterList.getRight();
+            }
+            parameterTypes = parameters.toArray(new Type[0]);
+        }
+        StringBuilder types = new StringBuilder("(");
+        for (Type type : parameterTypes) types.append(type.descriptor);
+        descriptor = types.append(')').append(program ? LEXEME : returnType.descriptor).toString();
+
+        // The locals are zeroed at the end, where the verifier sees them all, and the body starts
+        // with every one of them set
+        Label start = new Label();
+        Label init = new Label();
+        code.jump(GOTO, init);
+        code.bind(start);
+        boolean result = program || returnType != Type.VOID;
+        statements(statementList, result);
+        if (!result) code.op(JvmAssembler.RETURN);
+        if (code.reachable()) throw new IllegalStateException("Body of " + owner + " runs off its end");
+        code.bindEntry(init);
+        for (int local = code.parameterCount(); local < code.localCount(); local++) {
+            char type = code.localType(local);
+            if (type == 'I') code.push(0);
+            else if (type == 'F') code.push(0.0f);
+            else code.op(ACONST_NULL);
+            code.store(local);
+        }
+        code.jump(GOTO, start);
+        exit();
+
+        Datatype[] datatypes = new Datatype[parameterTypes.length];
+        for (int i = 0; i < datatypes.length; i++) datatypes[i] = parameterTypes[i].datatype;
+        return new JvmFunction(owner, callsItself ? selfSymbol : -1, datatypes, returnType.datatype,
+                code.toClassFile(CLASS_NAME, METHOD_NAME, descriptor), descriptor);
+    }
+
+    private static Type returnType(Lexeme returnType) {
+        return returnType == null || returnType.getType() == VOID ? Type.VOID : dataType(returnType);
+    }
+
+    private static Type dataType(Lexeme dataType) {
+        switch (dataType != null ? dataType.getType() : VOID) {
+            case KW_INT:
+                return Type.INT;
+            case KW_FLOAT:
+                return Type.FLOAT;
+            case KW_STRING:
+                return Type.STRING;
+            default:
+                throw new Unsupported("no JVM type for " + dataType);
+        }
+    }
+
+    // -------------- Scopes --------------
+
+    private Scope enter(Lexeme owner) {
+        Scope scope = new Scope(owner.getFrameLayout());
+        scopes.add(scope);
+        return scope;
+    }
+
+    private void exit() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private static boolean holds(Scope scope, Lexeme identifier) {
+        int slot = identifier.getSlot();
+        return identifier.getType() == IDENTIFIER && slot >= 0 && slot < scope.locals.length
+                && scope.layout.symbol(slot) == identifier.getSymbol();
+    }
+
+    // A declaration goes into the innermost frame, as Environments.insert puts it
+    private int declare(Lexeme identifier, Type type, boolean parameter) {
+        Scope scope = scopes.get(scopes.size() - 1);
+        if (!holds(scope, identifier)) throw new Unsupported("a declaration the Resolver didn't lay out");
+        int slot = identifier.getSlot();
+        if (scope.locals[slot] < 0) {
+            scope.locals[slot] = parameter ? code.parameter(type.local()) : code.local(type.local());
+            scope.types[slot] = type;
+        } else if (scope.types[slot] != type) {
+            throw new Unsupported("a name declared again with another type");
+        }
+        scope.declared[slot] = true;
+        return scope.locals[slot];
+    }
+
+    // The scope of a variable whose declaration has certainly run, so no caller's frame is searched
+    private Scope declared(Lexeme identifier) {
+        int index = scopes.size() - 1 - identifier.getDepth();
+        if (index < 0 || !holds(scopes.get(index), identifier)) throw new Unsupported("free name " + identifier);
+        Scope scope = scopes.get(index);
+        if (!scope.declared[identifier.getSlot()]) throw new Unsupported("name used before its declaration");
+        return scope;
+    }
+
+    // -------------- Statements --------------
+
+    // With result, the list's value is the method's, and its code ends by returning it
+    private void statements(Lexeme statementList, boolean result) {
+        Lexeme[] statements = statementList != null ? statementList.getStatements() : null;
+        if (statements == null || statements.length == 0) {
+            if (result) returnNull();
+            return;
+        }
+        int last = statements.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (statements[i].getType() == TokenType.RETURN) last = i;        // exit the statement list
+        }
+        for (int i = 0; i <= last; i++) statement(statements[i], result && i == last);
+    }
+
+    private void statement(Lexeme statement, boolean result) {
+        Type type;
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                type = assignment(statement, result);
+                break;
+            case IF_ELSE_STATEMENTS:
+                ifElseStatements(statement, result);
+                return;
+            case FUNCTION_CALL:
+                type = call(statement);
+                break;
+            case FUNCTION_DEFINITION:
+                throw new Unsupported("function definition");
+            case INCREMENT_EXPRESSION: {
+                boolean prefix = statement.getLeft().getType() != IDENTIFIER;
+                type = increment(prefix ? statement.getRight() : statement.getLeft(),
+                        (prefix ? statement.getLeft() : statement.getRight()).getType(), prefix, result);
+                break;
+            }
+            case INITIALIZATION:
+                type = initialization(statement, result);
+                break;
+            case LOOP:
+                loop(statement);
+                type = Type.VOID;
+                break;
+            case OUTPUT_STATEMENT:
+                type = output(statement, result);
+                break;
+            case RETURN:
+                type = value(statement.getLeft());
+                break;
+            default:            // input and switch statements are not evaluated
+                type = Type.VOID;
+        }
+        if (result) returnValue(type, statement.getLineNumber());
+        else if (type != Type.VOID) code.op(POP);
+    }
+
+    private void returnValue(Type type, int lineNumber) {
+        if (type == Type.VOID) {
+            returnNull();
+        } else if (program) {
+            code.push(lineNumber);
+            code.invokeStatic(FUNCTION, "lexeme", "(" + type.descriptor + "I)" + LEXEME);
+            code.op(ARETURN);
+        } else {
+            convert(type, returnType);
+            code.op(returnType == Type.INT ? IRETURN : returnType == Type.FLOAT ? FRETURN : ARETURN);
+        }
+    }
+
+    // The program's result is null; a function's null value fails converting to its return type
+    private void returnNull() {
+        if (program) {
+            code.op(ACONST_NULL);
+            code.op(ARETURN);
+        } else {
+            code.invokeStatic(FUNCTION, "nullValue", "()Ljava/lang/NullPointerException;");
+            code.op(ATHROW);
+        }
+    }
+
+    private Type assignment(Lexeme assignment, boolean keep) {
+        Lexeme identifier = assignment.getLeft().getLeft();
+        if (identifier.getType() != IDENTIFIER) throw new Unsupported("store to an array element");
+        Scope scope = declared(identifier);
+        Type type = scope.types[identifier.getSlot()];
+        convert(value(assignment.getLeft().getRight()), type);
+        if (keep) code.op(DUP);
+        code.store(scope.locals[identifier.getSlot()]);
+        return keep ? type : Type.VOID;
+    }
+
+    private Type increment(Lexeme variable, TokenType operator, boolean prefix, boolean keep) {
+        Scope scope = declared(variable);
+        int local = scope.locals[variable.getSlot()];
+        Type type = scope.types[variable.getSlot()];
+        if (type == Type.INT) {
+            if (keep && !prefix) code.load(local);
+            code.iinc(local, operator == INCREMENT ? 1 : -1);
+            if (keep && prefix) code.load(local);
+        } else if (type == Type.FLOAT) {
+            code.load(local);
+            if (keep && !prefix) code.op(DUP);
+            code.push(1.0f);
+            code.op(operator == INCREMENT ? FADD : FSUB);
+            if (keep && prefix) code.op(DUP);
+            code.store(local);
+        } else {
+            throw new Unsupported("increment of a string");
+        }
+        return keep ? type : Type.VOID;
+    }
+
+    // The value is computed before the name is declared, so a use of the name in it is some
+    // other frame's
+    private Type initialization(Lexeme initialization, boolean keep) {
+        Lexeme initializer = initialization.getLeft();
+        if (initializer.getType() != VARIABLE_INITIALIZER) throw new Unsupported("constant");
+        if (initializer.getRight() == null || initializer.getRight().getLeft() == null) throw new Unsupported("malformed initializer");
+        Lexeme dataType = Resolver.declaredDataType(initialization);
+        Lexeme expression = Resolver.initializerExpression(initialization);
+        Type type;
+        if (expression == null) {
+            type = dataType(dataType);
+            if (type == Type.INT) code.push(0);
+            else if (type == Type.FLOAT) code.push(0.0f);
+            else code.push("");
+        } else {
+            Type valueType = value(expression);
+            type = dataType != null ? dataType(dataType) : valueType;
+            convert(valueType, type);
+        }
+        int local = declare(Resolver.declaredIdentifier(initialization), type, false);
+        if (keep) code.op(DUP);
+        code.store(local);
+        return keep ? type : Type.VOID;
+    }
+
+    private Type output(Lexeme statement, boolean keep) {
+        Type type = value(statement.getRight());
+        if (keep) code.op(DUP);
+        code.getStatic("java/lang/System", "out", "Ljava/io/PrintStream;");
+        code.op(SWAP);
+        code.invokeVirtual("java/io/PrintStream", "println", "(" + type.descriptor + ")V");
+        return keep ? type : Type.VOID;
+    }
+
+    // Branches share one frame, but what one declares the next can't see
+    private void ifElseStatements(Lexeme ifElseStatements, boolean result) {
+        Scope scope = enter(ifElseStatements);
+        Label end = new Label();
+        Lexeme node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            Lexeme ifStatement = node.getLeft();
+            Label next = new Label();
+            condition(ifStatement.getLeft(), next, false);
+            statements(ifStatement.getRight(), result);        // all done as soon as one is true
+            if (!result) code.jump(GOTO, end);
+            code.bind(next);
+            Arrays.fill(scope.declared, false);
+        }
+        statements(node, result);
+        if (!result) code.bind(end);
+        exit();
+    }
+
+    // -------------- Loops --------------
+
+    private void loop(Lexeme statement) {
+        enter(statement);
+        Lexeme loop = statement.getLeft();
+        Lexeme[] invariants = statement.getStatements();
+        if (invariants != null) {
+            for (Lexeme invariant : invariants) {
+                if (invariant.getType() != ASSIGN) continue;
+                Type type = value(invariant.getRight());
+                code.store(declare(invariant.getLeft(), type, false));
+            }
+        }
+        switch (loop.getType()) {
+            case FOR_LOOP:
+                forLoop(loop, invariants);
+                break;
+            case FOR_IN:
+                forIn(loop, invariants);
+                break;
+            case WHILE_LOOP: {
+                Label top = new Label();
+                Label exit = new Label();
+                code.bind(top);
+                condition(loop.getLeft().getRight().getRight().getLeft(), exit, false);
+                statements(loop.getRight().getRight().getLeft(), false);
+                code.jump(GOTO, top);
+                code.bind(exit);
+                break;
+            }
+            default:
+                throw new Unsupported("unknown loop");
+        }
+        exit();
+    }
+
+    private void forLoop(Lexeme forLoop, Lexeme[] invariants) {
+        Lexeme semi1 = forLoop.getRight();
+        Lexeme semi2 = semi1.getRight();
+        Lexeme condition = semi2.getLeft();
+        Lexeme increment = semi2.getRight().getLeft();
+        if (semi1.getLeft() != null) initialization(semi1.getLeft(), false);
+        inductionVariables(invariants, true);
+
+        Label top = new Label();
+        Label exit = new Label();
+        code.bind(top);
+        if (condition != null) condition(condition, exit, false);
+        statements(semi2.getRight().getRight().getRight().getLeft(), false);
+        if (increment != null) {
+            if (increment.getType() == ASSIGNMENT) assignment(increment, false);
+            else if (increment.getLeft().getType() == IDENTIFIER) increment(increment.getLeft(), increment.getRight().getType(), false, false);
+            else increment(increment.getRight(), increment.getLeft().getType(), true, false);
+            inductionVariables(invariants, false);
+        }
+        code.jump(GOTO, top);
+        code.bind(exit);
+    }
+
+    // The variable is set from a count of its own, and the end is compared as a float
+    private void forIn(Lexeme forIn, Lexeme[] invariants) {
+        Lexeme range = forIn.getRight().getLeft();
+        if (range.getType() != ELLIPSIS) throw new Unsupported("for-in over an array");
+        Type type = value(range.getLeft());
+        if (type != Type.INT && type != Type.FLOAT) throw new Unsupported("string range");
+        int count = code.local(type.local());
+        code.store(count);
+        convert(value(range.getRight()), Type.FLOAT);
+        int end = code.local('F');
+        code.store(end);
+        int variable = declare(forIn.getLeft(), type, false);
+        code.load(count);
+        code.store(variable);
+        inductionVariables(invariants, true);
+
+        Label top = new Label();
+        Label exit = new Label();
+        code.bind(top);
+        code.load(count);
+        convert(type, Type.FLOAT);
+        code.load(end);
+        code.op(FCMPG);
+        code.jump(IFGE, exit);
+        statements(forIn.getRight().getRight().getRight().getLeft(), false);
+        if (type == Type.INT) {
+            code.iinc(count, 1);
+        } else {
+            code.load(count);
+            code.push(1.0f);
+            code.op(FADD);
+            code.store(count);
+        }
+        code.load(count);
+        code.store(variable);
+        inductionVariables(invariants, false);
+        code.jump(GOTO, top);
+        code.bind(exit);
+    }
+
+    // LoopOptimizer's counter * stride variables: set once the counter has its first value, then
+    // moved by stride each time the counter moves
+    private void inductionVariables(Lexeme[] invariants, boolean first) {
+        if (invariants == null) return;
+        for (Lexeme invariant : invariants) {
+            if (invariant.getType() == ASSIGN) continue;
+            Lexeme step = invariant.getRight();
+            if (first) {
+                convert(value(step.getLeft()), Type.INT);
+                convert(value(step.getRight()), Type.INT);
+                code.op(IMUL);
+                code.store(declare(invariant.getLeft(), Type.INT, false));
+            } else {
+                Scope scope = declared(invariant.getLeft());
+                int local = scope.locals[invariant.getLeft().getSlot()];
+                if (scope.types[invariant.getLeft().getSlot()] != Type.INT) throw new Unsupported("induction variable");
+                code.load(local);
+                convert(value(step.getRight()), Type.INT);
+                code.op(invariant.getType() == INCREMENT ? IADD : ISUB);
+                code.store(local);
+            }
+        }
+    }
+
+    // -------------- Expressions --------------
+
+    // Code leaving expression's value on the stack
+    private Type value(Lexeme expression) {
+        Type type = expression(expression);
+        if (type == Type.VOID) throw new Unsupported("a value from a function without one");
+        return type;
+    }
+
+    private Type expression(Lexeme expression) {
+        switch (expression.getType()) {
+            case INT:
+                code.push(expression.getIntValue().intValue());
+                return Type.INT;
+            case FLOAT:
+                code.push(expression.getFloatValue().floatValue());
+                return Type.FLOAT;
+            case STRING:
+                code.push(expression.getStringValue());
+                return Type.STRING;
+            case IDENTIFIER: {
+                Scope scope = declared(expression);
+                code.load(scope.locals[expression.getSlot()]);
+                return scope.types[expression.getSlot()];
+            }
+            case FUNCTION_CALL:
+                return call(expression);
+            case INCREMENT:
+            case DECREMENT: {
+                boolean prefix = expression.getLeft() == null;
+                return increment(prefix ? expression.getRight() : expression.getLeft(), expression.getType(), prefix, true);
+            }
+            case PLUS:
+            case MINUS:
+                if (expression.getLeft() == null) return unary(expression);
+                return binary(expression, null, false);
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return binary(expression, null, false);
+            default:            // TRUE, FALSE, NOT, OR and AND give booleans, which only conditions take
+                throw new Unsupported("no JVM value for " + expression.getType());
+        }
+    }
+
+    private Type unary(Lexeme operator) {
+        if (operator.getType() == PLUS) return value(operator.getRight());
+        Type type = value(operator.getRight());
+        Type result = operator.getOperation() == Operation.INT_NEGATE ? Type.INT
+                : operator.getOperation() == Operation.FLOAT_NEGATE ? Type.FLOAT : type;
+        if (result == Type.STRING) throw new Unsupported("negated string");
+        convert(type, result);
+        code.op(result == Type.INT ? INEG : FNEG);
+        return result;
+    }
+
+    // The left operands of a right-leaning chain are pushed walking down it, each converted to
+    // what its operator takes, and combined walking back up, as Evaluator.evalBinaryOperators
+    // does.  A comparison at the top jumps to target when it comes out jumpWhen; there is no
+    // value for one anywhere else.
+    private Type binary(Lexeme expression, Label target, boolean jumpWhen) {
+        ArrayList<Lexeme> operators = new ArrayList<>();
+        for (; isBinaryOperator(expression); expression = expression.getRight()) operators.add(expression);
+        int n = operators.size();
+        Operation[] operations = operations(operators, expression);
+        if (isComparison(operations[0]) && target == null) throw new Unsupported("boolean value");
+
+        for (int i = 0; i < n; i++) operand(value(operators.get(i).getLeft()), operations[i]);
+        Type right = value(expression);
+        for (int i = n - 1; i > 0; i--) {
+            operand(right, operations[i]);
+            right = operate(operations[i]);
+        }
+        operand(right, operations[0]);
+        if (isComparison(operations[0])) {
+            compare(operations[0], target, jumpWhen);
+            return Type.BOOLEAN;
+        }
+        return operate(operations[0]);
+    }
+
+    // What each operator of a chain computes, from the types of its operands, found bottom up
+    private Operation[] operations(ArrayList<Lexeme> operators, Lexeme last) {
+        Operation[] operations = new Operation[operators.size()];
+        Type type = typeOf(last);
+        for (int i = operators.size() - 1; i >= 0; i--) {
+            operations[i] = operation(operators.get(i), typeOf(operators.get(i).getLeft()), type);
+            type = resultType(operations[i]);
+        }
+        return operations;
+    }
+
+    // TypeChecker's Operation, or the one the Evaluator's checks come to for these operand types
+    private static Operation operation(Lexeme operator, Type left, Type right) {
+        if (left.datatype == null || right.datatype == null) throw new Unsupported("operand without a value");
+        Operation operation = operator.getOperation();
+        if (operation != null) {
+            if (operandType(operation) != Type.STRING && (left == Type.STRING || right == Type.STRING)) {
+                throw new Unsupported("string where a number goes");
+            }
+            return operation;
+        }
+        switch (operator.getType()) {
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:         // INTs are compared as FLOATs
+                return Operation.valueOf((left == Type.STRING || right == Type.STRING ? "STRING_" : "FLOAT_") + operator.getType());
+            case EXP:
+                if (left == Type.INT && right == Type.INT) throw new Unsupported("INT power taken through floats");
+                break;
+            default:
+                break;
+        }
+        operation = TypeChecker.operation(operator.getType(), left.datatype, right.datatype);
+        if (operation == null) throw new Unsupported("string repetition");
+        return operation;
+    }
+
+    // The type of an expression, without code for it
+    private Type typeOf(Lexeme expression) {
+        switch (expression.getType()) {
+            case INT:
+                return Type.INT;
+            case FLOAT:
+                return Type.FLOAT;
+            case STRING:
+                return Type.STRING;
+            case IDENTIFIER:
+                return declared(expression).types[expression.getSlot()];
+            case FUNCTION_CALL:
+                return returnType;
+            case INCREMENT:
+            case DECREMENT:
+                return typeOf(expression.getLeft() != null ? expression.getLeft() : expression.getRight());
+            case PLUS:
+            case MINUS:
+                if (expression.getLeft() == null) {
+                    Type type = typeOf(expression.getRight());
+                    if (expression.getType() == PLUS) return type;
+                    return expression.getOperation() == Operation.INT_NEGATE ? Type.INT
+                            : expression.getOperation() == Operation.FLOAT_NEGATE ? Type.FLOAT : type;
+                }
+                return binaryType(expression);
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return binaryType(expression);
+            default:
+                return Type.BOOLEAN;
+        }
+    }
+
+    // The type of a chain of binary operators, from the first one's operation
+    private Type binaryType(Lexeme expression) {
+        ArrayList<Lexeme> operators = new ArrayList<>();
+        for (; isBinaryOperator(expression); expression = expression.getRight()) operators.add(expression);
+        return resultType(operations(operators, expression)[0]);
+    }
+
+    // Converts the value on the stack to what operation takes; a power takes doubles
+    private void operand(Type type, Operation operation) {
+        Type operandType = operandType(operation);
+        convert(type, operandType);
+        if (operation == Operation.INT_EXP) code.op(I2D);
+        else if (operation == Operation.FLOAT_EXP) code.op(F2D);
+    }
+
+    private Type operate(Operation operation) {
+        switch (operation) {
+            case INT_PLUS:
+                code.op(IADD);
+                return Type.INT;
+            case INT_MINUS:
+                code.op(ISUB);
+                return Type.INT;
+            case INT_TIMES:
+                code.op(IMUL);
+                return Type.INT;
+            case INT_DIVIDE:
+                code.op(IDIV);
+                return Type.INT;
+            case INT_MOD:
+                code.op(IREM);
+                return Type.INT;
+            case INT_EXP:
+                code.invokeStatic("java/lang/Math", "pow", "(DD)D");
+                code.op(D2I);
+                return Type.INT;
+            case FLOAT_PLUS:
+                code.op(FADD);
+                return Type.FLOAT;
+            case FLOAT_MINUS:
+                code.op(FSUB);
+                return Type.FLOAT;
+            case FLOAT_TIMES:
+                code.op(FMUL);
+                return Type.FLOAT;
+            case FLOAT_DIVIDE:
+                code.op(FDIV);
+                return Type.FLOAT;
+            case FLOAT_MOD:
+                code.op(FREM);
+                return Type.FLOAT;
+            case FLOAT_EXP:
+                code.invokeStatic("java/lang/Math", "pow", "(DD)D");
+                code.op(D2F);
+                return Type.FLOAT;
+            case STRING_PLUS:
+                code.invokeVirtual(STRING, "concat", "(Ljava/lang/String;)Ljava/lang/String;");
+                return Type.STRING;
+            case STRING_MINUS:
+                code.invokeStatic("com/corbin/Lexeme", "withoutSuffix", "(Ljava/lang/String;Ljava/lang/String;)Ljava/lang/String;");
+                return Type.STRING;
+            default:
+                throw new IllegalStateException("No value for " + operation);
+        }
+    }
+
+    // Jumps on two operands of operation's type; FLOATs are ordered by Float.compare, as
+    // Evaluator.evalOperation orders them
+    private void compare(Operation operation, Label target, boolean jumpWhen) {
+        Type type = operandType(operation);
+        int kind = operation.ordinal() - (type == Type.INT ? Operation.INT_EQUAL
+                : type == Type.FLOAT ? Operation.FLOAT_EQUAL : Operation.STRING_EQUAL).ordinal();
+        int test = new int[] {IFEQ, IFNE, IFGT, IFGE, IFLT, IFLE}[kind];
+        if (type == Type.STRING && kind < 2) {
+            code.invokeVirtual(STRING, "equals", "(Ljava/lang/Object;)Z");
+            test = kind == 0 ? IFNE : IFEQ;
+        } else if (type == Type.STRING) {
+            code.invokeVirtual(STRING, "compareTo", "(Ljava/lang/String;)I");
+        } else if (type == Type.FLOAT) {
+            code.invokeStatic("java/lang/Float", "compare", "(FF)I");
+        }
+        if (!jumpWhen) test = IFEQ + ((test - IFEQ) ^ 1);
+        code.jump(type == Type.INT ? test - IFEQ + IF_ICMPEQ : test, target);
+    }
+
+    // Jumps to target when expression's getBooleanValue() is jumpWhen, and falls through otherwise
+    private void condition(Lexeme expression, Label target, boolean jumpWhen) {
+        switch (expression.getType()) {
+            case TRUE:
+            case FALSE:
+                if ((expression.getType() == TRUE) == jumpWhen) code.jump(GOTO, target);
+                return;
+            case NOT:
+                condition(expression.getRight(), target, !jumpWhen);
+                return;
+            case OR:
+            case AND: {
+                boolean or = expression.getType() == OR;
+                if (or == jumpWhen) {           // either operand decides
+                    condition(expression.getLeft(), target, jumpWhen);
+                    condition(expression.getRight(), target, jumpWhen);
+                } else {
+                    Label decided = new Label();
+                    condition(expression.getLeft(), decided, or);
+                    condition(expression.getRight(), target, jumpWhen);
+                    code.bind(decided);
+                }
+                return;
+            }
+            case PLUS:
+                if (expression.getLeft() == null) {
+                    condition(expression.getRight(), target, jumpWhen);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        Type type = isBinaryOperator(expression) ? binary(expression, target, jumpWhen) : value(expression);
+        switch (type) {
+            case INT:
+                code.jump(jumpWhen ? IFNE : IFEQ, target);
+                break;
+            case FLOAT:
+                code.push(0.0f);
+                code.op(FCMPL);
+                code.jump(jumpWhen ? IFNE : IFEQ, target);
+                break;
+            case STRING:
+                code.invokeVirtual(STRING, "isEmpty", "()Z");
+                code.jump(jumpWhen ? IFEQ : IFNE, target);
+                break;
+            default:            // BOOLEAN: the comparison has jumped
+        }
+    }
+
+    // A call to the function being compiled: its name finds the same body every time, since
+    // nothing the body does changes a caller's frame
+    private Type call(Lexeme functionCall) {
+        Lexeme name = functionCall.getLeft().getLeft();
+        if (program || name.getType() != IDENTIFIER || name.getSlot() >= 0 || name.getSymbol() != selfSymbol) {
+            throw new Unsupported("call to another function");
+        }
+        int count = 0;
+        for (Lexeme arguments = functionCall.getRight().getLeft(); arguments != null; count++) {
+            if (count == parameterTypes.length) throw new Unsupported("too many arguments");
+            convert(value(arguments.getRight().getLeft()), parameterTypes[count]);
+            arguments = arguments.getRight().getRight();
+            if (arguments != null) arguments = arguments.getRight();
+        }
+        if (count != parameterTypes.length) throw new Unsupported("not enough arguments");
+        code.invokeStatic(CLASS_NAME, METHOD_NAME, descriptor);
+        callsItself = true;
+        return returnType;
+    }
+
+    // -------------- Helper Methods --------------
+
+    // As getIntValue, getFloatValue and getStringValue convert, where they can without an error
+    private void convert(Type from, Type to) {
+        if (from == to) return;
+        if (from.datatype == null || to.datatype == null) throw new Unsupported("no value to convert");
+        if (to == Type.STRING) code.invokeStatic(STRING, "valueOf", "(" + from.descriptor + ")Ljava/lang/String;");
+        else if (from == Type.STRING) throw new Unsupported("string where a number goes");
+        else code.op(to == Type.INT ? F2I : I2F);
+    }
+
+    private static Type operandType(Operation operation) {
+        String name = operation.name();
+        return name.startsWith("INT") ? Type.INT : name.startsWith("FLOAT") ? Type.FLOAT : Type.STRING;
+    }
+
+    private static Type resultType(Operation operation) {
+        if (isComparison(operation)) return Type.BOOLEAN;
+        return operation == Operation.STRING_PLUS || operation == Operation.STRING_MINUS ? Type.STRING : operandType(operation);
+    }
+
+    private static boolean isComparison(Operation operation) {
+        return operation.ordinal() >= Operation.INT_EQUAL.ordinal() && operation.ordinal() <= Operation.STRING_LESSEQUAL.ordinal();
+    }
+
+    private static boolean isBinaryOperator(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+                return expression.getLeft() != null;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.corbin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import com.corbin.Lexeme.Datatype;
+
+// The program or one function body compiled by JvmCompiler, loaded as a hidden class of its
+// own, which the JVM can unload along with this once nothing uses it.  The Evaluator calls a
+// function with the arguments it has already converted to the parameter types, and gets back
+// what evalFunctionCall would have made of the body's value.
+final class JvmFunction {
+    final Lexeme owner;                 // the PROGRAM or FUNCTION_BODY
+    private final int selfSymbol;       // the name the body calls itself by, or -1 if it doesn't
+    private final Datatype[] parameterTypes;
+    private final Datatype returnType;  // null for the program and functions without one
+    private final MethodHandle invoker; // (Object[]) Object, spreading the arguments
+
+    JvmFunction(Lexeme owner, int selfSymbol, Datatype[] parameterTypes, Datatype returnType,
+                byte[] classFile, String descriptor) {
+        this.owner = owner;
+        this.selfSymbol = selfSymbol;
+        this.parameterTypes = parameterTypes;
+        this.returnType = returnType;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            MethodHandle method = lookup.findStatic(lookup.lookupClass(), JvmCompiler.METHOD_NAME,
+                    MethodType.fromMethodDescriptorString(descriptor, JvmFunction.class.getClassLoader()));
+            invoker = method.asType(method.type().generic()).asSpreader(Object[].class, parameterTypes.length);
+        } catch (IllegalAccessException | NoSuchMethodException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    // -------------- Public Methods --------------
+
+    int parameterCount() {
+        return parameterTypes.length;
+    }
+
+    // Whether a call by this name finds the body the compiled calls to itself do
+    boolean answersTo(int symbol) {
+        return selfSymbol < 0 || selfSymbol == symbol;
+    }
+
+    // Stores an argument converted to its parameter's type; false if the conversion failed
+    boolean argument(Object[] arguments, int i, Lexeme value) {
+        if (i >= arguments.length || value == null || value.getDatatype() != parameterTypes[i]) return false;
+        switch (parameterTypes[i]) {
+            case INT:
+                arguments[i] = value.getIntValue();
+                break;
+            case FLOAT:
+                arguments[i] = value.getFloatValue();
+                break;
+            default:
+                arguments[i] = value.getStringValue();
+        }
+        return true;
+    }
+
+    Lexeme invoke(Object[] arguments, int lineNumber) {
+        Object result = call(arguments);
+        if (returnType == null) return null;
+        switch (returnType) {
+            case INT:
+                return Lexeme.integer((Integer) result, lineNumber);
+            case FLOAT:
+                return new Lexeme(TokenType.FLOAT, (Float) result, lineNumber);
+            default:
+                return new Lexeme(TokenType.STRING, (String) result, lineNumber);
+        }
+    }
+
+    // The program's result
+    Lexeme run() {
+        return (Lexeme) call(new Object[0]);
+    }
+
+    private Object call(Object[] arguments) {
+        try {
+            return (Object) invoker.invokeExact(arguments);
+        } catch (RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+
+    // -------------- Called From Compiled Code --------------
+
+    static Lexeme lexeme(int value, int lineNumber) {
+        return Lexeme.integer(value, lineNumber);
+    }
+
+    static Lexeme lexeme(float value, int lineNumber) {
+        return new Lexeme(TokenType.FLOAT, value, lineNumber);
+    }
+
+    static Lexeme lexeme(String value, int lineNumber) {
+        return new Lexeme(TokenType.STRING, value, lineNumber);
+    }
+
+    // What converting a missing value to the return type throws in evalFunctionCall
+    static NullPointerException nullValue() {
+        return new NullPointerException("Function body ended without a value");
+    }
+}
@@ -5,7 +5,10 @@ public class Lexeme {
     private final TokenType type;
     private final int lineNumber;
 
-    private final String stringValue;
+    // The String of a STRING or an identifier, the Rope of a STRING built by + or *, which keeps
+    // its characters once flattened, or the ArrayValue of an array value.  One field for all
+    // three keeps a value the size it was before ropes and arrays.
+    private Object contents;
     private final Integer intValue;
     private final Float floatValue;
     private Lexeme left;
@@ -13,22 +16,39 @@ public class Lexeme {
     private boolean isConstant;
     private Datatype datatype;
 
+    // Shared values: every TRUE and FALSE an operator gives is one of these two, and every INT in
+    // [SMALL_INT_MIN, SMALL_INT_MAX] one of a cached set, so a loop counting and comparing makes
+    // no new values.  Their setters throw, since a change would show in every use.  Shared values
+    // are on line 0, so an error about a value takes its line from the tree, never the value.
+    private static final int SMALL_INT_MIN = -128;
+    private static final int SMALL_INT_MAX = 1023;
+    private static final Lexeme[] SMALL_INTS = new Lexeme[SMALL_INT_MAX - SMALL_INT_MIN + 1];
+    public static final Lexeme TRUE_VALUE = new Lexeme(TokenType.TRUE, 0);
+    public static final Lexeme FALSE_VALUE = new Lexeme(TokenType.FALSE, 0);
+
+    static {
+        for (int i = 0; i < SMALL_INTS.length; i++) SMALL_INTS[i] = new Lexeme(TokenType.INT, SMALL_INT_MIN + i, 0);
+    }
+
 
     // Constructor for specials characters, keywords, operators, etc.
     public Lexeme(TokenType type, int lineNumber) {
         this.type = type;
         this.lineNumber = lineNumber;
-        this.stringValue = null;
+        this.contents = null;
         this.intValue = null;
         this.floatValue = null;
         this.datatype = null;
     }
 
-    // Constructor for Identifiers
+    // Constructor for Strings, and for identifiers, which are AstNodes since they carry a symbol
     public Lexeme(TokenType type, String stringValue, int lineNumber) {
+        if (type == TokenType.IDENTIFIER && !(this instanceof AstNode)) {
+            throw new IllegalArgumentException("An identifier is an AstNode");
+        }
         this.type = type;
         this.lineNumber = lineNumber;
-        this.stringValue = stringValue;
+        this.contents = stringValue;
         this.intValue = null;
         this.floatValue = null;
         this.datatype = Datatype.STRING;
@@ -39,28 +59,105 @@ public class Lexeme {
         this.type = type;
         this.lineNumber = lineNumber;
         this.intValue = intValue;
-        this.stringValue = null;
+        this.contents = null;
         this.floatValue = null;
         this.datatype = Datatype.INT;
     }
 
+    // Constructor for Strings built by + and *, flattened when something needs their characters
+    Lexeme(Rope rope, int lineNumber) {
+        this.type = TokenType.STRING;
+        this.lineNumber = lineNumber;
+        this.contents = rope;
+        this.intValue = null;
+        this.floatValue = null;
+        this.datatype = Datatype.STRING;
+    }
+
+    // Constructor for array values, which have no datatype of their own
+    Lexeme(ArrayValue array, int lineNumber) {
+        this.type = TokenType.ARRAY_INITIALIZER;
+        this.lineNumber = lineNumber;
+        this.contents = array;
+        this.intValue = null;
+        this.floatValue = null;
+        this.datatype = null;
+    }
+
     // Constructor for Floats
     public Lexeme(TokenType type, Float floatValue, int lineNumber) {
         this.type = type;
         this.lineNumber = lineNumber;
         this.floatValue = floatValue;
-        this.stringValue = null;
+        this.contents = null;
         this.intValue = null;
         this.datatype = Datatype.FLOAT;
     }
 
+    public static Lexeme truth(boolean value) {
+        return value ? TRUE_VALUE : FALSE_VALUE;
+    }
+
+    // An INT value, shared if it is small
+    public static Lexeme integer(int value, int lineNumber) {
+        if (value >= SMALL_INT_MIN && value <= SMALL_INT_MAX) return SMALL_INTS[value - SMALL_INT_MIN];
+        return new Lexeme(TokenType.INT, value, lineNumber);
+    }
+
+    // A value converted to a STRING, sharing the pieces of one built by + or *
+    public static Lexeme string(Lexeme value, int lineNumber) {
+        return new Lexeme(value.getRope(), lineNumber);
+    }
+
+    // The STRINGs of two values joined, as left.getStringValue() + right.getStringValue()
+    public static Lexeme concatenation(Lexeme left, Lexeme right, int lineNumber) {
+        return new Lexeme(Rope.join(left.getRope(), right.getRope()), lineNumber);
+    }
+
+    // count copies of a value's STRING
+    public static Lexeme repetition(Lexeme value, int count, int lineNumber) {
+        return new Lexeme(Rope.repeat(value.getRope(), count), lineNumber);
+    }
+
+    // Whether two values have the same STRING, as getStringValue().equals.  Literals are interned,
+    // so two of the same text are one String, and ropes of different lengths differ unflattened.
+    public static boolean sameString(Lexeme left, Lexeme right) {
+        if (left.datatype == Datatype.STRING && right.datatype == Datatype.STRING
+                && left.stringLength() != right.stringLength()) return false;
+        String leftString = left.getStringValue();
+        String rightString = right.getStringValue();
+        return leftString == rightString || leftString.equals(rightString);
+    }
+
+    // The order of two values' STRINGs, as getStringValue().compareTo
+    public static int compareStrings(Lexeme left, Lexeme right) {
+        String leftString = left.getStringValue();
+        String rightString = right.getStringValue();
+        return leftString == rightString ? 0 : leftString.compareTo(rightString);
+    }
+
+    // A value's STRING with suffix's STRING taken off its end, if it ends with it
+    public static Lexeme withoutSuffix(Lexeme value, Lexeme suffix, int lineNumber) {
+        String characters = value.getStringValue();
+        String ending = suffix.getStringValue();
+        if (!characters.endsWith(ending)) return string(value, lineNumber);
+        return new Lexeme(TokenType.STRING, withoutSuffix(characters, ending), lineNumber);
+    }
+
+    // STRING minus: characters with ending taken off, if they end with it
+    public static String withoutSuffix(String characters, String ending) {
+        if (!characters.endsWith(ending)) return characters;
+        return characters.substring(0, characters.length() - ending.length());
+    }
+
     public boolean equals(Lexeme other) {
 	switch (this.type) {
-	case IDENTIFIER: 
+	case IDENTIFIER:
+	    return (this.type == other.type &&
+                this.getSymbol() == other.getSymbol());
 	case STRING:
 	    return (this.type == other.type &&
-                this.stringValue != null &&
-                this.stringValue.equals(other.stringValue));
+                sameString(this, other));
 	case INT:	    
 	    return (this.type == other.type &&
                 this.intValue != null &&
@@ -69,6 +166,10 @@ public class Lexeme {
 	    return (this.type == other.type &&
                 this.floatValue != null &&
                 this.floatValue.equals(other.floatValue));	
+	case ARRAY_INITIALIZER:
+	    return (this.type == other.type &&
+                getArray() != null &&
+                getArray().equals(other.getArray()));
 	default:
 		return false;	    
 	}
@@ -89,12 +190,35 @@ public class Lexeme {
 	case INT:
 	    return String.valueOf(intValue);
 	case STRING:
-	    return stringValue;
+	    return contents instanceof Rope ? ((Rope) contents).flatten() : (String) contents;
 	}
 	return "";		// should never happen
     }
 
+    // The value's STRING as a Rope, without flattening one built by + or *
+    Rope getRope() {
+	if (datatype != Datatype.STRING) return Rope.of(getStringValue());
+	if (!(contents instanceof Rope)) contents = Rope.of(String.valueOf(contents));
+	return (Rope) contents;
+    }
+
+    // The length of a STRING value's characters, without flattening a rope, or -1 if it has none
+    private int stringLength() {
+	return contents instanceof String ? ((String) contents).length() : contents instanceof Rope ? ((Rope) contents).length() : -1;
+    }
+
+    // The elements of an array value, or null if this isn't one
+    ArrayValue getArray() {
+	return contents instanceof ArrayValue ? (ArrayValue) contents : null;
+    }
+
     public Integer getIntValue() {
+	return getIntValue(lineNumber);
+    }
+
+    // The value as an INT, reporting a STRING that can't be converted on lineNumber: the line of
+    // the node being run, which a value made elsewhere, or shared, doesn't have
+    public Integer getIntValue(int lineNumber) {
 	switch (datatype) {
 	case FLOAT:
 	    return floatValue.intValue();
@@ -108,6 +232,10 @@ public class Lexeme {
     }
 
     public Float getFloatValue() {
+	return getFloatValue(lineNumber);
+    }
+
+    public Float getFloatValue(int lineNumber) {
 	switch (datatype) {
 	case FLOAT:
 	    return floatValue;
@@ -129,7 +257,7 @@ public class Lexeme {
 	    case INT:
 		return intValue != 0;
 	    case STRING:
-		return !stringValue.isEmpty();
+		return stringLength() > 0;
 	    }
 	}
 	return false;
@@ -139,7 +267,7 @@ public class Lexeme {
         return ("Type = " + type + ", Line Number = " + lineNumber
                 + (intValue == null ? "" : (", Integer Value = " + intValue))
                 + (floatValue == null ? "" : (", Float Value = " + floatValue))
-                + (stringValue == null ? "" : (", String Value = " + stringValue)));
+                + (contents instanceof String || contents instanceof Rope ? (", String Value = " + getStringValue()) : ""));
     }
 
     public String toSimpleString() {
@@ -154,27 +282,100 @@ public class Lexeme {
         return right;
     }
 
+    // -------------- Node Annotations --------------
+
+    // What the Parser, Resolver and TypeChecker record about a node of the tree, which AstNode
+    // keeps.  A value has none of it, so it answers as an unannotated node would and can't be set.
+
+    public int getSymbol() {
+        return -1;
+    }
+
+    public Lexeme[] getStatements() {
+        return null;
+    }
+
+    public TokenBuffer getUnparsedBody() {
+        return null;
+    }
+
+    public FrameLayout getFrameLayout() {
+        return null;
+    }
+
+    public int getDepth() {
+        return 0;
+    }
+
+    public int getSlot() {
+        return -1;
+    }
+
+    public Operation getOperation() {
+        return null;
+    }
+
+    public void setStatements(Lexeme[] statements) {
+        throw notANode();
+    }
+
+    public void setUnparsedBody(TokenBuffer unparsedBody) {
+        throw notANode();
+    }
+
+    public void setFrameLayout(FrameLayout frameLayout) {
+        throw notANode();
+    }
+
+    public void setDepth(int depth) {
+        throw notANode();
+    }
+
+    public void setSlot(int slot) {
+        throw notANode();
+    }
+
+    public void setOperation(Operation operation) {
+        throw notANode();
+    }
+
+    private IllegalStateException notANode() {
+        return new IllegalStateException("A " + type + " value isn't a node of the tree");
+    }
+
     public boolean isConstant() {
         return isConstant;
     }
 
     public void setLeft(Lexeme left) {
+        checkChangeable();
         this.left = left;
     }
 
     public void setRight(Lexeme right) {
+        checkChangeable();
         this.right = right;
     }
 
     public void setIsConstant(boolean isConstant) {
+        checkChangeable();
         this.isConstant = isConstant;
     }
 
+    // Setters call this first
+    private void checkChangeable() {
+        if (this == TRUE_VALUE || this == FALSE_VALUE || (lineNumber == 0 && type == TokenType.INT
+                && intValue >= SMALL_INT_MIN && intValue <= SMALL_INT_MAX && SMALL_INTS[intValue - SMALL_INT_MIN] == this)) {
+            throw new IllegalStateException("Shared " + type + " value can't be changed");
+        }
+    }
+
     public Datatype getDatatype() {
         return datatype;
     }
 
     public void setDatatype(Datatype datatype) {
+        checkChangeable();
         this.datatype = datatype;
     }
 }
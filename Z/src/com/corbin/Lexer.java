@@ -1,94 +1,169 @@
 package com.corbin;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
-public class Lexer {
+public class Lexer implements Iterator<Lexeme> {
+    private static final int BUFFER_SIZE = 8192;
 
     // Instance Variables
-    private final String source;
-    private final ArrayList<Lexeme> lexemes = new ArrayList<>();
+    private final Reader source;         // null when the whole source is already in the buffer
+
+    // Sliding window over the source.  Only the characters from the start of the current
+    // lexeme onward are kept, so memory stays bounded no matter how large the source is.
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int bufferStart = 0;        // source position of buffer[0]
+    private int bufferLength = 0;       // number of valid characters in buffer
+    private boolean sourceExhausted = false;
 
     private int currentPosition = 0;
     private int startOfCurrentLexeme = 0;
     private int lineNumber = 1;
-
-    // Static Variables
-    private static final HashMap<String, TokenType> keywords;
-
-    // Keyword HashMap initialization
+    private boolean reachedEOF = false;
+    private PrintWriter echo;           // if set, every token is printed as it is lexed
+    private int tokenLimit = Integer.MAX_VALUE;     // no token may start at or after this position
+    private boolean reportErrors = true;
+    private boolean hadError = false;
+
+    // Value of the most recently scanned literal or identifier
+    private int literalInt;
+    private float literalFloat;
+    private String literalText;
+    private int literalSymbol;
+
+    // Keyword initialization.  Keywords are interned in the SymbolTable along with identifiers.
     static {
-        keywords = new HashMap<>();
-
-        keywords.put("var", TokenType.VAR);
-        keywords.put("const", TokenType.CONST);
-
-        keywords.put("int", TokenType.KW_INT);
-        keywords.put("float", TokenType.KW_FLOAT);
-        keywords.put("String", TokenType.KW_STRING);
-
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("false", TokenType.FALSE);
-
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("switch", TokenType.SWITCH);
-        keywords.put("case", TokenType.CASE);
-        keywords.put("default", TokenType.DEFAULT);
-
-        keywords.put("and", TokenType.AND);
-        keywords.put("or", TokenType.OR);
-        keywords.put("not", TokenType.NOT);
-        keywords.put("notequal", TokenType.NOTEQUAL);
-        keywords.put("greaterthan", TokenType.GREATER);
-        keywords.put("greaterthanequal", TokenType.GREATEREQUAL);
-        keywords.put("lessthan", TokenType.LESS);
-        keywords.put("lessthanequal", TokenType.LESSEQUAL);
-        keywords.put("equals", TokenType.EQUAL);
-
-        keywords.put("func", TokenType.FUNC);
-        keywords.put("void", TokenType.VOID);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("in", TokenType.IN);
-        keywords.put("while", TokenType.WHILE);
+        SymbolTable.defineKeyword("var", TokenType.VAR);
+        SymbolTable.defineKeyword("const", TokenType.CONST);
+
+        SymbolTable.defineKeyword("int", TokenType.KW_INT);
+        SymbolTable.defineKeyword("float", TokenType.KW_FLOAT);
+        SymbolTable.defineKeyword("String", TokenType.KW_STRING);
+
+        SymbolTable.defineKeyword("true", TokenType.TRUE);
+        SymbolTable.defineKeyword("false", TokenType.FALSE);
+
+        SymbolTable.defineKeyword("if", TokenType.IF);
+        SymbolTable.defineKeyword("else", TokenType.ELSE);
+        SymbolTable.defineKeyword("switch", TokenType.SWITCH);
+        SymbolTable.defineKeyword("case", TokenType.CASE);
+        SymbolTable.defineKeyword("default", TokenType.DEFAULT);
+
+        SymbolTable.defineKeyword("and", TokenType.AND);
+        SymbolTable.defineKeyword("or", TokenType.OR);
+        SymbolTable.defineKeyword("not", TokenType.NOT);
+        SymbolTable.defineKeyword("notequal", TokenType.NOTEQUAL);
+        SymbolTable.defineKeyword("greaterthan", TokenType.GREATER);
+        SymbolTable.defineKeyword("greaterthanequal", TokenType.GREATEREQUAL);
+        SymbolTable.defineKeyword("lessthan", TokenType.LESS);
+        SymbolTable.defineKeyword("lessthanequal", TokenType.LESSEQUAL);
+        SymbolTable.defineKeyword("equals", TokenType.EQUAL);
+
+        SymbolTable.defineKeyword("func", TokenType.FUNC);
+        SymbolTable.defineKeyword("void", TokenType.VOID);
+        SymbolTable.defineKeyword("for", TokenType.FOR);
+        SymbolTable.defineKeyword("in", TokenType.IN);
+        SymbolTable.defineKeyword("while", TokenType.WHILE);
         
-        keywords.put("input", TokenType.INPUT);
-        keywords.put("output", TokenType.OUTPUT);
-        keywords.put("return", TokenType.RETURN);
+        SymbolTable.defineKeyword("input", TokenType.INPUT);
+        SymbolTable.defineKeyword("output", TokenType.OUTPUT);
+        SymbolTable.defineKeyword("return", TokenType.RETURN);
     }
 
     // Lexer
     public Lexer(String source) {
+        this(source.toCharArray(), 0, source.length());
+    }
+
+    // Lexes the tokens that start in [start, limit) of an in-memory source.  The last token may
+    // run past limit, so the position it stops at tells where the following range should begin.
+    public Lexer(char[] source, int start, int limit) {
+        this.source = null;
+        this.buffer = source;
+        this.bufferLength = source.length;
+        this.sourceExhausted = true;
+        this.currentPosition = start;
+        this.startOfCurrentLexeme = start;
+        this.tokenLimit = limit;
+    }
+
+    // Streaming lexer.  Characters are pulled from the reader as tokens are requested.
+    public Lexer(Reader source) {
         this.source = source;
     }
 
+    // Buffer Methods
+    private boolean isAvailable(int position) {
+        while (position >= bufferStart + bufferLength) {
+            if (sourceExhausted) return false;
+            fillBuffer();
+        }
+        return true;
+    }
+
+    private void fillBuffer() {
+        // Discard everything before the current lexeme, growing only if a single lexeme outgrows the buffer
+        int keep = startOfCurrentLexeme - bufferStart;
+        int kept = bufferLength - keep;
+        char[] target = kept == buffer.length ? new char[buffer.length * 2] : buffer;
+        System.arraycopy(buffer, keep, target, 0, kept);
+        buffer = target;
+        bufferStart = startOfCurrentLexeme;
+        bufferLength = kept;
+        try {
+            int read = source.read(buffer, bufferLength, buffer.length - bufferLength);
+            if (read < 0) sourceExhausted = true;
+            else bufferLength += read;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private char charAt(int position) {
+        return buffer[position - bufferStart];
+    }
+
+    private String text(int start, int end) {
+        return new String(buffer, start - bufferStart, end - start);
+    }
+
     // Utility Methods
     private char peek() {
         if (isAtEnd()) return '\0';
-        return source.charAt(currentPosition);
+        return charAt(currentPosition);
     }
 
     private char peekNext() {
-        if (currentPosition + 1 >= source.length()) return '\0';
-        return source.charAt(currentPosition + 1);
+        if (!isAvailable(currentPosition + 1)) return '\0';
+        return charAt(currentPosition + 1);
     }
 
     private boolean match(char expected) {
-        if (isAtEnd() || source.charAt(currentPosition) != expected) return false;
+        if (isAtEnd() || charAt(currentPosition) != expected) return false;
         currentPosition++;
         return true;
         
     }
 
     private char advance() {
-        char currentChar = source.charAt(currentPosition);
+        char currentChar = charAt(currentPosition);
         if (currentChar == '\n' || currentChar == '\r') lineNumber++;
         currentPosition++;
         return currentChar;
     }
 
     private boolean isAtEnd() {
-        return currentPosition >= source.length();
+        return !isAvailable(currentPosition);
+    }
+
+    private void error(String message) {
+        hadError = true;
+        if (reportErrors) Z.error(lineNumber, message);
     }
 
     private boolean isDigit(char c) {
@@ -106,16 +181,103 @@ public class Lexer {
     }
 
     public ArrayList<Lexeme> lex() {
-        while (!isAtEnd()) {
+        ArrayList<Lexeme> lexemes = new ArrayList<>();
+        while (hasNext()) lexemes.add(next());
+        return lexemes;
+    }
+
+    // Streaming Methods
+    @Override
+    public boolean hasNext() {
+        return !reachedEOF;
+    }
+
+    @Override
+    public Lexeme next() {
+        if (reachedEOF) throw new NoSuchElementException();
+        TokenType type = nextToken();
+        Lexeme lexeme;
+        switch (type) {
+            case IDENTIFIER:
+                lexeme = AstNode.identifier(literalSymbol, lineNumber);
+                break;
+            case STRING:
+                lexeme = new AstNode(type, literalText, lineNumber);
+                break;
+            case INT:
+                lexeme = new AstNode(type, literalInt, lineNumber);
+                break;
+            case FLOAT:
+                lexeme = new AstNode(type, literalFloat, lineNumber);
+                break;
+            default:
+                lexeme = new AstNode(type, lineNumber);
+        }
+        if (echo != null) echo.println(lexeme);
+        return lexeme;
+    }
+
+    public void echoTo(PrintWriter echo) {
+        this.echo = echo;
+    }
+
+    // A silent lexer only records that an error happened, so a speculative lex can be thrown away
+    public void setReportErrors(boolean reportErrors) {
+        this.reportErrors = reportErrors;
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public int getPosition() {
+        return currentPosition;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    // Appends up to count tokens to the buffer without creating a Lexeme for each one.
+    // Returns false once EOF has been appended.
+    public boolean lexInto(TokenBuffer tokens, int count) {
+        for (int i = 0; i < count && !reachedEOF; i++) {
+            TokenType type = nextToken();
+            int length = currentPosition - startOfCurrentLexeme;
+            switch (type) {
+                case IDENTIFIER:
+                    tokens.addSymbol(lineNumber, startOfCurrentLexeme, length, literalSymbol);
+                    break;
+                case STRING:
+                    tokens.addString(lineNumber, startOfCurrentLexeme, length, literalText);
+                    break;
+                case INT:
+                    tokens.addInt(lineNumber, startOfCurrentLexeme, length, literalInt);
+                    break;
+                case FLOAT:
+                    tokens.addFloat(lineNumber, startOfCurrentLexeme, length, literalFloat);
+                    break;
+                default:
+                    tokens.add(type, lineNumber, startOfCurrentLexeme, length);
+            }
+            if (echo != null) echo.println(tokens.toLexeme(tokens.size() - 1));
+        }
+        return !reachedEOF;
+    }
+
+    private TokenType nextToken() {
+        while (!isAtEnd() && currentPosition < tokenLimit) {
             startOfCurrentLexeme = currentPosition;
-            Lexeme nextLexeme = getNextLexeme();
-            if (nextLexeme != null) lexemes.add(nextLexeme);
+            TokenType type = getNextToken();
+            if (type != null) return type;
         }
-        lexemes.add(new Lexeme(TokenType.EOF, lineNumber));
-        return lexemes;
+        startOfCurrentLexeme = currentPosition;
+        reachedEOF = true;
+        return TokenType.EOF;
     }
 
-    private Lexeme getNextLexeme() {
+    // Scans the next token, leaving any literal value in the literal fields.  Returns null for whitespace and errors.
+    private TokenType getNextToken() {
         char c = advance();
 
         switch (c) {
@@ -128,74 +290,74 @@ public class Lexer {
 
             // Single-Character Tokens
             case '(':
-                return new Lexeme(TokenType.OPENPAREN, lineNumber);
+                return TokenType.OPENPAREN;
             case ')':
-                return new Lexeme(TokenType.CLOSEPAREN, lineNumber);
+                return TokenType.CLOSEPAREN;
             case '{':
-                return new Lexeme(TokenType.OPENBRACE, lineNumber);
+                return TokenType.OPENBRACE;
             case '}':
-                return new Lexeme(TokenType.CLOSEBRACE, lineNumber);
+                return TokenType.CLOSEBRACE;
             case '[':
-                return new Lexeme(TokenType.OPENBRACKET, lineNumber);
+                return TokenType.OPENBRACKET;
             case ']':
-                return new Lexeme(TokenType.CLOSEBRACKET, lineNumber);
+                return TokenType.CLOSEBRACKET;
             case '=':
-                return new Lexeme(match('=') ? TokenType.EQUAL : TokenType.ASSIGN, lineNumber);
+                return match('=') ? TokenType.EQUAL : TokenType.ASSIGN;
             case ',':
-                return new Lexeme(TokenType.COMMA, lineNumber);
+                return TokenType.COMMA;
             case ':':
-                return new Lexeme(TokenType.COLON, lineNumber);
+                return TokenType.COLON;
             case ';':
-                return new Lexeme(TokenType.SEMICOLON, lineNumber);
+                return TokenType.SEMICOLON;
 
 
             // Strictly-Two Character Tokens
             case '|':
-                if (match('|')) return new Lexeme(TokenType.OR, lineNumber);
-                else Z.error(lineNumber, "Missing second '|'");
+                if (match('|')) return TokenType.OR;
+                else error("Missing second '|'");
                 break;
             case '&':
-                if (match('&')) return new Lexeme(TokenType.AND, lineNumber);
-                else Z.error(lineNumber, "Missing second '&'");
+                if (match('&')) return TokenType.AND;
+                else error("Missing second '&'");
                 break;
 
 
             // Strictly-Three Character Tokens
             case '.':
-                if (match('.') && match('.')) return new Lexeme(TokenType.ELLIPSIS, lineNumber);
-                else Z.error(lineNumber, "Found '.' but not a complete ellipsis.");
+                if (match('.') && match('.')) return TokenType.ELLIPSIS;
+                else error("Found '.' but not a complete ellipsis.");
                 break;
 
 
             // One- Or Two-Character Tokens
             case '>':
-                return new Lexeme(match('=') ? TokenType.GREATEREQUAL : TokenType.GREATER, lineNumber);
+                return match('=') ? TokenType.GREATEREQUAL : TokenType.GREATER;
             case '<':
-                return new Lexeme(match('=') ? TokenType.LESSEQUAL : TokenType.LESS, lineNumber);
+                return match('=') ? TokenType.LESSEQUAL : TokenType.LESS;
             case '*':
-                return new Lexeme(match('=') ? TokenType.TIMESASSIGN : TokenType.TIMES, lineNumber);
+                return match('=') ? TokenType.TIMESASSIGN : TokenType.TIMES;
             case '/':
                 if (match('/')) {
                     while (!isAtEnd() && peek() != '\n' && peek() != '\r') advance();
-                    return new Lexeme(TokenType.LINECOMMENT, lineNumber);
-                } else if (match('=')) return new Lexeme(TokenType.DIVIDEASSIGN, lineNumber);
-                else return new Lexeme(TokenType.DIVIDE, lineNumber);
+                    return TokenType.LINECOMMENT;
+                } else if (match('=')) return TokenType.DIVIDEASSIGN;
+                else return TokenType.DIVIDE;
             case '^':
-                return new Lexeme(match('=') ? TokenType.EXPASSIGN : TokenType.EXP, lineNumber);
+                return match('=') ? TokenType.EXPASSIGN : TokenType.EXP;
             case '%':
-                return new Lexeme(match('=') ? TokenType.MODASSIGN : TokenType.MOD, lineNumber);
+                return match('=') ? TokenType.MODASSIGN : TokenType.MOD;
 
             case '!':
-                return new Lexeme(match('=') ? TokenType.NOTEQUAL : TokenType.NOT, lineNumber);
+                return match('=') ? TokenType.NOTEQUAL : TokenType.NOT;
             case '+':
-                if (match('+')) return new Lexeme(TokenType.INCREMENT, lineNumber);
-                else if (match('=')) return new Lexeme(TokenType.PLUSASSIGN, lineNumber);
-                else return new Lexeme(TokenType.PLUS, lineNumber);
+                if (match('+')) return TokenType.INCREMENT;
+                else if (match('=')) return TokenType.PLUSASSIGN;
+                else return TokenType.PLUS;
             case '-':
-                if (match('-')) return new Lexeme(TokenType.DECREMENT, lineNumber);
-                else if (match('=')) return new Lexeme(TokenType.MINUSASSIGN, lineNumber);
-                else if (match('>')) return new Lexeme(TokenType.RETURNS, lineNumber);
-                else return new Lexeme(TokenType.MINUS, lineNumber);
+                if (match('-')) return TokenType.DECREMENT;
+                else if (match('=')) return TokenType.MINUSASSIGN;
+                else if (match('>')) return TokenType.RETURNS;
+                else return TokenType.MINUS;
 
                 // Strings
             case '"':
@@ -204,12 +366,12 @@ public class Lexer {
             default:
                 if (isDigit(c)) return lexNumber();
                 else if (isAlpha(c)) return lexIdentifierOrKeyword();
-                else Z.error(lineNumber, "Unexpected character: " + c);
+                else error("Unexpected character: " + c);
         }
         return null;
     }
 
-    private Lexeme lexNumber() {
+    private TokenType lexNumber() {
         boolean isInteger = true;
         while (isDigit(peek())) advance();
 
@@ -217,7 +379,7 @@ public class Lexer {
         if (peek() == '.') {
             if (peekNext() != '.') {
                 // Ensure there is a digit following the decimal point
-                if (!isDigit(peekNext())) Z.error(lineNumber, "Malformed real number (ends in decimal point).");
+                if (!isDigit(peekNext())) error("Malformed real number (ends in decimal point).");
 
                 isInteger = false;
                 // Consume the '.'
@@ -225,38 +387,44 @@ public class Lexer {
                 while (isDigit(peek())) advance();
             }
         }
-        String numberString = source.substring(startOfCurrentLexeme, currentPosition);
+        String numberString = text(startOfCurrentLexeme, currentPosition);
         if (isInteger) {
-            int number = Integer.parseInt(numberString);
-            return new Lexeme(TokenType.INT, number, lineNumber);
+            literalInt = Integer.parseInt(numberString);
+            return TokenType.INT;
         } else {
-            float number = Float.parseFloat(numberString);
-            return new Lexeme(TokenType.FLOAT, number, lineNumber);
+            literalFloat = Float.parseFloat(numberString);
+            return TokenType.FLOAT;
         }
     }
 
-    // Collect a string and include its value in the Lexeme
-    private Lexeme lexString() {
-        while (peek() != '"') advance();
-        String charString = source.substring(startOfCurrentLexeme + 1, currentPosition);
+    // Collect a string and keep its value as the literal text, interned so that equal literals
+    // are one String and compare by reference
+    private TokenType lexString() {
+        while (!isAtEnd() && peek() != '"') advance();
+        if (isAtEnd()) {
+            error("Unterminated string.");
+            return null;
+        }
+        literalText = text(startOfCurrentLexeme + 1, currentPosition).intern();
         currentPosition++;  // Consume the ending quote
-        return new Lexeme(TokenType.STRING, charString, lineNumber);
+        return TokenType.STRING;
     }
 
 
-    private Lexeme lexIdentifierOrKeyword() {
+    private TokenType lexIdentifierOrKeyword() {
         // Read until we run out of adjacent alphanumerics (these form an identifier)
         while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(startOfCurrentLexeme, currentPosition);
+        int symbol = SymbolTable.intern(buffer, startOfCurrentLexeme - bufferStart, currentPosition - startOfCurrentLexeme);
 
         // See if the suspected identifier is actually a keyword
-        TokenType type = keywords.get(text);
+        TokenType type = SymbolTable.keywordType(symbol);
 
         // If not, it is a user-defined identifier
-        if (type == null)
-            return new Lexeme(TokenType.IDENTIFIER, text, lineNumber);
-        else
-            return new Lexeme(type, lineNumber);
+        if (type == null) {
+            literalSymbol = symbol;
+            return TokenType.IDENTIFIER;
+        } else
+            return type;
     }
 
 
@@ -0,0 +1,58 @@
+package com.corbin;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+// Times the sequential Lexer against ParallelLexer over growing copies of a Z source to find
+// the size where lexing in parallel starts to pay off.  Every run also checks that both
+// produce exactly the same tokens.
+// Usage: java com.corbin.LexerBenchmark [testInput/finalTest.z]
+public class LexerBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "testInput/finalTest.z";
+        // A string literal spanning lines makes some chunks start out of sync
+        String unit = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset())
+                + "\nvar multiLine = \"first line\nsecond line\"\n";
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("Parallelism: " + pool.getParallelism());
+        System.out.printf("%12s %12s %12s %8s%n", "chars", "sequential", "parallel", "speedup");
+
+        for (int copies = 4; copies <= 1 << 15; copies *= 2) {
+            char[] source = unit.repeat(copies).toCharArray();
+            long sequential = Long.MAX_VALUE;
+            long parallel = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                TokenBuffer expected = ParallelLexer.lexSequentially(source);
+                sequential = Math.min(sequential, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                TokenBuffer actual = ParallelLexer.lex(source, pool);
+                parallel = Math.min(parallel, System.nanoTime() - start);
+
+                if (run == 0) checkSame(expected, actual);
+            }
+            System.out.printf("%12d %10.2fms %10.2fms %7.2fx%n", source.length,
+                    sequential / 1e6, parallel / 1e6, (double) sequential / parallel);
+        }
+    }
+
+    private static void checkSame(TokenBuffer expected, TokenBuffer actual) {
+        if (expected.size() != actual.size()) {
+            throw new AssertionError("Token count " + actual.size() + ", expected " + expected.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.getType(i) != actual.getType(i)
+                    || expected.getLineNumber(i) != actual.getLineNumber(i)
+                    || expected.getOffset(i) != actual.getOffset(i)
+                    || !expected.toLexeme(i).toString().equals(actual.toLexeme(i).toString())) {
+                throw new AssertionError("Token " + i + " is " + actual.toLexeme(i) + ", expected " + expected.toLexeme(i));
+            }
+        }
+    }
+}
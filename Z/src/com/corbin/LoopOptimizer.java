@@ -0,0 +1,549 @@
+package com.corbin;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import static com.corbin.TokenType.*;
+
+// Moves work that gives the same value every iteration out of loops, once the Resolver and
+// TypeChecker have run.  A loop's condition, body and increment are evaluated over and over in
+// the one frame the loop creates, so an invariant expression there is computed once, into a new
+// slot of that frame, when the loop starts; the Evaluator finds these in the LOOP's statements.
+// Inner loops are done first, so what they hoisted can move further out.
+//
+// An expression is invariant if every name in it is bound outside the loop and nothing in the
+// loop writes that name.  A function call could write any name its caller can see, so a loop
+// that makes one is left alone, and so is one with an input statement.  Output only reads.  Only
+// operators TypeChecker specialized are moved, and not ones that can fail, like dividing by an
+// INT, so computing one before the loop, even if the loop never reaches it, changes nothing.
+// Array elements are never moved, since a store to any variable sharing the array changes them.
+//
+// The counter of a for loop that only its ++ or -- changes, or of a for-in range, is an
+// induction variable, and counter * stride with an invariant INT stride is kept in a slot of its
+// own that moves by stride each time the counter moves, instead of being multiplied again.
+public class LoopOptimizer {
+    private int temporaries = 0;        // numbers the slots added, so names never repeat in a frame
+
+    // What the loop being optimized writes, and where its new values go
+    private HashSet<Integer> written;
+    private Lexeme loopStatement;
+    private ArrayList<Lexeme> invariants;
+    private Lexeme counter;             // induction variable, or null
+    private TokenType counterStep;      // INCREMENT or DECREMENT
+
+    private LoopOptimizer() {
+    }
+
+    // -------------- Public Methods --------------
+
+    public static void optimize(Lexeme program) {
+        if (program != null) new LoopOptimizer().optimizeStatements(program.getLeft());
+    }
+
+    // Right after TypeChecker.checkFunction, when the body is first called
+    public static void optimizeFunction(Lexeme functionBody) {
+        new LoopOptimizer().optimizeStatements(functionBody.getRight().getRight());
+    }
+
+    // -------------- Finding Loops --------------
+
+    // Function definitions wait for their first call
+    private void optimizeStatements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) {
+            if (statement.getType() == LOOP) {
+                optimizeLoop(statement);
+            } else if (statement.getType() == IF_ELSE_STATEMENTS) {
+                Lexeme node = statement;
+                for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+                    optimizeStatements(node.getLeft().getRight());
+                }
+                optimizeStatements(node);
+            }
+        }
+    }
+
+    private void optimizeLoop(Lexeme statement) {
+        Lexeme loop = statement.getLeft();
+        optimizeStatements(body(loop));
+
+        // Everything the loop writes, with the counter's own declaration and step kept apart
+        Writes writes = new Writes();
+        Lexeme candidate = null;
+        TokenType candidateStep = INCREMENT;
+        switch (loop.getType()) {
+            case FOR_LOOP: {
+                Lexeme semi1 = loop.getRight();
+                Lexeme semi2 = semi1.getRight();
+                Lexeme increment = semi2.getRight().getLeft();
+                writes.expression(semi2.getLeft());
+                writes.statements(body(loop));
+                if (semi1.getLeft() != null && increment != null && increment.getType() == INCREMENT_EXPRESSION) {
+                    boolean postfix = increment.getLeft().getType() == IDENTIFIER;
+                    Lexeme variable = postfix ? increment.getLeft() : increment.getRight();
+                    Lexeme declared = Resolver.declaredIdentifier(semi1.getLeft());
+                    if (declared != null && declared.getType() == IDENTIFIER && declared.getSlot() >= 0
+                            && variable.getSymbol() == declared.getSymbol()) {
+                        candidate = declared;
+                        candidateStep = (postfix ? increment.getRight() : increment.getLeft()).getType();
+                    }
+                }
+                if (candidate != null && writes.names.contains(candidate.getSymbol())) candidate = null;
+                if (semi1.getLeft() != null) writes.statement(semi1.getLeft());
+                if (increment != null) writes.statement(increment);
+                break;
+            }
+            case FOR_IN: {
+                Lexeme iterable = loop.getRight().getLeft();
+                writes.statements(body(loop));
+                if (iterable.getType() == ELLIPSIS && loop.getLeft().getSlot() >= 0
+                        && !writes.names.contains(loop.getLeft().getSymbol())) {
+                    candidate = loop.getLeft();
+                }
+                writes.name(loop.getLeft());
+                if (iterable.getType() == ELLIPSIS) {
+                    writes.expression(iterable.getLeft());
+                    writes.expression(iterable.getRight());
+                }
+                break;
+            }
+            case WHILE_LOOP:
+                writes.expression(loop.getLeft().getRight().getRight().getLeft());
+                writes.statements(body(loop));
+                break;
+        }
+        if (writes.unknown) return;
+
+        written = writes.names;
+        loopStatement = statement;
+        invariants = new ArrayList<>();
+        counter = candidate;
+        counterStep = candidateStep;
+        switch (loop.getType()) {
+            case FOR_LOOP: {
+                Lexeme semi2 = loop.getRight().getRight();
+                Lexeme increment = semi2.getRight().getLeft();
+                semi2.setLeft(rewrite(semi2.getLeft(), 0));
+                rewriteStatements(body(loop), 0);
+                if (increment != null && increment.getType() == ASSIGNMENT) rewriteStatement(increment, 0);
+                break;
+            }
+            case FOR_IN:
+                rewriteStatements(body(loop), 0);
+                break;
+            case WHILE_LOOP: {
+                Lexeme condition = loop.getLeft().getRight().getRight();
+                condition.setLeft(rewrite(condition.getLeft(), 0));
+                rewriteStatements(body(loop), 0);
+                break;
+            }
+        }
+        if (!invariants.isEmpty()) statement.setStatements(invariants.toArray(new Lexeme[invariants.size()]));
+    }
+
+    // -------------- Rewriting a Loop --------------
+
+    // level counts the frames between a statement and the loop's own
+    private void rewriteStatements(Lexeme statementList, int level) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) rewriteStatement(statement, level);
+    }
+
+    private void rewriteStatement(Lexeme statement, int level) {
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                statement.getLeft().setRight(rewrite(statement.getLeft().getRight(), level));
+                break;
+            case IF_ELSE_STATEMENTS: {
+                Lexeme node = statement;
+                for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+                    node.getLeft().setLeft(rewrite(node.getLeft().getLeft(), level + 1));
+                    rewriteStatements(node.getLeft().getRight(), level + 1);
+                }
+                rewriteStatements(node, level + 1);
+                break;
+            }
+            case INITIALIZATION: {
+                Lexeme parent = Resolver.initializerParent(statement);
+                if (parent != null) parent.setRight(rewrite(parent.getRight(), level));
+                break;
+            }
+            case LOOP:
+                rewriteInnerLoop(statement, level + 1);
+                break;
+            case OUTPUT_STATEMENT:
+                statement.setRight(rewrite(statement.getRight(), level));
+                break;
+            case RETURN:
+                statement.setLeft(rewrite(statement.getLeft(), level));
+                break;
+            default:            // increments and function definitions
+        }
+    }
+
+    // All of an inner loop runs again on every iteration of this one, in the inner loop's frame
+    private void rewriteInnerLoop(Lexeme statement, int level) {
+        if (statement.getStatements() != null) {
+            for (Lexeme invariant : statement.getStatements()) {
+                if (invariant.getType() == ASSIGN) invariant.setRight(rewrite(invariant.getRight(), level));
+            }
+        }
+        Lexeme loop = statement.getLeft();
+        switch (loop.getType()) {
+            case FOR_LOOP: {
+                Lexeme semi1 = loop.getRight();
+                Lexeme semi2 = semi1.getRight();
+                Lexeme increment = semi2.getRight().getLeft();
+                if (semi1.getLeft() != null) rewriteStatement(semi1.getLeft(), level);
+                semi2.setLeft(rewrite(semi2.getLeft(), level));
+                if (increment != null && increment.getType() == ASSIGNMENT) rewriteStatement(increment, level);
+                break;
+            }
+            case FOR_IN: {
+                Lexeme iterable = loop.getRight().getLeft();
+                if (iterable.getType() == ELLIPSIS) {
+                    iterable.setLeft(rewrite(iterable.getLeft(), level));
+                    iterable.setRight(rewrite(iterable.getRight(), level));
+                }
+                break;
+            }
+            case WHILE_LOOP: {
+                Lexeme condition = loop.getLeft().getRight().getRight();
+                condition.setLeft(rewrite(condition.getLeft(), level));
+                break;
+            }
+        }
+        rewriteStatements(body(loop), level);
+    }
+
+    // The expression with each invariant part replaced by its slot; walks down the right
+    // operand in a loop, since long operator chains lean right
+    private Lexeme rewrite(Lexeme expression, int level) {
+        Lexeme replaced = replacement(expression, level);
+        if (replaced != null) return replaced;
+        for (Lexeme node = expression; hasOperands(node); ) {
+            node.setLeft(rewrite(node.getLeft(), level));
+            Lexeme right = node.getRight();
+            replaced = replacement(right, level);
+            if (replaced != null) {
+                node.setRight(replaced);
+                return expression;
+            }
+            node = right;
+        }
+        return expression;
+    }
+
+    // A use of the slot that now holds expression, or null if it has to stay
+    private Lexeme replacement(Lexeme expression, int level) {
+        if (expression == null) return null;
+        Lexeme reduced = reduce(expression, level);
+        if (reduced != null) return reduced;
+        if (isOperator(expression) && isInvariant(expression)) return hoist(expression, level);
+        return null;
+    }
+
+    // An expression already hoisted gives the same slot again
+    private Lexeme hoist(Lexeme expression, int level) {
+        move(expression, level);
+        for (Lexeme invariant : invariants) {
+            if (invariant.getType() == ASSIGN && same(invariant.getRight(), expression)) return use(invariant.getLeft(), level);
+        }
+        Lexeme temporary = temporary(expression.getLineNumber());
+        Lexeme invariant = new AstNode(ASSIGN, expression.getLineNumber());
+        invariant.setLeft(temporary);
+        invariant.setRight(expression);
+        invariants.add(invariant);
+        return use(temporary, level);
+    }
+
+    // counter * stride becomes an INCREMENT or DECREMENT naming the slot, the counter and stride
+    private Lexeme reduce(Lexeme expression, int level) {
+        if (counter == null || expression.getOperation() != Operation.INT_TIMES) return null;
+        Lexeme stride;
+        if (isCounter(expression.getLeft(), level)) stride = expression.getRight();
+        else if (isCounter(expression.getRight(), level)) stride = expression.getLeft();
+        else return null;
+        if (stride.getType() != INT && !isInvariant(stride)) return null;
+
+        if (stride.getType() == INT) stride = new AstNode(INT, stride.getIntValue(), stride.getLineNumber());
+        else if (isOperator(stride)) stride = hoist(stride, level);
+        move(stride, level);
+        for (Lexeme invariant : invariants) {
+            if (invariant.getType() == counterStep && same(invariant.getRight().getRight(), stride)) {
+                return use(invariant.getLeft(), level);
+            }
+        }
+        Lexeme temporary = temporary(expression.getLineNumber());
+        Lexeme step = new AstNode(GLUE, expression.getLineNumber());
+        step.setLeft(use(counter, 0));
+        step.setRight(stride);
+        Lexeme induction = new AstNode(counterStep, expression.getLineNumber());
+        induction.setLeft(temporary);
+        induction.setRight(step);
+        invariants.add(induction);
+        return use(temporary, level);
+    }
+
+    private boolean isCounter(Lexeme expression, int level) {
+        return expression.getType() == IDENTIFIER && expression.getSymbol() == counter.getSymbol()
+                && expression.getDepth() == level && expression.getSlot() == counter.getSlot();
+    }
+
+    // Bound outside the loop, not written in it, and computed by operators that can't fail
+    private boolean isInvariant(Lexeme expression) {
+        while (true) {
+            switch (expression.getType()) {
+                case INT:
+                case FLOAT:
+                case STRING:
+                case TRUE:
+                case FALSE:
+                    return true;
+                case IDENTIFIER:
+                    return expression.getSlot() >= 0 && !written.contains(expression.getSymbol());
+                default:
+                    if ((expression.getType() == PLUS || expression.getType() == MINUS) && expression.getLeft() == null) {
+                        if (expression.getType() == MINUS && expression.getOperation() == null) return false;
+                        expression = expression.getRight();
+                        continue;
+                    }
+                    if (!isBinaryOperator(expression) || !cannotFail(expression.getOperation())) return false;
+                    if (!isInvariant(expression.getLeft())) return false;
+                    expression = expression.getRight();
+            }
+        }
+    }
+
+    // -------------- Helper Methods --------------
+
+    // A new slot in the loop's frame, as its declaration
+    private Lexeme temporary(int lineNumber) {
+        Lexeme temporary = new AstNode(IDENTIFIER, "$" + ++temporaries, lineNumber);
+        temporary.setSlot(loopStatement.getFrameLayout().add(temporary.getSymbol()));
+        return temporary;
+    }
+
+    private static Lexeme use(Lexeme declaration, int level) {
+        Lexeme use = AstNode.identifier(declaration.getSymbol(), declaration.getLineNumber());
+        use.setDepth(level);
+        use.setSlot(declaration.getSlot());
+        return use;
+    }
+
+    // Rebinds the names of an invariant expression for the loop's frame, level frames out
+    private static void move(Lexeme expression, int level) {
+        if (expression == null || level == 0) return;
+        if (expression.getType() == IDENTIFIER) expression.setDepth(expression.getDepth() - level);
+        move(expression.getLeft(), level);
+        move(expression.getRight(), level);
+    }
+
+    // Whether two expressions moved to the loop's frame compute the same thing
+    private static boolean same(Lexeme first, Lexeme second) {
+        while (first != null && second != null) {
+            if (first.getType() != second.getType() || first.getOperation() != second.getOperation()) return false;
+            switch (first.getType()) {
+                case IDENTIFIER:
+                    return first.getSymbol() == second.getSymbol() && first.getDepth() == second.getDepth()
+                            && first.getSlot() == second.getSlot();
+                case INT:
+                case FLOAT:
+                case STRING:
+                    return first.equals(second);
+                default:
+                    if (!same(first.getLeft(), second.getLeft())) return false;
+                    first = first.getRight();
+                    second = second.getRight();
+            }
+        }
+        return first == second;
+    }
+
+    private static boolean cannotFail(Operation operation) {
+        if (operation == null) return false;
+        switch (operation) {
+            case INT_DIVIDE:
+            case INT_MOD:
+            case STRING_MINUS:          // the operand is a pattern
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isOperator(Lexeme expression) {
+        return isBinaryOperator(expression) || expression.getType() == MINUS && expression.getLeft() == null;
+    }
+
+    private static boolean hasOperands(Lexeme expression) {
+        if (expression == null) return false;
+        switch (expression.getType()) {
+            case OR:
+            case AND:
+            case NOT:
+                return true;
+            default:
+                return isOperator(expression) || expression.getType() == PLUS;
+        }
+    }
+
+    private static boolean isBinaryOperator(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+                return expression.getLeft() != null;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Lexeme body(Lexeme loop) {
+        switch (loop.getType()) {
+            case FOR_LOOP:
+                return loop.getRight().getRight().getRight().getRight().getRight().getLeft();
+            case FOR_IN:
+                return loop.getRight().getRight().getRight().getLeft();
+            default:
+                return loop.getRight().getRight().getLeft();
+        }
+    }
+
+    // The names a loop declares or assigns anywhere in it, and whether it runs anything, like a
+    // function call or input, that could write names it doesn't show
+    private static class Writes {
+        final HashSet<Integer> names = new HashSet<>();
+        boolean unknown = false;
+
+        void name(Lexeme identifier) {
+            if (identifier != null && identifier.getSymbol() >= 0) names.add(identifier.getSymbol());
+        }
+
+        void statements(Lexeme statementList) {
+            if (statementList == null || statementList.getStatements() == null) return;
+            for (Lexeme statement : statementList.getStatements()) statement(statement);
+        }
+
+        void statement(Lexeme statement) {
+            switch (statement.getType()) {
+                case ASSIGNMENT:
+                    name(statement.getLeft().getLeft());
+                    expression(statement.getLeft().getLeft());      // an array element's index
+                    expression(statement.getLeft().getRight());
+                    break;
+                case IF_ELSE_STATEMENTS: {
+                    Lexeme node = statement;
+                    for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+                        expression(node.getLeft().getLeft());
+                        statements(node.getLeft().getRight());
+                    }
+                    statements(node);
+                    break;
+                }
+                case FUNCTION_CALL:
+                case INPUT_STATEMENT:
+                    unknown = true;
+                    break;
+                case FUNCTION_DEFINITION:
+                    name(statement.getLeft());
+                    break;
+                case INCREMENT_EXPRESSION:
+                    name(statement.getLeft().getType() == IDENTIFIER ? statement.getLeft() : statement.getRight());
+                    break;
+                case INITIALIZATION:
+                    name(Resolver.declaredIdentifier(statement));
+                    expression(Resolver.initializerExpression(statement));
+                    break;
+                case LOOP:
+                    loop(statement);
+                    break;
+                case OUTPUT_STATEMENT:
+                    expression(statement.getRight());
+                    break;
+                case RETURN:
+                    expression(statement.getLeft());
+                    break;
+                default:        // switch statements are not evaluated
+            }
+        }
+
+        void loop(Lexeme statement) {
+            if (statement.getStatements() != null) {
+                for (Lexeme invariant : statement.getStatements()) {
+                    name(invariant.getLeft());
+                    if (invariant.getType() == ASSIGN) expression(invariant.getRight());
+                }
+            }
+            Lexeme loop = statement.getLeft();
+            switch (loop.getType()) {
+                case FOR_LOOP: {
+                    Lexeme semi1 = loop.getRight();
+                    Lexeme semi2 = semi1.getRight();
+                    if (semi1.getLeft() != null) statement(semi1.getLeft());
+                    expression(semi2.getLeft());
+                    if (semi2.getRight().getLeft() != null) statement(semi2.getRight().getLeft());
+                    break;
+                }
+                case FOR_IN: {
+                    Lexeme iterable = loop.getRight().getLeft();
+                    name(loop.getLeft());
+                    if (iterable.getType() == ELLIPSIS) {
+                        expression(iterable.getLeft());
+                        expression(iterable.getRight());
+                    }
+                    break;
+                }
+                case WHILE_LOOP:
+                    expression(loop.getLeft().getRight().getRight().getLeft());
+                    break;
+            }
+            statements(body(loop));
+        }
+
+        void expression(Lexeme expression) {
+            while (expression != null && !unknown) {
+                switch (expression.getType()) {
+                    case FUNCTION_CALL:
+                        unknown = true;
+                        return;
+                    case INCREMENT:
+                    case DECREMENT:
+                        name(expression.getLeft() == null ? expression.getRight() : expression.getLeft());
+                        expression = expression.getLeft() == null ? expression.getRight() : expression.getLeft();
+                        if (expression.getType() != ARRAY_REFERENCE) return;
+                        expression = Resolver.indexExpression(expression);
+                        break;
+                    case ARRAY_REFERENCE:
+                        expression = Resolver.indexExpression(expression);
+                        break;
+                    case ARRAY_INITIALIZER:
+                        for (Lexeme elements = Resolver.arrayElements(expression); elements != null; elements = Resolver.nextElements(elements)) {
+                            expression(elements.getLeft());
+                        }
+                        return;
+                    case IDENTIFIER:
+                    case INT:
+                    case FLOAT:
+                    case STRING:
+                    case TRUE:
+                    case FALSE:
+                        return;
+                    default:
+                        expression(expression.getLeft());
+                        expression = expression.getRight();
+                }
+            }
+        }
+    }
+}
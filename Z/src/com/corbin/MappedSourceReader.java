@@ -0,0 +1,73 @@
+package com.corbin;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Decodes a source file through a memory-mapped window instead of reading it into the heap.
+// The window slides forward as the Lexer asks for more characters.
+public class MappedSourceReader extends Reader {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    // Instance Variables
+    private final FileChannel channel;
+    private final CharsetDecoder decoder;
+    private final long size;
+    private long windowStart = 0;
+    private ByteBuffer window;
+    private boolean decoderFlushed = false;
+
+    // Constructor
+    public MappedSourceReader(Path path, Charset charset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        mapWindow();
+    }
+
+    // Reader Methods
+    @Override
+    public int read(char[] characters, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        CharBuffer out = CharBuffer.wrap(characters, offset, length);
+        while (out.position() == offset) {
+            boolean lastWindow = windowStart + window.limit() >= size;
+            CoderResult result = decoder.decode(window, out, lastWindow);
+            if (result.isError()) result.throwException();
+            if (out.position() > offset) break;
+            if (lastWindow) {
+                if (!decoderFlushed) {
+                    decoder.flush(out);
+                    decoderFlushed = true;
+                    if (out.position() > offset) break;
+                }
+                return -1;
+            }
+            // Any bytes left over are a character split across windows; the next window starts with them
+            windowStart += window.position();
+            mapWindow();
+        }
+        return out.position() - offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Helper Methods
+    private void mapWindow() throws IOException {
+        long length = Math.min(WINDOW_SIZE, size - windowStart);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+    }
+}
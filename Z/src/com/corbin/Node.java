@@ -0,0 +1,14 @@
+package com.corbin;
+
+// One node of a program compiled by ClosureCompiler: the work of an AST node with its parts
+// already found, so running it is a call on its class rather than a switch on the node's type
+// and a walk down GLUE nodes.  execute gives what the Evaluator gives for the node, in the same
+// frame; test gives that value's getBooleanValue(), which comparisons and the logical operators
+// answer without making a TRUE or FALSE.
+abstract class Node {
+    abstract Lexeme execute(Environments frame);
+
+    boolean test(Environments frame) {
+        return execute(frame).getBooleanValue();
+    }
+}
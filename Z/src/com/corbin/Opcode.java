@@ -0,0 +1,105 @@
+package com.corbin;
+
+// Instructions of the register machine BytecodeCompiler targets.  Each is an opcode followed by
+// its operands in BytecodeFunction.code: d is the register written, a, b, r, v and s registers
+// read, k an index into the function's pool and t a jump target.  A variable's register may be
+// empty; the instructions that read or write variables take its binding scope and name as well,
+// so they can search the frames by name the way Environments does.
+final class Opcode {
+    static final int MOVE = 0;                  // d s
+    static final int VOID = 1;                  // d            the tree walker's null
+    static final int LOAD = 2;                  // d r s k      variable r bound in scope s, named by pool[k]
+    static final int DECLARE = 3;               // r v k        Environments.insert
+    static final int ASSIGN = 4;                // d r s k v t  t holds the old value, or -1 to read it here
+    static final int INC = 5;                   // d r s k mode
+    static final int CHECK = 6;                 // v            a declaration without a type needs a value
+    static final int CONVERT = 7;               // d v k        to the declared type pool[k]
+
+    static final int IADD = 8;                  // d a b for every operator
+    static final int ISUB = 9;
+    static final int IMUL = 10;
+    static final int IDIV = 11;
+    static final int IMOD = 12;
+    static final int IPOW = 13;
+    static final int FADD = 14;
+    static final int FSUB = 15;
+    static final int FMUL = 16;
+    static final int FDIV = 17;
+    static final int FMOD = 18;
+    static final int FPOW = 19;
+    static final int SADD = 20;
+    static final int SSUB = 21;
+    static final int IEQ = 22;
+    static final int INE = 23;
+    static final int IGT = 24;
+    static final int IGE = 25;
+    static final int ILT = 26;
+    static final int ILE = 27;
+    static final int FEQ = 28;
+    static final int FNE = 29;
+    static final int FGT = 30;
+    static final int FGE = 31;
+    static final int FLT = 32;
+    static final int FLE = 33;
+    static final int SEQ = 34;
+    static final int SNE = 35;
+    static final int SGT = 36;
+    static final int SGE = 37;
+    static final int SLT = 38;
+    static final int SLE = 39;
+    static final int BINOP = 40;                // d a b k      operator pool[k] the TypeChecker left generic
+    static final int INEG = 41;                 // d a
+    static final int FNEG = 42;                 // d a
+    static final int NEG = 43;                  // d a k
+    static final int NOT = 44;                  // d a
+
+    static final int JUMP = 45;                 // t
+    static final int JUMPF = 46;                // a t
+    static final int JUMPT = 47;                // a t
+    static final int JUMP_UNLESS_IEQ = 48;      // a b t        an INT comparison and JUMPF in one
+    static final int JUMP_UNLESS_INE = 49;
+    static final int JUMP_UNLESS_IGT = 50;
+    static final int JUMP_UNLESS_IGE = 51;
+    static final int JUMP_UNLESS_ILT = 52;
+    static final int JUMP_UNLESS_ILE = 53;
+    static final int CLEAR = 54;                // r n          empty the registers of a scope entered again
+
+    static final int CALLEE = 55;               // c f s i      frame for function f called from scope s, cache i
+    static final int ARGCHECK = 56;             // c n k t      no parameter n: too many arguments
+    static final int ARG = 57;                  // c n a
+    static final int CALL = 58;                 // d c k n      call pool[k] with n arguments
+    static final int OUTPUT = 59;               // a
+    static final int FORIN_TEST = 60;           // v e t k
+    static final int FORIN_NEXT = 61;           // v s r
+    static final int UNRECOGNIZED = 62;         // d k
+    static final int RETURN = 63;
+
+    // INC modes
+    static final int DECREMENT = 1;
+    static final int PREFIX = 2;
+    static final int EXPRESSION = 4;            // ++ and -- in an expression make a STRING 0
+
+    static final String[] NAMES = {
+            "MOVE", "VOID", "LOAD", "DECLARE", "ASSIGN", "INC", "CHECK", "CONVERT",
+            "IADD", "ISUB", "IMUL", "IDIV", "IMOD", "IPOW", "FADD", "FSUB", "FMUL", "FDIV", "FMOD", "FPOW",
+            "SADD", "SSUB", "IEQ", "INE", "IGT", "IGE", "ILT", "ILE", "FEQ", "FNE", "FGT", "FGE", "FLT", "FLE",
+            "SEQ", "SNE", "SGT", "SGE", "SLT", "SLE", "BINOP", "INEG", "FNEG", "NEG", "NOT",
+            "JUMP", "JUMPF", "JUMPT", "JUMP_UNLESS_IEQ", "JUMP_UNLESS_INE", "JUMP_UNLESS_IGT",
+            "JUMP_UNLESS_IGE", "JUMP_UNLESS_ILT", "JUMP_UNLESS_ILE", "CLEAR",
+            "CALLEE", "ARGCHECK", "ARG", "CALL", "OUTPUT", "FORIN_TEST", "FORIN_NEXT", "UNRECOGNIZED", "RETURN"
+    };
+
+    // Operands after each opcode
+    static final int[] OPERANDS = {
+            2, 1, 4, 3, 6, 5, 1, 3,
+            3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3,
+            3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3,
+            3, 3, 3, 3, 3, 3, 4, 2, 2, 3, 2,
+            1, 2, 2, 3, 3, 3,
+            3, 3, 3, 2,
+            4, 4, 3, 4, 1, 4, 3, 2, 0
+    };
+
+    private Opcode() {
+    }
+}
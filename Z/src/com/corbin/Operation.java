@@ -0,0 +1,16 @@
+package com.corbin;
+
+// What an operator node computes once TypeChecker knows its operand types, named for the
+// operand type and the operator's TokenType.  FLOAT operations take an INT operand as a float,
+// the STRING ones convert a number operand to a string, and comparisons give TRUE or FALSE.
+public enum Operation {
+    INT_PLUS, INT_MINUS, INT_TIMES, INT_DIVIDE, INT_MOD, INT_EXP,
+    FLOAT_PLUS, FLOAT_MINUS, FLOAT_TIMES, FLOAT_DIVIDE, FLOAT_MOD, FLOAT_EXP,
+    STRING_PLUS, STRING_MINUS,
+
+    INT_EQUAL, INT_NOTEQUAL, INT_GREATER, INT_GREATEREQUAL, INT_LESS, INT_LESSEQUAL,
+    FLOAT_EQUAL, FLOAT_NOTEQUAL, FLOAT_GREATER, FLOAT_GREATEREQUAL, FLOAT_LESS, FLOAT_LESSEQUAL,
+    STRING_EQUAL, STRING_NOTEQUAL, STRING_GREATER, STRING_GREATEREQUAL, STRING_LESS, STRING_LESSEQUAL,
+
+    INT_NEGATE, FLOAT_NEGATE
+}
@@ -0,0 +1,500 @@
+package com.corbin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static com.corbin.TokenType.*;
+
+// Simplifies a parsed program before the Resolver sees it.  Operators whose operands are all
+// literals are computed here, by the Evaluator, so they give exactly what they would have at run
+// time; a use of a const whose value is a literal becomes that literal; branches of an if chain
+// whose condition is constant are dropped or become the only branch; and statements after a
+// return, which never run, are removed.  Operators that would report an error are left for the
+// Evaluator.
+//
+// Constants are found the way the Resolver binds names: a use belongs to the innermost scope that
+// declares its name, and takes the const's value only once that declaration has certainly run and
+// is the only one in the scope.  Names free in a function belong to its caller, so only a
+// function's own constants reach into it.  Like resolution, a body is optimized on its first call.
+public class Optimizer {
+    private final ArrayList<Scope> scopes = new ArrayList<>();
+    private final Evaluator evaluator = new Evaluator();
+    private final boolean functionBodies;
+
+    private static class Scope {
+        final boolean function;
+        final HashMap<Integer, Integer> declarations = new HashMap<>();  // symbol -> declarations in the scope
+        final HashMap<Integer, Lexeme> constants = new HashMap<>();      // symbol -> literal, once declared
+
+        Scope(boolean function) {
+            this.function = function;
+        }
+    }
+
+    private Optimizer(boolean functionBodies) {
+        this.functionBodies = functionBodies;
+    }
+
+    // -------------- Public Methods --------------
+
+    // Function bodies wait for their first call unless functionBodies is set
+    public static void optimize(Lexeme program, boolean functionBodies) {
+        if (program != null) new Optimizer(functionBodies).optimizeProgram(program);
+    }
+
+    public static void optimizeFunction(Lexeme functionBody) {
+        new Optimizer(false).optimizeFunctionBody(functionBody);
+    }
+
+    // Nodes reachable from root, to report how many optimizing removed
+    public static int countNodes(Lexeme root) {
+        int count = 0;
+        ArrayDeque<Lexeme> pending = new ArrayDeque<>();
+        if (root != null) pending.push(root);
+        while (!pending.isEmpty()) {
+            Lexeme node = pending.pop();
+            count++;
+            if (node.getLeft() != null) pending.push(node.getLeft());
+            if (node.getRight() != null) pending.push(node.getRight());
+            if (node.getStatements() != null) {
+                for (Lexeme statement : node.getStatements()) pending.push(statement);
+            }
+        }
+        return count;
+    }
+
+    // -------------- Scopes --------------
+
+    private Scope beginScope(boolean function) {
+        Scope scope = new Scope(function);
+        scopes.add(scope);
+        return scope;
+    }
+
+    private void endScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void count(Lexeme identifier) {
+        if (identifier == null || identifier.getType() != IDENTIFIER) return;
+        scopes.get(scopes.size() - 1).declarations.merge(identifier.getSymbol(), 1, Integer::sum);
+    }
+
+    private void countStatements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) {
+            if (statement.getType() == INITIALIZATION) count(Resolver.declaredIdentifier(statement));
+            else if (statement.getType() == FUNCTION_DEFINITION) count(statement.getLeft());
+        }
+    }
+
+    // The literal a name is known to hold here, or null
+    private Lexeme constantValue(Lexeme identifier) {
+        int symbol = identifier.getSymbol();
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Scope scope = scopes.get(i);
+            if (scope.declarations.containsKey(symbol)) return scope.constants.get(symbol);
+            if (scope.function) return null;
+        }
+        return null;
+    }
+
+    // -------------- Statements --------------
+
+    private void optimizeProgram(Lexeme program) {
+        beginScope(false);
+        countStatements(program.getLeft());
+        optimizeStatements(program.getLeft());
+        endScope();
+    }
+
+    // An if that optimizes away is left out, and one that comes back as a STATEMENT_LIST is
+    // replaced by its statements
+    private void optimizeStatements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        ArrayList<Lexeme> kept = new ArrayList<>(statementList.getStatements().length);
+        for (Lexeme statement : statementList.getStatements()) {
+            Lexeme optimized = optimizeStatement(statement);
+            if (optimized == null) continue;
+            if (optimized.getType() == STATEMENT_LIST) {
+                for (Lexeme inlined : optimized.getStatements()) kept.add(inlined);
+            } else {
+                kept.add(optimized);
+            }
+            if (optimized.getType() == RETURN) break;           // the rest of the list never runs
+        }
+        statementList.setStatements(kept.toArray(new Lexeme[kept.size()]));
+    }
+
+    private Lexeme optimizeStatement(Lexeme statement) {
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                fold(statement.getLeft().getLeft());            // an array element's index
+                statement.getLeft().setRight(fold(statement.getLeft().getRight()));
+                return statement;
+            case IF_ELSE_STATEMENTS:
+                return optimizeIfElseStatements(statement);
+            case FUNCTION_CALL:
+                foldArguments(statement);
+                return statement;
+            case FUNCTION_DEFINITION:
+                if (functionBodies) new Optimizer(true).optimizeFunctionBody(statement.getRight());
+                return statement;
+            case INITIALIZATION:
+                optimizeInitialization(statement);
+                return statement;
+            case LOOP:
+                optimizeLoop(statement);
+                return statement;
+            case OUTPUT_STATEMENT:
+                statement.setRight(fold(statement.getRight()));
+                return statement;
+            case RETURN:
+                statement.setLeft(fold(statement.getLeft()));
+                return statement;
+            default:            // increments, input and switch statements
+                return statement;
+        }
+    }
+
+    private void optimizeInitialization(Lexeme initialization) {
+        Lexeme initializer = initialization.getLeft();
+        Lexeme valueGlue = Resolver.initializerParent(initialization);
+        if (valueGlue == null || valueGlue.getRight() == null) return;     // var name: dataType
+        Lexeme value = fold(valueGlue.getRight());
+        valueGlue.setRight(value);
+
+        Lexeme identifier = Resolver.declaredIdentifier(initialization);
+        Scope scope = scopes.get(scopes.size() - 1);
+        if (initializer.getType() == CONSTANT_INITIALIZER && isLiteral(value)
+                && scope.declarations.getOrDefault(identifier.getSymbol(), 0) == 1) {
+            value = convert(value, Resolver.declaredDataType(initialization));
+            if (value != null) scope.constants.put(identifier.getSymbol(), value);
+        }
+    }
+
+    // Each branch runs in a new frame, so constants declared by the branches before it don't count
+    private Lexeme optimizeIfElseStatements(Lexeme ifElseStatements) {
+        Scope scope = beginScope(false);
+        Lexeme node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            countStatements(node.getLeft().getRight());
+        }
+        countStatements(node);
+
+        ArrayList<Lexeme> branches = new ArrayList<>();     // IF_STATEMENTs that may or may not run
+        Lexeme taken = null;                                // one whose condition is always true
+        node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            Lexeme ifStatement = node.getLeft();
+            scope.constants.clear();
+            ifStatement.setLeft(fold(ifStatement.getLeft()));
+            if (isLiteral(ifStatement.getLeft()) && !ifStatement.getLeft().getBooleanValue()) continue;
+            optimizeStatements(ifStatement.getRight());
+            if (isLiteral(ifStatement.getLeft())) {
+                taken = ifStatement;
+                break;
+            }
+            branches.add(ifStatement);
+        }
+        Lexeme elseList = taken != null ? taken.getRight() : node;
+        if (taken == null && elseList != null) {
+            scope.constants.clear();
+            optimizeStatements(elseList);
+        }
+        endScope();
+
+        if (branches.isEmpty()) {
+            if (elseList == null) return null;              // nothing can run
+            if (canInline(elseList)) return elseList;
+            if (taken == null) {
+                taken = new AstNode(IF_STATEMENT, elseList.getLineNumber());
+                taken.setLeft(new AstNode(TRUE, elseList.getLineNumber()));
+                taken.setRight(elseList);
+            }
+            ifElseStatements.setLeft(taken);
+            ifElseStatements.setRight(null);
+            return ifElseStatements;
+        }
+        ifElseStatements.setLeft(branches.get(0));
+        Lexeme last = ifElseStatements;
+        for (int i = 1; i < branches.size(); i++) {
+            Lexeme glue = new AstNode(GLUE, branches.get(i).getLineNumber());
+            glue.setLeft(branches.get(i));
+            last.setRight(glue);
+            last = glue;
+        }
+        last.setRight(elseList);
+        return ifElseStatements;
+    }
+
+    // A list that always runs can join the enclosing one if it declares nothing in the if's
+    // frame and has no return, which would leave the enclosing list too
+    private static boolean canInline(Lexeme statementList) {
+        if (statementList.getStatements() == null) return false;
+        for (Lexeme statement : statementList.getStatements()) {
+            switch (statement.getType()) {
+                case INITIALIZATION:
+                case FUNCTION_DEFINITION:
+                case RETURN:
+                    return false;
+                default:
+            }
+        }
+        return true;
+    }
+
+    private void optimizeLoop(Lexeme statement) {
+        beginScope(false);
+        Lexeme loop = statement.getLeft();
+        switch (loop.getType()) {
+            case FOR_LOOP: {
+                Lexeme semi1 = loop.getRight();
+                Lexeme semi2 = semi1.getRight();
+                Lexeme increment = semi2.getRight().getLeft();
+                Lexeme body = semi2.getRight().getRight().getRight().getLeft();
+                if (semi1.getLeft() != null) count(Resolver.declaredIdentifier(semi1.getLeft()));
+                countStatements(body);
+                if (semi1.getLeft() != null) optimizeInitialization(semi1.getLeft());
+                semi2.setLeft(fold(semi2.getLeft()));
+                optimizeStatements(body);
+                if (increment != null && increment.getType() == ASSIGNMENT) optimizeStatement(increment);
+                break;
+            }
+            case FOR_IN: {
+                Lexeme iterable = loop.getRight().getLeft();
+                Lexeme body = loop.getRight().getRight().getRight().getLeft();
+                count(loop.getLeft());
+                countStatements(body);
+                if (iterable.getType() == ELLIPSIS) {
+                    iterable.setLeft(fold(iterable.getLeft()));
+                    iterable.setRight(fold(iterable.getRight()));
+                }
+                optimizeStatements(body);
+                break;
+            }
+            case WHILE_LOOP: {
+                Lexeme condition = loop.getLeft().getRight().getRight();
+                Lexeme body = loop.getRight().getRight().getLeft();
+                countStatements(body);
+                condition.setLeft(fold(condition.getLeft()));
+                optimizeStatements(body);
+                break;
+            }
+        }
+        endScope();
+    }
+
+    private void optimizeFunctionBody(Lexeme functionBody) {
+        Lexeme statementList = functionBody.getRight().getRight();
+        if (statementList.getUnparsedBody() != null) return;   // parsed, and optimized, when first called
+        beginScope(true);
+        for (Lexeme parameters = functionBody.getLeft(); parameters != null; ) {
+            count(parameters.getLeft().getLeft());
+            parameters = parameters.getRight();
+            if (parameters != null) parameters = parameters.getRight();
+        }
+        countStatements(statementList);
+        optimizeStatements(statementList);
+        endScope();
+    }
+
+    // -------------- Expressions --------------
+
+    // The expression with every part that doesn't depend on run time computed
+    private Lexeme fold(Lexeme expression) {
+        if (expression == null) return null;
+        switch (expression.getType()) {
+            case IDENTIFIER: {
+                Lexeme value = constantValue(expression);
+                return value != null ? copy(value, expression.getLineNumber()) : expression;
+            }
+            case FUNCTION_CALL:
+                foldArguments(expression);
+                return expression;
+            case OR:
+            case AND:
+                return foldConnectives(expression);
+            case NOT:
+                expression.setRight(fold(expression.getRight()));
+                if (!isLiteral(expression.getRight())) return expression;
+                return copy(evaluator.evalUnaryOperator(expression, null), expression.getLineNumber());
+            case PLUS:
+            case MINUS:
+                if (expression.getLeft() == null) return foldSign(expression);
+                return foldBinaryOperators(expression);
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return foldBinaryOperators(expression);
+            case ARRAY_REFERENCE: {
+                Lexeme closeBracket = expression.getRight().getRight();
+                closeBracket.setLeft(fold(closeBracket.getLeft()));
+                return expression;
+            }
+            case ARRAY_INITIALIZER:
+                for (Lexeme elements = Resolver.arrayElements(expression); elements != null; elements = Resolver.nextElements(elements)) {
+                    elements.setLeft(fold(elements.getLeft()));
+                }
+                return expression;
+            default:            // literals, ++ and --
+                return expression;
+        }
+    }
+
+    private void foldArguments(Lexeme functionCall) {
+        for (Lexeme arguments = functionCall.getRight().getLeft(); arguments != null; ) {
+            Lexeme argument = arguments.getRight();
+            argument.setLeft(fold(argument.getLeft()));
+            arguments = argument.getRight();
+            if (arguments != null) arguments = arguments.getRight();
+        }
+    }
+
+    // || and && give the first operand that decides them, and operands after it never run
+    private Lexeme foldConnectives(Lexeme expression) {
+        TokenType connective = expression.getType();
+        ArrayList<Lexeme> kept = new ArrayList<>();
+        Lexeme last;
+        for (Lexeme node = expression; ; node = node.getRight()) {
+            if (node.getType() != connective) {
+                last = fold(node);
+                break;
+            }
+            Lexeme operand = fold(node.getLeft());
+            if (isLiteral(operand)) {
+                if (operand.getBooleanValue() == (connective == OR)) {
+                    last = operand;
+                    break;
+                }
+                continue;           // never decides, so the next operand is always reached
+            }
+            node.setLeft(operand);
+            kept.add(node);
+        }
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            kept.get(i).setRight(last);
+            last = kept.get(i);
+        }
+        return last;
+    }
+
+    private Lexeme foldSign(Lexeme operator) {
+        Lexeme operand = fold(operator.getRight());
+        operator.setRight(operand);
+        if (operator.getType() == PLUS) return operand;
+        if (operand.getType() != INT && operand.getType() != FLOAT) return operator;
+        return copy(evaluator.evalUnaryOperator(operator, null), operator.getLineNumber());
+    }
+
+    // Walks down the right-leaning chain as Evaluator.evalBinaryOperators does
+    private Lexeme foldBinaryOperators(Lexeme expression) {
+        ArrayList<Lexeme> operators = new ArrayList<>();
+        while (isBinaryOperator(expression)) {
+            operators.add(expression);
+            expression.setLeft(fold(expression.getLeft()));
+            expression = expression.getRight();
+        }
+        Lexeme result = fold(expression);
+        for (int i = operators.size() - 1; i >= 0; i--) {
+            Lexeme operator = operators.get(i);
+            operator.setRight(result);
+            result = foldOperator(operator);
+        }
+        return result;
+    }
+
+    private Lexeme foldOperator(Lexeme operator) {
+        Lexeme left = operator.getLeft();
+        Lexeme right = operator.getRight();
+        if (!isLiteral(left) || !isLiteral(right)) return operator;
+        Operation operation = TypeChecker.operation(operator.getType(), left.getDatatype(), right.getDatatype());
+        if (operation == null) return operator;
+        operator.setOperation(operation);
+        try {
+            return copy(evaluator.evalBinaryOperator(operator, left, right), operator.getLineNumber());
+        } catch (RuntimeException exception) {      // dividing by zero
+            return operator;
+        }
+    }
+
+    // -------------- Helper Methods --------------
+
+    private static boolean isLiteral(Lexeme expression) {
+        switch (expression.getType()) {
+            case INT:
+            case FLOAT:
+            case STRING:
+            case TRUE:
+            case FALSE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // A literal node on lineNumber with literal's value.  Folded values come from the Evaluator,
+    // which may give a shared value on line 0, so every one goes into the tree through here.
+    private static Lexeme copy(Lexeme literal, int lineNumber) {
+        switch (literal.getType()) {
+            case INT:
+                return new AstNode(INT, literal.getIntValue(), lineNumber);
+            case FLOAT:
+                return new AstNode(FLOAT, literal.getFloatValue(), lineNumber);
+            case STRING:
+                return new AstNode(STRING, literal.getStringValue(), lineNumber);
+            case TRUE:
+            case FALSE:
+                return new AstNode(literal.getType(), lineNumber);
+            default:
+                throw new IllegalArgumentException("Not a literal: " + literal.getType());
+        }
+    }
+
+    // The value Evaluator.convertToDatatype gives a const, or null where it reports an error
+    private static Lexeme convert(Lexeme value, Lexeme dataType) {
+        if (dataType == null) return value;
+        if (value.getDatatype() == null) return null;                   // TRUE or FALSE
+        switch (dataType.getType()) {
+            case KW_INT:
+                if (value.getDatatype() == Lexeme.Datatype.STRING) return null;
+                return new AstNode(INT, value.getIntValue(), value.getLineNumber());
+            case KW_FLOAT:
+                if (value.getDatatype() == Lexeme.Datatype.STRING) return null;
+                return new AstNode(FLOAT, value.getFloatValue(), value.getLineNumber());
+            case KW_STRING:
+                return new AstNode(STRING, value.getStringValue(), value.getLineNumber());
+            default:            // arrays
+                return null;
+        }
+    }
+
+    private static boolean isBinaryOperator(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+                return expression.getLeft() != null;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+// Checks that a literal the Optimizer folds an expression to is a node of its own on the line
+// of the expression, not a shared value on line 0, so errors about it report the right line.
+// Usage: java com.corbin.OptimizerTest
+public class OptimizerTest {
+    private static boolean passed = true;
+
+    public static void main(String[] args) {
+        String source = "var zero = [0]\n"
+                + "var q = zero * 3\n"
+                + "var z = q[1 < 2]\n"
+                + "var y = q[not 7]\n"
+                + "var x = q[2 greaterthan 1 and 3 lessthan 4]\n";
+        String errors = typeCheck(source);
+        check("a folded comparison is on its line", errors.contains("[line 3] Error at 'Type = TRUE, Line Number = 3'"));
+        check("a folded not is on its line", errors.contains("[line 4] Error at 'Type = FALSE, Line Number = 4'"));
+        check("a folded connective is on its line", errors.contains("[line 5] Error at 'Type = TRUE, Line Number = 5'"));
+        check("no folded literal is on line 0", !errors.contains("line 0") && !errors.contains("Line Number = 0"));
+
+        if (!passed) System.exit(1);
+        System.out.println("All optimizer tests passed");
+    }
+
+    // What TypeChecker reports for the optimized program
+    private static String typeCheck(String source) {
+        Lexeme program = new Parser(new Lexer(new StringReader(source))).program();
+        Optimizer.optimize(program, false);
+        PrintStream console = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        try {
+            System.setErr(new PrintStream(errors));
+            if (Resolver.resolve(program)) TypeChecker.check(program);
+        } finally {
+            System.setErr(console);
+        }
+        return errors.toString();
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "PASS " : "FAIL ") + name);
+        passed &= ok;
+    }
+}
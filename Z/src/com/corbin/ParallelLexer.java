@@ -0,0 +1,116 @@
+package com.corbin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Lexes a large in-memory source in chunks on a ForkJoinPool.
+//
+// The source is split just after newlines.  A chunk lexer only starts tokens inside its own
+// chunk, but may finish a token past the end of it (a string literal spanning the newline).
+// When stitching, a chunk whose lexer did not stop exactly at the next chunk's start is lexed
+// again from where the previous one stopped, so the result always matches the sequential Lexer.
+// Line numbers are relative inside a chunk and rebased while stitching.  If any chunk hits a
+// lexical error, the whole source is lexed sequentially so errors are reported in order.
+public class ParallelLexer {
+    // Below this many characters the sequential Lexer wins (see LexerBenchmark)
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int MIN_CHUNK_SIZE = 1 << 18;
+    private static final int CHARACTERS_PER_TOKEN = 4;     // rough guess used to size token buffers
+
+    public static boolean shouldLexInParallel(long sourceLength) {
+        return sourceLength >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    public static TokenBuffer lex(char[] source) {
+        if (!shouldLexInParallel(source.length)) return lexSequentially(source);
+        return lex(source, ForkJoinPool.commonPool());
+    }
+
+    public static TokenBuffer lex(char[] source, ForkJoinPool pool) {
+        int[] boundaries = chunkBoundaries(source, pool.getParallelism() * 4);
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            int start = boundaries[i];
+            int limit = boundaries[i + 1];
+            tasks.add(() -> Chunk.lex(source, start, limit));
+        }
+
+        List<Future<Chunk>> chunks = pool.invokeAll(tasks);
+        int tokenCount = 0;
+        for (Future<Chunk> chunk : chunks) tokenCount += join(chunk).tokens.size();
+        TokenBuffer tokens = new TokenBuffer(tokenCount);
+        int lineOffset = 0;
+        int position = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = join(chunks.get(i));
+            if (chunk.start != position) chunk = Chunk.lex(source, position, boundaries[i + 1]);   // re-synchronize
+            if (chunk.hadError) return lexSequentially(source);
+            boolean last = i == chunks.size() - 1;
+            tokens.append(chunk.tokens, last ? chunk.tokens.size() : chunk.tokens.size() - 1, lineOffset);   // drop chunk EOFs
+            lineOffset += chunk.endLineNumber - 1;
+            position = chunk.end;
+        }
+        return tokens;
+    }
+
+    public static TokenBuffer lexSequentially(char[] source) {
+        TokenBuffer tokens = new TokenBuffer(source.length / CHARACTERS_PER_TOKEN + 1);
+        Lexer lexer = new Lexer(source, 0, source.length);
+        while (lexer.lexInto(tokens, 4096));
+        return tokens;
+    }
+
+    // Chunk starts, each just after a newline, followed by the source length
+    private static int[] chunkBoundaries(char[] source, int maxChunks) {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, source.length / maxChunks);
+        ArrayList<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+        int position = chunkSize;
+        while (position < source.length) {
+            while (position < source.length && source[position - 1] != '\n' && source[position - 1] != '\r') position++;
+            if (position >= source.length) break;
+            boundaries.add(position);
+            position += chunkSize;
+        }
+        boundaries.add(source.length);
+        int[] result = new int[boundaries.size()];
+        for (int i = 0; i < result.length; i++) result[i] = boundaries.get(i);
+        return result;
+    }
+
+    private static Chunk join(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (Exception exception) {
+            throw new IllegalStateException("Parallel lexing failed", exception);
+        }
+    }
+
+    // Tokens of one chunk with line numbers starting at 1
+    private static class Chunk {
+        final int start;
+        final TokenBuffer tokens;
+        int end;
+        int endLineNumber;
+        boolean hadError;
+
+        Chunk(int start, int limit) {
+            this.start = start;
+            this.tokens = new TokenBuffer(Math.max(limit - start, 1) / CHARACTERS_PER_TOKEN + 1);
+        }
+
+        static Chunk lex(char[] source, int start, int limit) {
+            Chunk chunk = new Chunk(start, limit);
+            Lexer lexer = new Lexer(source, start, limit);
+            lexer.setReportErrors(false);
+            while (lexer.lexInto(chunk.tokens, 4096));
+            chunk.end = lexer.getPosition();
+            chunk.endLineNumber = lexer.getLineNumber();
+            chunk.hadError = lexer.hadError();
+            return chunk;
+        }
+    }
+}
@@ -1,76 +1,126 @@
 package com.corbin;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Collections;
 
 import static com.corbin.TokenType.*;
 
 public class Parser {
     private static final boolean debug = false;
+    private static final int LEX_AHEAD = 64;
 
     // ---------- Instance Variables ----------
-    ArrayList<Lexeme> lexemes;
-    private int nextLexemeIndex = 0;
-    private Lexeme currentLexeme;
+    private final TokenBuffer tokens;
+    private final Lexer lexer;      // null when every token is already in the buffer
+    private int current;            // index of the current token
+    private int next;               // index of the lookahead token
+    private boolean lazyFunctionBodies = false;
 
     // ---------- Constructor ----------
     public Parser(ArrayList<Lexeme> lexemes) {
-        this.lexemes = lexemes;
+        this(new TokenBuffer(lexemes), null);
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this(tokens, null);
+    }
+
+    // Streaming parser.  Tokens are lexed only as the parser needs them, and tokens behind
+    // the current one are released so the buffer stays a small window.
+    public Parser(Lexer lexer) {
+        this(new TokenBuffer(), lexer);
+    }
+
+    private Parser(TokenBuffer tokens, Lexer lexer) {
+        this.tokens = tokens;
+        this.lexer = lexer;
+        next = skipComments(0);
         advance();
     }
 
+    // In lazy mode function bodies are only brace matched and their tokens kept, and the
+    // Evaluator parses a body the first time the function is called
+    public void setLazyFunctionBodies(boolean lazyFunctionBodies) {
+        this.lazyFunctionBodies = lazyFunctionBodies;
+    }
+
+    // Parses a body that a lazy Parser skipped.  Its tokens end just before the closing brace.
+    public static Lexeme functionBody(TokenBuffer body) {
+        Parser parser = new Parser(body, null);
+        parser.lazyFunctionBodies = true;
+        Lexeme statementList = parser.statementList();
+        if (!parser.check(EOF)) parser.discard(CLOSEBRACE);     // reports the stray token as an eager parse would
+        return statementList;
+    }
+
     // ---------- Utility Methods ----------
     private boolean check(TokenType expected) {
 
-//        if (debug) System.out.println("    -- check: looking for " + expected + ", have " + currentLexeme + " --");
-        return currentLexeme.getType() == expected;
+//        if (debug) System.out.println("    -- check: looking for " + expected + ", have " + tokens.getType(current) + " --");
+        return tokens.getType(current) == expected;
     }
 
     private Lexeme consume(TokenType expected) {
 //        if (debug) System.out.println("-- consume " + expected + " --");
-        Lexeme lexeme = currentLexeme;
+        Lexeme lexeme = tokens.toLexeme(current);
+        discard(expected);
+        return lexeme;
+    }
+
+    // Like consume, for tokens that are not kept in the tree, so no Lexeme is created for them
+    private void discard(TokenType expected) {
         if (check(expected)) advance();
         else {
-            Z.error(currentLexeme, "Expected " + expected + " but found " + currentLexeme);
+            Lexeme found = tokens.toLexeme(current);
+            Z.error(found, "Expected " + expected + " but found " + found);
         }
-        return lexeme;
     }
 
     private boolean checkNext(TokenType type) {
-        if (nextLexemeIndex >= lexemes.size()) {
-            return false;
-        } else {
-//            if (debug)
-//                System.out.println("    -- checkNext: looking for " + type + ", next is " + lexemes.get(nextLexemeIndex).getType() + " --");
-            return lexemes.get(nextLexemeIndex).getType() == type;
-        }
+//        if (debug)
+//            System.out.println("    -- checkNext: looking for " + type + ", next is " + tokens.getType(next) + " --");
+        return tokens.getType(next) == type;
+    }
+
+    private int currentLineNumber() {
+        return tokens.getLineNumber(current);
     }
 
     private void advance() {
-        do {
-            currentLexeme = lexemes.get(nextLexemeIndex);
-            nextLexemeIndex++;
-        } while (currentLexeme.getType() == LINECOMMENT);
-//        if (debug) System.out.println("-- advance: currentLexeme = " + currentLexeme + " --");
+        current = next;
+        if (tokens.getType(current) != EOF) next = skipComments(current + 1);
+        tokens.release(current);
+//        if (debug) System.out.println("-- advance: current = " + tokens.getType(current) + " --");
+    }
+
+    private int skipComments(int index) {
+        while (true) {
+            while (index >= tokens.size() && lexer.lexInto(tokens, LEX_AHEAD));
+            if (tokens.getType(index) != LINECOMMENT) return index;
+            index++;
+        }
     }
 
     // ---------- Consumption Methods ----------
     public Lexeme program() {
         if (statementListPending()) {
-            Lexeme program = new Lexeme(PROGRAM, currentLexeme.getLineNumber());
+            Lexeme program = new AstNode(PROGRAM, currentLineNumber());
             program.setLeft(statementList());
             // right = null
             return program;
         } else return null;
     }
 
+    // Statements are collected in a loop into one flat array, so a long program does not
+    // recurse once per statement
     private Lexeme statementList() {
-        Lexeme statementList = new Lexeme(STATEMENT_LIST, currentLexeme.getLineNumber());
+        Lexeme statementList = new AstNode(STATEMENT_LIST, currentLineNumber());
+        ArrayList<Lexeme> statements = new ArrayList<>();
         while (statementPending()) {
-            statementList.setLeft(statement());
-            if (debug) printTree(statementList.getLeft());
-            statementList.setRight(statementList());
+            statements.add(statement());
+            if (debug) printTree(statements.get(statements.size() - 1));
         }
+        statementList.setStatements(statements.toArray(new Lexeme[statements.size()]));
         return statementList;
     }
 
@@ -99,16 +149,16 @@ public class Parser {
     }
 
     private Lexeme switchCaseStatements() {
-        Lexeme switchCaseStatements = new Lexeme(SWITCH_CASE_STATEMENTS, currentLexeme.getLineNumber());
+        Lexeme switchCaseStatements = new AstNode(SWITCH_CASE_STATEMENTS, currentLineNumber());
         switchCaseStatements.setLeft(switchStatement());
 
-        Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
         switchCaseStatements.setRight(glue1);
         glue1.setLeft(consume(OPENBRACE));
         Lexeme prior = glue1;
 
         while (caseStatementPending()) {
-            Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
             prior.setRight(glue2);
             glue2.setLeft(caseStatement());
             prior = glue2;
@@ -119,7 +169,7 @@ public class Parser {
     }
 
     private Lexeme caseStatement() {
-        Lexeme caseStatement = new Lexeme(CASE_STATEMENT, currentLexeme.getLineNumber());
+        Lexeme caseStatement = new AstNode(CASE_STATEMENT, currentLineNumber());
 
         if (check(CASE)) {
             caseStatement.setLeft(consume(CASE));
@@ -140,9 +190,9 @@ public class Parser {
     }
 
     private Lexeme switchStatement() {
-        Lexeme switchStatement = new Lexeme(SWITCH_STATEMENT, currentLexeme.getLineNumber());
-        Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme switchStatement = new AstNode(SWITCH_STATEMENT, currentLineNumber());
+        Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
+        Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
 
         switchStatement.setLeft(consume(SWITCH));
         switchStatement.setRight(glue1);
@@ -162,12 +212,12 @@ public class Parser {
     }
 
     private Lexeme ifElseStatements() {
-        Lexeme ifElseStatements = new Lexeme(IF_ELSE_STATEMENTS, currentLexeme.getLineNumber());
+        Lexeme ifElseStatements = new AstNode(IF_ELSE_STATEMENTS, currentLineNumber());
         ifElseStatements.setLeft(ifStatement());
 
         Lexeme node = ifElseStatements;
         while (elseIfStatementPending()) {
-            Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue = new AstNode(GLUE, currentLineNumber());
             node.setRight(glue);
             node = glue;
             node.setLeft(elseIfStatement());
@@ -179,37 +229,37 @@ public class Parser {
 
     private Lexeme elseStatement() {
 	// only the statement list is needed by Evaluator.  No need to store other tokens.
-        consume(ELSE);
-        consume(OPENBRACE);
+        discard(ELSE);
+        discard(OPENBRACE);
         Lexeme statementList = statementList();	
-        consume(CLOSEBRACE);
+        discard(CLOSEBRACE);
         return statementList;
     }
 
     private Lexeme elseIfStatement() {
-        consume(ELSE);
+        discard(ELSE);
         return ifStatement();
     }
 
     private Lexeme ifStatement() {
 	// only the expression and statement list are needed by Evaluator.  No need to store other tokens.
-        Lexeme ifStatement = new Lexeme(IF_STATEMENT, currentLexeme.getLineNumber());
-        consume(IF);
+        Lexeme ifStatement = new AstNode(IF_STATEMENT, currentLineNumber());
+        discard(IF);
         
         boolean parens = check(OPENPAREN);
-        if (parens) consume(OPENPAREN);       
+        if (parens) discard(OPENPAREN);       
         ifStatement.setLeft(expression());
-        if (parens) consume(CLOSEPAREN);
+        if (parens) discard(CLOSEPAREN);
       
-        consume(OPENBRACE);
+        discard(OPENBRACE);
         ifStatement.setRight(statementList());
-        consume(CLOSEBRACE);
+        discard(CLOSEBRACE);
 
         return ifStatement;
     }
 
     private Lexeme loop() {
-        Lexeme loop = new Lexeme(LOOP, currentLexeme.getLineNumber());
+        Lexeme loop = new AstNode(LOOP, currentLineNumber());
         if (forLoopPending()) loop.setLeft(forLoop());
         else if (forInPending()) loop.setLeft(forIn());
         else loop.setLeft(whileLoop());
@@ -217,10 +267,10 @@ public class Parser {
     }
 
     private Lexeme whileLoop() {
-        Lexeme whileLoop = new Lexeme(WHILE_LOOP, currentLexeme.getLineNumber());
-        Lexeme glue0 = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme whileLoop = new AstNode(WHILE_LOOP, currentLineNumber());
+        Lexeme glue0 = new AstNode(GLUE, currentLineNumber());
+        Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
+        Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
 
         whileLoop.setLeft(glue0);
         glue0.setLeft(consume(WHILE));
@@ -232,10 +282,10 @@ public class Parser {
         glue2.setLeft(expression());
         glue2.setRight(consume(CLOSEPAREN));
 
-        Lexeme glue3 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue3 = new AstNode(GLUE, currentLineNumber());
         whileLoop.setRight(glue3);
         glue3.setLeft(consume(OPENBRACE));
-        Lexeme glue4 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue4 = new AstNode(GLUE, currentLineNumber());
         glue3.setRight(glue4);
 
         glue4.setLeft(statementList());
@@ -245,8 +295,8 @@ public class Parser {
     }
 
     private Lexeme forIn() {
-        Lexeme forIn = new Lexeme(FOR_IN, currentLexeme.getLineNumber());
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme forIn = new AstNode(FOR_IN, currentLineNumber());
+        Lexeme glue = new AstNode(GLUE, currentLineNumber());
         Lexeme startFor = consume(FOR);
         Lexeme identifier = consume(IDENTIFIER);
 
@@ -257,10 +307,10 @@ public class Parser {
 
         glue.setLeft(iterable());
 
-        Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
         glue.setRight(glue2);
         glue2.setLeft(consume(OPENBRACE));
-        Lexeme glue3 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue3 = new AstNode(GLUE, currentLineNumber());
         glue2.setRight(glue3);
 
         glue3.setLeft(statementList());
@@ -285,8 +335,8 @@ public class Parser {
     }
 
     private Lexeme forLoop() {
-        Lexeme forLoop = new Lexeme(FOR_LOOP, currentLexeme.getLineNumber());
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme forLoop = new AstNode(FOR_LOOP, currentLineNumber());
+        Lexeme glue = new AstNode(GLUE, currentLineNumber());
 
         forLoop.setLeft(glue);
         glue.setLeft(consume(FOR));
@@ -295,14 +345,14 @@ public class Parser {
         Lexeme assignment = null;
         if (assignmentPending()) assignment = assignment();
         // make it an initialization
-        Lexeme initialization = new Lexeme(INITIALIZATION, currentLexeme.getLineNumber());
-        Lexeme variableInitializer = new Lexeme(VARIABLE_INITIALIZER, currentLexeme.getLineNumber());
+        Lexeme initialization = new AstNode(INITIALIZATION, currentLineNumber());
+        Lexeme variableInitializer = new AstNode(VARIABLE_INITIALIZER, currentLineNumber());
         initialization.setLeft(variableInitializer);
-        Lexeme viGlue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme viGlue1 = new AstNode(GLUE, currentLineNumber());
         viGlue1.setRight(assignment.getLeft().getLeft());
         variableInitializer.setLeft(viGlue1);
-        Lexeme viGlue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        viGlue2.setLeft(new Lexeme(assignment.getLeft().getType(), assignment.getLeft().getLineNumber()));
+        Lexeme viGlue2 = new AstNode(GLUE, currentLineNumber());
+        viGlue2.setLeft(new AstNode(assignment.getLeft().getType(), assignment.getLeft().getLineNumber()));
         viGlue2.setRight(assignment.getLeft().getRight());
         variableInitializer.setRight(viGlue2);
         Lexeme semi1 = consume(SEMICOLON);
@@ -321,10 +371,10 @@ public class Parser {
         closeParen.setLeft(loopIncrement);
         semi2.setRight(closeParen);
 
-        Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
         closeParen.setRight(glue2);
         glue2.setLeft(consume(OPENBRACE));
-        Lexeme glue3 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue3 = new AstNode(GLUE, currentLineNumber());
         glue2.setRight(glue3);
 
         glue3.setLeft(statementList());
@@ -339,54 +389,70 @@ public class Parser {
     }
     
     private Lexeme inputStatement() {
-	Lexeme inputStatement = new Lexeme(INPUT_STATEMENT, currentLexeme.getLineNumber());
+	Lexeme inputStatement = new AstNode(INPUT_STATEMENT, currentLineNumber());
 	inputStatement.setLeft(consume(INPUT));
 	inputStatement.setRight(variable());
 	return inputStatement;
     }
     
     private Lexeme outputStatement() {
-	Lexeme outputStatement = new Lexeme(OUTPUT_STATEMENT, currentLexeme.getLineNumber());
+	Lexeme outputStatement = new AstNode(OUTPUT_STATEMENT, currentLineNumber());
 	outputStatement.setLeft(consume(OUTPUT));
 	outputStatement.setRight(expression());
 	return outputStatement;
     }
 
     private Lexeme functionDefinition() {
-        Lexeme functionDefinition = new Lexeme(FUNCTION_DEFINITION, currentLexeme.getLineNumber());
-        consume(FUNC);
+        Lexeme functionDefinition = new AstNode(FUNCTION_DEFINITION, currentLineNumber());
+        discard(FUNC);
         functionDefinition.setLeft(consume(IDENTIFIER));
-        Lexeme functionBody = new Lexeme(TokenType.FUNCTION_BODY, currentLexeme.getLineNumber());
+        Lexeme functionBody = new AstNode(TokenType.FUNCTION_BODY, currentLineNumber());
         functionDefinition.setRight(functionBody);
         
-        consume(OPENPAREN);
+        discard(OPENPAREN);
         if (functionParameterListPending()) functionBody.setLeft(functionParameterList());
-        consume(CLOSEPAREN);
+        discard(CLOSEPAREN);
 
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue = new AstNode(GLUE, currentLineNumber());
         functionBody.setRight(glue);        
         if (check(RETURNS)) {
-            consume(RETURNS);
+            discard(RETURNS);
             glue.setLeft(functionReturnType());
         }
 
-        consume(OPENBRACE);
-        glue.setRight(statementList());
-        consume(CLOSEBRACE);
+        discard(OPENBRACE);
+        glue.setRight(lazyFunctionBodies ? unparsedBody() : statementList());
+        discard(CLOSEBRACE);
 
         return functionDefinition;
     }
 
+    // Copies the tokens up to the brace that closes the body, followed by an EOF
+    private Lexeme unparsedBody() {
+        Lexeme statementList = new AstNode(STATEMENT_LIST, currentLineNumber());
+        TokenBuffer body = new TokenBuffer(64);
+        int depth = 0;
+        while (!check(EOF) && !(check(CLOSEBRACE) && depth == 0)) {
+            if (check(OPENBRACE)) depth++;
+            else if (check(CLOSEBRACE)) depth--;
+            body.add(tokens, current);
+            advance();
+        }
+        body.add(EOF, currentLineNumber(), 0, 0);
+        statementList.setUnparsedBody(body);
+        return statementList;
+    }
+
     private Lexeme functionReturnType() {
         if (dataTypePending()) return dataType();
         else return consume(VOID);
     }
 
     private Lexeme functionParameterList() {
-        Lexeme functionParameterList = new Lexeme(FUNCTION_PARAMETER_LIST, currentLexeme.getLineNumber());
+        Lexeme functionParameterList = new AstNode(FUNCTION_PARAMETER_LIST, currentLineNumber());
         functionParameterList.setLeft(functionParameter());
         if (check(COMMA)) {
-            Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
             functionParameterList.setRight(glue1);
             glue1.setLeft(consume(COMMA));
             glue1.setRight(functionParameterList());
@@ -396,9 +462,9 @@ public class Parser {
     }
 
     private Lexeme functionParameter() {
-        Lexeme functionParameter = new Lexeme(FUNCTION_PARAMETER, currentLexeme.getLineNumber());
+        Lexeme functionParameter = new AstNode(FUNCTION_PARAMETER, currentLineNumber());
         functionParameter.setLeft(consume(IDENTIFIER));
-        Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
         functionParameter.setRight(glue1);
 
         glue1.setLeft(consume(COLON));
@@ -408,7 +474,7 @@ public class Parser {
     }
 
     private Lexeme assignment() {
-	Lexeme assignment = new Lexeme(ASSIGNMENT, currentLexeme.getLineNumber());
+	Lexeme assignment = new AstNode(ASSIGNMENT, currentLineNumber());
         Lexeme leftSide = arrayReferencePending() ? arrayReference() : consume(IDENTIFIER);
         Lexeme assignmentOperator = assignmentOperator();
         assignmentOperator.setLeft(leftSide);
@@ -429,32 +495,32 @@ public class Parser {
     }
 
     private Lexeme initialization() {
-	Lexeme initialization = new Lexeme(TokenType.INITIALIZATION, currentLexeme.getLineNumber());
+	Lexeme initialization = new AstNode(TokenType.INITIALIZATION, currentLineNumber());
         if (variableInitializerPending()) initialization.setLeft(variableInitializer());
         else initialization.setLeft(constantInitializer());
         return initialization;
     }
 
     private Lexeme constantInitializer() {
-        Lexeme constantInitializer = new Lexeme(TokenType.CONSTANT_INITIALIZER, currentLexeme.getLineNumber());
-        Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme constantInitializer = new AstNode(TokenType.CONSTANT_INITIALIZER, currentLineNumber());
+        Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
         constantInitializer.setLeft(glue1);
         glue1.setLeft(consume(CONST));
         Lexeme identifier = consume(IDENTIFIER);
         identifier.setIsConstant(true);
         glue1.setRight(identifier);
 
-        Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
         constantInitializer.setRight(glue2);
 
         if (check(COLON)) {
-            Lexeme glue3 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue3 = new AstNode(GLUE, currentLineNumber());
             glue2.setLeft(glue3);
             glue3.setLeft(consume(COLON));
             glue3.setRight(dataType());
         }
 
-        Lexeme glue4 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue4 = new AstNode(GLUE, currentLineNumber());
         glue2.setRight(glue4);
         glue4.setLeft(consume(ASSIGN));
         glue4.setRight(initializerExpression());
@@ -463,11 +529,11 @@ public class Parser {
     }
 
     private Lexeme variableInitializer() {
-        Lexeme variableInitializer = new Lexeme(VARIABLE_INITIALIZER, currentLexeme.getLineNumber());
+        Lexeme variableInitializer = new AstNode(VARIABLE_INITIALIZER, currentLineNumber());
         Lexeme var = consume(VAR);
         Lexeme identifier = consume(IDENTIFIER);
 
-        Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
         variableInitializer.setRight(glue1);
 
         if (check(COLON)) {
@@ -476,13 +542,13 @@ public class Parser {
             identifier.setRight(consume(COLON));
             glue1.setLeft(dataType());
             if (check(ASSIGN)) {
-                Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+                Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
                 glue1.setRight(glue2);
                 glue2.setLeft(consume(ASSIGN));
                 glue2.setRight(initializerExpression());
             }
         } else {
-            Lexeme glue3 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue3 = new AstNode(GLUE, currentLineNumber());
             variableInitializer.setLeft(glue3);
             glue3.setLeft(var);
             glue3.setRight(identifier);
@@ -492,7 +558,7 @@ public class Parser {
                 glue1.setRight(initializerExpression());
 
             } else {
-                Z.error(currentLexeme.getLineNumber(), "Variable declaration without type or initialization");
+                Z.error(currentLineNumber(), "Variable declaration without type or initialization");
             }
         }
         return variableInitializer;
@@ -504,10 +570,10 @@ public class Parser {
     }
 
     private Lexeme arrayInitializer() {
-        Lexeme arrayInitializer = new Lexeme(ARRAY_INITIALIZER, currentLexeme.getLineNumber());
+        Lexeme arrayInitializer = new AstNode(ARRAY_INITIALIZER, currentLineNumber());
 
         arrayInitializer.setLeft(consume(OPENBRACKET));
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue = new AstNode(GLUE, currentLineNumber());
         arrayInitializer.setRight(glue);
         if (expressionListPending()) glue.setLeft(expressionList());
         glue.setRight(consume(CLOSEBRACKET));
@@ -523,10 +589,10 @@ public class Parser {
     }
 
     private Lexeme arrayType() {
-        Lexeme arrayType = new Lexeme(ARRAY_TYPE, currentLexeme.getLineNumber());
+        Lexeme arrayType = new AstNode(ARRAY_TYPE, currentLineNumber());
 
         arrayType.setLeft(consume(OPENBRACKET));
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue = new AstNode(GLUE, currentLineNumber());
         arrayType.setRight(glue);
 
         glue.setLeft(dataType());
@@ -536,10 +602,10 @@ public class Parser {
     }
 
     private Lexeme expressionList() {
-        Lexeme expressionList = new Lexeme(EXPRESSION_LIST, currentLexeme.getLineNumber());
+        Lexeme expressionList = new AstNode(EXPRESSION_LIST, currentLineNumber());
         expressionList.setLeft(expression());
         if (check(COMMA)) {
-            Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue = new AstNode(GLUE, currentLineNumber());
             expressionList.setRight(glue);
             glue.setLeft(consume(COMMA));
             glue.setRight(expressionList());
@@ -547,158 +613,105 @@ public class Parser {
         return expressionList;
     }
 
+    // Precedence climbing over explicit operand and operator stacks.  Each binary operator
+    // becomes one node with its operands as children; literals, identifiers, array references
+    // and function calls are the leaves, and parentheses leave no node at all.  Every binary
+    // operator in Grammar.bnf is right associative, so an operator only reduces the pending
+    // operators that bind tighter than it, and a long chain like a + b + c + ... is built
+    // without recursing once per operator.
     private Lexeme expression() {
-        Lexeme expression = new Lexeme(EXPRESSION, currentLexeme.getLineNumber());
-        expression.setLeft(orTerm());
-        if (check(OR)) {
-            Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
-            expression.setRight(glue);
-            glue.setLeft(consume(OR));
-            glue.setRight(expression());
-        }
-        return expression;
-    }
-
-    private Lexeme orTerm() {
-        Lexeme orTerm = new Lexeme(OR_TERM, currentLexeme.getLineNumber());
-        orTerm.setLeft(equalityTerm());
-        if (check(AND)) {
-            Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
-            orTerm.setRight(glue);
-            glue.setLeft(consume(AND));
-            glue.setRight(orTerm());
-        }
-        return orTerm;
-    }
-
-    private Lexeme equalityTerm() {
-        Lexeme equalityTerm = new Lexeme(EQUALITY_TERM, currentLexeme.getLineNumber());
-        equalityTerm.setLeft(relationalTerm());
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        if (check(EQUAL)) {
-            equalityTerm.setRight(glue);
-            glue.setLeft(consume(EQUAL));
-            glue.setRight(equalityTerm());
-        } else if (check(NOTEQUAL)) {
-            equalityTerm.setRight(glue);
-            glue.setLeft(consume(NOTEQUAL));
-            glue.setRight(equalityTerm());
-        }
-        return equalityTerm;
-    }
-
-    private Lexeme relationalTerm() {
-        Lexeme relationalTerm = new Lexeme(RELATIONAL_TERM, currentLexeme.getLineNumber());
-        relationalTerm.setLeft(term());
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        if (check(GREATER)) {
-            relationalTerm.setRight(glue);
-            glue.setLeft(consume(GREATER));
-            glue.setRight(relationalTerm());
-        } else if (check(GREATEREQUAL)) {
-            relationalTerm.setRight(glue);
-            glue.setLeft(consume(GREATEREQUAL));
-            glue.setRight(relationalTerm());
-        } else if (check(LESS)) {
-            relationalTerm.setRight(glue);
-            glue.setLeft(consume(LESS));
-            glue.setRight(relationalTerm());
-        } else if (check(LESSEQUAL)) {
-            relationalTerm.setRight(glue);
-            glue.setLeft(consume(LESSEQUAL));
-            glue.setRight(relationalTerm());
-        }
-        return relationalTerm;
-    }
-
-    private Lexeme term() {
-        Lexeme term = new Lexeme(TERM, currentLexeme.getLineNumber());
-        term.setLeft(factor());
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        if (check(PLUS)) {
-            term.setRight(glue);
-            glue.setLeft(consume(PLUS));
-            glue.setRight(term());
-        } else if (check(MINUS)) {
-            term.setRight(glue);
-            glue.setLeft(consume(MINUS));
-            glue.setRight(term());
+        Lexeme operand = unary();
+        if (precedence(tokens.getType(current)) == 0) return operand;
+
+        ArrayList<Lexeme> operands = new ArrayList<>();
+        ArrayList<Lexeme> operators = new ArrayList<>();
+        operands.add(operand);
+        while (precedence(tokens.getType(current)) > 0) {
+            Lexeme operator = consume(tokens.getType(current));
+            int precedence = precedence(operator.getType());
+            while (!operators.isEmpty() && precedence(operators.get(operators.size() - 1).getType()) > precedence) {
+                reduce(operands, operators);
+            }
+            operators.add(operator);
+            operands.add(unary());
         }
-        return term;
-    }
-
-    private Lexeme factor() {
-        Lexeme factor = new Lexeme(FACTOR, currentLexeme.getLineNumber());
-        factor.setLeft(powerTerm());
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
-        if (check(TIMES)) {
-            factor.setRight(glue);
-            glue.setLeft(consume(TIMES));
-            glue.setRight(factor());
-        } else if (check(DIVIDE)) {
-            factor.setRight(glue);
-            glue.setLeft(consume(DIVIDE));
-            glue.setRight(factor());
-        } else if (check(MOD)) {
-            factor.setRight(glue);
-            glue.setLeft(consume(MOD));
-            glue.setRight(factor());
+        while (!operators.isEmpty()) reduce(operands, operators);
+        return operands.get(0);
+    }
+
+    // Binding strength of a binary operator, or 0 if the token is not one
+    private static int precedence(TokenType type) {
+        switch (type) {
+            case OR:
+                return 1;
+            case AND:
+                return 2;
+            case EQUAL:
+            case NOTEQUAL:
+                return 3;
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return 4;
+            case PLUS:
+            case MINUS:
+                return 5;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+                return 6;
+            case EXP:
+                return 7;
+            default:
+                return 0;
         }
-        return factor;
     }
 
-    private Lexeme powerTerm() {
-        Lexeme powerTerm = new Lexeme(POWER_TERM, currentLexeme.getLineNumber());
-        powerTerm.setLeft(unaryTerm());
-        if (check(EXP)) {
-            Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
-            powerTerm.setRight(glue);
-            glue.setLeft(consume(EXP));
-            glue.setRight(powerTerm());
+    // Pops the top operator and its two operands and pushes the combined node
+    private static void reduce(ArrayList<Lexeme> operands, ArrayList<Lexeme> operators) {
+        Lexeme operator = operators.remove(operators.size() - 1);
+        operator.setRight(operands.remove(operands.size() - 1));
+        operator.setLeft(operands.remove(operands.size() - 1));
+        operands.add(operator);
+    }
+
+    // Prefix and postfix operators bind tighter than any binary operator.  A prefix operator
+    // keeps its operand on the right and a postfix one on the left, so a unary PLUS or MINUS
+    // is told apart from the binary one by its missing left child.
+    private Lexeme unary() {
+        if (check(INCREMENT) || check(DECREMENT)) {
+            Lexeme operator = consume(tokens.getType(current));
+            operator.setRight(arrayReferencePending() ? arrayReference() : consume(IDENTIFIER));
+            return operator;
+        } else if (prefixUnaryOperatorsPending()) {
+            Lexeme operator = consume(tokens.getType(current));
+            operator.setRight(primary());
+            return operator;
         }
-        return powerTerm;
-    }
-
-    private Lexeme unaryTerm() {
-        Lexeme unaryTerm = new Lexeme(UNARY_TERM, currentLexeme.getLineNumber());
-        if (check(INCREMENT)) {
-            unaryTerm.setLeft(consume(INCREMENT));
-            unaryTerm.setRight(variable());
-        } else if (check(DECREMENT)) {
-            unaryTerm.setLeft(consume(DECREMENT));
-            unaryTerm.setRight(variable());
-        } else if (check(PLUS)) {
-            unaryTerm.setLeft(consume(PLUS));
-            unaryTerm.setRight(simpleTerm());
-        } else if (check(MINUS)) {
-            unaryTerm.setLeft(consume(MINUS));
-            unaryTerm.setRight(simpleTerm());
-        } else if (check(NOT)) {
-            unaryTerm.setLeft(consume(NOT));
-            unaryTerm.setRight(simpleTerm());
-        } else {
-            unaryTerm.setLeft(simpleTerm());
-            if (check(INCREMENT)) {
-        	unaryTerm.setRight(consume(INCREMENT));
-            }
-            else if (check(DECREMENT)) {
-        	unaryTerm.setRight(consume(DECREMENT));
-            }
+        Lexeme primary = primary();
+        if (check(INCREMENT) || check(DECREMENT)) {
+            Lexeme operator = consume(tokens.getType(current));
+            operator.setLeft(primary);
+            return operator;
         }
-        return unaryTerm;
+        return primary;
     }
 
-    private Lexeme simpleTerm() {
-        Lexeme simpleTerm = new Lexeme(SIMPLE_TERM, currentLexeme.getLineNumber());
-        if (literalPending()) simpleTerm.setLeft(literal());
-        else if (groupingPending()) simpleTerm.setLeft(grouping());
-        else if (functionCallPending()) simpleTerm.setLeft(functionCall());
-        else simpleTerm.setLeft(variable());
-        return simpleTerm;
+    private Lexeme primary() {
+        if (literalPending()) return consume(tokens.getType(current));
+        else if (groupingPending()) {
+            discard(OPENPAREN);
+            Lexeme expression = expression();
+            discard(CLOSEPAREN);
+            return expression;
+        } else if (functionCallPending()) return functionCall();
+        else if (arrayReferencePending()) return arrayReference();
+        else return consume(IDENTIFIER);
     }
 
     private Lexeme incrementExpression() {
-        Lexeme incrementExpression = new Lexeme(INCREMENT_EXPRESSION, currentLexeme.getLineNumber());
+        Lexeme incrementExpression = new AstNode(INCREMENT_EXPRESSION, currentLineNumber());
         if (check(IDENTIFIER)) {
             incrementExpression.setLeft(consume(IDENTIFIER));
             if (check(INCREMENT)) incrementExpression.setRight(consume(INCREMENT));
@@ -712,7 +725,7 @@ public class Parser {
     }
 
     private Lexeme variable() {
-	Lexeme variable = new Lexeme(VARIABLE, currentLexeme.getLineNumber());
+	Lexeme variable = new AstNode(VARIABLE, currentLineNumber());
 	if (arrayReferencePending()) {
 	    variable.setLeft(arrayReference());
 	} else {
@@ -722,8 +735,8 @@ public class Parser {
     }
 
     private Lexeme arrayReference() {
-        Lexeme arrayReference = new Lexeme(ARRAY_REFERENCE, currentLexeme.getLineNumber());
-        Lexeme glue = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme arrayReference = new AstNode(ARRAY_REFERENCE, currentLineNumber());
+        Lexeme glue = new AstNode(GLUE, currentLineNumber());
         arrayReference.setLeft(consume(IDENTIFIER));
         arrayReference.setRight(glue);
 
@@ -738,13 +751,13 @@ public class Parser {
     }
 
     private Lexeme functionCall() {
-        Lexeme functionCall = new Lexeme(FUNCTION_CALL, currentLexeme.getLineNumber());
-        Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme functionCall = new AstNode(FUNCTION_CALL, currentLineNumber());
+        Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
         functionCall.setLeft(glue1);
         glue1.setLeft(consume(IDENTIFIER));
         glue1.setRight(consume(OPENPAREN));
 
-        Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
         functionCall.setRight(glue2);
         if (argumentListPending()) glue2.setLeft(argumentList());
         glue2.setRight(consume(CLOSEPAREN));
@@ -753,21 +766,21 @@ public class Parser {
     }
 
     private Lexeme argumentList() {
-        Lexeme argumentList = new Lexeme(ARGUMENT_LIST, currentLexeme.getLineNumber());
+        Lexeme argumentList = new AstNode(ARGUMENT_LIST, currentLineNumber());
 
         if (check(IDENTIFIER) && checkNext(COLON)) {
-            Lexeme glue1 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue1 = new AstNode(GLUE, currentLineNumber());
             argumentList.setLeft(glue1);
             glue1.setLeft(consume(IDENTIFIER));
             glue1.setRight(consume(COLON));
         }
 
-        Lexeme glue2 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+        Lexeme glue2 = new AstNode(GLUE, currentLineNumber());
         argumentList.setRight(glue2);
         glue2.setLeft(expression());
 
         if (check(COMMA)) {
-            Lexeme glue3 = new Lexeme(GLUE, currentLexeme.getLineNumber());
+            Lexeme glue3 = new AstNode(GLUE, currentLineNumber());
             glue2.setRight(glue3);
             glue3.setLeft(consume(COMMA));
             glue3.setRight(argumentList());
@@ -776,32 +789,6 @@ public class Parser {
         return argumentList;
     }
 
-    private Lexeme grouping() {
-        Lexeme grouping = new Lexeme(GROUPING, currentLexeme.getLineNumber());
-        grouping.setLeft(consume(OPENPAREN));
-        Lexeme expression = expression();
-        Lexeme closeParen = consume(CLOSEPAREN);
-        grouping.setRight(closeParen);
-
-        closeParen.setLeft(expression);
-
-        return grouping;
-    }
-
-    private Lexeme literal() {
-	Lexeme literal = new Lexeme(TokenType.LITERAL, currentLexeme.getLineNumber());
-        if (check(INT)) literal.setLeft(consume(INT));
-        else if (check(FLOAT)) literal.setLeft(consume(FLOAT));
-        else if (booleanLiteralPending()) literal.setLeft(booleanLiteral());
-        else literal.setLeft(consume(STRING));
-        return literal;
-    }
-
-    private Lexeme booleanLiteral() {
-        if (check(TRUE)) return consume(TRUE);
-        else return consume(FALSE);
-    }
-
     // ---------- Pending Methods ----------
 
     private boolean statementListPending() {
@@ -1041,38 +1028,58 @@ public class Parser {
     }
 
     public static void printTree(Lexeme root) {
-        String printableTree = getPrintableTree(root, 1);
-        System.out.println(printableTree);
+        PrintWriter out = new PrintWriter(System.out);
+        printTree(root, out);
+        out.flush();
+    }
+
+    // Streams the tree to out instead of building it up as one String
+    public static void printTree(Lexeme root, PrintWriter out) {
+        if (root != null) printTree(root, 1, out);
+        out.println();
     }
 
-    private static String getPrintableTree(Lexeme root, int level) {
-        String treeString = root.toSimpleString();
+    private static void printTree(Lexeme root, int level, PrintWriter out) {
+        out.print(root.toSimpleString());
         switch (root.getType()) {
             case IDENTIFIER:
-                treeString += " (" + root.getStringValue() + ")";
+                out.print(" (" + root.getStringValue() + ")");
                 break;
             case STRING:
-                treeString += " (\"" + root.getStringValue() + "\")";
+                out.print(" (\"" + root.getStringValue() + "\")");
                 break;
             case INT:
-                treeString += " (" + root.getIntValue() + ")";
+                out.print(" (" + root.getIntValue() + ")");
                 break;
             case FLOAT:
-                treeString += " (" + root.getFloatValue() + ")";
+                out.print(" (" + root.getFloatValue() + ")");
                 break;
             default:
                 break;
         }
 
-        StringBuilder spacer = new StringBuilder("\n");
-        spacer.append(String.join("", Collections.nCopies(level, "    ")));
-
-        if (root.getLeft() != null)
-            treeString += spacer + "with left child: " + getPrintableTree(root.getLeft(), level + 1);
-        if (root.getRight() != null)
-            treeString += spacer + "and right child: " + getPrintableTree(root.getRight(), level + 1);
+        if (root.getStatements() != null) {
+            for (Lexeme statement : root.getStatements()) {
+                printSpacer(level, out);
+                out.print("statement: ");
+                printTree(statement, level + 1, out);
+            }
+        }
+        if (root.getLeft() != null) {
+            printSpacer(level, out);
+            out.print("with left child: ");
+            printTree(root.getLeft(), level + 1, out);
+        }
+        if (root.getRight() != null) {
+            printSpacer(level, out);
+            out.print("and right child: ");
+            printTree(root.getRight(), level + 1, out);
+        }
+    }
 
-        return treeString;
+    private static void printSpacer(int level, PrintWriter out) {
+        out.println();
+        for (int i = 0; i < level; i++) out.print("    ");
     }
 
 }
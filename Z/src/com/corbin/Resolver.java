@@ -0,0 +1,305 @@
+package com.corbin;
+
+import java.util.ArrayList;
+
+import static com.corbin.TokenType.*;
+
+// Binds identifiers to the frame and slot that hold them at run time, so Environments reads and
+// writes slot arrays instead of comparing names.  PROGRAM, IF_ELSE_STATEMENTS (one frame shared
+// by every branch), LOOP and FUNCTION_BODY each create a frame, and the frame has a slot for
+// every name its scope declares: var and const names, function names, parameters and loop
+// variables.  A use is bound to the innermost scope that declares the name anywhere, since in a
+// loop a declaration further down the body is visible from the second time around; until the
+// declaration has run, Environments keeps searching outward by name.
+//
+// Scoping is dynamic, so a name a function doesn't declare belongs to whichever caller is on the
+// stack.  Those free names are searched for by name, starting at the caller's frame, and the
+// Evaluator resolves each body when it is first called.  Outside functions the frames are exactly
+// the enclosing scopes, so a name none of them declares is reported here instead of when it runs.
+public class Resolver {
+    private final ArrayList<Scope> scopes = new ArrayList<>();
+    private int errors = 0;
+
+    private static class Scope {
+        final Lexeme owner;
+        final boolean function;
+        final FrameLayout layout = new FrameLayout();
+
+        Scope(Lexeme owner, boolean function) {
+            this.owner = owner;
+            this.function = function;
+        }
+    }
+
+    private Resolver() {
+    }
+
+    // -------------- Public Methods --------------
+
+    // False if the program uses names nothing declares; each one has been reported
+    public static boolean resolve(Lexeme program) {
+        if (program == null) return true;
+        Resolver resolver = new Resolver();
+        resolver.resolveProgram(program);
+        return resolver.errors == 0;
+    }
+
+    // A function's frames never depend on where it is defined, so each body is resolved on its
+    // own the first time it is called, and a library of functions costs nothing until it is used
+    public static void resolveFunction(Lexeme functionBody) {
+        new Resolver().resolveFunctionBody(functionBody);
+    }
+
+    // -------------- Scopes --------------
+
+    private void beginScope(Lexeme owner, boolean function) {
+        scopes.add(new Scope(owner, function));
+    }
+
+    private void endScope() {
+        Scope scope = scopes.remove(scopes.size() - 1);
+        scope.owner.setFrameLayout(scope.layout);
+    }
+
+    private void declare(Lexeme identifier) {
+        if (identifier == null || identifier.getType() != IDENTIFIER) return;
+        identifier.setDepth(0);
+        identifier.setSlot(scopes.get(scopes.size() - 1).layout.add(identifier.getSymbol()));
+    }
+
+    // Names declared directly in a statement list; nested ifs and loops have frames of their own
+    private void declareStatements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) {
+            if (statement.getType() == INITIALIZATION) declare(declaredIdentifier(statement));
+            else if (statement.getType() == FUNCTION_DEFINITION) declare(statement.getLeft());
+        }
+    }
+
+    private void resolveName(Lexeme identifier) {
+        if (identifier == null || identifier.getType() != IDENTIFIER) return;
+        int symbol = identifier.getSymbol();
+        for (int i = scopes.size() - 1, depth = 0; i >= 0; i--, depth++) {
+            Scope scope = scopes.get(i);
+            int slot = scope.layout.slotOf(symbol);
+            if (slot >= 0) {
+                identifier.setDepth(depth);
+                identifier.setSlot(slot);
+                return;
+            }
+            if (scope.function) {       // free in this function: search from the caller's frame
+                identifier.setDepth(depth + 1);
+                identifier.setSlot(-1);
+                return;
+            }
+        }
+        Z.error(identifier, "Variable " + identifier + " is undefined.");
+        errors++;
+    }
+
+    // -------------- Statements --------------
+
+    private void resolveProgram(Lexeme program) {
+        beginScope(program, false);
+        declareStatements(program.getLeft());
+        resolveStatements(program.getLeft());
+        endScope();
+    }
+
+    private void resolveStatements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) resolveStatement(statement);
+    }
+
+    private void resolveStatement(Lexeme statement) {
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                resolveExpression(statement.getLeft().getLeft());      // a name or an array element
+                resolveExpression(statement.getLeft().getRight());
+                break;
+            case IF_ELSE_STATEMENTS:
+                resolveIfElseStatements(statement);
+                break;
+            case FUNCTION_CALL:
+                resolveFunctionCall(statement);
+                break;
+            case INCREMENT_EXPRESSION:
+                resolveName(statement.getLeft());
+                resolveName(statement.getRight());
+                break;
+            case INITIALIZATION:
+                resolveExpression(initializerExpression(statement));
+                break;
+            case LOOP:
+                resolveLoop(statement);
+                break;
+            case OUTPUT_STATEMENT:
+                resolveExpression(statement.getRight());
+                break;
+            case RETURN:
+                resolveExpression(statement.getLeft());
+                break;
+            default:            // function bodies wait for their first call; input and switch statements are not evaluated
+        }
+    }
+
+    private void resolveIfElseStatements(Lexeme ifElseStatements) {
+        beginScope(ifElseStatements, false);
+        Lexeme node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            declareStatements(node.getLeft().getRight());
+        }
+        declareStatements(node);
+
+        node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            resolveExpression(node.getLeft().getLeft());
+            resolveStatements(node.getLeft().getRight());
+        }
+        resolveStatements(node);
+        endScope();
+    }
+
+    private void resolveLoop(Lexeme statement) {
+        beginScope(statement, false);
+        Lexeme loop = statement.getLeft();
+        switch (loop.getType()) {
+            case FOR_LOOP: {
+                Lexeme semi1 = loop.getRight();
+                Lexeme semi2 = semi1.getRight();
+                Lexeme body = semi2.getRight().getRight().getRight().getLeft();
+                declare(declaredIdentifier(semi1.getLeft()));
+                declareStatements(body);
+                resolveStatement(semi1.getLeft());
+                resolveExpression(semi2.getLeft());
+                resolveStatements(body);
+                if (semi2.getRight().getLeft() != null) resolveStatement(semi2.getRight().getLeft());
+                break;
+            }
+            case FOR_IN: {
+                Lexeme iterable = loop.getRight().getLeft();
+                Lexeme body = loop.getRight().getRight().getRight().getLeft();
+                declare(loop.getLeft());
+                declareStatements(body);
+                if (iterable.getType() == ELLIPSIS) {
+                    resolveExpression(iterable.getLeft());
+                    resolveExpression(iterable.getRight());
+                } else {
+                    resolveName(iterable);              // an array
+                }
+                resolveStatements(body);
+                break;
+            }
+            case WHILE_LOOP: {
+                Lexeme body = loop.getRight().getRight().getLeft();
+                declareStatements(body);
+                resolveExpression(loop.getLeft().getRight().getRight().getLeft());
+                resolveStatements(body);
+                break;
+            }
+        }
+        endScope();
+    }
+
+    private void resolveFunctionBody(Lexeme functionBody) {
+        Lexeme statementList = functionBody.getRight().getRight();
+        beginScope(functionBody, true);
+        for (Lexeme parameters = functionBody.getLeft(); parameters != null; ) {
+            declare(parameters.getLeft().getLeft());
+            parameters = parameters.getRight();
+            if (parameters != null) parameters = parameters.getRight();
+        }
+        declareStatements(statementList);
+        resolveStatements(statementList);
+        endScope();
+    }
+
+    // -------------- Expressions --------------
+
+    // Walks down the right operand in a loop, since long operator chains lean right
+    private void resolveExpression(Lexeme expression) {
+        while (expression != null) {
+            switch (expression.getType()) {
+                case IDENTIFIER:
+                    resolveName(expression);
+                    return;
+                case FUNCTION_CALL:
+                    resolveFunctionCall(expression);
+                    return;
+                case INT:
+                case FLOAT:
+                case STRING:
+                case TRUE:
+                case FALSE:
+                    return;
+                case ARRAY_REFERENCE:
+                    resolveName(expression.getLeft());
+                    expression = indexExpression(expression);
+                    break;
+                case ARRAY_INITIALIZER:
+                    for (Lexeme elements = arrayElements(expression); elements != null; elements = nextElements(elements)) {
+                        resolveExpression(elements.getLeft());
+                    }
+                    return;
+                default:
+                    resolveExpression(expression.getLeft());
+                    expression = expression.getRight();
+            }
+        }
+    }
+
+    private void resolveFunctionCall(Lexeme functionCall) {
+        resolveName(functionCall.getLeft().getLeft());
+        for (Lexeme arguments = functionCall.getRight().getLeft(); arguments != null; ) {
+            resolveExpression(arguments.getRight().getLeft());
+            arguments = arguments.getRight().getRight();
+            if (arguments != null) arguments = arguments.getRight();
+        }
+    }
+
+    // -------------- Helper Methods --------------
+
+    // Same navigation as Evaluator.evalInitialization
+    static Lexeme declaredIdentifier(Lexeme initialization) {
+        Lexeme identifier = initialization.getLeft().getLeft();
+        return identifier != null && identifier.getType() != IDENTIFIER ? identifier.getRight() : identifier;
+    }
+
+    // The value a var or const starts with, or null for var name: dataType
+    static Lexeme initializerExpression(Lexeme initialization) {
+        Lexeme parent = initializerParent(initialization);
+        return parent != null ? parent.getRight() : null;
+    }
+
+    // The node whose right child is the initializer expression, for passes that replace it
+    static Lexeme initializerParent(Lexeme initialization) {
+        Lexeme initializer = initialization.getLeft();
+        if (initializer.getType() == CONSTANT_INITIALIZER) return initializer.getRight().getRight();
+        if (initializer.getRight() == null) return null;
+        Lexeme expression = initializer.getRight().getRight();
+        return expression != null && expression.getType() == GLUE ? expression : initializer.getRight();
+    }
+
+    // The index of a[index]
+    static Lexeme indexExpression(Lexeme arrayReference) {
+        return arrayReference.getRight().getRight().getLeft();
+    }
+
+    // The EXPRESSION_LIST of an initializer's elements, each the left child of one of the list's
+    // nodes in order, or null for []; nextElements steps from one node to the next
+    static Lexeme arrayElements(Lexeme arrayInitializer) {
+        return arrayInitializer.getRight().getLeft();
+    }
+
+    static Lexeme nextElements(Lexeme expressionList) {
+        return expressionList.getRight() != null ? expressionList.getRight().getRight() : null;
+    }
+
+    // The type a var or const is declared with, or null if it takes its value's
+    static Lexeme declaredDataType(Lexeme initialization) {
+        Lexeme initializer = initialization.getLeft();
+        Lexeme dataType = initializer.getRight().getLeft();
+        if (initializer.getType() == CONSTANT_INITIALIZER) return dataType != null ? dataType.getRight() : null;
+        return dataType != null && dataType.getType() != ASSIGN ? dataType : null;
+    }
+}
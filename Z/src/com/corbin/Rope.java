@@ -0,0 +1,92 @@
+package com.corbin;
+
+import java.util.ArrayDeque;
+
+// The characters of a STRING value built by + or *, kept as the pieces it was built from until
+// something needs them as a String: a comparison, output, a conversion or indexing.  Joining two
+// ropes and repeating one take constant time, so a script that builds a string with s = s + piece
+// in a loop copies its characters once, when it prints the result, rather than on every +.  A
+// flattened rope keeps its String and drops its pieces.
+final class Rope {
+    private static final int FLAT_JOIN = 64;    // shorter joins of two flat pieces are copied at once
+    private static final Rope EMPTY = new Rope("");
+
+    private String flat;            // the characters, if a leaf or once flattened
+    private Rope left;              // a join of left and right
+    private Rope right;
+    private String unit;            // or count copies of unit
+    private int count;
+    private final int length;
+
+    private Rope(String flat) {
+        this.flat = flat;
+        this.length = flat.length();
+    }
+
+    private Rope(Rope left, Rope right) {
+        this.left = left;
+        this.right = right;
+        this.length = Math.addExact(left.length, right.length);
+    }
+
+    private Rope(String unit, int count) {
+        this.unit = unit;
+        this.count = count;
+        this.length = Math.multiplyExact(unit.length(), count);
+    }
+
+    // -------------- Public Methods --------------
+
+    static Rope of(String characters) {
+        return characters.isEmpty() ? EMPTY : new Rope(characters);
+    }
+
+    static Rope join(Rope left, Rope right) {
+        if (left.length == 0) return right;
+        if (right.length == 0) return left;
+        if (left.flat != null && right.flat != null && left.length + right.length <= FLAT_JOIN) {
+            return new Rope(left.flat.concat(right.flat));
+        }
+        return new Rope(left, right);
+    }
+
+    // count copies of a rope, or an empty one if count isn't positive.  The rope repeated is
+    // flattened here, which costs no more than the result will when it is flattened.
+    static Rope repeat(Rope rope, int count) {
+        if (count <= 0 || rope.length == 0) return EMPTY;
+        if (count == 1) return rope;
+        return new Rope(rope.flatten(), count);
+    }
+
+    int length() {
+        return length;
+    }
+
+    // Walks the joins with a stack of its own, as a rope built in a loop is as deep as the loop is long
+    String flatten() {
+        if (flat != null) return flat;
+        if (unit != null) {
+            flat = unit.repeat(count);
+        } else {
+            StringBuilder characters = new StringBuilder(length);
+            ArrayDeque<Rope> pending = new ArrayDeque<>();
+            pending.push(this);
+            while (!pending.isEmpty()) {
+                Rope rope = pending.pop();
+                if (rope.flat != null) {
+                    characters.append(rope.flat);
+                } else if (rope.unit != null) {
+                    characters.append(rope.flatten());
+                } else {
+                    pending.push(rope.right);
+                    pending.push(rope.left);
+                }
+            }
+            flat = characters.toString();
+        }
+        left = null;
+        right = null;
+        unit = null;
+        return flat;
+    }
+}
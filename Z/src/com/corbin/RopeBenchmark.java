@@ -0,0 +1,82 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+// STRING building in the Evaluator and the ClosureCompiler, which join ropes, against the
+// VirtualMachine, which concatenates Java Strings as it goes.  One program builds a string with
+// s = s + piece in a loop (+= is plain assignment in Z), the other repeats a string with *, and
+// both print the result, so the time includes flattening it.  All three engines must print the
+// same output.
+// Usage: java com.corbin.RopeBenchmark [pieces] [copies] [runs]
+public class RopeBenchmark {
+
+    public static void main(String[] args) {
+        int pieces = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        String concatenation = "var s = \"\"\n"
+                + "for (i = 0; i < " + pieces + "; i++) {\n"
+                + "    s = s + \"piece \" + i + \";\"\n"
+                + "}\n"
+                + "output s\n";
+        String repetition = "var unit = \"0123456789\"\n"
+                + "var s = unit * " + copies + "\n"
+                + "output s\n";
+
+        System.out.println("Concatenation: " + pieces + " pieces, repetition: " + copies + " copies");
+        for (int run = 0; run < runs; run++) {
+            compare("concat", concatenation);
+            compare("repeat", repetition);
+            System.out.println();
+        }
+    }
+
+    private static void compare(String name, String source) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream treeOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream vmOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream closureOutput = new ByteArrayOutputStream();
+        long tree, vm, closure;
+        try {
+            Lexeme program = prepare(source);
+            System.setOut(new PrintStream(treeOutput));
+            long start = System.nanoTime();
+            new Evaluator().eval(program, new Environments(null));
+            tree = System.nanoTime() - start;
+
+            program = prepare(source);
+            System.setOut(new PrintStream(vmOutput));
+            start = System.nanoTime();
+            new VirtualMachine(null).run(program);
+            vm = System.nanoTime() - start;
+
+            program = prepare(source);
+            System.setOut(new PrintStream(closureOutput));
+            start = System.nanoTime();
+            new ClosureCompiler().run(program);
+            closure = System.nanoTime() - start;
+        } finally {
+            System.setOut(console);
+        }
+
+        String expected = treeOutput.toString();
+        if (!expected.equals(vmOutput.toString()) || !expected.equals(closureOutput.toString())) {
+            throw new IllegalStateException(name + ": the engines disagree");
+        }
+        System.out.printf("%-6s %9d chars   Evaluator %8.1f ms   Closures %8.1f ms   VirtualMachine %8.1f ms   (%.1fx)%n",
+                name, expected.trim().length(), tree / 1e6, closure / 1e6, vm / 1e6, (double) vm / tree);
+    }
+
+    private static Lexeme prepare(String source) {
+        Lexeme program = new Parser(new Lexer(new StringReader(source))).program();
+        Optimizer.optimize(program, false);
+        if (!Resolver.resolve(program) || !TypeChecker.check(program)) {
+            throw new IllegalStateException("The benchmark program has errors");
+        }
+        LoopOptimizer.optimize(program);
+        return program;
+    }
+}
@@ -0,0 +1,47 @@
+package com.corbin;
+
+// Parses and runs straight-line programs of growing length on a thread with a small, fixed
+// stack, to check that statement lists are handled without recursing per statement.
+// Usage: java com.corbin.StatementListScalingTest [maxStatements]
+public class StatementListScalingTest {
+    private static final long STACK_SIZE = 512 * 1024;     // the JVM default on most platforms is 512k-1M
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxStatements = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        boolean[] passed = {true};
+        Thread test = new Thread(null, () -> {
+            for (int statements = 1_000; statements <= maxStatements; statements *= 10) {
+                passed[0] &= run(statements);
+            }
+        }, "scaling", STACK_SIZE);
+        test.start();
+        test.join();
+        if (!passed[0]) System.exit(1);
+    }
+
+    // One declaration followed by statements - 1 increments, so the result is statements - 1
+    private static boolean run(int statements) {
+        StringBuilder source = new StringBuilder("var x = 0\n");
+        for (int i = 1; i < statements; i++) source.append("x = x + 1\n");
+
+        long start = System.nanoTime();
+        Lexeme program;
+        Lexeme result;
+        try {
+            program = new Parser(new Lexer(source.toString())).program();
+            long parsed = System.nanoTime();
+            result = new Evaluator().eval(program, new Environments(null));
+            System.out.printf("%,10d statements: parse %8.1fms, run %8.1fms%n", statements,
+                    (parsed - start) / 1e6, (System.nanoTime() - parsed) / 1e6);
+        } catch (StackOverflowError error) {
+            System.out.printf("%,10d statements: FAILED, stack overflow%n", statements);
+            return false;
+        }
+
+        if (result == null || result.getIntValue() != statements - 1) {
+            System.out.printf("%,10d statements: FAILED, result %s%n", statements, result);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+package com.corbin;
+
+// Interns every identifier and keyword name once and gives it a dense int id.  The Lexer
+// looks names up straight from its character buffer, so a String is only allocated the
+// first time a name is seen.  Keywords are interned like any other name and carry their
+// TokenType, which lets the Lexer recognize them in the same lookup.
+//
+// The table is process-wide and append-only: nothing is removed, and an id names the same
+// String for the life of the JVM, so the ids in any TokenBuffer, Lexeme or loaded AstArena
+// (which are remapped by name) stay valid however many Lexers have run since.  It grows by one
+// entry per distinct name, not per lex: lexing the same source again, speculatively or in a
+// benchmark, adds nothing.  SymbolTableTest checks both.
+public class SymbolTable {
+    private static final int INITIAL_CAPACITY = 1024;     // must be a power of two
+
+    // The arrays of a table, replaced whole when it grows.  Entries are only ever added, under
+    // the lock, and an entry is written before count is raised past its id.  So a thread that
+    // reads count and then table sees every id below that count, with its name and slot, and
+    // needs no lock to find a name that is already there: only a name seen for the first time,
+    // or one added since, takes the lock.  ParallelLexer chunks mostly see names again.
+    private static final class Table {
+        final String[] names;
+        final TokenType[] keywordTypes;
+        final int[] slots;              // open addressing: symbol id + 1, or 0 if empty
+        final int[] slotHashes;
+
+        Table(int capacity) {
+            names = new String[capacity / 2];
+            keywordTypes = new TokenType[capacity / 2];
+            slots = new int[capacity];
+            slotHashes = new int[capacity];
+        }
+    }
+
+    // Static Variables
+    private static volatile Table table = new Table(INITIAL_CAPACITY);
+    private static volatile int count = 0;                 // ids below it are complete in table
+
+    // -------------- Public Methods --------------
+
+    public static int intern(char[] characters, int start, int length) {
+        int hash = hash(characters, start, length);
+        int published = count;                              // read before table, see Table
+        int id = find(table, published, characters, start, length, hash);
+        return id >= 0 ? id : internLocked(characters, start, length, hash);
+    }
+
+    public static int intern(String name) {
+        return intern(name.toCharArray(), 0, name.length());
+    }
+
+    public static String name(int symbol) {
+        Table current = table;
+        String name = symbol < current.names.length ? current.names[symbol] : null;
+        return name != null ? name : lockedTable().names[symbol];   // an id from a thread we haven't synchronized with
+    }
+
+    // TokenType of a keyword symbol, or null for a plain identifier.  Keywords are defined by the
+    // Lexer's static initializer, which any thread with a Lexer has seen finish.
+    public static TokenType keywordType(int symbol) {
+        Table current = table;
+        return symbol < current.keywordTypes.length ? current.keywordTypes[symbol] : lockedTable().keywordTypes[symbol];
+    }
+
+    public static synchronized void defineKeyword(String name, TokenType type) {
+        int symbol = intern(name);
+        Table current = table;
+        current.keywordTypes[symbol] = type;
+        table = current;            // publishes the type to threads that read table after this
+    }
+
+    public static int size() {
+        return count;
+    }
+
+    // -------------- Helper Methods --------------
+
+    // The id of a name among the first published ids of a table, or -1 if it isn't one of them
+    private static int find(Table current, int published, char[] characters, int start, int length, int hash) {
+        int mask = current.slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = current.slots[slot] - 1;
+            if (id < 0 || id >= published) return -1;
+            if (current.slotHashes[slot] == hash && matches(current.names[id], characters, start, length)) return id;
+        }
+    }
+
+    private static synchronized int internLocked(char[] characters, int start, int length, int hash) {
+        int id = find(table, count, characters, start, length, hash);
+        return id >= 0 ? id : add(new String(characters, start, length), hash);
+    }
+
+    private static synchronized Table lockedTable() {
+        return table;
+    }
+
+    // Called holding the lock
+    private static int add(String name, int hash) {
+        int id = count;
+        Table current = table;
+        if (id == current.names.length || (id + 1) * 2 > current.slots.length) {
+            current = grow(current, id);
+            table = current;
+        }
+        current.names[id] = name;
+        int mask = current.slots.length - 1;
+        int slot = hash & mask;
+        while (current.slots[slot] != 0) slot = (slot + 1) & mask;
+        current.slotHashes[slot] = hash;
+        current.slots[slot] = id + 1;
+        count = id + 1;             // publishes the entry
+        return id;
+    }
+
+    // A table twice the size holding the first size entries of current, which is left as it is
+    // for threads still reading it
+    private static Table grow(Table current, int size) {
+        Table grown = new Table(current.slots.length * 2);
+        System.arraycopy(current.names, 0, grown.names, 0, size);
+        System.arraycopy(current.keywordTypes, 0, grown.keywordTypes, 0, size);
+        int mask = grown.slots.length - 1;
+        for (int i = 0; i < current.slots.length; i++) {
+            if (current.slots[i] == 0) continue;
+            int slot = current.slotHashes[i] & mask;
+            while (grown.slots[slot] != 0) slot = (slot + 1) & mask;
+            grown.slots[slot] = current.slots[i];
+            grown.slotHashes[slot] = current.slotHashes[i];
+        }
+        return grown;
+    }
+
+    private static int hash(char[] characters, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) hash = 31 * hash + characters[i];
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, char[] characters, int start, int length) {
+        if (name.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != characters[start + i]) return false;
+        }
+        return true;
+    }
+}
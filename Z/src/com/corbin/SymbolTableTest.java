@@ -0,0 +1,133 @@
+package com.corbin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Checks that the SymbolTable is append-only: lexing a source again adds no symbols and gives
+// the same ids, and growing the table keeps every id naming the same String and every keyword
+// its TokenType.  Then that threads interning the same new names at once all get one id for
+// each, and that ParallelLexer, whose chunks intern at once, gives what the sequential Lexer does.
+// Usage: java com.corbin.SymbolTableTest
+public class SymbolTableTest {
+    private static boolean passed = true;
+
+    public static void main(String[] args) {
+        char[] source = ("var symbolTableTestTotal = 0\n"
+                + "for (symbolTableTestIndex = 0; symbolTableTestIndex < 4; symbolTableTestIndex++) {\n"
+                + "    symbolTableTestTotal = symbolTableTestTotal + symbolTableTestIndex\n"
+                + "}\n"
+                + "output symbolTableTestTotal\n").toCharArray();
+        TokenBuffer first = ParallelLexer.lexSequentially(source);
+        int size = SymbolTable.size();
+        TokenBuffer second = ParallelLexer.lexSequentially(source);
+        check("lexing again adds no symbols", SymbolTable.size() == size);
+        check("lexing again gives the same ids", sameSymbols(first, second));
+
+        int total = SymbolTable.intern("symbolTableTestTotal");
+        int keyword = SymbolTable.intern("while");
+        boolean dense = true;
+        for (int i = 0; i < 5000; i++) {
+            dense &= SymbolTable.intern("symbolTableTestName" + i) == size + i;
+        }
+        check("new names get the next ids", dense && SymbolTable.size() == size + 5000);
+        boolean stable = true;
+        for (int i = 0; i < 5000; i++) {
+            int symbol = size + i;
+            stable &= SymbolTable.name(symbol).equals("symbolTableTestName" + i)
+                    && SymbolTable.intern("symbolTableTestName" + i) == symbol;
+        }
+        check("ids keep their names as the table grows", stable && SymbolTable.name(total).equals("symbolTableTestTotal")
+                && SymbolTable.intern("symbolTableTestTotal") == total);
+        check("keywords keep their types as the table grows", SymbolTable.keywordType(keyword) == TokenType.WHILE
+                && SymbolTable.keywordType(total) == null);
+        check("earlier tokens still name their identifiers", sameSymbols(first, ParallelLexer.lexSequentially(source))
+                && first.getStringValue(1).equals("symbolTableTestTotal"));
+
+        checkConcurrentInterning(8, 20000);
+        checkParallelLexing(4, 40000);
+
+        if (!passed) System.exit(1);
+        System.out.println("All symbol table tests passed");
+    }
+
+    // Each thread interns the same new names in its own order
+    private static void checkConcurrentInterning(int threads, int names) {
+        int size = SymbolTable.size();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Callable<int[]>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < names; i++) order.add(i);
+            Collections.shuffle(order, new Random(t));
+            tasks.add(() -> {
+                int[] ids = new int[names];
+                for (int i : order) ids[i] = SymbolTable.intern("symbolTableTestConcurrent" + i);
+                for (int i : order) {
+                    if (!SymbolTable.name(ids[i]).equals("symbolTableTestConcurrent" + i)) ids[i] = -1;
+                }
+                return ids;
+            });
+        }
+        boolean agree = true;
+        int[] first = null;
+        for (Future<int[]> result : pool.invokeAll(tasks)) {
+            int[] ids = join(result);
+            if (first == null) first = ids;
+            agree &= Arrays.equals(first, ids);
+        }
+        pool.shutdown();
+        boolean[] seen = new boolean[names];
+        for (int id : first) {
+            agree &= id >= size && id < size + names && !seen[id - size];
+            if (agree) seen[id - size] = true;
+        }
+        check(threads + " threads interning at once get one id per name", agree && SymbolTable.size() == size + names);
+    }
+
+    // A source of new names, large enough for ParallelLexer to split
+    private static void checkParallelLexing(int threads, int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("var symbolTableTestLexed").append(i).append(" = symbolTableTestLexed")
+                    .append(i / 2).append(" + ").append(i).append(" * 2.5 // a comment to pad the line\n");
+        }
+        char[] source = text.toString().toCharArray();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        TokenBuffer parallel = ParallelLexer.lex(source, pool);
+        pool.shutdown();
+        TokenBuffer sequential = ParallelLexer.lexSequentially(source);
+        boolean same = sameSymbols(parallel, sequential);
+        for (int i = 0; same && i < parallel.size(); i++) {
+            same = parallel.getLineNumber(i) == sequential.getLineNumber(i);
+        }
+        check(source.length + " characters lexed in parallel match the sequential Lexer", same);
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static boolean sameSymbols(TokenBuffer first, TokenBuffer second) {
+        if (first.size() != second.size()) return false;
+        for (int i = 0; i < first.size(); i++) {
+            if (first.getType(i) != second.getType(i)) return false;
+            if (first.getType(i) == TokenType.IDENTIFIER && first.getSymbol(i) != second.getSymbol(i)) return false;
+        }
+        return true;
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "PASS " : "FAIL ") + name);
+        passed &= ok;
+    }
+}
@@ -0,0 +1,104 @@
+package com.corbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs programs with Tiers at several thresholds and checks that each prints what the Evaluator
+// prints on its own, and that exactly the functions and loops that pass the threshold are
+// promoted, once each, with loops switching part way through a run.
+// Usage: java com.corbin.TieringTest
+public class TieringTest {
+    private static boolean passed = true;
+
+    public static void main(String[] args) {
+        String calls = "func square(n: int) -> int {\n"
+                + "    return n * n\n"
+                + "}\n"
+                + "var total = 0\n"
+                + "for (i = 0; i < 4; i++) {\n"
+                + "    total = total + square(i)\n"
+                + "}\n"
+                + "output total\n";
+        check("calls", calls, 10);
+        check("calls", calls, 4);
+        check("calls", calls, 3, "function square on line 1 after 3 calls", "for loop on line 5 after 3 iterations");
+        check("calls", calls, 0, "function square on line 1 after 0 calls", "for loop on line 5 after 0 iterations");
+
+        // The for loop gets hot in its first run and finishes compiled; the while loop inside it
+        // gets hot over several runs of a few iterations, and later runs start compiled
+        String loops = "var total = 0\n"
+                + "for (i = 0; i < 30; i++) {\n"
+                + "    var j = 0\n"
+                + "    while (j < 3) {\n"
+                + "        total = total + i * j\n"
+                + "        j++\n"
+                + "    }\n"
+                + "}\n"
+                + "output total\n"
+                + "var steps = 0.0\n"
+                + "for k in 0...25 {\n"
+                + "    steps = steps + k / 2.0\n"
+                + "}\n"
+                + "output steps\n";
+        check("loops", loops, 100);
+        check("loops", loops, 20, "while loop on line 4 after 20 iterations", "for loop on line 2 after 20 iterations",
+                "for in on line 11 after 20 iterations");
+        check("loops", loops, 26, "while loop on line 4 after 26 iterations", "for loop on line 2 after 26 iterations");
+
+        // A recursive function promoted in the middle of its own recursion
+        String recursion = "func fib(n: int) -> int {\n"
+                + "    var r = n\n"
+                + "    if (n >= 2) { r = fib(n - 1) + fib(n - 2) }\n"
+                + "    return r\n"
+                + "}\n"
+                + "output fib(15)\n";
+        check("recursion", recursion, 5, "function fib on line 1 after 5 calls");
+
+        if (!passed) System.exit(1);
+        System.out.println("All tiering tests passed");
+    }
+
+    private static void check(String name, String source, int threshold, String... expectedEvents) {
+        String expected = run(source, null);
+        Tiers tiers = new Tiers(threshold, null);
+        String actual = run(source, tiers);
+        List<String> events = tiers.events();
+        String label = name + " at threshold " + threshold;
+        if (!expected.equals(actual)) {
+            fail(label + ": printed\n" + actual + "instead of\n" + expected);
+        } else if (!events.equals(Arrays.asList(expectedEvents))) {
+            fail(label + ": promoted " + events + " instead of " + Arrays.asList(expectedEvents));
+        } else {
+            System.out.println("PASS " + label + ": " + events.size() + " promoted");
+        }
+    }
+
+    private static String run(String source, Tiers tiers) {
+        Lexeme program = new Parser(new Lexer(new StringReader(source))).program();
+        Optimizer.optimize(program, false);
+        if (!Resolver.resolve(program) || !TypeChecker.check(program)) {
+            throw new IllegalStateException("The test program has errors");
+        }
+        LoopOptimizer.optimize(program);
+
+        PrintStream console = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(output));
+            Evaluator evaluator = new Evaluator();
+            evaluator.setTiers(tiers);
+            evaluator.eval(program, new Environments(null));
+        } finally {
+            System.setOut(console);
+        }
+        return output.toString();
+    }
+
+    private static void fail(String message) {
+        System.out.println("FAIL " + message);
+        passed = false;
+    }
+}
@@ -0,0 +1,101 @@
+package com.corbin;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Tiered execution for the Evaluator: it counts the calls of each function body and the
+// iterations of each loop, and once a count passes the threshold, the function or loop runs
+// closure compiled from then on.  A loop that gets hot while running switches before its next
+// iteration, in the frame it has; later runs of it start compiled.  Counts are kept for the whole
+// run, so a loop entered many times with a few iterations each gets hot too.
+final class Tiers {
+    private final int threshold;
+    private final PrintWriter log;          // where tier-ups are reported as they happen, or null
+    private final ClosureCompiler compiler = new ClosureCompiler();
+    private final IdentityHashMap<Lexeme, int[]> counts = new IdentityHashMap<>();
+    private final ArrayList<String> events = new ArrayList<>();
+
+    // Code runs compiled once it has been called or iterated threshold times
+    Tiers(int threshold, PrintWriter log) {
+        if (threshold < 0) throw new IllegalArgumentException("Negative tier threshold " + threshold);
+        this.threshold = threshold;
+        this.log = log;
+    }
+
+    // -------------- Public Methods --------------
+
+    int threshold() {
+        return threshold;
+    }
+
+    // A line for each function and loop promoted, in the order they were
+    List<String> events() {
+        return events;
+    }
+
+    // Counts a call of functionBody, and whether the call should run compiled
+    boolean hot(Lexeme functionBody, Lexeme functionCall) {
+        int[] count = counter(functionBody);
+        if (count[0] > threshold) return true;
+        if (++count[0] <= threshold) return false;
+        promoted("function " + functionCall.getLeft().getLeft().getStringValue() + " on line "
+                + functionBody.getLineNumber() + " after " + threshold + " calls");
+        return true;
+    }
+
+    Lexeme call(Lexeme functionCall, Environments parentEnvironment) {
+        return compiler.call(functionCall, parentEnvironment);
+    }
+
+    // Whether a LOOP statement starts compiled
+    boolean hot(Lexeme statement) {
+        int[] count = counts.get(statement);
+        return count != null && count[0] > threshold;
+    }
+
+    // The iteration count of a LOOP statement, fetched once per run of it
+    int[] counter(Lexeme owner) {
+        int[] count = counts.get(owner);
+        if (count == null) {
+            count = new int[1];
+            counts.put(owner, count);
+        }
+        return count;
+    }
+
+    // Counts an iteration of a running loop, and whether the rest of it should run compiled
+    boolean backEdge(int[] count, Lexeme statement) {
+        if (++count[0] <= threshold) return false;
+        promoted(statement.getLeft().getType().toString().toLowerCase().replace('_', ' ') + " on line "
+                + statement.getLeft().getLineNumber() + " after " + threshold + " iterations");
+        return true;
+    }
+
+    Lexeme loop(Lexeme statement, Environments environment) {
+        return compiler.loop(statement, environment);
+    }
+
+    Lexeme resumeLoop(Lexeme statement, Environments loopEnvironment) {
+        return compiler.resumeLoop(statement, loopEnvironment);
+    }
+
+    Lexeme resumeForIn(Lexeme statement, Environments loopEnvironment, Lexeme start, Lexeme value, Lexeme end) {
+        return compiler.resumeForIn(statement, loopEnvironment, start, value, end);
+    }
+
+    Lexeme resumeForEach(Lexeme statement, Environments loopEnvironment, ArrayValue array, int next) {
+        return compiler.resumeForEach(statement, loopEnvironment, array, next);
+    }
+
+    // -------------- Private Methods --------------
+
+    private void promoted(String event) {
+        events.add(event);
+        if (log != null) {
+            log.println("tier-up: " + event);
+            log.flush();
+        }
+    }
+}
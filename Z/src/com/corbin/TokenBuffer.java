@@ -0,0 +1,238 @@
+package com.corbin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Compact token stream stored as parallel primitive arrays instead of one Lexeme per token.
+// Literal values live in the values array (INT values directly, FLOAT values as raw bits,
+// identifiers as their SymbolTable id) or, for strings, in a side table of Strings.  Lexemes are only created
+// when the Parser asks for one.
+public class TokenBuffer {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Instance Variables
+    private int[] types;
+    private int[] lines;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] values;
+    private String[] strings = new String[INITIAL_CAPACITY];
+
+    private int start = 0;              // index of the first token still held
+    private int size = 0;               // index one past the last token
+    private int stringStart = 0;        // side table index of strings[0]
+    private int stringCount = 0;        // side table index one past the last string
+    private int released = 0;           // tokens before this index may be discarded
+
+    // Constructors
+    public TokenBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TokenBuffer(int capacity) {
+        types = new int[capacity];
+        lines = new int[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public TokenBuffer(ArrayList<Lexeme> lexemes) {
+        this(Math.max(lexemes.size(), 1));
+        for (Lexeme lexeme : lexemes) add(lexeme);
+    }
+
+    // -------------- Append Methods --------------
+
+    public void add(TokenType type, int line, int offset, int length) {
+        append(type, line, offset, length);
+    }
+
+    public void addInt(int line, int offset, int length, int value) {
+        int slot = append(TokenType.INT, line, offset, length);
+        values[slot] = value;
+    }
+
+    public void addFloat(int line, int offset, int length, float value) {
+        int slot = append(TokenType.FLOAT, line, offset, length);
+        values[slot] = Float.floatToRawIntBits(value);
+    }
+
+    public void addSymbol(int line, int offset, int length, int symbol) {
+        int slot = append(TokenType.IDENTIFIER, line, offset, length);
+        values[slot] = symbol;
+    }
+
+    public void addString(int line, int offset, int length, String value) {
+        if (stringCount - stringStart == strings.length) compactStrings();
+        int slot = append(TokenType.STRING, line, offset, length);
+        strings[stringCount - stringStart] = value;
+        values[slot] = stringCount++;
+    }
+
+    public void add(Lexeme lexeme) {
+        switch (lexeme.getType()) {
+            case IDENTIFIER:
+                addSymbol(lexeme.getLineNumber(), 0, 0, lexeme.getSymbol());
+                break;
+            case STRING:
+                addString(lexeme.getLineNumber(), 0, 0, lexeme.getStringValue());
+                break;
+            case INT:
+                addInt(lexeme.getLineNumber(), 0, 0, lexeme.getIntValue());
+                break;
+            case FLOAT:
+                addFloat(lexeme.getLineNumber(), 0, 0, lexeme.getFloatValue());
+                break;
+            default:
+                add(lexeme.getType(), lexeme.getLineNumber(), 0, 0);
+        }
+    }
+
+    // Appends a copy of one token of another buffer
+    public void add(TokenBuffer other, int index) {
+        TokenType type = other.getType(index);
+        if (type == TokenType.STRING) {
+            addString(other.getLineNumber(index), other.getOffset(index), other.getLength(index), other.getStringValue(index));
+        } else {
+            int slot = append(type, other.getLineNumber(index), other.getOffset(index), other.getLength(index));
+            values[slot] = other.values[index - other.start];
+        }
+    }
+
+    // Appends the first count tokens of another buffer, shifting their line numbers by lineOffset
+    public void append(TokenBuffer other, int count, int lineOffset) {
+        while (size - start + count > types.length) grow();
+        int from = other.start;
+        int to = size - start;
+        System.arraycopy(other.types, 0, types, to, count);
+        System.arraycopy(other.offsets, 0, offsets, to, count);
+        System.arraycopy(other.lengths, 0, lengths, to, count);
+        System.arraycopy(other.values, 0, values, to, count);
+        for (int i = 0; i < count; i++) {
+            lines[to + i] = other.lines[i] + lineOffset;
+            if (types[to + i] == TokenType.STRING.ordinal()) {
+                if (stringCount - stringStart == strings.length) compactStrings();
+                strings[stringCount - stringStart] = other.getStringValue(from + i);
+                values[to + i] = stringCount++;
+            }
+            size++;
+        }
+    }
+
+    // -------------- Access Methods --------------
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType getType(int index) {
+        return TOKEN_TYPES[types[index - start]];
+    }
+
+    public int getLineNumber(int index) {
+        return lines[index - start];
+    }
+
+    public int getOffset(int index) {
+        return offsets[index - start];
+    }
+
+    public int getLength(int index) {
+        return lengths[index - start];
+    }
+
+    public int getIntValue(int index) {
+        return values[index - start];
+    }
+
+    public float getFloatValue(int index) {
+        return Float.intBitsToFloat(values[index - start]);
+    }
+
+    public int getSymbol(int index) {
+        return values[index - start];
+    }
+
+    public String getStringValue(int index) {
+        if (getType(index) == TokenType.IDENTIFIER) return SymbolTable.name(getSymbol(index));
+        return strings[values[index - start] - stringStart];
+    }
+
+    // Creates the tree node for a token
+    public Lexeme toLexeme(int index) {
+        TokenType type = getType(index);
+        int line = getLineNumber(index);
+        switch (type) {
+            case IDENTIFIER:
+                return AstNode.identifier(getSymbol(index), line);
+            case STRING:
+                return new AstNode(type, getStringValue(index), line);
+            case INT:
+                return new AstNode(type, getIntValue(index), line);
+            case FLOAT:
+                return new AstNode(type, getFloatValue(index), line);
+            default:
+                return new AstNode(type, line);
+        }
+    }
+
+    // Tokens before index are no longer needed, so a streaming buffer can reuse their space
+    public void release(int index) {
+        released = index;
+    }
+
+    // -------------- Helper Methods --------------
+
+    private int append(TokenType type, int line, int offset, int length) {
+        if (size - start == types.length) {
+            if (released > start) compact();
+            else grow();
+        }
+        int slot = size - start;
+        types[slot] = type.ordinal();
+        lines[slot] = line;
+        offsets[slot] = offset;
+        lengths[slot] = length;
+        size++;
+        return slot;
+    }
+
+    private void compact() {
+        int discard = released - start;
+        int kept = size - released;
+        for (int[] array : new int[][] {types, lines, offsets, lengths, values}) {
+            System.arraycopy(array, discard, array, 0, kept);
+        }
+        start = released;
+        compactStrings();
+    }
+
+    private void compactStrings() {
+        // Strings are appended in token order, so the ones still referenced are at the end of the side table
+        int firstUsed = stringCount;
+        for (int i = Math.max(start, released); i < size; i++) {
+            if (getType(i) == TokenType.STRING) {
+                firstUsed = values[i - start];
+                break;
+            }
+        }
+        int kept = stringCount - firstUsed;
+        if (firstUsed > stringStart) {
+            System.arraycopy(strings, firstUsed - stringStart, strings, 0, kept);
+            Arrays.fill(strings, kept, strings.length, null);
+            stringStart = firstUsed;
+        }
+        if (kept == strings.length) strings = Arrays.copyOf(strings, strings.length * 2);
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+}
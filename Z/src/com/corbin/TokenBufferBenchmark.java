@@ -0,0 +1,49 @@
+package com.corbin;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+// Measures retained heap per token for a whole token stream, as one Lexeme per token
+// versus the TokenBuffer struct-of-arrays layout.
+// Usage: java -Xmx4g com.corbin.TokenBufferBenchmark [testInput/finalTest.z] [lines]
+public class TokenBufferBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "testInput/finalTest.z";
+        int targetLines = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        String source = scale(new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset()), targetLines);
+        System.out.println("Source: " + path + " scaled to " + targetLines + " lines (" + source.length() + " chars)");
+
+        long baseline = usedHeap();
+        ArrayList<Lexeme> lexemes = new Lexer(source).lex();
+        long lexemeBytes = usedHeap() - baseline;
+        int tokenCount = lexemes.size();
+        lexemes = null;
+
+        baseline = usedHeap();
+        TokenBuffer tokens = new TokenBuffer();
+        Lexer lexer = new Lexer(source);
+        while (lexer.lexInto(tokens, 4096));
+        long bufferBytes = usedHeap() - baseline;
+
+        System.out.println("Tokens: " + tokenCount);
+        System.out.printf("ArrayList<Lexeme>: %,d bytes, %.1f bytes/token%n", lexemeBytes, (double) lexemeBytes / tokenCount);
+        System.out.printf("TokenBuffer:       %,d bytes, %.1f bytes/token%n", bufferBytes, (double) bufferBytes / tokens.size());
+    }
+
+    private static String scale(String source, int targetLines) {
+        int linesPerCopy = source.split("\n", -1).length;
+        StringBuilder scaled = new StringBuilder();
+        for (int lines = 0; lines < targetLines; lines += linesPerCopy) scaled.append(source).append('\n');
+        return scaled.toString();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,557 @@
+package com.corbin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.corbin.Lexeme.Datatype;
+
+import static com.corbin.TokenType.*;
+
+// Infers the type of each expression from its literals, declared types and the declarations the
+// Resolver bound its names to.  An arithmetic or comparison operator whose operand types are
+// known gets an Operation saying exactly what to compute, so the Evaluator doesn't look at
+// datatypes for it, and operand types that can't be combined are reported here instead of when
+// the operator runs.  Unknown types leave an operator to be checked when it is evaluated.
+//
+// A name's type is known once its declaration has certainly run, provided it is the only
+// declaration of the name in its scope: values are converted to a variable's type when it is
+// assigned and ++ and -- keep it, so it can't change after that.  Names free in a function
+// belong to the caller and are unknown, as are function results.  An array's elements have its
+// element type, and an array reference is given that datatype for the Evaluator.
+public class TypeChecker {
+    private enum Type {
+        INT, FLOAT, STRING, BOOLEAN, INT_ARRAY, FLOAT_ARRAY, STRING_ARRAY;
+
+        Datatype datatype() {
+            return this == BOOLEAN || isArray() ? null : Datatype.valueOf(name());
+        }
+
+        boolean isArray() {
+            return ordinal() >= INT_ARRAY.ordinal();
+        }
+
+        // The type of an array's elements
+        Type element() {
+            return values()[ordinal() - INT_ARRAY.ordinal()];
+        }
+
+        // The type of an array of these; only INT, FLOAT and STRING have one
+        Type array() {
+            return values()[ordinal() + INT_ARRAY.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return isArray() ? "[" + element() + "]" : name();
+        }
+    }
+
+    private final ArrayList<Scope> scopes = new ArrayList<>();
+    private int errors = 0;
+
+    private static class Scope {
+        final Type[] types;
+        final int[] declarations;       // how many declarations of each slot the scope has
+        final boolean[] declared;       // whether each slot's declaration has certainly run
+
+        Scope(FrameLayout layout) {
+            int size = layout != null ? layout.size() : 0;
+            types = new Type[size];
+            declarations = new int[size];
+            declared = new boolean[size];
+        }
+    }
+
+    private TypeChecker() {
+    }
+
+    // -------------- Public Methods --------------
+
+    // False if the program combines types that can't be; each one has been reported
+    public static boolean check(Lexeme program) {
+        if (program == null) return true;
+        TypeChecker checker = new TypeChecker();
+        checker.checkProgram(program);
+        return checker.errors == 0;
+    }
+
+    // Checked right after Resolver.resolveFunction, when the body is first called
+    public static boolean checkFunction(Lexeme functionBody) {
+        TypeChecker checker = new TypeChecker();
+        checker.checkFunctionBody(functionBody);
+        return checker.errors == 0;
+    }
+
+    // What an operator computes for operands of these datatypes, or null if the Evaluator has to
+    // decide: a STRING can only be added, subtracted and compared, except that a STRING times an
+    // INT repeats it
+    static Operation operation(TokenType operatorType, Datatype left, Datatype right) {
+        if (left == null || right == null) return null;
+        Datatype operands = left == Datatype.STRING || right == Datatype.STRING ? Datatype.STRING
+                : left == Datatype.FLOAT || right == Datatype.FLOAT ? Datatype.FLOAT : Datatype.INT;
+        switch (operatorType) {
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+                if (operands == Datatype.STRING) return null;
+                break;
+            default:
+                break;
+        }
+        return Operation.valueOf(operands + "_" + operatorType);
+    }
+
+    // -------------- Scopes --------------
+
+    private Scope beginScope(Lexeme owner) {
+        Scope scope = new Scope(owner.getFrameLayout());
+        scopes.add(scope);
+        return scope;
+    }
+
+    private void endScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void count(Lexeme identifier) {
+        Scope scope = scopes.get(scopes.size() - 1);
+        if (identifier != null && identifier.getType() == IDENTIFIER && holds(scope, identifier)) {
+            scope.declarations[identifier.getSlot()]++;
+        }
+    }
+
+    // Declarations directly in a statement list, as Resolver.declareStatements finds them
+    private void countStatements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) {
+            if (statement.getType() == INITIALIZATION) count(Resolver.declaredIdentifier(statement));
+            else if (statement.getType() == FUNCTION_DEFINITION) count(statement.getLeft());
+        }
+    }
+
+    private void declare(Lexeme identifier, Type type) {
+        Scope scope = scopes.get(scopes.size() - 1);
+        if (identifier == null || identifier.getType() != IDENTIFIER || !holds(scope, identifier)) return;
+        scope.types[identifier.getSlot()] = type;
+        scope.declared[identifier.getSlot()] = true;
+    }
+
+    private Type typeOfName(Lexeme identifier) {
+        int index = scopes.size() - 1 - identifier.getDepth();
+        if (identifier.getSlot() < 0 || index < 0) return null;
+        Scope scope = scopes.get(index);
+        int slot = identifier.getSlot();
+        if (!holds(scope, identifier) || !scope.declared[slot] || scope.declarations[slot] != 1) return null;
+        return scope.types[slot];
+    }
+
+    private static boolean holds(Scope scope, Lexeme identifier) {
+        return identifier.getSlot() >= 0 && identifier.getSlot() < scope.types.length;
+    }
+
+    // -------------- Statements --------------
+
+    private void checkProgram(Lexeme program) {
+        beginScope(program);
+        countStatements(program.getLeft());
+        checkStatements(program.getLeft());
+        endScope();
+    }
+
+    // Statements after a return never run, just as Evaluator.evalStatementList leaves them
+    private void checkStatements(Lexeme statementList) {
+        if (statementList == null || statementList.getStatements() == null) return;
+        for (Lexeme statement : statementList.getStatements()) {
+            checkStatement(statement);
+            if (statement.getType() == RETURN) return;
+        }
+    }
+
+    private void checkStatement(Lexeme statement) {
+        switch (statement.getType()) {
+            case ASSIGNMENT:
+                checkAssignment(statement.getLeft());
+                break;
+            case IF_ELSE_STATEMENTS:
+                checkIfElseStatements(statement);
+                break;
+            case FUNCTION_CALL:
+                typeOf(statement);
+                break;
+            case FUNCTION_DEFINITION:
+                declare(statement.getLeft(), null);
+                break;
+            case INCREMENT_EXPRESSION: {
+                boolean postfix = statement.getLeft().getType() == IDENTIFIER;
+                checkIncrement(postfix ? statement.getLeft() : statement.getRight());
+                break;
+            }
+            case INITIALIZATION:
+                declare(Resolver.declaredIdentifier(statement), checkInitialization(statement));
+                break;
+            case LOOP:
+                checkLoop(statement);
+                break;
+            case OUTPUT_STATEMENT:
+                typeOf(statement.getRight());
+                break;
+            case RETURN:
+                typeOf(statement.getLeft());
+                break;
+            default:            // input and switch statements are not evaluated
+        }
+    }
+
+    // Values are converted to the variable's or element's type, which a STRING or a boolean
+    // can't be; an array variable only takes an array of its own type
+    private void checkAssignment(Lexeme assignmentOperator) {
+        Lexeme target = assignmentOperator.getLeft();
+        Type valueType = typeOf(assignmentOperator.getRight());
+        Type variableType = target.getType() == IDENTIFIER ? typeOfName(target) : typeOf(target);
+        if (variableType == null || valueType == null || valueType == variableType) return;
+        if (valueType == Type.BOOLEAN || valueType == Type.STRING && variableType != Type.STRING
+                || valueType.isArray() || variableType.isArray()) {
+            error(target, "Type mismatch.  Can't assign " + valueType + " value to " + variableType + " variable");
+        }
+    }
+
+    // Type of the variable an initialization declares: the declared type, or else its value's
+    private Type checkInitialization(Lexeme initialization) {
+        Lexeme expression = Resolver.initializerExpression(initialization);
+        Lexeme dataType = Resolver.declaredDataType(initialization);
+        Type declaredType = dataType != null ? typeOfDataType(dataType) : null;
+        Type valueType = expression == null ? null
+                : expression.getType() == ARRAY_INITIALIZER ? typeOfArrayInitializer(expression, dataType, declaredType)
+                : typeOf(expression);
+        if (dataType == null) return valueType;
+
+        if (declaredType != null && valueType != null && valueType != declaredType
+                && (valueType == Type.BOOLEAN || valueType == Type.STRING || valueType.isArray() || declaredType.isArray())) {
+            error(dataType, "Type mismatch.  Can't initialize " + declaredType + " to " + valueType + " value");
+        }
+        return declaredType;
+    }
+
+    private void checkIfElseStatements(Lexeme ifElseStatements) {
+        Scope scope = beginScope(ifElseStatements);
+        Lexeme node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            countStatements(node.getLeft().getRight());
+        }
+        countStatements(node);
+
+        // Each branch starts from a new frame, since the bodies before it didn't run
+        node = ifElseStatements;
+        for (; node != null && node.getType() != STATEMENT_LIST; node = node.getRight()) {
+            Arrays.fill(scope.declared, false);
+            typeOf(node.getLeft().getLeft());
+            checkStatements(node.getLeft().getRight());
+        }
+        Arrays.fill(scope.declared, false);
+        checkStatements(node);
+        endScope();
+    }
+
+    private void checkLoop(Lexeme statement) {
+        beginScope(statement);
+        Lexeme loop = statement.getLeft();
+        switch (loop.getType()) {
+            case FOR_LOOP: {
+                Lexeme semi1 = loop.getRight();
+                Lexeme semi2 = semi1.getRight();
+                Lexeme body = semi2.getRight().getRight().getRight().getLeft();
+                if (semi1.getLeft() != null) count(Resolver.declaredIdentifier(semi1.getLeft()));
+                countStatements(body);
+                if (semi1.getLeft() != null) checkStatement(semi1.getLeft());
+                if (semi2.getLeft() != null) typeOf(semi2.getLeft());
+                checkStatements(body);
+                if (semi2.getRight().getLeft() != null) checkStatement(semi2.getRight().getLeft());
+                break;
+            }
+            case FOR_IN: {
+                Lexeme iterable = loop.getRight().getLeft();
+                Lexeme body = loop.getRight().getRight().getRight().getLeft();
+                count(loop.getLeft());
+                countStatements(body);
+                // The variable starts at the first bound and counts up as an INT or else a FLOAT,
+                // or takes each element of an array in turn
+                Type type;
+                if (iterable.getType() == ELLIPSIS) {
+                    type = typeOf(iterable.getLeft());
+                    typeOf(iterable.getRight());
+                    if (type != Type.INT && type != Type.FLOAT) type = null;
+                } else {
+                    Type arrayType = typeOf(iterable);
+                    if (arrayType != null && !arrayType.isArray()) error(iterable, "Invalid type.  Can't loop over " + arrayType);
+                    type = arrayType != null && arrayType.isArray() ? arrayType.element() : null;
+                }
+                declare(loop.getLeft(), type);
+                checkStatements(body);
+                break;
+            }
+            case WHILE_LOOP: {
+                Lexeme body = loop.getRight().getRight().getLeft();
+                countStatements(body);
+                typeOf(loop.getLeft().getRight().getRight().getLeft());
+                checkStatements(body);
+                break;
+            }
+        }
+        endScope();
+    }
+
+    // Arguments are converted to the parameters' declared types when the function is called
+    private void checkFunctionBody(Lexeme functionBody) {
+        Lexeme statementList = functionBody.getRight().getRight();
+        beginScope(functionBody);
+        for (Lexeme parameters = functionBody.getLeft(); parameters != null; ) {
+            count(parameters.getLeft().getLeft());
+            parameters = parameters.getRight();
+            if (parameters != null) parameters = parameters.getRight();
+        }
+        countStatements(statementList);
+        for (Lexeme parameters = functionBody.getLeft(); parameters != null; ) {
+            Lexeme parameter = parameters.getLeft();
+            declare(parameter.getLeft(), typeOfDataType(parameter.getRight().getRight()));
+            parameters = parameters.getRight();
+            if (parameters != null) parameters = parameters.getRight();
+        }
+        checkStatements(statementList);
+        endScope();
+    }
+
+    // -------------- Expressions --------------
+
+    private Type typeOf(Lexeme expression) {
+        switch (expression.getType()) {
+            case INT:
+                return Type.INT;
+            case FLOAT:
+                return Type.FLOAT;
+            case STRING:
+                return Type.STRING;
+            case TRUE:
+            case FALSE:
+                return Type.BOOLEAN;
+            case IDENTIFIER:
+                return typeOfName(expression);
+            case FUNCTION_CALL:
+                for (Lexeme arguments = expression.getRight().getLeft(); arguments != null; ) {
+                    typeOf(arguments.getRight().getLeft());
+                    arguments = arguments.getRight().getRight();
+                    if (arguments != null) arguments = arguments.getRight();
+                }
+                return null;
+            case OR:
+            case AND:
+                return typeOfConnectives(expression);
+            case NOT:
+                typeOf(expression.getRight());
+                return Type.BOOLEAN;
+            case INCREMENT:
+            case DECREMENT:
+                return checkIncrement(expression.getLeft() == null ? expression.getRight() : expression.getLeft());
+            case PLUS:
+            case MINUS:
+                if (expression.getLeft() == null) return typeOfSign(expression);
+                return typeOfBinaryOperators(expression);
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return typeOfBinaryOperators(expression);
+            case ARRAY_REFERENCE:
+                return typeOfArrayReference(expression);
+            case ARRAY_INITIALIZER:
+                return typeOfArrayInitializer(expression, null, null);
+            default:
+                return null;
+        }
+    }
+
+    // The array's element type, which the reference keeps as its datatype
+    private Type typeOfArrayReference(Lexeme arrayReference) {
+        Lexeme index = Resolver.indexExpression(arrayReference);
+        Type indexType = typeOf(index);
+        if (indexType == Type.STRING || indexType == Type.BOOLEAN || indexType != null && indexType.isArray()) {
+            error(index, "Invalid type.  Can't index an array with " + indexType);
+        }
+        Lexeme identifier = arrayReference.getLeft();
+        Type type = typeOfName(identifier);
+        if (type == null) return null;
+        if (!type.isArray()) {
+            error(identifier, "Variable " + identifier.getStringValue() + " is not an array");
+            return null;
+        }
+        arrayReference.setDatatype(type.element().datatype());
+        return type.element();
+    }
+
+    // An initializer has the declared type, whose element type each element is converted to, or
+    // else the type its elements give: STRING if any is one, FLOAT if any is, and INT otherwise
+    private Type typeOfArrayInitializer(Lexeme initializer, Lexeme dataType, Type declaredType) {
+        Type element = declaredType != null && declaredType.isArray() ? declaredType.element() : null;
+        Type type = null;
+        boolean known = true;
+        boolean empty = true;
+        for (Lexeme elements = Resolver.arrayElements(initializer); elements != null; elements = Resolver.nextElements(elements)) {
+            Type elementType = typeOf(elements.getLeft());
+            empty = false;
+            if (elementType == null) {
+                known = false;
+            } else if (elementType == Type.BOOLEAN || elementType.isArray()
+                    || elementType == Type.STRING && element != null && element != Type.STRING) {
+                error(elements.getLeft(), "Type mismatch.  Can't initialize " + (element != null ? element : "array")
+                        + " element to " + elementType + " value");
+                known = false;
+            } else if (type == null || elementType == Type.STRING || elementType == Type.FLOAT && type == Type.INT) {
+                type = elementType;
+            }
+        }
+        if (element != null) return declaredType;
+        if (empty) {
+            if (dataType == null) error(initializer, "Empty array needs a declared type");
+            return null;
+        }
+        return known ? type.array() : null;
+    }
+
+    // || and && give one of their operands, so the type is known only if they all have it
+    private Type typeOfConnectives(Lexeme expression) {
+        TokenType connective = expression.getType();
+        Type type = typeOf(expression.getLeft());
+        for (expression = expression.getRight(); ; expression = expression.getRight()) {
+            boolean last = expression.getType() != connective;
+            if (typeOf(last ? expression : expression.getLeft()) != type) type = null;
+            if (last) return type;
+        }
+    }
+
+    private Type checkIncrement(Lexeme variable) {
+        Type type = variable.getType() == IDENTIFIER ? typeOfName(variable)
+                : variable.getType() == ARRAY_REFERENCE ? typeOfArrayReference(variable) : null;
+        if (type == Type.STRING || type == Type.BOOLEAN || type != null && type.isArray()) {
+            error(variable, "Invalid type.  Can't increment or decrement " + type);
+            return null;
+        }
+        return type;
+    }
+
+    private Type typeOfSign(Lexeme operator) {
+        Type type = typeOf(operator.getRight());
+        if (operator.getType() == PLUS || type == null) return type;
+        if (type == Type.STRING || type == Type.BOOLEAN || type.isArray()) {
+            error(operator, "Invalid type.  Can't negate " + type);
+            return null;
+        }
+        operator.setOperation(type == Type.INT ? Operation.INT_NEGATE : Operation.FLOAT_NEGATE);
+        return type;
+    }
+
+    // Same order as Evaluator.evalBinaryOperators: down the right-leaning chain, then back up it
+    private Type typeOfBinaryOperators(Lexeme expression) {
+        ArrayList<Lexeme> operators = new ArrayList<>();
+        ArrayList<Type> leftTypes = new ArrayList<>();
+        while (isBinaryOperator(expression)) {
+            operators.add(expression);
+            leftTypes.add(typeOf(expression.getLeft()));
+            expression = expression.getRight();
+        }
+        Type type = typeOf(expression);
+        for (int i = operators.size() - 1; i >= 0; i--) {
+            type = specialize(operators.get(i), leftTypes.get(i), type);
+        }
+        return type;
+    }
+
+    // Mirrors the checks in Evaluator.evalEquality, evalRelational, evalAdditive,
+    // evalMultiplicative and evalPower, for operands whose types are known
+    private Type specialize(Lexeme operator, Type left, Type right) {
+        if (left == null || right == null) return null;
+        if (left == Type.BOOLEAN || right == Type.BOOLEAN) return incompatible(operator, left, right);
+        TokenType operatorType = operator.getType();
+        if (left.isArray() || right.isArray()) {
+            // An array times an INT repeats its elements; nothing else takes an array
+            if (operatorType == TIMES && left.isArray() && right == Type.INT) return left;
+            if (operatorType == TIMES && right.isArray() && left == Type.INT) return right;
+            return incompatible(operator, left, right);
+        }
+        Operation operation = operation(operatorType, left.datatype(), right.datatype());
+        if (operation == null) {
+            // Repeating a STRING is rare enough to leave to the Evaluator
+            if (operatorType == TIMES && (left == Type.INT || right == Type.INT)) return Type.STRING;
+            return incompatible(operator, left, right);
+        }
+        operator.setOperation(operation);
+        switch (operatorType) {
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return Type.BOOLEAN;
+            default:
+                return left == Type.STRING || right == Type.STRING ? Type.STRING
+                        : left == Type.FLOAT || right == Type.FLOAT ? Type.FLOAT : Type.INT;
+        }
+    }
+
+    private Type incompatible(Lexeme operator, Type left, Type right) {
+        error(operator, "Incompatible Types. Can't perform " + operator.getType() + " operation on operands of type "
+                + left + " and " + right);
+        return null;
+    }
+
+    // -------------- Helper Methods --------------
+
+    private void error(Lexeme lexeme, String message) {
+        Z.error(lexeme, message);
+        errors++;
+    }
+
+    private static Type typeOfDataType(Lexeme dataType) {
+        switch (dataType.getType()) {
+            case KW_INT:
+                return Type.INT;
+            case KW_FLOAT:
+                return Type.FLOAT;
+            case KW_STRING:
+                return Type.STRING;
+            case ARRAY_TYPE: {
+                Type element = typeOfDataType(dataType.getRight().getLeft());
+                return element != null && !element.isArray() ? element.array() : null;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isBinaryOperator(Lexeme expression) {
+        switch (expression.getType()) {
+            case PLUS:
+            case MINUS:
+                return expression.getLeft() != null;
+            case TIMES:
+            case DIVIDE:
+            case MOD:
+            case EXP:
+            case EQUAL:
+            case NOTEQUAL:
+            case GREATER:
+            case GREATEREQUAL:
+            case LESS:
+            case LESSEQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,778 @@
+package com.corbin;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+// Runs BytecodeFunctions, an alternative to the Evaluator chosen with --engine=vm.  A register is
+// a pair: its reference is INT, FLOAT, TRUE, FALSE or VOID, a String, or the FUNCTION_BODY of a
+// function, and its int is the INT's value or the FLOAT's bits, so arithmetic allocates nothing.
+// An empty register, a null reference, is a name whose declaration hasn't run; VOID is the null
+// the Evaluator gets from a statement or function without a value, and where the Evaluator would
+// dereference that null, this throws a NullPointerException too.
+//
+// Each call gets a frame with registers for every scope of the function, and entering an if-else
+// or loop empties that scope's registers, as the Evaluator makes a new Environments each time.  A
+// name whose register is empty is searched for by name outward through the scopes and on into
+// the caller's, as Environments does.  A function is resolved, checked and compiled when it is
+// first called, as the Evaluator prepares it.
+public class VirtualMachine {
+    static final Object INT = new Tag("INT");
+    static final Object FLOAT = new Tag("FLOAT");
+    static final Object TRUE = new Tag("TRUE");
+    static final Object FALSE = new Tag("FALSE");
+    static final Object VOID = new Tag("VOID");
+
+    private final Evaluator evaluator = new Evaluator();     // operators TypeChecker left generic
+    private final IdentityHashMap<Lexeme, BytecodeFunction> functions = new IdentityHashMap<>();
+    private final PrintWriter dump;
+
+    private final Object[] argument = new Object[1];        // an argument converted to its parameter's type
+    private final int[] argumentNum = new int[1];
+
+    // Where find() found a name
+    private Frame foundFrame;
+    private int foundRegister;
+
+    private static final class Tag {
+        private final String name;
+
+        Tag(String name) {
+            this.name = name;
+        }
+
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final class Frame {
+        final BytecodeFunction function;
+        final Object[] refs;
+        final int[] nums;
+        boolean[] constants;        // registers a const declared, once there is one
+        final Frame caller;
+        final int callerScope;
+
+        // The last name found from the caller's scope outward.  Frames that far out are suspended
+        // while this one runs, so what is bound there can't change; recursion finds a free name
+        // in the frame it was called from instead of searching every frame down to the program's.
+        int outsideSymbol = -1;
+        Frame outsideFrame;
+        int outsideRegister;
+
+        Frame(BytecodeFunction function, Frame caller, int callerScope) {
+            this.function = function;
+            this.refs = function.initialRefs.clone();
+            this.nums = function.initialNums.clone();
+            this.caller = caller;
+            this.callerScope = callerScope;
+        }
+    }
+
+    // dump prints each function's code as it is compiled, or is null
+    public VirtualMachine(PrintWriter dump) {
+        this.dump = dump;
+    }
+
+    // -------------- Public Methods --------------
+
+    // The program's value, as Evaluator.eval gives it; line numbers in it are the program's
+    public Lexeme run(Lexeme program) {
+        BytecodeFunction main = BytecodeCompiler.compile(program);
+        if (dump != null) main.print(dump);
+        Frame frame = new Frame(main, null, 0);
+        execute(frame);
+        return lexeme(frame.refs[main.result], frame.nums[main.result], program.getLineNumber());
+    }
+
+    // -------------- Execution --------------
+
+    private void execute(Frame frame) {
+        final BytecodeFunction function = frame.function;
+        final int[] code = function.code;
+        final Object[] pool = function.pool;
+        final Object[] refs = frame.refs;
+        final int[] nums = frame.nums;
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case Opcode.MOVE:
+                    refs[code[pc + 1]] = refs[code[pc + 2]];
+                    nums[code[pc + 1]] = nums[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.VOID:
+                    refs[code[pc + 1]] = VOID;
+                    pc += 2;
+                    break;
+                case Opcode.LOAD: {
+                    int d = code[pc + 1];
+                    int r = code[pc + 2];
+                    if (r >= 0 && refs[r] != null) {
+                        refs[d] = refs[r];
+                        nums[d] = nums[r];
+                    } else if (find(frame, r, code[pc + 3], ((Lexeme) pool[code[pc + 4]]).getSymbol())) {
+                        refs[d] = foundFrame.refs[foundRegister];
+                        nums[d] = foundFrame.nums[foundRegister];
+                    } else {
+                        Lexeme identifier = (Lexeme) pool[code[pc + 4]];
+                        Z.error(identifier, "Variable " + identifier + " is undefined.");
+                        refs[d] = VOID;
+                    }
+                    pc += 5;
+                    break;
+                }
+                case Opcode.DECLARE:
+                    declare(frame, code[pc + 1], refs[code[pc + 2]], nums[code[pc + 2]], (Lexeme) pool[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.ASSIGN: {
+                    int r = code[pc + 2];
+                    int v = code[pc + 5];
+                    if (code[pc + 6] < 0 && r >= 0 && refs[r] == INT && refs[v] == INT && !isConstant(frame, r)) {
+                        nums[r] = nums[v];
+                        if (code[pc + 1] >= 0) {
+                            refs[code[pc + 1]] = INT;
+                            nums[code[pc + 1]] = nums[v];
+                        }
+                    } else {
+                        assign(frame, code[pc + 1], r, code[pc + 3], (Lexeme) pool[code[pc + 4]], v, code[pc + 6]);
+                    }
+                    pc += 7;
+                    break;
+                }
+                case Opcode.INC: {
+                    int d = code[pc + 1];
+                    int r = code[pc + 2];
+                    if (r >= 0 && refs[r] == INT && !isConstant(frame, r)) {
+                        int old = nums[r];
+                        nums[r] = old + ((code[pc + 5] & Opcode.DECREMENT) != 0 ? -1 : 1);
+                        if (d >= 0) {
+                            refs[d] = INT;
+                            nums[d] = (code[pc + 5] & Opcode.PREFIX) != 0 ? nums[r] : old;
+                        }
+                    } else {
+                        increment(frame, d, r, code[pc + 3], (Lexeme) pool[code[pc + 4]], code[pc + 5]);
+                    }
+                    pc += 6;
+                    break;
+                }
+                case Opcode.CHECK:
+                    if (refs[code[pc + 1]] == VOID) throw nullValue();
+                    pc += 2;
+                    break;
+                case Opcode.CONVERT:
+                    convert(refs, nums, code[pc + 1], refs[code[pc + 2]], nums[code[pc + 2]], (Lexeme) pool[code[pc + 3]]);
+                    pc += 4;
+                    break;
+
+                case Opcode.IADD:
+                    setInt(refs, nums, code[pc + 1], nums[code[pc + 2]] + nums[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.ISUB:
+                    setInt(refs, nums, code[pc + 1], nums[code[pc + 2]] - nums[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.IMUL:
+                    setInt(refs, nums, code[pc + 1], nums[code[pc + 2]] * nums[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.IDIV:
+                    setInt(refs, nums, code[pc + 1], nums[code[pc + 2]] / nums[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.IMOD:
+                    setInt(refs, nums, code[pc + 1], nums[code[pc + 2]] % nums[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.IPOW:
+                    setInt(refs, nums, code[pc + 1], (int) Math.pow(nums[code[pc + 2]], nums[code[pc + 3]]));
+                    pc += 4;
+                    break;
+                case Opcode.FADD:
+                    setFloat(refs, nums, code[pc + 1], number(refs, nums, code[pc + 2]) + number(refs, nums, code[pc + 3]));
+                    pc += 4;
+                    break;
+                case Opcode.FSUB:
+                    setFloat(refs, nums, code[pc + 1], number(refs, nums, code[pc + 2]) - number(refs, nums, code[pc + 3]));
+                    pc += 4;
+                    break;
+                case Opcode.FMUL:
+                    setFloat(refs, nums, code[pc + 1], number(refs, nums, code[pc + 2]) * number(refs, nums, code[pc + 3]));
+                    pc += 4;
+                    break;
+                case Opcode.FDIV:
+                    setFloat(refs, nums, code[pc + 1], number(refs, nums, code[pc + 2]) / number(refs, nums, code[pc + 3]));
+                    pc += 4;
+                    break;
+                case Opcode.FMOD:
+                    setFloat(refs, nums, code[pc + 1], number(refs, nums, code[pc + 2]) % number(refs, nums, code[pc + 3]));
+                    pc += 4;
+                    break;
+                case Opcode.FPOW:
+                    setFloat(refs, nums, code[pc + 1], (float) Math.pow(number(refs, nums, code[pc + 2]), number(refs, nums, code[pc + 3])));
+                    pc += 4;
+                    break;
+                case Opcode.SADD:
+                    refs[code[pc + 1]] = string(refs[code[pc + 2]], nums[code[pc + 2]]) + string(refs[code[pc + 3]], nums[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.SSUB:
+                    refs[code[pc + 1]] = Lexeme.withoutSuffix(string(refs[code[pc + 2]], nums[code[pc + 2]]),
+                            string(refs[code[pc + 3]], nums[code[pc + 3]]));
+                    pc += 4;
+                    break;
+
+                case Opcode.IEQ:
+                    refs[code[pc + 1]] = nums[code[pc + 2]] == nums[code[pc + 3]] ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                case Opcode.INE:
+                    refs[code[pc + 1]] = nums[code[pc + 2]] != nums[code[pc + 3]] ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                case Opcode.IGT:
+                    refs[code[pc + 1]] = nums[code[pc + 2]] > nums[code[pc + 3]] ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                case Opcode.IGE:
+                    refs[code[pc + 1]] = nums[code[pc + 2]] >= nums[code[pc + 3]] ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                case Opcode.ILT:
+                    refs[code[pc + 1]] = nums[code[pc + 2]] < nums[code[pc + 3]] ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                case Opcode.ILE:
+                    refs[code[pc + 1]] = nums[code[pc + 2]] <= nums[code[pc + 3]] ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                case Opcode.FEQ:
+                case Opcode.FNE:
+                case Opcode.FGT:
+                case Opcode.FGE:
+                case Opcode.FLT:
+                case Opcode.FLE: {
+                    // Float.compare orders floats the way the Evaluator does
+                    int comparison = Float.compare(number(refs, nums, code[pc + 2]), number(refs, nums, code[pc + 3]));
+                    refs[code[pc + 1]] = compared(code[pc] - Opcode.FEQ, comparison) ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                }
+                case Opcode.SEQ:
+                case Opcode.SNE:
+                case Opcode.SGT:
+                case Opcode.SGE:
+                case Opcode.SLT:
+                case Opcode.SLE: {
+                    String left = string(refs[code[pc + 2]], nums[code[pc + 2]]);
+                    String right = string(refs[code[pc + 3]], nums[code[pc + 3]]);
+                    int comparison = left == right ? 0 : left.compareTo(right);     // literals are interned
+                    refs[code[pc + 1]] = compared(code[pc] - Opcode.SEQ, comparison) ? TRUE : FALSE;
+                    pc += 4;
+                    break;
+                }
+                case Opcode.BINOP: {
+                    Lexeme operator = (Lexeme) pool[code[pc + 4]];
+                    int line = operator.getLineNumber();
+                    Lexeme left = lexeme(refs[code[pc + 2]], nums[code[pc + 2]], line);
+                    Lexeme right = lexeme(refs[code[pc + 3]], nums[code[pc + 3]], line);
+                    store(refs, nums, code[pc + 1], evaluator.evalBinaryOperator(operator, left, right));
+                    pc += 5;
+                    break;
+                }
+                case Opcode.INEG:
+                    setInt(refs, nums, code[pc + 1], -nums[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Opcode.FNEG:
+                    setFloat(refs, nums, code[pc + 1], -number(refs, nums, code[pc + 2]));
+                    pc += 3;
+                    break;
+                case Opcode.NEG: {
+                    Lexeme operator = (Lexeme) pool[code[pc + 3]];
+                    Lexeme operand = lexeme(refs[code[pc + 2]], nums[code[pc + 2]], operator.getLineNumber());
+                    if (operand == null) throw nullValue();
+                    store(refs, nums, code[pc + 1], evaluator.evalNegation(operator, operand));
+                    pc += 4;
+                    break;
+                }
+                case Opcode.NOT:
+                    refs[code[pc + 1]] = truth(refs[code[pc + 2]], nums[code[pc + 2]]) ? FALSE : TRUE;
+                    pc += 3;
+                    break;
+
+                case Opcode.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case Opcode.JUMPF:
+                    pc = truth(refs[code[pc + 1]], nums[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                    break;
+                case Opcode.JUMPT:
+                    pc = truth(refs[code[pc + 1]], nums[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                    break;
+                case Opcode.JUMP_UNLESS_IEQ:
+                    pc = nums[code[pc + 1]] == nums[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                    break;
+                case Opcode.JUMP_UNLESS_INE:
+                    pc = nums[code[pc + 1]] != nums[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                    break;
+                case Opcode.JUMP_UNLESS_IGT:
+                    pc = nums[code[pc + 1]] > nums[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                    break;
+                case Opcode.JUMP_UNLESS_IGE:
+                    pc = nums[code[pc + 1]] >= nums[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                    break;
+                case Opcode.JUMP_UNLESS_ILT:
+                    pc = nums[code[pc + 1]] < nums[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                    break;
+                case Opcode.JUMP_UNLESS_ILE:
+                    pc = nums[code[pc + 1]] <= nums[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                    break;
+                case Opcode.CLEAR: {
+                    int from = code[pc + 1];
+                    Arrays.fill(refs, from, from + code[pc + 2], null);
+                    if (frame.constants != null) Arrays.fill(frame.constants, from, from + code[pc + 2], false);
+                    pc += 3;
+                    break;
+                }
+
+                case Opcode.CALLEE: {
+                    Object callee = refs[code[pc + 2]];
+                    if (!(callee instanceof Lexeme)) throw nullValue();
+                    refs[code[pc + 1]] = new Frame(function(function, code[pc + 4], (Lexeme) callee), frame, code[pc + 3]);
+                    pc += 5;
+                    break;
+                }
+                case Opcode.ARGCHECK: {
+                    Frame callee = (Frame) refs[code[pc + 1]];
+                    if (code[pc + 2] < callee.function.parameters.length) {
+                        pc += 5;
+                    } else {
+                        Z.error((Lexeme) pool[code[pc + 3]], "Too many arguments");
+                        pc = code[pc + 4];
+                    }
+                    break;
+                }
+                case Opcode.ARG: {
+                    Frame callee = (Frame) refs[code[pc + 1]];
+                    BytecodeFunction target = callee.function;
+                    int parameter = code[pc + 2];
+                    int register = target.parameterRegisters[parameter];
+                    convert(argument, argumentNum, 0, refs[code[pc + 3]], nums[code[pc + 3]], target.parameterTypes[parameter]);
+                    declare(callee, register, argument[0], argumentNum[0], target.parameters[parameter]);
+                    pc += 4;
+                    break;
+                }
+                case Opcode.CALL:
+                    call(refs, nums, code[pc + 1], (Frame) refs[code[pc + 2]], (Lexeme) pool[code[pc + 3]], code[pc + 4]);
+                    refs[code[pc + 2]] = null;
+                    pc += 5;
+                    break;
+                case Opcode.OUTPUT:
+                    output(refs[code[pc + 1]], nums[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.FORIN_TEST: {
+                    int line = ((Lexeme) pool[code[pc + 4]]).getLineNumber();
+                    boolean more = floatValue(refs[code[pc + 1]], nums[code[pc + 1]], line) < floatValue(refs[code[pc + 2]], nums[code[pc + 2]], line);
+                    pc = more ? pc + 5 : code[pc + 3];
+                    break;
+                }
+                case Opcode.FORIN_NEXT: {
+                    int count = code[pc + 1];
+                    if (refs[code[pc + 2]] == INT) setInt(refs, nums, count, nums[count] + 1);
+                    else setFloat(refs, nums, count, floatValue(refs[count], nums[count], 0) + 1);
+                    refs[code[pc + 3]] = refs[count];
+                    nums[code[pc + 3]] = nums[count];
+                    pc += 4;
+                    break;
+                }
+                case Opcode.UNRECOGNIZED:
+                    Z.error((Lexeme) pool[code[pc + 2]], "Unrecognized value");
+                    setInt(refs, nums, code[pc + 1], 0);
+                    pc += 3;
+                    break;
+                case Opcode.RETURN:
+                    return;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    // -------------- Variables --------------
+
+    // Finds a name whose register r, bound in scope, is empty, searching by name from the scope
+    // outside that one; r is -1 for a name free in the function, found from the caller's scope
+    private boolean find(Frame frame, int r, int scope, int symbol) {
+        if (r >= 0 && frame.refs[r] != null) {
+            foundFrame = frame;
+            foundRegister = r;
+            return true;
+        }
+        while (scope != 0) {
+            scope = frame.function.scopeParents[scope];
+            if (bound(frame, scope, symbol)) return true;
+        }
+        return outside(frame, symbol);
+    }
+
+    // The search from the scope frame was called from, which that frame remembers
+    private boolean outside(Frame frame, int symbol) {
+        if (frame.outsideSymbol == symbol) {
+            foundFrame = frame.outsideFrame;
+            foundRegister = frame.outsideRegister;
+            return true;
+        }
+        Frame caller = frame.caller;
+        if (caller == null) return false;
+        int scope = frame.callerScope;
+        while (!bound(caller, scope, symbol)) {
+            if (scope == 0) {
+                if (!outside(caller, symbol)) return false;
+                break;
+            }
+            scope = caller.function.scopeParents[scope];
+        }
+        frame.outsideSymbol = symbol;
+        frame.outsideFrame = foundFrame;
+        frame.outsideRegister = foundRegister;
+        return true;
+    }
+
+    private boolean bound(Frame frame, int scope, int symbol) {
+        int slot = frame.function.scopeLayouts[scope].slotOf(symbol);
+        if (slot < 0 || frame.refs[frame.function.scopeBases[scope] + slot] == null) return false;
+        foundFrame = frame;
+        foundRegister = frame.function.scopeBases[scope] + slot;
+        return true;
+    }
+
+    // Environments.insert: a register declared again, as in a loop, is updated
+    private void declare(Frame frame, int r, Object ref, int num, Lexeme identifier) {
+        if (frame.refs[r] == null) {
+            frame.refs[r] = ref;
+            frame.nums[r] = num;
+            if (identifier.isConstant()) {
+                if (frame.constants == null) frame.constants = new boolean[frame.refs.length];
+                frame.constants[r] = true;
+            }
+        } else {
+            update(frame, r, ref, num, identifier);
+        }
+    }
+
+    private void update(Frame frame, int r, Object ref, int num, Lexeme target) {
+        if (isConstant(frame, r) && !same(frame.refs[r], frame.nums[r], ref, num)) {     // allow const inside loop
+            Z.error(target, "Identifier cannot be modified");
+            return;
+        }
+        frame.refs[r] = ref;
+        frame.nums[r] = num;
+    }
+
+    private static boolean isConstant(Frame frame, int r) {
+        return frame.constants != null && frame.constants[r];
+    }
+
+    // Lexeme.equals on the old value and the new
+    private static boolean same(Object oldRef, int oldNum, Object ref, int num) {
+        if (oldRef == VOID) throw nullValue();
+        if (oldRef == INT || oldRef == FLOAT || oldRef instanceof String) {
+            if (ref == VOID) throw nullValue();
+            if (oldRef instanceof String) return oldRef.equals(ref);
+            if (oldRef != ref) return false;
+            return oldRef == INT ? oldNum == num : Float.compare(Float.intBitsToFloat(oldNum), Float.intBitsToFloat(num)) == 0;
+        }
+        return false;
+    }
+
+    // Evaluator.evalAssignment: the value takes the type of the variable's old value
+    private void assign(Frame frame, int d, int r, int scope, Lexeme identifier, int v, int old) {
+        Object[] refs = frame.refs;
+        int[] nums = frame.nums;
+        Object oldRef;
+        if (old >= 0) {
+            oldRef = refs[old];
+        } else if (find(frame, r, scope, identifier.getSymbol())) {
+            oldRef = foundFrame.refs[foundRegister];
+        } else {
+            Z.error(identifier, "Variable " + identifier + " is undefined.");
+            oldRef = VOID;
+        }
+        Object ref = refs[v];
+        int num = nums[v];
+        if (ref == VOID) {
+            if (d >= 0) refs[d] = VOID;
+            return;
+        }
+        if (oldRef == VOID) throw nullValue();
+        int line = identifier.getLineNumber();
+        if (oldRef == FLOAT) {
+            num = Float.floatToRawIntBits(floatValue(ref, num, line));
+            ref = FLOAT;
+        } else if (oldRef == INT) {
+            num = intValue(ref, num, line);
+            ref = INT;
+        } else if (oldRef instanceof String) {
+            ref = string(ref, num);
+        } else {
+            ref = VOID;
+        }
+        if (find(frame, r, scope, identifier.getSymbol())) update(foundFrame, foundRegister, ref, num, identifier);
+        else Z.error(identifier, "Variable " + identifier + " is undefined and therefore cannot be updated.");
+        if (d >= 0) {
+            refs[d] = ref;
+            nums[d] = num;
+        }
+    }
+
+    // ++ and -- on a variable; a STRING stays as it was, or in an expression becomes INT 0
+    private void increment(Frame frame, int d, int r, int scope, Lexeme variable, int mode) {
+        if (!find(frame, r, scope, variable.getSymbol())) {
+            Z.error(variable, "Variable " + variable + " is undefined.");
+            throw nullValue();
+        }
+        Object oldRef = foundFrame.refs[foundRegister];
+        int oldNum = foundFrame.nums[foundRegister];
+        int delta = (mode & Opcode.DECREMENT) != 0 ? -1 : 1;
+        Object ref;
+        int num = 0;
+        if (oldRef == INT) {
+            ref = INT;
+            num = oldNum + delta;
+        } else if (oldRef == FLOAT) {
+            ref = FLOAT;
+            num = Float.floatToRawIntBits(Float.intBitsToFloat(oldNum) + delta);
+        } else if (oldRef instanceof String) {
+            Z.error(variable, "Invalid type.  Can't increment or decrement STRING");
+            ref = (mode & Opcode.EXPRESSION) != 0 ? INT : oldRef;
+            num = (mode & Opcode.EXPRESSION) != 0 ? 0 : oldNum;
+        } else if (oldRef == VOID) {
+            throw nullValue();
+        } else {
+            ref = VOID;
+        }
+        if (find(frame, r, scope, variable.getSymbol())) update(foundFrame, foundRegister, ref, num, variable);
+        if (d >= 0) {
+            boolean prefix = (mode & Opcode.PREFIX) != 0;
+            frame.refs[d] = prefix ? ref : oldRef;
+            frame.nums[d] = prefix ? num : oldNum;
+        }
+    }
+
+    // Evaluator.convertToDatatype, into register d
+    private static void convert(Object[] refs, int[] nums, int d, Object ref, int num, Lexeme dataType) {
+        switch (dataType.getType()) {
+            case KW_FLOAT:
+                if (ref == VOID) throw nullValue();
+                if (ref instanceof String) {
+                    Z.error(dataType, "Type mismatch.  Can't initialize FLOAT to STRING value");
+                    break;
+                }
+                setFloat(refs, nums, d, floatValue(ref, num, dataType.getLineNumber()));
+                return;
+            case KW_INT:
+                if (ref == VOID) throw nullValue();
+                if (ref instanceof String) {
+                    Z.error(dataType, "Type mismatch.  Can't initialize INT to STRING value");
+                    break;
+                }
+                setInt(refs, nums, d, intValue(ref, num, dataType.getLineNumber()));
+                return;
+            case KW_STRING:
+                refs[d] = string(ref, num);
+                return;
+            default:
+        }
+        refs[d] = ref;
+        nums[d] = num;
+    }
+
+    // -------------- Functions --------------
+
+    // The code for a function body, compiled on its first call, with cache the call's own
+    private BytecodeFunction function(BytecodeFunction caller, int cache, Lexeme functionBody) {
+        Object[] callCaches = caller.callCaches;
+        if (callCaches[2 * cache] == functionBody) return (BytecodeFunction) callCaches[2 * cache + 1];
+        BytecodeFunction function = functions.get(functionBody);
+        if (function == null) {
+            if (functionBody.getFrameLayout() == null) {
+                if (!Z.hadSyntaxError) {
+                    Optimizer.optimizeFunction(functionBody);
+                    Resolver.resolveFunction(functionBody);
+                    TypeChecker.checkFunction(functionBody);
+                    LoopOptimizer.optimizeFunction(functionBody);
+                } else {
+                    Resolver.resolveFunction(functionBody);     // the Evaluator runs it by name, as this does
+                }
+            }
+            function = BytecodeCompiler.compile(functionBody);
+            if (dump != null) function.print(dump);
+            functions.put(functionBody, function);
+        }
+        callCaches[2 * cache] = functionBody;
+        callCaches[2 * cache + 1] = function;
+        return function;
+    }
+
+    private void call(Object[] refs, int[] nums, int d, Frame callee, Lexeme functionCall, int arguments) {
+        BytecodeFunction function = callee.function;
+        if (arguments < function.parameters.length) Z.error(functionCall, "Not enough arguments");
+        execute(callee);
+
+        Lexeme returnType = function.returnType;
+        if (returnType == null || returnType.getType() == TokenType.VOID) {
+            refs[d] = VOID;
+            return;
+        }
+        Object ref = callee.refs[function.result];
+        int num = callee.nums[function.result];
+        switch (returnType.getType()) {
+            case KW_STRING:
+                refs[d] = string(ref, num);
+                break;
+            case KW_FLOAT:
+                setFloat(refs, nums, d, floatValue(ref, num, functionCall.getLineNumber()));
+                break;
+            case KW_INT:
+                setInt(refs, nums, d, intValue(ref, num, functionCall.getLineNumber()));
+                break;
+            default:
+                refs[d] = VOID;
+        }
+    }
+
+    private static void output(Object ref, int num) {
+        if (ref == FLOAT) System.out.println(Float.intBitsToFloat(num));
+        else if (ref == INT) System.out.println(num);
+        else if (ref instanceof String) System.out.println((String) ref);
+        else throw nullValue();     // TRUE and FALSE have no datatype
+    }
+
+    // -------------- Values --------------
+
+    private static void setInt(Object[] refs, int[] nums, int d, int value) {
+        refs[d] = INT;
+        nums[d] = value;
+    }
+
+    private static void setFloat(Object[] refs, int[] nums, int d, float value) {
+        refs[d] = FLOAT;
+        nums[d] = Float.floatToRawIntBits(value);
+    }
+
+    // An operand of a FLOAT operation, which may be an INT
+    private static float number(Object[] refs, int[] nums, int r) {
+        return refs[r] == INT ? nums[r] : Float.intBitsToFloat(nums[r]);
+    }
+
+    // Lexeme.getIntValue
+    private static int intValue(Object ref, int num, int line) {
+        if (ref == INT) return num;
+        if (ref == FLOAT) return (int) Float.intBitsToFloat(num);
+        if (ref instanceof String) {
+            Z.error(line, "Type conversion error. Can't convert STRING to INT");
+            return 0;
+        }
+        throw nullValue();
+    }
+
+    // Lexeme.getFloatValue
+    private static float floatValue(Object ref, int num, int line) {
+        if (ref == FLOAT) return Float.intBitsToFloat(num);
+        if (ref == INT) return num;
+        if (ref instanceof String) {
+            Z.error(line, "Type conversion error. Can't convert STRING to FLOAT");
+            return 0.0f;
+        }
+        throw nullValue();
+    }
+
+    // Lexeme.getStringValue
+    private static String string(Object ref, int num) {
+        if (ref instanceof String) return (String) ref;
+        if (ref == INT) return String.valueOf(num);
+        if (ref == FLOAT) return String.valueOf(Float.intBitsToFloat(num));
+        throw nullValue();
+    }
+
+    // Lexeme.getBooleanValue
+    private static boolean truth(Object ref, int num) {
+        if (ref == TRUE) return true;
+        if (ref == INT) return num != 0;
+        if (ref == FLOAT) return Float.intBitsToFloat(num) != 0;
+        if (ref instanceof String) return !((String) ref).isEmpty();
+        if (ref == VOID) throw nullValue();
+        return false;
+    }
+
+    private static boolean compared(int operator, int comparison) {
+        switch (operator) {         // EQ, NE, GT, GE, LT, LE
+            case 0:
+                return comparison == 0;
+            case 1:
+                return comparison != 0;
+            case 2:
+                return comparison > 0;
+            case 3:
+                return comparison >= 0;
+            case 4:
+                return comparison < 0;
+            default:
+                return comparison <= 0;
+        }
+    }
+
+    // A register as the Evaluator's value, with the line of the node that uses it
+    static Lexeme lexeme(Object ref, int num, int line) {
+        if (ref == INT) return Lexeme.integer(Integer.valueOf(num), line);
+        if (ref == FLOAT) return new Lexeme(TokenType.FLOAT, Float.valueOf(Float.intBitsToFloat(num)), line);
+        if (ref instanceof String) return new Lexeme(TokenType.STRING, (String) ref, line);
+        if (ref == TRUE) return Lexeme.TRUE_VALUE;
+        if (ref == FALSE) return Lexeme.FALSE_VALUE;
+        if (ref == VOID || ref == null) return null;
+        return (Lexeme) ref;        // a function
+    }
+
+    private static void store(Object[] refs, int[] nums, int d, Lexeme value) {
+        if (value == null) {
+            refs[d] = VOID;
+            return;
+        }
+        switch (value.getType()) {
+            case INT:
+                setInt(refs, nums, d, value.getIntValue());
+                break;
+            case FLOAT:
+                setFloat(refs, nums, d, value.getFloatValue());
+                break;
+            case STRING:
+                refs[d] = value.getStringValue();
+                break;
+            case TRUE:
+                refs[d] = TRUE;
+                break;
+            case FALSE:
+                refs[d] = FALSE;
+                break;
+            default:
+                refs[d] = value;
+        }
+    }
+
+    static String describe(Object ref, int num) {
+        if (ref == INT) return "INT " + num;
+        if (ref == FLOAT) return "FLOAT " + Float.intBitsToFloat(num);
+        if (ref instanceof String) return "STRING \"" + ref + "\"";
+        if (ref instanceof Lexeme) return "FUNCTION_BODY on line " + ((Lexeme) ref).getLineNumber();
+        return String.valueOf(ref);
+    }
+
+    private static NullPointerException nullValue() {
+        return new NullPointerException("Cannot use a statement or function without a value");
+    }
+}
@@ -1,22 +1,61 @@
 package com.corbin;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 public class Z {
     static boolean hadSyntaxError = false;
     static boolean hadRuntimeError = false;
+    static boolean hadError = false;
+
+    // Command-line options.  Diagnostics are off unless asked for.
+    private static boolean dumpTokens = false;
+    private static boolean dumpAst = false;
+    private static boolean dumpOptimized = false;
+    private static boolean verbose = false;
+    private static boolean parallelLexing = false;
+    private static boolean lazyParsing = false;
+    private static boolean dumpBytecode = false;
+    private static boolean dumpSpecializations = false;
+    private static int tierThreshold = -1;         // calls or iterations before the Evaluator compiles, or -1 not to
+    private static boolean dumpTiers = false;
+    private static String engine = "tree";         // tree, vm, jvm or closure
+    private static AstCache cache = null;
+
+    private static final String USAGE = "Usage: z [options] scratchFile.z\n"
+            + "  --dump-tokens    print every token as it is lexed\n"
+            + "  --dump-ast       print the parse tree before evaluating\n"
+            + "  --dump-optimized print the tree after optimizing and how many nodes that removed\n"
+            + "  --verbose        print the arguments and the program result\n"
+            + "  --parallel-lex   lex large files on all cores\n"
+            + "  --lazy-parse     parse function bodies when they are first called\n"
+            + "  --cache          reuse parsed programs from ~/.cache/z\n"
+            + "  --cache-dir=DIR  reuse parsed programs from DIR\n"
+            + "  --engine=vm      run compiled to bytecode instead of walking the tree (--engine=tree)\n"
+            + "  --engine=jvm     run functions compiled to JVM bytecode where they can be\n"
+            + "  --engine=closure run the tree compiled to linked nodes, a function at a time\n"
+            + "  --dump-bytecode  print the bytecode of the program and of each function as it is compiled\n"
+            + "  --dump-specializations  print what each operator the closure engine specialized at run time settled on\n"
+            + "  --tier-up=N      closure compile functions and loops once called or iterated N times\n"
+            + "  --dump-tiers     print each function and loop as --tier-up promotes it";
 
     public static void main(String[] args) throws IOException {
-        System.out.println(Arrays.toString(args));
+        String path = parseArguments(args);
+        if (verbose) System.out.println(Arrays.toString(args));
         try {
-            if (singlePathProvided(args)) runFile(args[0]);
+            if (path != null) runFile(path);
             else {
-                System.out.println("Usage: z scratchFile.z");
+                System.out.println(USAGE);
                 System.exit(64);
             }
         } catch (IOException exception) {
@@ -24,44 +63,181 @@ public class Z {
         }
     }
 
+    // Sets the option flags and returns the source path, or null if the arguments are not usable
+    private static String parseArguments(String[] args) {
+        String path = null;
+        for (String arg : args) {
+            switch (arg) {
+                case "--dump-tokens":
+                    dumpTokens = true;
+                    break;
+                case "--dump-ast":
+                    dumpAst = true;
+                    break;
+                case "--dump-optimized":
+                    dumpOptimized = true;
+                    break;
+                case "--verbose":
+                    verbose = true;
+                    break;
+                case "--parallel-lex":
+                    parallelLexing = true;
+                    break;
+                case "--lazy-parse":
+                    lazyParsing = true;
+                    break;
+                case "--cache":
+                    cache = new AstCache(AstCache.defaultDirectory());
+                    break;
+                case "--engine=tree":
+                case "--engine=vm":
+                case "--engine=jvm":
+                case "--engine=closure":
+                    engine = arg.substring("--engine=".length());
+                    break;
+                case "--dump-bytecode":
+                    dumpBytecode = true;
+                    break;
+                case "--dump-specializations":
+                    dumpSpecializations = true;
+                    break;
+                case "--dump-tiers":
+                    dumpTiers = true;
+                    break;
+                default:
+                    if (arg.startsWith("--cache-dir=") && arg.length() > "--cache-dir=".length()) {
+                        cache = new AstCache(Paths.get(arg.substring("--cache-dir=".length())));
+                        break;
+                    }
+                    if (arg.matches("--tier-up=\\d{1,9}")) {
+                        tierThreshold = Integer.parseInt(arg.substring("--tier-up=".length()));
+                        break;
+                    }
+                    if (arg.startsWith("--") || path != null) return null;
+                    path = arg;
+            }
+        }
+        return path;
+    }
+
     private static void runFile(String path) throws IOException {
-        String sourceCode = getSourceCodeFromFile(path);
-        run(sourceCode);
+        PrintWriter diagnostics = dumpTokens || dumpAst || dumpOptimized || dumpBytecode || dumpSpecializations || dumpTiers
+                ? new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)))
+                : null;
+        Path source = Paths.get(path);
+
+        // A cached tree has no tokens, so --dump-tokens always parses
+        byte[] key = cache != null ? cache.key(source) : null;
+        Lexeme program = key != null && !dumpTokens ? cache.load(key) : null;
+        if (program == null) {
+            program = parse(source, diagnostics);
+            if (key != null && !hadError) cache.store(key, program);
+        }
+        evaluate(program, diagnostics);
 
         if (hadSyntaxError) System.exit(65);
         if (hadRuntimeError) System.exit(70);
     }
 
-    private static void run(String sourceCode) {
+    private static Lexeme parse(Path source, PrintWriter diagnostics) throws IOException {
+        if (parallelLexing && ParallelLexer.shouldLexInParallel(source.toFile().length())) {
+            return parse(ParallelLexer.lex(readSourceCode(source)), diagnostics);
+        }
+        try (Reader sourceCode = getSourceCodeFromFile(source.toString())) {
+            return parse(sourceCode, diagnostics);
+        }
+    }
+
+    private static Lexeme parse(Reader sourceCode, PrintWriter diagnostics) {
         Lexer lexer = new Lexer(sourceCode);
-        ArrayList<Lexeme> lexemes = lexer.lex();
-        printLexemes(lexemes);
-        Parser parser = new Parser(lexemes);
+        if (dumpTokens) lexer.echoTo(diagnostics);
+        Parser parser = new Parser(lexer);
+        parser.setLazyFunctionBodies(lazyBodies());
         Lexeme program = parser.program();
-        Parser.printTree(program);
+        while (lexer.hasNext()) lexer.next();   // report lexical errors in any trailing unparsed source
+        return program;
+    }
 
-        Environments globalEnvironment = new Environments(null);
-        Evaluator evaluator = new Evaluator();
-        System.out.println("============== Begin Evaluation ==============");
-        Lexeme programResult = evaluator.eval(program, globalEnvironment);
+    private static Lexeme parse(TokenBuffer tokens, PrintWriter diagnostics) {
+        if (dumpTokens) {
+            for (int i = 0; i < tokens.size(); i++) diagnostics.println(tokens.toLexeme(i));
+        }
+        Parser parser = new Parser(tokens);
+        parser.setLazyFunctionBodies(lazyBodies());
+        return parser.program();
+    }
+
+    // Storing a tree parses every body anyway, and errors in them must be seen before it is
+    // cached; the VirtualMachine only runs programs whose bodies it can check before it starts
+    private static boolean lazyBodies() {
+        return lazyParsing && cache == null && !engine.equals("vm");
+    }
+
+    private static void evaluate(Lexeme program, PrintWriter diagnostics) {
+        if (dumpAst) Parser.printTree(program, diagnostics);
+        if (!hadSyntaxError) optimize(program, diagnostics);
+        // Names nothing declares and type errors are reported like syntax errors, and the program isn't run
+        if (!hadSyntaxError && !(Resolver.resolve(program) && TypeChecker.check(program))) {
+            if (diagnostics != null) diagnostics.flush();
+            return;
+        }
+        if (!hadSyntaxError) LoopOptimizer.optimize(program);
+        if (diagnostics != null) {
+            diagnostics.println("============== Begin Evaluation ==============");
+            diagnostics.flush();
+        }
+
+        // Programs with syntax errors run unresolved, and ones using arrays need the Evaluator.
+        // With the JVM engine the Evaluator runs what JvmCompiler can't, a function at a time.
+        Lexeme programResult;
+        boolean compiling = engine.equals("jvm") && !hadSyntaxError;
+        JvmFunction compiledProgram = compiling ? JvmCompiler.compile(program, -1) : null;
+        if (engine.equals("vm") && !hadSyntaxError && BytecodeCompiler.supports(program)) {
+            programResult = new VirtualMachine(dumpBytecode ? diagnostics : null).run(program);
+        } else if (compiledProgram != null) {
+            programResult = compiledProgram.run();
+        } else if (engine.equals("closure") && !hadSyntaxError) {
+            ClosureCompiler closures = new ClosureCompiler();
+            programResult = closures.run(program);
+            if (dumpSpecializations) closures.printSpecializations(diagnostics);
+        } else {
+            Environments globalEnvironment = new Environments(null);
+            Evaluator evaluator = new Evaluator();
+            evaluator.setCompiling(compiling);
+            if (tierThreshold >= 0 && !hadSyntaxError) evaluator.setTiers(new Tiers(tierThreshold, dumpTiers ? diagnostics : null));
+            programResult = evaluator.eval(program, globalEnvironment);
+        }
 
-        System.out.println("Program result: " + programResult);
+        if (verbose) System.out.println("Program result: " + programResult);
     }
 
-    private static void printLexemes(ArrayList<Lexeme> lexemes) {
-        for (Lexeme lexeme : lexemes) System.out.println(lexeme);
+    // The dump shows every parsed function body optimized; otherwise each waits for its first call
+    private static void optimize(Lexeme program, PrintWriter diagnostics) {
+        if (!dumpOptimized) {
+            Optimizer.optimize(program, false);
+            return;
+        }
+        int before = Optimizer.countNodes(program);
+        Optimizer.optimize(program, true);
+        int after = Optimizer.countNodes(program);
+        Parser.printTree(program, diagnostics);
+        diagnostics.println("Optimizer removed " + (before - after) + " of " + before + " nodes");
     }
 
-    private static String getSourceCodeFromFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        return new String(bytes, Charset.defaultCharset());
+    private static Reader getSourceCodeFromFile(String path) throws IOException {
+        return new MappedSourceReader(Paths.get(path), Charset.defaultCharset());
     }
 
-    private static boolean singlePathProvided(String[] args) {
-        return args.length == 1;
+    // Whole source in memory, for lexing it in parallel
+    private static char[] readSourceCode(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CharBuffer characters = Charset.defaultCharset().decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return Arrays.copyOf(characters.array(), characters.limit());
+        }
     }
 
     public static void error(int lineNumber, String message) {
+        hadError = true;
         System.err.println("Cmon Man You Messed Up: " + message + " on line: " + lineNumber);
     }
 
@@ -76,5 +252,6 @@ public class Z {
     private static void report(int lineNumber, String where, String message) {
         System.err.println("[line " + lineNumber + "] Error " + where + ": " + message);
         hadSyntaxError = true;
+        hadError = true;
     }
 }